@@ -60,6 +60,7 @@ import org.eclipse.jdt.core.util.ISignatureAttribute;
 import org.eclipse.pde.api.tools.generator.util.Util;
 import org.eclipse.pde.api.tools.internal.IApiXmlConstants;
 import org.eclipse.pde.api.tools.internal.provisional.ProfileModifiers;
+import org.eclipse.pde.api.tools.internal.util.MappedStubFile;
 import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.Attribute;
 import org.objectweb.asm.ClassReader;
@@ -1051,6 +1052,15 @@ public class EEGenerator {
 			System.out.println("The stub for the profile " + this.profileName + " was generated from " + this.totalSize + " bytes."); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 			System.out.println("Its generated size is " + this.generatedSize + " bytes."); //$NON-NLS-1$ //$NON-NLS-2$
 			System.out.println("Ratio : " + (((double) this.generatedSize / (double) this.totalSize) * 100.0) + "%"); //$NON-NLS-1$ //$NON-NLS-2$
+			// the stub file is mapped by API tools instead of reading the
+			// archive
+			File stubFile = new File(subDir, profileName2 + MappedStubFile.STUB_FILE_EXTENSION);
+			try {
+				MappedStubFile.write(file, stubFile);
+				System.out.println("Its stub file size is " + stubFile.length() + " bytes."); //$NON-NLS-1$ //$NON-NLS-2$
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
 		}
 		@Override
 		public String toString() {
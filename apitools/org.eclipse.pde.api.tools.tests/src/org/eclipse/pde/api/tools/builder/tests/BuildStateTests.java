@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.builder.tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.eclipse.pde.api.tools.internal.builder.BuildState;
+import org.eclipse.pde.api.tools.internal.comparator.Delta;
+import org.eclipse.pde.api.tools.internal.provisional.comparator.IDelta;
+import org.osgi.framework.Constants;
+
+/**
+ * Tests saving and restoring the sectioned {@link BuildState} format
+ *
+ * @since 1.1
+ */
+public class BuildStateTests extends TestCase {
+
+	/**
+	 * @return a new empty state, created through its package-visible
+	 *         constructor
+	 * @throws Exception
+	 */
+	private BuildState newState() throws Exception {
+		Constructor<BuildState> constructor = BuildState.class.getDeclaredConstructor();
+		constructor.setAccessible(true);
+		return constructor.newInstance();
+	}
+
+	/**
+	 * @return a state with data in each section that can be set without a
+	 *         workspace
+	 * @throws Exception
+	 */
+	private BuildState createState() throws Exception {
+		BuildState state = newState();
+		state.setBuildPathCRC(1234L);
+		state.addBreakingChange(new Delta(null, IDelta.CLASS_ELEMENT_TYPE, IDelta.REMOVED, IDelta.METHOD, "a.b.C", "m()V", "a.b.C")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		state.addCompatibleChange(new Delta(null, IDelta.CLASS_ELEMENT_TYPE, IDelta.ADDED, IDelta.FIELD, "a.b.D", "f", "a.b.D")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		state.addApiToolingDependentProject("dependent"); //$NON-NLS-1$
+		Map<String, String> manifest = new HashMap<>();
+		manifest.put(Constants.BUNDLE_VERSION, "1.0.0"); //$NON-NLS-1$
+		manifest.put(Constants.BUNDLE_NAME, "ignored"); //$NON-NLS-1$
+		state.setManifestState(manifest);
+		return state;
+	}
+
+	private byte[] write(BuildState state) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			BuildState.write(state, out);
+		}
+		return bytes.toByteArray();
+	}
+
+	private BuildState read(byte[] bytes) throws IOException {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+			return BuildState.read(in);
+		}
+	}
+
+	/**
+	 * Tests that every section survives a save and restore, including after a
+	 * restored state is saved again without having been decoded
+	 *
+	 * @throws Exception
+	 */
+	public void testRoundTrip() throws Exception {
+		BuildState state = read(write(createState()));
+		assertNotNull("The state should have been read", state); //$NON-NLS-1$
+		// save the restored state again before decoding any of its sections
+		state = read(write(state));
+		assertNotNull("The state should have been read again", state); //$NON-NLS-1$
+		assertEquals("Wrong build path CRC", 1234L, state.getBuildPathCRC()); //$NON-NLS-1$
+		IDelta[] breaking = state.getBreakingChanges();
+		assertEquals("Wrong number of breaking changes", 1, breaking.length); //$NON-NLS-1$
+		assertEquals("Wrong breaking change type", "a.b.C", breaking[0].getTypeName()); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals("Wrong breaking change key", "m()V", breaking[0].getKey()); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals("Wrong breaking change kind", IDelta.REMOVED, breaking[0].getKind()); //$NON-NLS-1$
+		IDelta[] compatible = state.getCompatibleChanges();
+		assertEquals("Wrong number of compatible changes", 1, compatible.length); //$NON-NLS-1$
+		assertEquals("Wrong compatible change flags", IDelta.FIELD, compatible[0].getFlags()); //$NON-NLS-1$
+		assertEquals("Wrong dependent projects", Arrays.asList("dependent"), Arrays.asList(state.getApiToolingDependentProjects().toArray())); //$NON-NLS-1$ //$NON-NLS-2$
+		Map<String, String> manifest = state.getManifestState();
+		assertEquals("Only the important headers should have been saved", 1, manifest.size()); //$NON-NLS-1$
+		assertEquals("Wrong bundle version", "1.0.0", manifest.get(Constants.BUNDLE_VERSION)); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals("There should be no re-exported components", 0, state.getReexportedComponents().length); //$NON-NLS-1$
+	}
+
+	/**
+	 * Tests that an overwritten section is saved instead of its restored
+	 * contents
+	 *
+	 * @throws Exception
+	 */
+	public void testOverwrittenSection() throws Exception {
+		BuildState state = read(write(createState()));
+		state.setBuildPathCRC(5678L);
+		state.cleanup("a.b.C"); //$NON-NLS-1$
+		state = read(write(state));
+		assertEquals("Wrong build path CRC", 5678L, state.getBuildPathCRC()); //$NON-NLS-1$
+		assertEquals("The breaking change should have been removed", 0, state.getBreakingChanges().length); //$NON-NLS-1$
+		assertEquals("The compatible change should have been kept", 1, state.getCompatibleChanges().length); //$NON-NLS-1$
+	}
+
+	/**
+	 * Tests that a corrupt section rejects the whole state so that a full
+	 * build is done
+	 *
+	 * @throws Exception
+	 */
+	public void testCorruptSection() throws Exception {
+		byte[] bytes = write(createState());
+		bytes[bytes.length - 1] ^= 0x5A;
+		assertNull("A corrupt state should not be read", read(bytes)); //$NON-NLS-1$
+	}
+
+	/**
+	 * Tests that a truncated state is rejected so that a full build is done
+	 *
+	 * @throws Exception
+	 */
+	public void testTruncatedState() throws Exception {
+		byte[] bytes = write(createState());
+		assertNull("A truncated state should not be read", read(Arrays.copyOf(bytes, bytes.length - 3))); //$NON-NLS-1$
+	}
+}
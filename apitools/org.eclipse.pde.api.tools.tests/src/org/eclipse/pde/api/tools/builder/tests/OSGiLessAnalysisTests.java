@@ -20,6 +20,7 @@ import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.pde.api.tools.internal.builder.BaseApiAnalyzer;
 import org.eclipse.pde.api.tools.internal.builder.BuildContext;
+import org.eclipse.pde.api.tools.internal.builder.ParallelApiAnalyzer;
 import org.eclipse.pde.api.tools.internal.problems.ApiProblemFactory;
 import org.eclipse.pde.api.tools.internal.provisional.comparator.IDelta;
 import org.eclipse.pde.api.tools.internal.provisional.descriptors.IElementDescriptor;
@@ -68,4 +69,30 @@ public class OSGiLessAnalysisTests extends TestCase {
 		baseline.dispose();
 		current.dispose();
 	}
+
+	/**
+	 * Tests that analyzing components on several threads reports the same
+	 * problems, in the same order, as analyzing them on a single thread
+	 *
+	 * @throws CoreException
+	 */
+	public void testParallelAnalyzer() throws CoreException {
+		IApiBaseline baseline = TestSuiteHelper.createTestingBaseline("baseline", new Path("test-analyzer-1")); //$NON-NLS-1$ //$NON-NLS-2$
+		IApiBaseline current = TestSuiteHelper.createTestingBaseline("current", new Path("test-analyzer-2")); //$NON-NLS-1$ //$NON-NLS-2$
+		try {
+			IApiComponent[] components = current.getApiComponents();
+			IApiProblem[][] sequential = new ParallelApiAnalyzer(1, false).analyze(baseline, components, null, null, new NullProgressMonitor());
+			IApiProblem[][] parallel = new ParallelApiAnalyzer(4, false).analyze(baseline, components, null, null, new NullProgressMonitor());
+			assertEquals("Wrong number of results", sequential.length, parallel.length); //$NON-NLS-1$
+			for (int i = 0; i < sequential.length; i++) {
+				assertEquals("Wrong number of problems for " + components[i].getSymbolicName(), sequential[i].length, parallel[i].length); //$NON-NLS-1$
+				for (int j = 0; j < sequential[i].length; j++) {
+					assertEquals("Wrong problem for " + components[i].getSymbolicName(), sequential[i][j].getId(), parallel[i][j].getId()); //$NON-NLS-1$
+				}
+			}
+		} finally {
+			baseline.dispose();
+			current.dispose();
+		}
+	}
 }
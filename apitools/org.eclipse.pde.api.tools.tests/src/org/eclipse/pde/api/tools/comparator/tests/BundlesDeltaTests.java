@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2010 IBM Corporation and others.
+ * Copyright (c) 2007, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,6 +14,8 @@ import junit.framework.Test;
 import junit.framework.TestSuite;
 
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.pde.api.tools.internal.comparator.ContentHashComparator;
+import org.eclipse.pde.api.tools.internal.model.AbstractApiTypeRoot;
 import org.eclipse.pde.api.tools.internal.provisional.VisibilityModifiers;
 import org.eclipse.pde.api.tools.internal.provisional.comparator.ApiComparator;
 import org.eclipse.pde.api.tools.internal.provisional.comparator.DeltaProcessor;
@@ -575,4 +577,93 @@ public class BundlesDeltaTests extends DeltaTestSetup {
 		assertNotNull("No delta", delta); //$NON-NLS-1$
 		assertFalse("Equals to NO_DELTA", delta == ApiComparator.NO_DELTA); //$NON-NLS-1$
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Tests that comparing the baselines on several threads returns the same
+	 * deltas, in the same order, as comparing them on the calling thread
+	 */
+	public void test17() {
+		deployBundles("test9"); //$NON-NLS-1$
+		IDelta delta = ApiComparator.compare(getBeforeState(), getAfterState(), VisibilityModifiers.ALL_VISIBILITIES, false, null);
+		IDelta delta2 = ApiComparator.compare(getBeforeState(), getAfterState(), VisibilityModifiers.ALL_VISIBILITIES, false, 4, null);
+		assertNotNull("No delta", delta2); //$NON-NLS-1$
+		IDelta[] allLeavesDeltas = collectLeaves(delta);
+		IDelta[] allLeavesDeltas2 = collectLeaves(delta2);
+		assertEquals("Wrong size", allLeavesDeltas.length, allLeavesDeltas2.length); //$NON-NLS-1$
+		for (int i = 0; i < allLeavesDeltas.length; i++) {
+			assertEquals("Wrong delta", allLeavesDeltas[i], allLeavesDeltas2[i]); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Tests that a class file with the same contents, descriptions and
+	 * hierarchy in both baselines is found unchanged from its fingerprint
+	 */
+	public void test18() throws CoreException {
+		deployBundles("test9"); //$NON-NLS-1$
+		IApiComponent component = getBeforeState().getApiComponent(BUNDLE_NAME);
+		IApiComponent component2 = getAfterState().getApiComponent(BUNDLE_NAME);
+		IApiTypeRoot typeRoot = component.findTypeRoot("X"); //$NON-NLS-1$
+		IApiTypeRoot typeRoot2 = component2.findTypeRoot("X"); //$NON-NLS-1$
+		assertNotNull("No type root", typeRoot); //$NON-NLS-1$
+		assertNotNull("No type root", typeRoot2); //$NON-NLS-1$
+		assertTrue("Should be unchanged", new ContentHashComparator().isUnchanged(typeRoot, typeRoot2, component, component2)); //$NON-NLS-1$
+	}
+
+	/**
+	 * Tests that a modified class file is not found unchanged from its
+	 * fingerprint
+	 */
+	public void test19() throws CoreException {
+		deployBundles("test15"); //$NON-NLS-1$
+		IApiComponent component = getBeforeState().getApiComponent(BUNDLE_NAME);
+		IApiComponent component2 = getAfterState().getApiComponent(BUNDLE_NAME);
+		IApiTypeRoot typeRoot = component.findTypeRoot("p.X"); //$NON-NLS-1$
+		IApiTypeRoot typeRoot2 = component2.findTypeRoot("p.X"); //$NON-NLS-1$
+		assertNotNull("No type root", typeRoot); //$NON-NLS-1$
+		assertNotNull("No type root", typeRoot2); //$NON-NLS-1$
+		assertFalse("Should be changed", new ContentHashComparator().isUnchanged(typeRoot, typeRoot2, component, component2)); //$NON-NLS-1$
+	}
+
+	/**
+	 * Tests that class files with the same fingerprint but different bytes,
+	 * as with a CRC-32 collision, are not found unchanged
+	 */
+	public void test20() throws CoreException {
+		deployBundles("test9"); //$NON-NLS-1$
+		IApiComponent component = getBeforeState().getApiComponent(BUNDLE_NAME);
+		IApiComponent component2 = getAfterState().getApiComponent(BUNDLE_NAME);
+		IApiTypeRoot typeRoot = component.findTypeRoot("X"); //$NON-NLS-1$
+		assertNotNull("No type root", typeRoot); //$NON-NLS-1$
+		byte[] contents = ((AbstractApiTypeRoot) typeRoot).getContents();
+		byte[] changed = contents.clone();
+		changed[changed.length - 1] ^= 1;
+		IApiTypeRoot root = newTypeRoot(component, "X", contents); //$NON-NLS-1$
+		IApiTypeRoot same = newTypeRoot(component2, "X", contents.clone()); //$NON-NLS-1$
+		IApiTypeRoot colliding = newTypeRoot(component2, "X", changed); //$NON-NLS-1$
+		assertTrue("Should be unchanged", new ContentHashComparator().isUnchanged(root, same, component, component2)); //$NON-NLS-1$
+		assertFalse("Should be changed", new ContentHashComparator().isUnchanged(root, colliding, component, component2)); //$NON-NLS-1$
+	}
+
+	/**
+	 * Returns a type root with the given contents and a fixed fingerprint
+	 */
+	private IApiTypeRoot newTypeRoot(IApiComponent component, final String typeName, final byte[] contents) {
+		return new AbstractApiTypeRoot(component, typeName) {
+			@Override
+			public byte[] getContents() {
+				return contents;
+			}
+
+			@Override
+			public String getTypeName() {
+				return typeName;
+			}
+
+			@Override
+			protected long computeContentHash() {
+				return 1L;
+			}
+		};
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2010 IBM Corporation and others.
+ * Copyright (c) 2007, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,12 +10,16 @@
  *******************************************************************************/
 package org.eclipse.pde.api.tools.comparator.tests;
 
+import java.io.StringWriter;
+
 import junit.framework.Test;
 import junit.framework.TestSuite;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.jdt.core.Flags;
 import org.eclipse.pde.api.tools.internal.comparator.DeltaXmlVisitor;
+import org.eclipse.pde.api.tools.internal.comparator.JsonDeltaWriter;
+import org.eclipse.pde.api.tools.internal.comparator.XmlDeltaWriter;
 import org.eclipse.pde.api.tools.internal.provisional.ApiPlugin;
 import org.eclipse.pde.api.tools.internal.provisional.RestrictionModifiers;
 import org.eclipse.pde.api.tools.internal.provisional.VisibilityModifiers;
@@ -27,6 +31,7 @@ import org.eclipse.pde.api.tools.internal.provisional.model.IApiBaseline;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiComponent;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiTypeRoot;
 import org.eclipse.pde.api.tools.internal.util.Util;
+import org.w3c.dom.Element;
 
 /**
  * Delta tests for class
@@ -3653,4 +3658,40 @@ public class ClassDeltaTests extends DeltaTestSetup {
 		assertEquals("Wrong element type", IDelta.CLASS_ELEMENT_TYPE, child.getElementType()); //$NON-NLS-1$
 		assertTrue("Not compatible", DeltaProcessor.isCompatible(child)); //$NON-NLS-1$
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Streaming the deltas of test156 as XML and as JSON lines
+	 */
+	public void test157() throws CoreException {
+		deployBundles("test156"); //$NON-NLS-1$
+		IApiBaseline before = getBeforeState();
+		IApiBaseline after = getAfterState();
+		IApiComponent beforeApiComponent = before.getApiComponent(BUNDLE_NAME);
+		assertNotNull("no api component", beforeApiComponent); //$NON-NLS-1$
+		IApiComponent afterApiComponent = after.getApiComponent(BUNDLE_NAME);
+		assertNotNull("no api component", afterApiComponent); //$NON-NLS-1$
+		IDelta delta = ApiComparator.compare(beforeApiComponent, afterApiComponent, before, after, VisibilityModifiers.API, null);
+		assertNotNull("No delta", delta); //$NON-NLS-1$
+		IDelta child = collectLeaves(delta)[0];
+
+		DeltaXmlVisitor documentVisitor = new DeltaXmlVisitor();
+		delta.accept(documentVisitor);
+		StringWriter xml = new StringWriter();
+		DeltaXmlVisitor xmlVisitor = new DeltaXmlVisitor(new XmlDeltaWriter(xml));
+		delta.accept(xmlVisitor);
+		xmlVisitor.close();
+		assertNull("No document should be generated", xmlVisitor.getDocument()); //$NON-NLS-1$
+		Element streamed = Util.parseDocument(xml.toString());
+		assertEquals("Wrong number of deltas", documentVisitor.getDocument().getElementsByTagName("delta").getLength(), streamed.getElementsByTagName("delta").getLength()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertEquals("Wrong document", Util.serializeDocument(documentVisitor.getDocument()), Util.serializeDocument(streamed.getOwnerDocument())); //$NON-NLS-1$
+
+		StringWriter json = new StringWriter();
+		DeltaXmlVisitor jsonVisitor = new DeltaXmlVisitor(new JsonDeltaWriter(json));
+		delta.accept(jsonVisitor);
+		jsonVisitor.close();
+		String[] lines = json.toString().split("\n"); //$NON-NLS-1$
+		assertEquals("Wrong number of lines", 1, lines.length); //$NON-NLS-1$
+		assertTrue("Missing key", lines[0].indexOf("\"key\":\"" + child.getKey() + '"') != -1); //$NON-NLS-1$ //$NON-NLS-2$
+		assertTrue("Missing compatibility", lines[0].indexOf("\"compatible\":true") != -1); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+}
@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.model.tests;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.pde.api.tools.internal.ApiDescriptionStore;
+import org.eclipse.pde.api.tools.internal.util.Util;
+import org.eclipse.pde.api.tools.tests.ApiTestsPlugin;
+
+/**
+ * Tests the {@link ApiDescriptionStore}
+ *
+ * @since 1.1
+ */
+public class ApiDescriptionStoreTests extends TestCase {
+
+	private File fRoot = ApiTestsPlugin.getDefault().getStateLocation().append("apidescriptionstore").toFile(); //$NON-NLS-1$
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		Util.delete(fRoot);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		Util.delete(fRoot);
+		super.tearDown();
+	}
+
+	private byte[] block(int size, int seed) {
+		byte[] bytes = new byte[size];
+		for (int i = 0; i < size; i++) {
+			bytes[i] = (byte) (i * 31 + seed);
+		}
+		return bytes;
+	}
+
+	/**
+	 * Tests that saved packages are read back from a reopened store
+	 *
+	 * @throws Exception
+	 */
+	public void testRoundTrip() throws Exception {
+		assertNull("There should be no store", ApiDescriptionStore.open(fRoot)); //$NON-NLS-1$
+		ApiDescriptionStore store = new ApiDescriptionStore(fRoot);
+		Map<String, byte[]> blocks = new HashMap<>();
+		blocks.put("a", block(10, 1)); //$NON-NLS-1$
+		blocks.put("a.b", block(20, 2)); //$NON-NLS-1$
+		blocks.put("", block(5, 3)); //$NON-NLS-1$
+		assertEquals("Wrong number of blocks written", 3, store.save("1.2", 42L, blocks, Collections.<String> emptySet())); //$NON-NLS-1$ //$NON-NLS-2$
+
+		ApiDescriptionStore reopened = ApiDescriptionStore.open(fRoot);
+		assertNotNull("The store should have been saved", reopened); //$NON-NLS-1$
+		assertEquals("Wrong version", "1.2", reopened.getVersion()); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals("Wrong time stamp", 42L, reopened.getTimeStamp()); //$NON-NLS-1$
+		assertEquals("Wrong packages", blocks.keySet(), reopened.getPackageNames()); //$NON-NLS-1$
+		for (String name : blocks.keySet()) {
+			assertTrue("Wrong block for " + name, Arrays.equals(blocks.get(name), reopened.read(name))); //$NON-NLS-1$
+		}
+		assertNull("Unknown packages should not be read", reopened.read("x")); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/**
+	 * Tests that only the changed packages are written, and that packages
+	 * neither saved nor retained are removed
+	 *
+	 * @throws Exception
+	 */
+	public void testIncrementalSave() throws Exception {
+		ApiDescriptionStore store = new ApiDescriptionStore(fRoot);
+		Map<String, byte[]> blocks = new HashMap<>();
+		blocks.put("a", block(10, 1)); //$NON-NLS-1$
+		blocks.put("b", block(20, 2)); //$NON-NLS-1$
+		blocks.put("c", block(30, 3)); //$NON-NLS-1$
+		store.save("1.2", 1L, blocks, Collections.<String> emptySet()); //$NON-NLS-1$
+
+		ApiDescriptionStore reopened = ApiDescriptionStore.open(fRoot);
+		Map<String, byte[]> changed = new HashMap<>();
+		changed.put("a", block(10, 1)); //$NON-NLS-1$
+		changed.put("b", block(25, 4)); //$NON-NLS-1$
+		assertEquals("Only the changed package should be written", 1, reopened.save("1.2", 2L, changed, Collections.<String> emptySet())); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals("Wrong data length", 85L, new File(fRoot, ApiDescriptionStore.DATA_FILE_NAME).length()); //$NON-NLS-1$
+		ApiDescriptionStore third = ApiDescriptionStore.open(fRoot);
+		assertEquals("The package not retained should have been removed", 2, third.getPackageNames().size()); //$NON-NLS-1$
+		assertTrue("Wrong block", Arrays.equals(block(25, 4), third.read("b"))); //$NON-NLS-1$ //$NON-NLS-2$
+
+		assertEquals("Retained packages should not be written", 0, third.save("1.2", 2L, Collections.<String, byte[]> emptyMap(), Arrays.asList("a", "b"))); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertTrue("Wrong retained block", Arrays.equals(block(10, 1), ApiDescriptionStore.open(fRoot).read("a"))); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/**
+	 * Tests that the data file is compacted once most of it is unused
+	 *
+	 * @throws Exception
+	 */
+	public void testCompaction() throws Exception {
+		ApiDescriptionStore store = new ApiDescriptionStore(fRoot);
+		int size = 40 * 1024;
+		store.save("1.2", 1L, Collections.singletonMap("a", block(size, 1)), Collections.<String> emptySet()); //$NON-NLS-1$ //$NON-NLS-2$
+		store.save("1.2", 1L, Collections.singletonMap("a", block(size, 2)), Collections.<String> emptySet()); //$NON-NLS-1$ //$NON-NLS-2$
+		store.save("1.2", 1L, Collections.singletonMap("a", block(size, 3)), Collections.<String> emptySet()); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals("The data file should have been compacted", size, new File(fRoot, ApiDescriptionStore.DATA_FILE_NAME).length()); //$NON-NLS-1$
+		assertTrue("Wrong block after compaction", Arrays.equals(block(size, 3), ApiDescriptionStore.open(fRoot).read("a"))); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/**
+	 * Tests that a corrupt block is detected
+	 *
+	 * @throws Exception
+	 */
+	public void testCorruptBlock() throws Exception {
+		new ApiDescriptionStore(fRoot).save("1.2", 1L, Collections.singletonMap("a", block(10, 1)), Collections.<String> emptySet()); //$NON-NLS-1$ //$NON-NLS-2$
+		try (RandomAccessFile data = new RandomAccessFile(new File(fRoot, ApiDescriptionStore.DATA_FILE_NAME), "rw")) { //$NON-NLS-1$
+			data.seek(3);
+			data.write(0xFF);
+		}
+		try {
+			ApiDescriptionStore.open(fRoot).read("a"); //$NON-NLS-1$
+			fail("The corrupt block should have been detected"); //$NON-NLS-1$
+		} catch (CoreException e) {
+			// expected
+		}
+		ApiDescriptionStore.delete(fRoot);
+		assertNull("The store should have been deleted", ApiDescriptionStore.open(fRoot)); //$NON-NLS-1$
+	}
+}
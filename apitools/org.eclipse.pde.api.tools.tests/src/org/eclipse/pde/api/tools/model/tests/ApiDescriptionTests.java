@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2009 IBM Corporation and others.
+ * Copyright (c) 2007, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -821,4 +821,38 @@ public class ApiDescriptionTests extends TestCase {
 		IApiComponent componentA = profile.getApiComponent("component.a"); //$NON-NLS-1$
 		assertTrue("Should have an .api_description file", componentA.hasApiDescription()); //$NON-NLS-1$
 	}
+
+	/**
+	 * Tests that restrictions set on many members of a type, more than are
+	 * kept in a linear array of children, are resolved and removed like for a
+	 * few members
+	 */
+	public void testManyMembers() {
+		IApiDescription description = new ApiDescription("many.members"); //$NON-NLS-1$
+		IReferenceTypeDescriptor type = Factory.packageDescriptor("a.b").getType("Many"); //$NON-NLS-1$ //$NON-NLS-2$
+		description.setVisibility(type, VisibilityModifiers.API);
+		int count = 100;
+		for (int i = 0; i < count; i++) {
+			assertTrue("Method restriction not set", description.setRestrictions(type.getMethod("m" + i, "()V"), RestrictionModifiers.NO_REFERENCE).isOK()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			assertTrue("Field restriction not set", description.setRestrictions(type.getField("f" + i), RestrictionModifiers.NO_REFERENCE).isOK()); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		for (int i = 0; i < count; i++) {
+			IApiAnnotations annotations = description.resolveAnnotations(type.getMethod("m" + i, "()V")); //$NON-NLS-1$ //$NON-NLS-2$
+			assertNotNull("Missing annotations for m" + i, annotations); //$NON-NLS-1$
+			assertEquals("Wrong restrictions for m" + i, RestrictionModifiers.NO_REFERENCE, annotations.getRestrictions()); //$NON-NLS-1$
+			assertEquals("Wrong visibility for m" + i, VisibilityModifiers.API, annotations.getVisibility()); //$NON-NLS-1$
+			annotations = description.resolveAnnotations(type.getField("f" + i)); //$NON-NLS-1$
+			assertEquals("Wrong restrictions for f" + i, RestrictionModifiers.NO_REFERENCE, annotations.getRestrictions()); //$NON-NLS-1$
+		}
+		final List<IElementDescriptor> visited = new ArrayList<>();
+		description.accept(new ApiDescriptionVisitor() {
+			@Override
+			public boolean visitElement(IElementDescriptor element, IApiAnnotations annotations) {
+				visited.add(element);
+				return true;
+			}
+		}, null);
+		assertEquals("Wrong number of visited elements", count * 2 + 2, visited.size()); //$NON-NLS-1$
+		assertEquals("Unknown members should resolve to their type", RestrictionModifiers.NO_RESTRICTIONS, description.resolveAnnotations(type.getMethod("unknown", "()V")).getRestrictions()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	}
 }
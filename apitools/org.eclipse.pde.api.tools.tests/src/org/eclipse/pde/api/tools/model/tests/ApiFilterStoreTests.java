@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2012 IBM Corporation and others.
+ * Copyright (c) 2008, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,7 +11,13 @@
 package org.eclipse.pde.api.tools.model.tests;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
@@ -257,4 +263,121 @@ public class ApiFilterStoreTests extends AbstractApiTest {
 			fail(e.getMessage());
 		}
 	}
+
+	/**
+	 * Tests that unused filters are tracked while problems are looked up from
+	 * several threads at once
+	 */
+	public void testConcurrentFilterUsage() throws Exception {
+		IApiComponent component = getProjectApiComponent(TESTING_PLUGIN_PROJECT_NAME);
+		assertNotNull("the testing project api component must exist", component); //$NON-NLS-1$
+		ApiFilterStore store = (ApiFilterStore) component.getFilterStore();
+		IResource resource = getTestingJavaProject(TESTING_PLUGIN_PROJECT_NAME).getProject().findMember(new Path("src/x/y/z/C4.java")); //$NON-NLS-1$
+		assertNotNull("the resource src/x/y/z/C4.java must exist", resource); //$NON-NLS-1$
+		IApiProblemFilter[] filters = store.getFilters(resource);
+		assertEquals("There should be 1 filter for src/x/y/z/C4.java", 1, filters.length); //$NON-NLS-1$
+		store.recordFilterUsage();
+		assertTrue("the filter of src/x/y/z/C4.java should be unused", Arrays.asList(store.getUnusedFilters(null, null, null)).contains(filters[0])); //$NON-NLS-1$
+		IApiProblem problem = ApiProblemFactory.newApiProblem(resource.getProjectRelativePath().toPortableString(), null, null, null, null, -1, -1, -1, IApiProblem.CATEGORY_USAGE, IElementDescriptor.TYPE, IApiProblem.ILLEGAL_IMPLEMENT, IApiProblem.NO_FLAGS);
+		runLookups(store, problem, new Runnable() {
+			@Override
+			public void run() {
+				// the lookups themselves mark the filter as used
+			}
+		});
+		IApiProblemFilter[] unused = store.getUnusedFilters(null, null, null);
+		assertFalse("the filter of src/x/y/z/C4.java should be used", Arrays.asList(unused).contains(filters[0])); //$NON-NLS-1$
+		assertTrue("the other filters should still be unused", unused.length > 0); //$NON-NLS-1$
+	}
+
+	/**
+	 * Tests that problems looked up while the filters are removed or added
+	 * from another thread see either the old or the new filters
+	 */
+	public void testConcurrentFilterChanges() throws Exception {
+		final IApiComponent component = getProjectApiComponent(TESTING_PLUGIN_PROJECT_NAME);
+		assertNotNull("the testing project api component must exist", component); //$NON-NLS-1$
+		final ApiFilterStore store = (ApiFilterStore) component.getFilterStore();
+		IProject project = getTestingJavaProject(TESTING_PLUGIN_PROJECT_NAME).getProject();
+		IResource resource = project.findMember(new Path("src/x/y/z/C4.java")); //$NON-NLS-1$
+		assertNotNull("the resource src/x/y/z/C4.java must exist", resource); //$NON-NLS-1$
+		IApiProblem problem = ApiProblemFactory.newApiProblem(resource.getProjectRelativePath().toPortableString(), null, null, null, null, -1, -1, -1, IApiProblem.CATEGORY_USAGE, IElementDescriptor.TYPE, IApiProblem.ILLEGAL_IMPLEMENT, IApiProblem.NO_FLAGS);
+		assertTrue("the usage problem for src/x/y/z/C4.java should be filtered", store.isFiltered(problem)); //$NON-NLS-1$
+
+		// removing the filter file clears the store
+		final IFile file = project.getFile(new Path(".settings/.api_filters")); //$NON-NLS-1$
+		assertTrue("the .api_filters file must exist in the testing project", file.exists()); //$NON-NLS-1$
+		runLookups(store, problem, new Runnable() {
+			@Override
+			public void run() {
+				try {
+					file.delete(true, null);
+				} catch (CoreException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		});
+		assertFalse("the usage problem for src/x/y/z/C4.java should not be filtered", store.isFiltered(problem)); //$NON-NLS-1$
+		assertEquals("there should be no resources with filters", 0, store.getResources().length); //$NON-NLS-1$
+
+		// adding filters is seen by the next lookups
+		final IApiProblem[] problems = new IApiProblem[20];
+		for (int i = 0; i < problems.length; i++) {
+			problems[i] = ApiProblemFactory.newApiProblem(resource.getProjectRelativePath().toPortableString(), null, null, new String[] { Integer.toString(i) }, null, -1, -1, -1, IApiProblem.CATEGORY_USAGE, IElementDescriptor.TYPE, IApiProblem.ILLEGAL_EXTEND, IApiProblem.NO_FLAGS);
+		}
+		runLookups(store, problem, new Runnable() {
+			@Override
+			public void run() {
+				for (IApiProblem added : problems) {
+					store.addFiltersFor(new IApiProblem[] { added });
+					assertTrue("the added problem should be filtered", store.isFiltered(added)); //$NON-NLS-1$
+				}
+			}
+		});
+		assertEquals("Wrong number of filters for src/x/y/z/C4.java", problems.length, store.getFilters(resource).length); //$NON-NLS-1$
+		assertFalse("the usage problem for src/x/y/z/C4.java should not be filtered", store.isFiltered(problem)); //$NON-NLS-1$
+	}
+
+	/**
+	 * Looks up the given problem from several threads while the given change
+	 * runs on the calling thread
+	 *
+	 * @param store the store to look the problem up in
+	 * @param problem the problem to look up
+	 * @param change the change to run while the problem is looked up
+	 */
+	private void runLookups(final ApiFilterStore store, final IApiProblem problem, Runnable change) throws Exception {
+		final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+		final AtomicBoolean done = new AtomicBoolean();
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						for (int count = 0; count < 1000 || !done.get(); count++) {
+							store.isFiltered(problem);
+						}
+					} catch (Throwable e) {
+						failures.add(e);
+					}
+				}
+			});
+			threads[i].start();
+		}
+		try {
+			change.run();
+		} finally {
+			done.set(true);
+			for (Thread thread : threads) {
+				thread.join();
+			}
+		}
+		if (!failures.isEmpty()) {
+			Throwable failure = failures.get(0);
+			AssertionError error = new AssertionError("lookup failed: " + failure); //$NON-NLS-1$
+			error.initCause(failure);
+			throw error;
+		}
+	}
 }
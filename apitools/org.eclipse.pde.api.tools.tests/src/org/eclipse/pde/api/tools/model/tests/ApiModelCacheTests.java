@@ -32,6 +32,8 @@ public class ApiModelCacheTests extends TestCase {
 	@Override
 	protected void tearDown() throws Exception {
 		ApiModelCache.getCache().flushCaches();
+		ApiModelCache.getCache().setMaxSize(ApiModelCache.DEFAULT_CACHE_SIZE);
+		ApiModelCache.getCache().resetStatistics();
 		super.tearDown();
 	}
 
@@ -161,4 +163,42 @@ public class ApiModelCacheTests extends TestCase {
 		assertTrue("The type 'a.b.c.testee1' should have been removed from the cache", ApiModelCache.getCache().removeElementInfo(element)); //$NON-NLS-1$
 		assertTrue("The cache should be empty", ApiModelCache.getCache().isEmpty()); //$NON-NLS-1$
 	}
+
+	/**
+	 * Tests that hits and misses are counted
+	 *
+	 * @throws Exception
+	 */
+	public void testStatistics() throws Exception {
+		ApiModelCache cache = ApiModelCache.getCache();
+		cache.resetStatistics();
+		cacheType("a.b.c.stats"); //$NON-NLS-1$
+		assertNotNull("The type should be cached", cache.getElementInfo(TEST_BASELINE_ID, TEST_COMP_ID, "a.b.c.stats", IApiElement.TYPE)); //$NON-NLS-1$ //$NON-NLS-2$
+		assertNull("The type should not be cached", cache.getElementInfo(TEST_BASELINE_ID, TEST_COMP_ID, "a.b.c.missing", IApiElement.TYPE)); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals("Wrong hit count", 1, cache.getHitCount()); //$NON-NLS-1$
+		assertEquals("Wrong miss count", 1, cache.getMissCount()); //$NON-NLS-1$
+		assertTrue("The cache should have a weight", cache.getWeight() > 0); //$NON-NLS-1$
+		cache.flushCaches();
+		assertEquals("The flushed cache should have no weight", 0, cache.getWeight()); //$NON-NLS-1$
+	}
+
+	/**
+	 * Tests that the least recently used types are evicted once the cache is
+	 * larger than its maximum weight
+	 *
+	 * @throws Exception
+	 */
+	public void testEviction() throws Exception {
+		ApiModelCache cache = ApiModelCache.getCache();
+		cacheType("a.b.c.first"); //$NON-NLS-1$
+		long weight = cache.getWeight();
+		cache.setMaxWeight(weight * 10);
+		for (int i = 0; i < 50; i++) {
+			cacheType("a.b.c.type" + i); //$NON-NLS-1$
+		}
+		assertTrue("Types should have been evicted", cache.getEvictionCount() > 0); //$NON-NLS-1$
+		assertTrue("The cache should not be larger than its maximum weight", cache.getWeight() <= cache.getMaxWeight()); //$NON-NLS-1$
+		assertNull("The least recently used type should have been evicted", cache.getElementInfo(TEST_BASELINE_ID, TEST_COMP_ID, "a.b.c.first", IApiElement.TYPE)); //$NON-NLS-1$ //$NON-NLS-2$
+		assertNotNull("The most recently used type should be cached", cache.getElementInfo(TEST_BASELINE_ID, TEST_COMP_ID, "a.b.c.type49", IApiElement.TYPE)); //$NON-NLS-1$ //$NON-NLS-2$
+	}
 }
@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.model.tests;
+
+import java.io.File;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.pde.api.tools.internal.model.ArchiveApiTypeContainer;
+import org.eclipse.pde.api.tools.internal.model.ArchiveHandlePool;
+import org.eclipse.pde.api.tools.internal.model.ArchiveHandlePool.ArchiveHandle;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiTypeContainer;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiTypeRoot;
+import org.eclipse.pde.api.tools.internal.util.MappedArchive;
+
+/**
+ * Tests the {@link ArchiveHandlePool}
+ *
+ * @since 1.1
+ */
+public class ArchiveHandlePoolTests extends TestCase {
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		ArchiveHandlePool.getPool().clear();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		ArchiveHandlePool.getPool().setMemoryMapped(false);
+		ArchiveHandlePool.getPool().clear();
+		super.tearDown();
+	}
+
+	/**
+	 * @return the path to the sample archive
+	 */
+	private String getSampleArchive() {
+		IPath path = TestSuiteHelper.getPluginDirectoryPath().append("test-jars").append("sample.jar"); //$NON-NLS-1$ //$NON-NLS-2$
+		File file = path.toFile();
+		assertTrue("Missing jar file", file.exists()); //$NON-NLS-1$
+		return path.toOSString();
+	}
+
+	/**
+	 * Tests that an archive is only opened once when acquired repeatedly
+	 *
+	 * @throws Exception
+	 */
+	public void testSharedHandle() throws Exception {
+		ArchiveHandlePool pool = ArchiveHandlePool.getPool();
+		String location = getSampleArchive();
+		ArchiveHandle first = pool.acquire(null, location);
+		ArchiveHandle second = pool.acquire(null, location);
+		try {
+			assertSame("The same zip file should be shared", first.getZipFile(), second.getZipFile()); //$NON-NLS-1$
+			assertEquals("The archive should only be opened once", 1, pool.getOpenCount()); //$NON-NLS-1$
+			assertEquals("There should be one miss", 1, pool.getMissCount()); //$NON-NLS-1$
+			assertEquals("There should be one hit", 1, pool.getHitCount()); //$NON-NLS-1$
+		} finally {
+			first.release();
+			second.release();
+		}
+		assertEquals("The released archive should stay pooled", 1, pool.size()); //$NON-NLS-1$
+	}
+
+	/**
+	 * Tests that evicting an owner removes the archives it owns
+	 *
+	 * @throws Exception
+	 */
+	public void testEvictOwner() throws Exception {
+		ArchiveHandlePool pool = ArchiveHandlePool.getPool();
+		Object owner = new Object();
+		ArchiveHandle handle = pool.acquire(owner, getSampleArchive());
+		handle.release();
+		assertEquals("The archive should be pooled", 1, pool.size()); //$NON-NLS-1$
+		pool.evict(owner);
+		assertEquals("The archive should have been evicted", 0, pool.size()); //$NON-NLS-1$
+	}
+
+	/**
+	 * Tests that an archive shared by two owners survives the eviction of one
+	 * of them
+	 *
+	 * @throws Exception
+	 */
+	public void testEvictSharedOwner() throws Exception {
+		ArchiveHandlePool pool = ArchiveHandlePool.getPool();
+		Object owner1 = new Object();
+		Object owner2 = new Object();
+		String location = getSampleArchive();
+		pool.acquire(owner1, location).release();
+		pool.acquire(owner2, location).release();
+		pool.evict(owner1);
+		assertEquals("The archive should still be pooled", 1, pool.size()); //$NON-NLS-1$
+		pool.evict(owner2);
+		assertEquals("The archive should have been evicted", 0, pool.size()); //$NON-NLS-1$
+	}
+
+	/**
+	 * Tests that reading class files from an archive container reuses the
+	 * pooled archive
+	 *
+	 * @throws Exception
+	 */
+	public void testContainerReadsArePooled() throws Exception {
+		ArchiveHandlePool pool = ArchiveHandlePool.getPool();
+		IApiTypeContainer container = new ArchiveApiTypeContainer(null, getSampleArchive());
+		IApiTypeRoot root = container.findTypeRoot("DefA"); //$NON-NLS-1$
+		assertNotNull("Missing class file", root); //$NON-NLS-1$
+		assertNotNull("Missing class file contents", root.getContents()); //$NON-NLS-1$
+		root = container.findTypeRoot("a.b.c.ClassC"); //$NON-NLS-1$
+		assertNotNull("Missing class file", root); //$NON-NLS-1$
+		assertNotNull("Missing class file contents", root.getContents()); //$NON-NLS-1$
+		assertEquals("The archive should only be opened once", 1, pool.getOpenCount()); //$NON-NLS-1$
+		assertTrue("Class file reads should hit the pool", pool.getHitCount() >= 2); //$NON-NLS-1$
+	}
+
+	/**
+	 * Tests that evicting a memory mapped archive releases its mapping
+	 *
+	 * @throws Exception
+	 */
+	public void testEvictMappedArchive() throws Exception {
+		ArchiveHandlePool pool = ArchiveHandlePool.getPool();
+		pool.setMemoryMapped(true);
+		Object owner = new Object();
+		ArchiveHandle handle = pool.acquire(owner, getSampleArchive());
+		MappedArchive archive = handle.getMappedArchive();
+		assertNotNull("The archive should be memory mapped", archive); //$NON-NLS-1$
+		pool.evict(owner);
+		assertFalse("An archive in use should stay mapped", archive.isClosed()); //$NON-NLS-1$
+		handle.release();
+		assertTrue("The evicted archive should have been unmapped", archive.isClosed()); //$NON-NLS-1$
+	}
+
+	/**
+	 * Tests that changing the memory mapping mode evicts the pooled archives,
+	 * keeps the counters and returns the previous mode
+	 *
+	 * @throws Exception
+	 */
+	public void testSetMemoryMapped() throws Exception {
+		ArchiveHandlePool pool = ArchiveHandlePool.getPool();
+		pool.acquire(null, getSampleArchive()).release();
+		assertFalse("Archives should not be mapped by default", pool.setMemoryMapped(true)); //$NON-NLS-1$
+		assertEquals("The archives should have been evicted", 0, pool.size()); //$NON-NLS-1$
+		assertEquals("The counters should have been kept", 1, pool.getOpenCount()); //$NON-NLS-1$
+		assertTrue("Archives should be mapped", pool.setMemoryMapped(false)); //$NON-NLS-1$
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2014 IBM Corporation and others.
+ * Copyright (c) 2007, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,14 +11,26 @@
 package org.eclipse.pde.api.tools.model.tests;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import junit.framework.Test;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
+import org.eclipse.pde.api.tools.internal.builder.Reference;
+import org.eclipse.pde.api.tools.internal.builder.ReferenceExtractor;
+import org.eclipse.pde.api.tools.internal.model.AbstractApiTypeRoot;
 import org.eclipse.pde.api.tools.internal.provisional.builder.IReference;
+import org.eclipse.pde.api.tools.internal.provisional.model.ApiTypeContainerVisitor;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiType;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiTypeRoot;
+import org.eclipse.pde.api.tools.internal.util.SymbolTable;
 import org.eclipse.test.OrderedTestSuite;
+import org.objectweb.asm.ClassReader;
 
 /**
  * This class tests the class file scanner and the class file visitor
@@ -56,6 +68,7 @@ public class ClassFileScannerTests extends ScannerTest {
 				"testScanConstantPoolAccess", //$NON-NLS-1$
 				"testScanConstantPoolAccess1_4", //$NON-NLS-1$
 				"testScanMethodCalls", //$NON-NLS-1$
+				"testScanSymbolTable", //$NON-NLS-1$
 				"testCleanup", //$NON-NLS-1$
 		});
 	}
@@ -422,6 +435,61 @@ public class ClassFileScannerTests extends ScannerTest {
 		assertTrue("the should be a REF_STATICMETHOD ref to doSomething from classes.Test13A", ref != null); //$NON-NLS-1$
 	}
 
+	/**
+	 * Tests that the references extracted with a symbol table shared by all
+	 * the class files are the same as the ones extracted without a table
+	 */
+	public void testScanSymbolTable() throws CoreException {
+		final List<IApiTypeRoot> roots = new ArrayList<>();
+		getContainer().accept(new ApiTypeContainerVisitor() {
+			@Override
+			public void visit(String packageName, IApiTypeRoot typeroot) {
+				roots.add(typeroot);
+			}
+		});
+		assertFalse("There should be class files to scan", roots.isEmpty()); //$NON-NLS-1$
+		SymbolTable table = new SymbolTable();
+		for (IApiTypeRoot root : roots) {
+			assertEquals("Wrong references for " + root.getTypeName(), extract(root, null), extract(root, table)); //$NON-NLS-1$
+		}
+		assertTrue("The table should hold the shared names", table.size() > 0); //$NON-NLS-1$
+		// a second pass reuses the names already in the table
+		for (IApiTypeRoot root : roots) {
+			assertEquals("Wrong references for " + root.getTypeName(), extract(root, null), extract(root, table)); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Returns the sorted descriptions of the references extracted from the
+	 * given class file
+	 *
+	 * @param root the class file to scan
+	 * @param table the table to share names with or <code>null</code>
+	 * @return the sorted descriptions of the references
+	 */
+	private List<String> extract(IApiTypeRoot root, SymbolTable table) throws CoreException {
+		IApiType type = root.getStructure();
+		Set<Reference> references = new HashSet<>();
+		ReferenceExtractor extractor = new ReferenceExtractor(type, references, IReference.MASK_REF_ALL, table);
+		ClassReader reader = new ClassReader(((AbstractApiTypeRoot) root).getContents());
+		reader.accept(extractor, ClassReader.SKIP_FRAMES);
+		List<String> descriptions = new ArrayList<>();
+		for (Reference reference : references) {
+			StringBuilder buffer = new StringBuilder();
+			buffer.append(reference.getMember().getName()).append(' ');
+			buffer.append(reference.getReferenceKind()).append(' ');
+			buffer.append(reference.getReferenceFlags()).append(' ');
+			buffer.append(reference.getReferenceType()).append(' ');
+			buffer.append(reference.getReferencedTypeName()).append(' ');
+			buffer.append(reference.getReferencedMemberName()).append(' ');
+			buffer.append(reference.getReferencedSignature()).append(' ');
+			buffer.append(reference.getLineNumber());
+			descriptions.add(buffer.toString());
+		}
+		Collections.sort(descriptions);
+		return descriptions;
+	}
+
 	/**
 	 * Cleans up after the tests are done. This must be the last test run
 	 *
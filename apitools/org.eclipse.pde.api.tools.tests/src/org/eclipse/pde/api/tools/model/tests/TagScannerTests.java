@@ -10,10 +10,14 @@
  *******************************************************************************/
 package org.eclipse.pde.api.tools.model.tests;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.MultiStatus;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.pde.api.tools.internal.ApiDescription;
@@ -21,11 +25,13 @@ import org.eclipse.pde.api.tools.internal.CompilationUnit;
 import org.eclipse.pde.api.tools.internal.IApiCoreConstants;
 import org.eclipse.pde.api.tools.internal.model.ArchiveApiTypeContainer;
 import org.eclipse.pde.api.tools.internal.model.DirectoryApiTypeContainer;
+import org.eclipse.pde.api.tools.internal.provisional.ApiDescriptionVisitor;
 import org.eclipse.pde.api.tools.internal.provisional.Factory;
 import org.eclipse.pde.api.tools.internal.provisional.IApiAnnotations;
 import org.eclipse.pde.api.tools.internal.provisional.IApiDescription;
 import org.eclipse.pde.api.tools.internal.provisional.RestrictionModifiers;
 import org.eclipse.pde.api.tools.internal.provisional.VisibilityModifiers;
+import org.eclipse.pde.api.tools.internal.provisional.descriptors.IElementDescriptor;
 import org.eclipse.pde.api.tools.internal.provisional.model.ApiTypeContainerVisitor;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiComponent;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiElement;
@@ -1263,4 +1269,52 @@ public class TagScannerTests extends TestCase {
 		assertNotNull("There should be API annotations for the non-default method", description); //$NON-NLS-1$
 	}
 
+	/**
+	 * Collects the annotations of all the elements of an API description
+	 */
+	static class AnnotationsCollector extends ApiDescriptionVisitor {
+		List<String> annotations = new ArrayList<>();
+
+		@Override
+		public boolean visitElement(IElementDescriptor element, IApiAnnotations description) {
+			annotations.add(element + " " + description.getVisibility() + " " + description.getRestrictions()); //$NON-NLS-1$ //$NON-NLS-2$
+			return true;
+		}
+	}
+
+	/**
+	 * Tests that scanning many compilation units on several threads gives the
+	 * same description as scanning them one at a time, and that a unit that
+	 * cannot be read does not stop the scan of the others
+	 *
+	 * @throws Exception
+	 */
+	public void testScanInParallel() throws Exception {
+		File[] files = SRC_LOC.append("a/b/c").toFile().listFiles(); //$NON-NLS-1$
+		List<CompilationUnit> units = new ArrayList<>();
+		IApiDescription expected = newDescription();
+		for (File file : files) {
+			if (file.getName().endsWith(".java")) { //$NON-NLS-1$
+				CompilationUnit unit = new CompilationUnit(file.getAbsolutePath(), IApiCoreConstants.UTF_8);
+				units.add(unit);
+				TagScanner.newScanner().scan(unit, expected, null, null, null);
+			}
+		}
+		assertTrue("There should be test sources to scan", units.size() > 10); //$NON-NLS-1$
+		units.add(units.size() / 2, getCompilationUnit("a/b/c/DoesNotExist.java")); //$NON-NLS-1$
+		IApiDescription manifest = newDescription();
+		try {
+			TagScanner.newScanner().scan(units.toArray(new CompilationUnit[units.size()]), manifest, null, null, 4, null);
+			fail("The missing compilation unit should have been reported"); //$NON-NLS-1$
+		} catch (CoreException e) {
+			assertTrue("The problems should be collected", e.getStatus() instanceof MultiStatus); //$NON-NLS-1$
+			assertEquals("Only the missing compilation unit should be reported", 1, e.getStatus().getChildren().length); //$NON-NLS-1$
+		}
+		AnnotationsCollector collector = new AnnotationsCollector();
+		expected.accept(collector, null);
+		AnnotationsCollector collector2 = new AnnotationsCollector();
+		manifest.accept(collector2, null);
+		assertFalse("There should be annotations", collector.annotations.isEmpty()); //$NON-NLS-1$
+		assertEquals("Wrong annotations", collector.annotations, collector2.annotations); //$NON-NLS-1$
+	}
 }
@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.model.tests;
+
+import java.io.File;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.pde.api.tools.internal.model.AbstractApiTypeRoot;
+import org.eclipse.pde.api.tools.internal.model.ApiType;
+import org.eclipse.pde.api.tools.internal.model.ArchiveApiTypeContainer;
+import org.eclipse.pde.api.tools.internal.model.TypeStructureBuilder;
+import org.eclipse.pde.api.tools.internal.model.TypeStructureIndex;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiField;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiMethod;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiType;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiTypeContainer;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiTypeRoot;
+import org.eclipse.pde.api.tools.internal.util.Util;
+
+/**
+ * Tests the {@link TypeStructureIndex}
+ *
+ * @since 1.1
+ */
+public class TypeStructureIndexTests extends TestCase {
+
+	private File fIndexLocation;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		fIndexLocation = TestSuiteHelper.getPluginDirectoryPath().append("type-index").toFile(); //$NON-NLS-1$
+		TypeStructureIndex.setIndexLocation(fIndexLocation);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		TypeStructureIndex.setIndexLocation(null);
+		Util.delete(fIndexLocation);
+		super.tearDown();
+	}
+
+	/**
+	 * @return the path to the sample archive
+	 */
+	private String getSampleArchive() {
+		IPath path = TestSuiteHelper.getPluginDirectoryPath().append("test-jars").append("sample.jar"); //$NON-NLS-1$ //$NON-NLS-2$
+		assertTrue("Missing jar file", path.toFile().exists()); //$NON-NLS-1$
+		return path.toOSString();
+	}
+
+	/**
+	 * Tests that a type structure read back from a saved index matches the
+	 * structure built from the class file
+	 *
+	 * @throws Exception
+	 */
+	public void testIndexedStructure() throws Exception {
+		String location = getSampleArchive();
+		IApiTypeContainer container = new ArchiveApiTypeContainer(null, location);
+		IApiTypeRoot root = container.findTypeRoot("a.ClassB"); //$NON-NLS-1$
+		assertNotNull("Missing class file", root); //$NON-NLS-1$
+		assertNotNull("Missing structure", root.getStructure()); //$NON-NLS-1$
+		TypeStructureIndex.flush();
+		String[] files = fIndexLocation.list();
+		assertNotNull("The index should have been saved", files); //$NON-NLS-1$
+		assertEquals("There should be one index file", 1, files.length); //$NON-NLS-1$
+
+		TypeStructureIndex index = TypeStructureIndex.getIndex(null, location);
+		assertNotNull("Missing index", index); //$NON-NLS-1$
+		assertEquals("The saved index should have one type", 1, index.size()); //$NON-NLS-1$
+
+		container = new ArchiveApiTypeContainer(null, location);
+		root = container.findTypeRoot("a.ClassB"); //$NON-NLS-1$
+		IApiType indexed = root.getStructure();
+		IApiType expected = TypeStructureBuilder.buildTypeStructure(((AbstractApiTypeRoot) root).getContents(), null, root);
+		assertEquals("Wrong name", expected.getName(), indexed.getName()); //$NON-NLS-1$
+		assertEquals("Wrong modifiers", expected.getModifiers(), indexed.getModifiers()); //$NON-NLS-1$
+		assertEquals("Wrong superclass", expected.getSuperclassName(), indexed.getSuperclassName()); //$NON-NLS-1$
+		IApiMethod[] methods = expected.getMethods();
+		assertEquals("Wrong number of methods", methods.length, indexed.getMethods().length); //$NON-NLS-1$
+		for (IApiMethod method : methods) {
+			IApiMethod other = indexed.getMethod(method.getName(), method.getSignature());
+			assertNotNull("Missing method " + method.getName(), other); //$NON-NLS-1$
+			assertEquals("Wrong method modifiers", method.getModifiers(), other.getModifiers()); //$NON-NLS-1$
+		}
+		IApiField[] fields = expected.getFields();
+		assertEquals("Wrong number of fields", fields.length, indexed.getFields().length); //$NON-NLS-1$
+		for (IApiField field : fields) {
+			IApiField other = indexed.getField(field.getName());
+			assertNotNull("Missing field " + field.getName(), other); //$NON-NLS-1$
+			assertEquals("Wrong field signature", field.getSignature(), other.getSignature()); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Tests that no index is written when nothing was recorded
+	 *
+	 * @throws Exception
+	 */
+	public void testNothingRecorded() throws Exception {
+		assertNotNull("Missing index", TypeStructureIndex.getIndex(null, getSampleArchive())); //$NON-NLS-1$
+		TypeStructureIndex.flush();
+		assertFalse("No index should have been saved", fIndexLocation.exists()); //$NON-NLS-1$
+	}
+
+	/**
+	 * Records the structure of a.ClassB in the given index
+	 *
+	 * @param index the index
+	 * @throws Exception
+	 */
+	private void recordSampleType(TypeStructureIndex index) throws Exception {
+		IApiTypeRoot root = new ArchiveApiTypeContainer(null, getSampleArchive()).findTypeRoot("a.ClassB"); //$NON-NLS-1$
+		assertNotNull("Missing class file", root); //$NON-NLS-1$
+		IApiType type = TypeStructureBuilder.buildTypeStructure(((AbstractApiTypeRoot) root).getContents(), null, root);
+		index.record("a.ClassB", (ApiType) type); //$NON-NLS-1$
+	}
+
+	/**
+	 * Tests that saving the indexes keeps them loaded, so that there is only
+	 * one index per index file
+	 *
+	 * @throws Exception
+	 */
+	public void testFlushInPlace() throws Exception {
+		String location = getSampleArchive();
+		TypeStructureIndex index = TypeStructureIndex.getIndex(null, location);
+		assertNotNull("Missing index", index); //$NON-NLS-1$
+		recordSampleType(index);
+		TypeStructureIndex.flush();
+		assertTrue("The index should have been saved", fIndexLocation.exists()); //$NON-NLS-1$
+		assertSame("The saved index should still be loaded", index, TypeStructureIndex.getIndex(null, location)); //$NON-NLS-1$
+	}
+
+	/**
+	 * Tests that releasing an owner saves and unloads only the indexes that
+	 * no other owner uses
+	 *
+	 * @throws Exception
+	 */
+	public void testFlushOwner() throws Exception {
+		String location = getSampleArchive();
+		Object first = new Object();
+		Object second = new Object();
+		TypeStructureIndex index = TypeStructureIndex.getIndex(first, location);
+		assertNotNull("Missing index", index); //$NON-NLS-1$
+		assertSame("The owners should share the index", index, TypeStructureIndex.getIndex(second, location)); //$NON-NLS-1$
+		recordSampleType(index);
+
+		TypeStructureIndex.flush(first);
+		assertFalse("The index is still used and should not have been saved", fIndexLocation.exists()); //$NON-NLS-1$
+		assertSame("The index is still used and should still be loaded", index, TypeStructureIndex.getIndex(second, location)); //$NON-NLS-1$
+
+		TypeStructureIndex.flush(second);
+		assertTrue("The released index should have been saved", fIndexLocation.exists()); //$NON-NLS-1$
+		TypeStructureIndex reloaded = TypeStructureIndex.getIndex(first, location);
+		assertNotSame("The released index should have been unloaded", index, reloaded); //$NON-NLS-1$
+		assertEquals("The reloaded index should have one type", 1, reloaded.size()); //$NON-NLS-1$
+		TypeStructureIndex.flush(first);
+	}
+
+	/**
+	 * Tests that index files unused for too long are deleted and that loaded
+	 * index files are kept
+	 *
+	 * @throws Exception
+	 */
+	public void testPrune() throws Exception {
+		String location = getSampleArchive();
+		Object owner = new Object();
+		TypeStructureIndex index = TypeStructureIndex.getIndex(owner, location);
+		recordSampleType(index);
+		TypeStructureIndex.flush();
+		String[] files = fIndexLocation.list();
+		assertEquals("There should be one index file", 1, files.length); //$NON-NLS-1$
+		File used = new File(fIndexLocation, files[0]);
+		File orphan = new File(fIndexLocation, "0-0.idx"); //$NON-NLS-1$
+		assertTrue("The orphaned index should have been created", orphan.createNewFile()); //$NON-NLS-1$
+		long old = System.currentTimeMillis() - 2 * TypeStructureIndex.MAX_UNUSED_AGE;
+		orphan.setLastModified(old);
+		used.setLastModified(old);
+
+		TypeStructureIndex.prune();
+		assertFalse("The orphaned index should have been deleted", orphan.exists()); //$NON-NLS-1$
+		assertTrue("The loaded index should have been kept", used.exists()); //$NON-NLS-1$
+
+		TypeStructureIndex.flush(owner);
+		assertNotNull("The index should be loaded again", TypeStructureIndex.getIndex(owner, location)); //$NON-NLS-1$
+		TypeStructureIndex.flush(owner);
+		TypeStructureIndex.prune();
+		assertTrue("A reloaded index should not be pruned", used.exists()); //$NON-NLS-1$
+	}
+}
@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.search.tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.pde.api.tools.internal.provisional.Factory;
+import org.eclipse.pde.api.tools.internal.provisional.VisibilityModifiers;
+import org.eclipse.pde.api.tools.internal.provisional.builder.IReference;
+import org.eclipse.pde.api.tools.internal.provisional.descriptors.IComponentDescriptor;
+import org.eclipse.pde.api.tools.internal.provisional.descriptors.IMemberDescriptor;
+import org.eclipse.pde.api.tools.internal.search.BinaryReferenceDescriptorReader;
+import org.eclipse.pde.api.tools.internal.search.BinaryReferenceDescriptorWriter;
+import org.eclipse.pde.api.tools.internal.search.IReferenceDescriptor;
+import org.eclipse.pde.api.tools.internal.search.UseScanFormatConverter;
+import org.eclipse.pde.api.tools.internal.search.UseScanManager;
+import org.eclipse.pde.api.tools.internal.search.UseScanParser;
+import org.eclipse.pde.api.tools.internal.search.UseScanVisitor;
+import org.eclipse.pde.api.tools.internal.util.Util;
+import org.eclipse.pde.api.tools.tests.ApiTestsPlugin;
+
+/**
+ * Tests the binary use scan format written by
+ * {@link BinaryReferenceDescriptorWriter}
+ *
+ * @since 1.1
+ */
+public class BinaryUseScanTests extends TestCase {
+
+	File fRoot = null;
+
+	/**
+	 * Collects the references visited in a use scan
+	 */
+	static class CollectingVisitor extends UseScanVisitor {
+		List<IReferenceDescriptor> references = new ArrayList<>();
+		List<IComponentDescriptor> targets = new ArrayList<>();
+
+		@Override
+		public boolean visitComponent(IComponentDescriptor target) {
+			targets.add(target);
+			return true;
+		}
+
+		@Override
+		public void visitReference(IReferenceDescriptor reference) {
+			references.add(reference);
+		}
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		fRoot = ApiTestsPlugin.getDefault().getStateLocation().append("binaryusescan").toFile(); //$NON-NLS-1$
+		Util.delete(fRoot);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		Util.delete(fRoot);
+		super.tearDown();
+	}
+
+	IReferenceDescriptor[] getReferences() {
+		IComponentDescriptor a = Factory.componentDescriptor("a.b.c", "1.0.0"); //$NON-NLS-1$ //$NON-NLS-2$
+		IComponentDescriptor d = Factory.componentDescriptor("d.e.f", "2.1.0"); //$NON-NLS-1$ //$NON-NLS-2$
+		IComponentDescriptor x = Factory.componentDescriptor("x.y.z", "3.0.0"); //$NON-NLS-1$ //$NON-NLS-2$
+		IMemberDescriptor type = Factory.typeDescriptor("a.b.c.Type"); //$NON-NLS-1$
+		IMemberDescriptor method = Factory.methodDescriptor("a.b.c.Type", "run", "(Ljava/lang/String;)V"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		IMemberDescriptor field = Factory.fieldDescriptor("a.b.c.Type", "count"); //$NON-NLS-1$ //$NON-NLS-2$
+		IMemberDescriptor origin = Factory.methodDescriptor("d.e.f.Client", "call", "()V"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		IMemberDescriptor originType = Factory.typeDescriptor("x.y.z.Other"); //$NON-NLS-1$
+		return new IReferenceDescriptor[] {
+				Factory.referenceDescriptor(d, origin, 12, a, type, IReference.REF_INSTANTIATE, 0, VisibilityModifiers.API, null),
+				Factory.referenceDescriptor(d, origin, 13, a, method, IReference.REF_VIRTUALMETHOD, 0, VisibilityModifiers.API, null),
+				Factory.referenceDescriptor(d, origin, 13, a, method, IReference.REF_VIRTUALMETHOD, 0, VisibilityModifiers.API, null),
+				Factory.referenceDescriptor(x, originType, -1, a, field, IReference.REF_GETFIELD, 0, VisibilityModifiers.PRIVATE, new String[] {
+						"count", "Type" }), //$NON-NLS-1$ //$NON-NLS-2$
+				Factory.referenceDescriptor(x, originType, 40, d, origin, IReference.REF_STATICMETHOD, IReference.F_ILLEGAL, VisibilityModifiers.API, null) };
+	}
+
+	/**
+	 * Tests that references written in several blocks, compressed or not, are
+	 * read back without duplicates
+	 *
+	 * @throws IOException
+	 */
+	public void testRoundTrip() throws IOException {
+		IReferenceDescriptor[] refs = getReferences();
+		BinaryReferenceDescriptorWriter writer = new BinaryReferenceDescriptorWriter(fRoot.getAbsolutePath(), true);
+		writer.writeReferences(new IReferenceDescriptor[] { refs[0], refs[1], refs[2] });
+		new BinaryReferenceDescriptorWriter(fRoot.getAbsolutePath(), false).writeReferences(new IReferenceDescriptor[] {
+				refs[3], refs[4] });
+		List<IReferenceDescriptor> read = BinaryReferenceDescriptorReader.readReferences(new File(fRoot, BinaryReferenceDescriptorWriter.REFERENCES_FILE));
+		assertEquals("Wrong number of references", 4, read.size()); //$NON-NLS-1$
+		assertEquals("Wrong reference", refs[0], read.get(0)); //$NON-NLS-1$
+		assertEquals("Wrong reference", refs[1], read.get(1)); //$NON-NLS-1$
+		assertEquals("Wrong reference", refs[3], read.get(2)); //$NON-NLS-1$
+		assertEquals("Wrong reference kind", IReference.REF_GETFIELD, read.get(2).getReferenceKind()); //$NON-NLS-1$
+		String[] messages = read.get(2).getProblemMessages();
+		assertNotNull("Messages should have been read", messages); //$NON-NLS-1$
+		assertEquals("Wrong message", "Type", messages[1]); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals("Illegal references should have the illegal visibility", VisibilityModifiers.ILLEGAL_API, read.get(3).getVisibility()); //$NON-NLS-1$
+		assertEquals("Wrong flags", IReference.F_ILLEGAL, read.get(3).getReferenceFlags()); //$NON-NLS-1$
+	}
+
+	/**
+	 * Tests that a binary use scan is recognized and visited by
+	 * {@link UseScanParser}
+	 *
+	 * @throws Exception
+	 */
+	public void testParse() throws Exception {
+		IReferenceDescriptor[] refs = getReferences();
+		new BinaryReferenceDescriptorWriter(fRoot.getAbsolutePath(), true).writeReferences(refs);
+		assertTrue("The binary scan should be a valid scan", UseScanManager.isValidDirectory(fRoot)); //$NON-NLS-1$
+		CollectingVisitor visitor = new CollectingVisitor();
+		new UseScanParser().parse(fRoot.getAbsolutePath(), null, visitor);
+		assertEquals("Wrong number of references", 4, visitor.references.size()); //$NON-NLS-1$
+		assertEquals("Wrong number of referenced components", 2, visitor.targets.size()); //$NON-NLS-1$
+		assertEquals("Wrong first component", "a.b.c", visitor.targets.get(0).getId()); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/**
+	 * Tests that the blocks of the components the visitor declines are not
+	 * read, and that the references of the other components are visited in
+	 * order
+	 *
+	 * @throws Exception
+	 */
+	public void testParseSkipsDeclinedComponents() throws Exception {
+		IReferenceDescriptor[] refs = getReferences();
+		BinaryReferenceDescriptorWriter writer = new BinaryReferenceDescriptorWriter(fRoot.getAbsolutePath(), true);
+		writer.writeReferences(new IReferenceDescriptor[] { refs[4], refs[3] });
+		writer.writeReferences(new IReferenceDescriptor[] { refs[1], refs[0] });
+		List<BinaryReferenceDescriptorReader.BlockEntry> index = BinaryReferenceDescriptorReader.readIndex(new File(fRoot, BinaryReferenceDescriptorWriter.REFERENCES_FILE));
+		assertEquals("There should be one block per pair of components", 3, index.size()); //$NON-NLS-1$
+		assertEquals("Wrong referenced component of the first block", "d.e.f", index.get(0).getReferencedComponent().getId()); //$NON-NLS-1$ //$NON-NLS-2$
+
+		CollectingVisitor visitor = new CollectingVisitor() {
+			@Override
+			public boolean visitComponent(IComponentDescriptor target) {
+				super.visitComponent(target);
+				return "a.b.c".equals(target.getId()); //$NON-NLS-1$
+			}
+		};
+		new UseScanParser().parse(fRoot.getAbsolutePath(), null, visitor);
+		assertEquals("Both components should have been offered", 2, visitor.targets.size()); //$NON-NLS-1$
+		assertEquals("Only the references to a.b.c should have been visited", 3, visitor.references.size()); //$NON-NLS-1$
+		assertEquals("Wrong first reference", refs[0], visitor.references.get(0)); //$NON-NLS-1$
+		assertEquals("Wrong second reference", refs[1], visitor.references.get(1)); //$NON-NLS-1$
+		assertEquals("Wrong third reference", refs[3], visitor.references.get(2)); //$NON-NLS-1$
+	}
+
+	/**
+	 * Tests converting a binary scan to XML and back
+	 *
+	 * @throws Exception
+	 */
+	public void testConvert() throws Exception {
+		IReferenceDescriptor[] refs = getReferences();
+		File binary = new File(fRoot, "bin"); //$NON-NLS-1$
+		File xml = new File(fRoot, "xml"); //$NON-NLS-1$
+		File binary2 = new File(fRoot, "bin2"); //$NON-NLS-1$
+		new BinaryReferenceDescriptorWriter(binary.getAbsolutePath(), true).writeReferences(refs);
+		UseScanFormatConverter.convertToXml(binary.getAbsolutePath(), xml.getAbsolutePath(), null);
+		assertFalse("The XML scan should not contain a references file", new File(xml, BinaryReferenceDescriptorWriter.REFERENCES_FILE).exists()); //$NON-NLS-1$
+		CollectingVisitor visitor = new CollectingVisitor();
+		new UseScanParser().parse(xml.getAbsolutePath(), null, visitor);
+		assertEquals("Wrong number of references in the XML scan", 4, visitor.references.size()); //$NON-NLS-1$
+
+		UseScanFormatConverter.convertToBinary(xml.getAbsolutePath(), binary2.getAbsolutePath(), false, null);
+		List<IReferenceDescriptor> read = BinaryReferenceDescriptorReader.readReferences(new File(binary2, BinaryReferenceDescriptorWriter.REFERENCES_FILE));
+		assertEquals("Wrong number of references after converting back", 4, read.size()); //$NON-NLS-1$
+		for (IReferenceDescriptor ref : visitor.references) {
+			assertTrue("Missing reference " + ref, read.contains(ref)); //$NON-NLS-1$
+		}
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2014 IBM Corporation and others.
+ * Copyright (c) 2009, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -58,6 +58,26 @@ public class SearchEngineTests extends SearchTest {
 		}
 	}
 
+	/**
+	 * Tests that the search engine reports the same matches when searching
+	 * with several threads
+	 */
+	public void testSearchParallel() {
+		ApiSearchEngine engine = new ApiSearchEngine(4);
+		try {
+			TEST_REQUESTOR.setScopeBaseline(getTestBaseline());
+			TEST_REQUESTOR.setSearchMask(IApiSearchRequestor.INCLUDE_API | IApiSearchRequestor.INCLUDE_INTERNAL);
+			TEST_REPORTER.setExpectedReferences(
+					new String[] {P2_NAME, P3_NAME},
+					new int[][] {{IReference.REF_FIELDDECL, IReference.REF_FIELDDECL}, {IReference.REF_FIELDDECL, IReference.REF_FIELDDECL, IReference.REF_FIELDDECL}});
+			TEST_REPORTER.setExpectedNotSearched(null);
+			engine.search(getTestBaseline(), TEST_REQUESTOR, TEST_REPORTER, null);
+		}
+		catch(Exception e) {
+			fail("The search engine should not throw an exception: "+e.getMessage()); //$NON-NLS-1$
+		}
+	}
+
 	/**
 	 * Tests that the search engine properly reports matches when the scope and baseline
 	 * are not the same {@link org.eclipse.pde.api.tools.internal.provisional.model.IApiBaseline}
@@ -0,0 +1,295 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.search.tests;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import junit.framework.TestCase;
+
+import org.eclipse.pde.api.tools.internal.provisional.Factory;
+import org.eclipse.pde.api.tools.internal.provisional.VisibilityModifiers;
+import org.eclipse.pde.api.tools.internal.provisional.builder.IReference;
+import org.eclipse.pde.api.tools.internal.provisional.descriptors.IComponentDescriptor;
+import org.eclipse.pde.api.tools.internal.provisional.descriptors.IMemberDescriptor;
+import org.eclipse.pde.api.tools.internal.search.IReferenceDescriptor;
+import org.eclipse.pde.api.tools.internal.search.UseScanParser;
+import org.eclipse.pde.api.tools.internal.search.UseScanVisitor;
+import org.eclipse.pde.api.tools.internal.search.XmlReferenceDescriptorWriter;
+import org.eclipse.pde.api.tools.internal.util.Util;
+import org.eclipse.pde.api.tools.tests.ApiTestsPlugin;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Tests parsing XML use scans with {@link UseScanParser}
+ *
+ * @since 1.1
+ */
+public class UseScanParserTests extends TestCase {
+
+	static final int[] VISIBILITIES = new int[] {
+			VisibilityModifiers.API, VisibilityModifiers.SPI,
+			VisibilityModifiers.PRIVATE, VisibilityModifiers.PRIVATE_PERMISSIBLE,
+			VisibilityModifiers.ILLEGAL_API };
+
+	static final FileFilter XML_FILTER = new FileFilter() {
+		@Override
+		public boolean accept(File pathname) {
+			return pathname.isDirectory() || pathname.getName().endsWith(".xml"); //$NON-NLS-1$
+		}
+	};
+
+	File fRoot = null;
+
+	/**
+	 * Parser recording the elements it processes and the references it is
+	 * handed
+	 */
+	static class RecordingParser extends UseScanParser {
+		List<String> elements = new ArrayList<>();
+		int references = 0;
+
+		@Override
+		protected void processElement(String uri, String localName, String name, Attributes attributes, int type) throws SAXException {
+			elements.add(describe(name, attributes, type));
+			super.processElement(uri, localName, name, attributes, type);
+		}
+
+		@Override
+		public void setReference(IReferenceDescriptor reference) {
+			references++;
+			super.setReference(reference);
+		}
+	}
+
+	/**
+	 * Visitor recording every callback in order
+	 */
+	static class TracingVisitor extends UseScanVisitor {
+		List<String> trace = new ArrayList<>();
+		List<IReferenceDescriptor> references = new ArrayList<>();
+
+		@Override
+		public boolean visitComponent(IComponentDescriptor target) {
+			trace.add("component " + target); //$NON-NLS-1$
+			return true;
+		}
+
+		@Override
+		public boolean visitReferencingComponent(IComponentDescriptor component) {
+			trace.add("referencing " + component); //$NON-NLS-1$
+			return true;
+		}
+
+		@Override
+		public boolean visitMember(IMemberDescriptor referencedMember) {
+			trace.add("member " + referencedMember); //$NON-NLS-1$
+			return true;
+		}
+
+		@Override
+		public void visitReference(IReferenceDescriptor reference) {
+			trace.add("reference " + reference.getMember() + ' ' + reference.getLineNumber() + ' ' + reference.getVisibility()); //$NON-NLS-1$
+			references.add(reference);
+		}
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		fRoot = ApiTestsPlugin.getDefault().getStateLocation().append("usescanparser").toFile(); //$NON-NLS-1$
+		Util.delete(fRoot);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		Util.delete(fRoot);
+		super.tearDown();
+	}
+
+	/**
+	 * Describes an element as it is handed to
+	 * {@link UseScanParser#processElement(String, String, String, Attributes, int)}
+	 */
+	static String describe(String name, Attributes attributes, int type) {
+		Map<String, String> values = new TreeMap<>();
+		for (int i = 0; i < attributes.getLength(); i++) {
+			values.put(attributes.getQName(i), attributes.getValue(i));
+		}
+		return name + ' ' + type + ' ' + values;
+	}
+
+	/**
+	 * @return references of each visibility and reference type from two
+	 *         referencing components to a.b.c, and from one to d.e.f
+	 */
+	IReferenceDescriptor[] getReferences() {
+		IComponentDescriptor a = Factory.componentDescriptor("a.b.c", "1.0.0"); //$NON-NLS-1$ //$NON-NLS-2$
+		IComponentDescriptor d = Factory.componentDescriptor("d.e.f", "2.1.0"); //$NON-NLS-1$ //$NON-NLS-2$
+		IComponentDescriptor x = Factory.componentDescriptor("x.y.z", "3.0.0"); //$NON-NLS-1$ //$NON-NLS-2$
+		IMemberDescriptor origin = Factory.methodDescriptor("d.e.f.Client", "call", "()V"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		IMemberDescriptor originType = Factory.typeDescriptor("x.y.z.Other"); //$NON-NLS-1$
+		List<IReferenceDescriptor> refs = new ArrayList<>();
+		int line = 1;
+		for (int vis : VISIBILITIES) {
+			for (String typeName : new String[] { "a.b.c.Type", "a.b.c.Hidden" }) { //$NON-NLS-1$ //$NON-NLS-2$
+				IMemberDescriptor type = Factory.typeDescriptor(typeName);
+				IMemberDescriptor method = Factory.methodDescriptor(typeName, "run", "(Ljava/lang/String;)V"); //$NON-NLS-1$ //$NON-NLS-2$
+				IMemberDescriptor field = Factory.fieldDescriptor(typeName, "count"); //$NON-NLS-1$
+				refs.add(Factory.referenceDescriptor(d, origin, line++, a, type, IReference.REF_INSTANTIATE, 0, vis, null));
+				refs.add(Factory.referenceDescriptor(d, origin, line++, a, method, IReference.REF_VIRTUALMETHOD, 0, vis, null));
+				refs.add(Factory.referenceDescriptor(d, origin, line++, a, field, IReference.REF_GETFIELD, 0, vis, new String[] {
+						"count", "Type" })); //$NON-NLS-1$ //$NON-NLS-2$
+				refs.add(Factory.referenceDescriptor(x, originType, line++, a, method, IReference.REF_STATICMETHOD, 0, vis, null));
+			}
+		}
+		refs.add(Factory.referenceDescriptor(x, originType, line++, d, origin, IReference.REF_STATICMETHOD, 0, VisibilityModifiers.API, null));
+		return refs.toArray(new IReferenceDescriptor[refs.size()]);
+	}
+
+	/**
+	 * Writes the references of {@link #getReferences()} as an XML scan
+	 *
+	 * @return the references written
+	 */
+	IReferenceDescriptor[] writeScan() {
+		IReferenceDescriptor[] refs = getReferences();
+		new XmlReferenceDescriptorWriter(fRoot.getAbsolutePath()).writeReferences(refs);
+		return refs;
+	}
+
+	/**
+	 * Parses the XML files of the scan with a SAX parser, the way the parser
+	 * read them before it pulled them with StAX
+	 *
+	 * @return the descriptions of the elements of all files
+	 */
+	List<String> parseWithSax() throws Exception {
+		SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
+		final List<String> elements = new ArrayList<>();
+		for (File file : Util.getAllFiles(fRoot, XML_FILTER)) {
+			final int type = getType(file);
+			parser.parse(file, new DefaultHandler() {
+				@Override
+				public void startElement(String uri, String localName, String qName, Attributes attributes) {
+					elements.add(describe(qName, attributes, type));
+				}
+			});
+		}
+		return elements;
+	}
+
+	int getType(File file) {
+		if (file.getName().indexOf(XmlReferenceDescriptorWriter.TYPE_REFERENCES) > -1) {
+			return IReference.T_TYPE_REFERENCE;
+		}
+		if (file.getName().indexOf(XmlReferenceDescriptorWriter.METHOD_REFERENCES) > -1) {
+			return IReference.T_METHOD_REFERENCE;
+		}
+		return IReference.T_FIELD_REFERENCE;
+	}
+
+	/**
+	 * Tests that the elements pulled from the scan files are the same as the
+	 * elements a SAX parser reports, and that the visited references are the
+	 * ones that were written
+	 *
+	 * @throws Exception
+	 */
+	public void testMatchesSaxParser() throws Exception {
+		IReferenceDescriptor[] refs = writeScan();
+		RecordingParser parser = new RecordingParser();
+		TracingVisitor visitor = new TracingVisitor();
+		parser.parse(fRoot.getAbsolutePath(), null, visitor);
+
+		List<String> expected = parseWithSax();
+		assertFalse("The scan should have elements", expected.isEmpty()); //$NON-NLS-1$
+		List<String> actual = new ArrayList<>(parser.elements);
+		Collections.sort(expected);
+		Collections.sort(actual);
+		assertEquals("The pulled elements should be the ones a SAX parser reports", expected, actual); //$NON-NLS-1$
+
+		assertEquals("Wrong number of references", refs.length, visitor.references.size()); //$NON-NLS-1$
+		List<IReferenceDescriptor> written = new ArrayList<>();
+		Collections.addAll(written, refs);
+		for (IReferenceDescriptor ref : visitor.references) {
+			assertTrue("Unexpected reference " + ref, written.contains(ref)); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Tests that reading files ahead on several threads visits the scan in the
+	 * same order as reading each file when it is parsed, with more files per
+	 * referencing component than are read ahead at once
+	 *
+	 * @throws Exception
+	 */
+	public void testReadAheadOrder() throws Exception {
+		writeScan();
+		File origin = new File(new File(fRoot, "a.b.c (1.0.0)"), "d.e.f (2.1.0)"); //$NON-NLS-1$ //$NON-NLS-2$
+		assertTrue("Missing referencing component directory " + origin, origin.isDirectory()); //$NON-NLS-1$
+		int files = Util.getAllFiles(origin, XML_FILTER).length;
+		assertTrue("There should be more files than read ahead by two threads: " + files, files > 2 * 4); //$NON-NLS-1$
+
+		TracingVisitor sequential = new TracingVisitor();
+		new UseScanParser().parse(fRoot.getAbsolutePath(), null, sequential);
+		assertFalse("The scan should have been visited", sequential.trace.isEmpty()); //$NON-NLS-1$
+		for (int threads = 2; threads <= 4; threads++) {
+			UseScanParser parser = new UseScanParser();
+			parser.setThreads(threads);
+			TracingVisitor visitor = new TracingVisitor();
+			parser.parse(fRoot.getAbsolutePath(), null, visitor);
+			assertEquals("Wrong visit order with " + threads + " threads", sequential.trace, visitor.trace); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	/**
+	 * Tests that the references of the referencing components and members
+	 * the visitor declines are neither built nor visited
+	 *
+	 * @throws Exception
+	 */
+	public void testDeclinedReferencesNotVisited() throws Exception {
+		writeScan();
+		TracingVisitor visitor = new TracingVisitor() {
+			@Override
+			public boolean visitReferencingComponent(IComponentDescriptor component) {
+				super.visitReferencingComponent(component);
+				return !"x.y.z".equals(component.getId()); //$NON-NLS-1$
+			}
+
+			@Override
+			public boolean visitMember(IMemberDescriptor referencedMember) {
+				super.visitMember(referencedMember);
+				return referencedMember.toString().indexOf("Hidden") < 0; //$NON-NLS-1$
+			}
+		};
+		RecordingParser parser = new RecordingParser();
+		parser.setThreads(2);
+		parser.parse(fRoot.getAbsolutePath(), null, visitor);
+		assertEquals("Wrong number of references", VISIBILITIES.length * 3, visitor.references.size()); //$NON-NLS-1$
+		for (IReferenceDescriptor ref : visitor.references) {
+			assertFalse("A reference from a declined component was visited: " + ref, "x.y.z".equals(ref.getComponent().getId())); //$NON-NLS-1$ //$NON-NLS-2$
+			assertTrue("A reference to a declined member was visited: " + ref, ref.getReferencedMember().toString().indexOf("Hidden") < 0); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		assertEquals("Declined references should not have been built", visitor.references.size(), parser.references); //$NON-NLS-1$
+	}
+}
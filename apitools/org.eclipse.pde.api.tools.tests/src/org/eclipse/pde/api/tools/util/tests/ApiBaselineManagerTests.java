@@ -10,6 +10,7 @@
  *******************************************************************************/
 package org.eclipse.pde.api.tools.util.tests;
 
+import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.Iterator;
@@ -21,6 +22,8 @@ import org.eclipse.core.filebuffers.ITextFileBufferManager;
 import org.eclipse.core.filebuffers.LocationKind;
 import org.eclipse.core.resources.IContainer;
 import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceDescription;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
@@ -49,7 +52,10 @@ import org.eclipse.jdt.core.dom.rewrite.ListRewrite;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.pde.api.tools.internal.ApiBaselineManager;
+import org.eclipse.pde.api.tools.internal.ApiDescriptionManager;
+import org.eclipse.pde.api.tools.internal.ApiDescriptionStore;
 import org.eclipse.pde.api.tools.internal.model.ApiModelFactory;
+import org.eclipse.pde.api.tools.internal.model.ProjectComponent;
 import org.eclipse.pde.api.tools.internal.provisional.ApiPlugin;
 import org.eclipse.pde.api.tools.internal.provisional.Factory;
 import org.eclipse.pde.api.tools.internal.provisional.IApiAnnotations;
@@ -431,6 +437,36 @@ public class ApiBaselineManagerTests extends AbstractApiTest {
 		assertNull("the annotations for a.b.c.TestClass1 should no longer be present", annot); //$NON-NLS-1$
 	}
 
+	/**
+	 * Tests that the API description of a project is saved in a store and
+	 * restored from it once the cached description has been discarded
+	 */
+	public void testWPDescriptionRestoredFromStore() throws Exception {
+		IJavaProject project = getTestingProject();
+		assertNotNull("The testing project must exist", project); //$NON-NLS-1$
+		IPackageFragmentRoot root = project.findPackageFragmentRoot(new Path(project.getElementName()).append(ProjectUtils.SRC_FOLDER).makeAbsolute());
+		assertNotNull("the 'src' package fragment root must exist", root); //$NON-NLS-1$
+		assertTestSource(root, TESTING_PACKAGE, "TestClass1"); //$NON-NLS-1$
+		assertSourceResctriction(TESTING_PACKAGE, "TestClass1", RestrictionModifiers.NO_INSTANTIATE); //$NON-NLS-1$
+		ResourcesPlugin.getWorkspace().save(true, new NullProgressMonitor());
+		File dir = ApiDescriptionManager.API_DESCRIPTIONS_CONTAINER_PATH.append(project.getElementName()).toFile();
+		ApiDescriptionStore store = ApiDescriptionStore.open(dir);
+		assertNotNull("the description should have been saved in a store", store); //$NON-NLS-1$
+		assertTrue("the testing package should have been saved", store.getPackageNames().contains(TESTING_PACKAGE)); //$NON-NLS-1$
+
+		// discard the cached description, keeping the store
+		ApiDescriptionManager.getManager().clean(project, false, true);
+		ProjectComponent component = (ProjectComponent) getWorkspaceBaseline().getApiComponent(TESTING_PLUGIN_PROJECT_NAME);
+		assertNotNull("the testing project component must exist", component); //$NON-NLS-1$
+		IApiDescription desc = ApiDescriptionManager.getManager().getApiDescription(component, component.getBundleDescription());
+		IApiAnnotations annot = desc.resolveAnnotations(Factory.typeDescriptor(TESTING_PACKAGE + ".TestClass1")); //$NON-NLS-1$
+		assertNotNull("the restored annotations for a.b.c.TestClass1 cannot be null", annot); //$NON-NLS-1$
+		assertEquals("the restored restrictions of a.b.c.TestClass1 are wrong", RestrictionModifiers.NO_INSTANTIATE, annot.getRestrictions()); //$NON-NLS-1$
+		annot = desc.resolveAnnotations(Factory.packageDescriptor(TESTING_PACKAGE));
+		assertNotNull("the restored annotations for package a.b.c cannot be null", annot); //$NON-NLS-1$
+		assertTrue("the restored package a.b.c must be API", VisibilityModifiers.isAPI(annot.getVisibility())); //$NON-NLS-1$
+	}
+
 	/**
 	 * Adds the specified tag to the source member defined by the member name
 	 * and signature
@@ -838,6 +874,66 @@ public class ApiBaselineManagerTests extends AbstractApiTest {
 		assertTrue("unexported package must be private", VisibilityModifiers.isPrivate(annot.getVisibility())); //$NON-NLS-1$
 	}
 
+	/**
+	 * Tests that the workspace changes queued since the workspace baseline was
+	 * last read are applied when it is read again, without waiting for the
+	 * delayed application of the pending changes
+	 */
+	public void testWPPendingChangesAppliedOnRead() throws Exception {
+		IJavaProject project = getTestingProject();
+		assertNotNull("The testing project must exist", project); //$NON-NLS-1$
+		IApiBaseline before = getWorkspaceBaseline();
+		assertNotNull("the workspace baseline must exist", before); //$NON-NLS-1$
+		ProjectUtils.addSourceContainer(project, "src2"); //$NON-NLS-1$
+		IApiBaseline after = getWorkspaceBaseline();
+		assertNotSame("the classpath change should have replaced the workspace baseline", before, after); //$NON-NLS-1$
+		assertNotNull("the new workspace baseline must contain the testing project", after.getApiComponent(project.getElementName())); //$NON-NLS-1$
+	}
+
+	/**
+	 * Tests that changes made one after the other are applied in one batch and
+	 * in order when the models are next read: the workspace baseline is
+	 * replaced once, and a description obtained before the changes reflects
+	 * all of them
+	 */
+	public void testWPPendingChangesCoalesced() throws Exception {
+		IJavaProject project = getTestingProject();
+		assertNotNull("The testing project must exist", project); //$NON-NLS-1$
+		IPackageFragmentRoot root = project.findPackageFragmentRoot(new Path(project.getElementName()).append(ProjectUtils.SRC_FOLDER).makeAbsolute());
+		assertNotNull("the 'src' package fragment root must exist", root); //$NON-NLS-1$
+		IApiDescription desc = getTestProjectApiDescription();
+		assertNotNull("the testing project api description must exist", desc); //$NON-NLS-1$
+		// a build reading the baseline between the changes would replace it
+		// again
+		IWorkspace workspace = ResourcesPlugin.getWorkspace();
+		IWorkspaceDescription description = workspace.getDescription();
+		boolean autobuilding = description.isAutoBuilding();
+		description.setAutoBuilding(false);
+		workspace.setDescription(description);
+		try {
+			ApiBaselineManager manager = ApiBaselineManager.getManager();
+			IApiBaseline before = getWorkspaceBaseline();
+			int disposals = manager.getWorkspaceBaselineDisposals();
+
+			ProjectUtils.addSourceContainer(project, "src2"); //$NON-NLS-1$
+			ProjectUtils.addSourceContainer(project, "src3"); //$NON-NLS-1$
+			assertTestSource(root, TESTING_PACKAGE, "TestClass1"); //$NON-NLS-1$
+
+			// read through the description obtained before the changes
+			IApiAnnotations annot = desc.resolveAnnotations(Factory.typeDescriptor(TESTING_PACKAGE + ".TestClass1")); //$NON-NLS-1$
+			assertNotNull("the annotations for a.b.c.TestClass1 cannot be null", annot); //$NON-NLS-1$
+			assertEquals("the restrictions of a.b.c.TestClass1 are wrong", RestrictionModifiers.NO_INSTANTIATE, annot.getRestrictions()); //$NON-NLS-1$
+			IApiBaseline after = getWorkspaceBaseline();
+			assertNotSame("the classpath changes should have replaced the workspace baseline", before, after); //$NON-NLS-1$
+			assertEquals("the workspace baseline should have been disposed once", disposals + 1, manager.getWorkspaceBaselineDisposals()); //$NON-NLS-1$
+			assertSame("the workspace baseline should have been replaced once", after, getWorkspaceBaseline()); //$NON-NLS-1$
+			assertEquals("the workspace baseline should have been disposed once", disposals + 1, manager.getWorkspaceBaselineDisposals()); //$NON-NLS-1$
+		} finally {
+			description.setAutoBuilding(autobuilding);
+			workspace.setDescription(description);
+		}
+	}
+
 	/**
 	 * sets the given package name to be an Exported-Package
 	 *
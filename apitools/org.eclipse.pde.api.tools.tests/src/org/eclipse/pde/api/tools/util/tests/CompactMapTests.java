@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.util.tests;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.eclipse.pde.api.tools.internal.util.CompactMap;
+
+/**
+ * Tests the {@link CompactMap} class, including the memory it uses
+ *
+ * @since 1.1
+ */
+public class CompactMapTests extends TestCase {
+
+	/**
+	 * Tests that random operations give the same results as on a
+	 * {@link HashMap}, with keys colliding in the hashed table
+	 */
+	public void testSameAsHashMap() {
+		Random random = new Random(42);
+		for (int round = 0; round < 200; round++) {
+			CompactMap<Integer, Integer> map = new CompactMap<>();
+			Map<Integer, Integer> expected = new HashMap<>();
+			int range = 1 + random.nextInt(100);
+			for (int i = 0; i < 300; i++) {
+				// multiples of 65536 collide in small tables
+				Integer key = Integer.valueOf(random.nextInt(range) * (random.nextBoolean() ? 1 : 65536));
+				switch (random.nextInt(3)) {
+					case 0:
+						assertEquals("Wrong previous value", expected.put(key, Integer.valueOf(i)), map.put(key, Integer.valueOf(i))); //$NON-NLS-1$
+						break;
+					case 1:
+						assertEquals("Wrong removed value", expected.remove(key), map.remove(key)); //$NON-NLS-1$
+						break;
+					default:
+						assertEquals("Wrong value", expected.get(key), map.get(key)); //$NON-NLS-1$
+						break;
+				}
+				assertEquals("Wrong size", expected.size(), map.size()); //$NON-NLS-1$
+			}
+			assertEquals("Wrong mappings", expected, map); //$NON-NLS-1$
+			assertEquals("Wrong key set", expected.keySet(), map.keySet()); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Tests that empty and small maps only hold their mappings
+	 */
+	public void testSmallMapFootprint() {
+		CompactMap<String, String> map = new CompactMap<>();
+		assertEquals("An empty map should hold no array", 0, map.capacity()); //$NON-NLS-1$
+		for (int i = 1; i <= CompactMap.SMALL_SIZE; i++) {
+			map.put("k" + i, "v" + i); //$NON-NLS-1$ //$NON-NLS-2$
+			assertEquals("A small map should hold exactly its mappings", i, map.capacity()); //$NON-NLS-1$
+		}
+		map.remove("k1"); //$NON-NLS-1$
+		assertEquals("Removing should shrink a small map", CompactMap.SMALL_SIZE - 1, map.capacity()); //$NON-NLS-1$
+		map.clear();
+		assertEquals("A cleared map should hold no array", 0, map.capacity()); //$NON-NLS-1$
+	}
+
+	/**
+	 * Tests that large maps stay at least one quarter full, and go back to a
+	 * linear array once small again
+	 */
+	public void testLargeMapFootprint() {
+		CompactMap<Integer, Integer> map = new CompactMap<>();
+		int count = 1000;
+		for (int i = 0; i < count; i++) {
+			map.put(Integer.valueOf(i), Integer.valueOf(i));
+			if (map.size() > CompactMap.SMALL_SIZE) {
+				assertTrue("The table should be at most three quarters full", map.size() * 4 <= map.capacity() * 3); //$NON-NLS-1$
+				assertTrue("The table should be more than a quarter full", map.size() * 4 > map.capacity() || map.capacity() == 16); //$NON-NLS-1$
+			}
+		}
+		for (int i = count - 1; i >= CompactMap.SMALL_SIZE; i--) {
+			map.remove(Integer.valueOf(i));
+		}
+		assertEquals("The map should be small again", CompactMap.SMALL_SIZE, map.capacity()); //$NON-NLS-1$
+		for (int i = 0; i < CompactMap.SMALL_SIZE; i++) {
+			assertEquals("Wrong value", Integer.valueOf(i), map.get(Integer.valueOf(i))); //$NON-NLS-1$
+		}
+	}
+}
@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.util.tests;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.pde.api.tools.internal.util.MappedArchive;
+import org.eclipse.pde.api.tools.internal.util.Util;
+import org.eclipse.pde.api.tools.model.tests.TestSuiteHelper;
+
+/**
+ * Tests the {@link MappedArchive} class
+ *
+ * @since 1.1
+ */
+public class MappedArchiveTests extends TestCase {
+
+	/**
+	 * @return the path to the sample archive
+	 */
+	private String getSampleArchive() {
+		IPath path = TestSuiteHelper.getPluginDirectoryPath().append("test-jars").append("sample.jar"); //$NON-NLS-1$ //$NON-NLS-2$
+		assertTrue("Missing jar file", path.toFile().exists()); //$NON-NLS-1$
+		return path.toOSString();
+	}
+
+	/**
+	 * Tests that every entry read from a mapped archive matches the contents
+	 * read through a {@link ZipFile}
+	 *
+	 * @throws Exception
+	 */
+	public void testContentsMatchZipFile() throws Exception {
+		String location = getSampleArchive();
+		MappedArchive archive = MappedArchive.open(location);
+		try (ZipFile zipFile = new ZipFile(location)) {
+			int count = 0;
+			Enumeration<? extends ZipEntry> entries = zipFile.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				assertTrue("Missing entry " + entry.getName(), archive.hasEntry(entry.getName())); //$NON-NLS-1$
+				byte[] expected;
+				try (InputStream stream = zipFile.getInputStream(entry)) {
+					expected = Util.getInputStreamAsByteArray(stream, -1);
+				}
+				assertTrue("Wrong contents for " + entry.getName(), Arrays.equals(expected, archive.getContents(entry.getName()))); //$NON-NLS-1$
+				count++;
+			}
+			assertEquals("Wrong number of entries", count, archive.getEntryNames().length); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Tests that a missing entry returns <code>null</code>
+	 *
+	 * @throws Exception
+	 */
+	public void testMissingEntry() throws Exception {
+		MappedArchive archive = MappedArchive.open(getSampleArchive());
+		assertFalse("The entry should not exist", archive.hasEntry("does/not/Exist.class")); //$NON-NLS-1$ //$NON-NLS-2$
+		assertNull("There should be no contents", archive.getContents("does/not/Exist.class")); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+}
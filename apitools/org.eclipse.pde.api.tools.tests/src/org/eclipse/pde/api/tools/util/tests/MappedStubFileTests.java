@@ -0,0 +1,220 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.util.tests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import junit.framework.TestCase;
+
+import org.eclipse.pde.api.tools.internal.model.StubArchiveApiTypeContainer;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiType;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiTypeRoot;
+import org.eclipse.pde.api.tools.internal.util.MappedStubFile;
+import org.eclipse.pde.api.tools.internal.util.Util;
+import org.eclipse.pde.api.tools.tests.ApiTestsPlugin;
+
+/**
+ * Tests the {@link MappedStubFile} class and the
+ * {@link StubArchiveApiTypeContainer} reading it
+ *
+ * @since 1.1
+ */
+public class MappedStubFileTests extends TestCase {
+
+	private static final String[] TYPES = new String[] {
+			"java/lang/Object", "java/lang/String", "java/lang/ref/Reference", "java/util/List" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+
+	private File fRoot = ApiTestsPlugin.getDefault().getStateLocation().append("stubfile").toFile(); //$NON-NLS-1$
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		Util.delete(fRoot);
+		fRoot.mkdirs();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		Util.delete(fRoot);
+		super.tearDown();
+	}
+
+	/**
+	 * Returns a stub in the format of the stub archives, for a type with a
+	 * field and a method
+	 */
+	private static byte[] stub(String typeName) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeShort(2);
+		String[] pool = new String[] {
+				typeName, "field", "method", "()V" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		out.writeShort(pool.length);
+		for (int i = 0; i < pool.length; i++) {
+			out.writeUTF(pool[i]);
+			out.writeShort(i);
+		}
+		out.writeChar(1);
+		out.writeShort(0);
+		out.writeShort(-1);
+		out.writeShort(0);
+		out.writeShort(1);
+		out.writeShort(1);
+		out.writeShort(1);
+		out.writeShort(2);
+		out.writeShort(3);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private File writeArchive() throws IOException {
+		File archive = new File(fRoot, "Test-1.0.zip"); //$NON-NLS-1$
+		try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(archive))) {
+			// not in sorted order
+			for (int i = TYPES.length - 1; i >= 0; i--) {
+				out.putNextEntry(new ZipEntry(TYPES[i]));
+				out.write(stub(TYPES[i]));
+				out.closeEntry();
+			}
+		}
+		return archive;
+	}
+
+	/**
+	 * Tests that the stubs written from an archive are read back
+	 *
+	 * @throws Exception
+	 */
+	public void testWriteAndRead() throws Exception {
+		File archive = writeArchive();
+		File file = new File(fRoot, "Test-1.0" + MappedStubFile.STUB_FILE_EXTENSION); //$NON-NLS-1$
+		MappedStubFile.write(archive, file);
+		MappedStubFile stubFile = MappedStubFile.open(file.getPath());
+		assertTrue("Wrong names", Arrays.equals(TYPES, stubFile.getNames())); //$NON-NLS-1$
+		for (String type : TYPES) {
+			assertTrue("Missing stub " + type, stubFile.hasStub(type)); //$NON-NLS-1$
+			assertTrue("Wrong contents for " + type, Arrays.equals(stub(type), stubFile.getContents(type))); //$NON-NLS-1$
+		}
+		assertFalse("The stub should not exist", stubFile.hasStub("java/lang/Missing")); //$NON-NLS-1$ //$NON-NLS-2$
+		assertNull("There should be no contents", stubFile.getContents("java/lang/Missing")); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals("Wrong source length", archive.length(), stubFile.getSourceLength()); //$NON-NLS-1$
+		assertEquals("Wrong source time stamp", archive.lastModified(), stubFile.getSourceTimeStamp()); //$NON-NLS-1$
+	}
+
+	/**
+	 * Tests that a truncated stub file fails to open
+	 *
+	 * @throws Exception
+	 */
+	public void testTruncatedFile() throws Exception {
+		File file = new File(fRoot, "Test-1.0" + MappedStubFile.STUB_FILE_EXTENSION); //$NON-NLS-1$
+		MappedStubFile.write(writeArchive(), file);
+		try (RandomAccessFile data = new RandomAccessFile(file, "rw")) { //$NON-NLS-1$
+			data.setLength(data.length() - 10);
+		}
+		try {
+			MappedStubFile.open(file.getPath());
+			fail("The truncated file should not open"); //$NON-NLS-1$
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Tests that the header of a stub file tells if it is out of date
+	 * without mapping it
+	 *
+	 * @throws Exception
+	 */
+	public void testWrittenFrom() throws Exception {
+		File archive = writeArchive();
+		File file = new File(fRoot, "Test-1.0" + MappedStubFile.STUB_FILE_EXTENSION); //$NON-NLS-1$
+		assertFalse("A missing file should not be up to date", MappedStubFile.isWrittenFrom(file, archive)); //$NON-NLS-1$
+		MappedStubFile.write(archive, file);
+		assertTrue("The file should be up to date", MappedStubFile.isWrittenFrom(file, archive)); //$NON-NLS-1$
+		assertTrue("Unable to change the time stamp", archive.setLastModified(archive.lastModified() - 10000)); //$NON-NLS-1$
+		assertFalse("The file should be out of date", MappedStubFile.isWrittenFrom(file, archive)); //$NON-NLS-1$
+		assertFalse("An archive should not be a stub file", MappedStubFile.isWrittenFrom(archive, archive)); //$NON-NLS-1$
+	}
+
+	/**
+	 * Tests that a stub file written by several threads at once is complete
+	 * and that no temporary file is left behind
+	 *
+	 * @throws Exception
+	 */
+	public void testConcurrentWrite() throws Exception {
+		final File archive = writeArchive();
+		final File file = new File(fRoot, "Test-1.0" + MappedStubFile.STUB_FILE_EXTENSION); //$NON-NLS-1$
+		final IOException[] failures = new IOException[4];
+		Thread[] threads = new Thread[failures.length];
+		for (int i = 0; i < threads.length; i++) {
+			final int index = i;
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						MappedStubFile.write(archive, file);
+					} catch (IOException e) {
+						failures[index] = e;
+					}
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		for (IOException failure : failures) {
+			if (failure != null) {
+				throw failure;
+			}
+		}
+		MappedStubFile stubFile = MappedStubFile.open(file.getPath());
+		assertEquals("Wrong number of stubs", TYPES.length, stubFile.getNames().length); //$NON-NLS-1$
+		String[] names = fRoot.list();
+		Arrays.sort(names);
+		assertTrue("Temporary files left: " + Arrays.toString(names), Arrays.equals(new String[] { //$NON-NLS-1$
+				"Test-1.0" + MappedStubFile.STUB_FILE_EXTENSION, "Test-1.0.zip" }, names)); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/**
+	 * Tests that a stub container decodes the types of a stub file
+	 *
+	 * @throws Exception
+	 */
+	public void testContainer() throws Exception {
+		File file = new File(fRoot, "Test-1.0" + MappedStubFile.STUB_FILE_EXTENSION); //$NON-NLS-1$
+		MappedStubFile.write(writeArchive(), file);
+		StubArchiveApiTypeContainer container = new StubArchiveApiTypeContainer(null, file.getPath());
+		try {
+			assertTrue("Wrong packages", Arrays.equals(new String[] { //$NON-NLS-1$
+					"java.lang", "java.lang.ref", "java.util" }, container.getPackageNames())); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			assertNull("The type should not exist", container.findTypeRoot("java.lang.Missing")); //$NON-NLS-1$ //$NON-NLS-2$
+			IApiTypeRoot root = container.findTypeRoot("java.lang.ref.Reference"); //$NON-NLS-1$
+			assertNotNull("Missing type root", root); //$NON-NLS-1$
+			IApiType type = root.getStructure();
+			assertEquals("Wrong type", "java.lang.ref.Reference", type.getName()); //$NON-NLS-1$ //$NON-NLS-2$
+			assertNotNull("Missing field", type.getField("field")); //$NON-NLS-1$ //$NON-NLS-2$
+			assertNotNull("Missing method", type.getMethod("method", "()V")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		} finally {
+			container.close();
+		}
+	}
+}
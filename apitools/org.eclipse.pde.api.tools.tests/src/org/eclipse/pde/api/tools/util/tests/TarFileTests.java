@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.util.tests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.zip.GZIPOutputStream;
+
+import junit.framework.TestCase;
+
+import org.eclipse.pde.api.tools.internal.util.TarEntry;
+import org.eclipse.pde.api.tools.internal.util.TarFile;
+import org.eclipse.pde.api.tools.internal.util.Util;
+import org.eclipse.pde.api.tools.tests.ApiTestsPlugin;
+
+/**
+ * Tests the random access to the entries of a {@link TarFile}
+ *
+ * @since 1.1
+ */
+public class TarFileTests extends TestCase {
+
+	private static final String LONG_NAME = "a/very/long/path/to/a/package/of/the/archive/with/more/than/one/hundred/characters/in/its/name/Type.class"; //$NON-NLS-1$
+
+	private static final String[] NAMES = new String[] {
+			"a/A.class", "a/b/B.class", LONG_NAME, "c/Empty.class", "d/D.class" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+
+	private File fRoot = ApiTestsPlugin.getDefault().getStateLocation().append("tarfile").toFile(); //$NON-NLS-1$
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		Util.delete(fRoot);
+		fRoot.mkdirs();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		Util.delete(fRoot);
+		super.tearDown();
+	}
+
+	private static byte[] contents(int index) {
+		byte[] bytes = new byte[index == 3 ? 0 : 300 + index * 700];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) (i * 7 + index);
+		}
+		return bytes;
+	}
+
+	private static void writeOctal(byte[] header, int offset, int length, long value) {
+		String octal = Long.toOctalString(value);
+		while (octal.length() < length - 1) {
+			octal = '0' + octal;
+		}
+		byte[] bytes = octal.getBytes(StandardCharsets.US_ASCII);
+		System.arraycopy(bytes, 0, header, offset, bytes.length);
+	}
+
+	private static void writeEntry(OutputStream out, String name, byte type, byte[] data) throws IOException {
+		byte[] header = new byte[512];
+		byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+		System.arraycopy(nameBytes, 0, header, 0, Math.min(nameBytes.length, 100));
+		writeOctal(header, 100, 8, 0644);
+		writeOctal(header, 108, 8, 0);
+		writeOctal(header, 116, 8, 0);
+		writeOctal(header, 124, 12, data.length);
+		writeOctal(header, 136, 12, 0);
+		header[156] = type;
+		Arrays.fill(header, 148, 156, (byte) ' ');
+		long sum = 0;
+		for (byte b : header) {
+			sum += b & 0xff;
+		}
+		writeOctal(header, 148, 7, sum);
+		out.write(header);
+		out.write(data);
+		out.write(new byte[(512 - data.length % 512) % 512]);
+	}
+
+	/**
+	 * Writes an archive of the test entries, the long name being written as a
+	 * GNU long link, optionally preceded by another entry
+	 */
+	private File writeArchive(String name, boolean compress, String first) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		if (first != null) {
+			writeEntry(bytes, first, (byte) '0', contents(0));
+		}
+		for (int i = 0; i < NAMES.length; i++) {
+			String entryName = NAMES[i];
+			if (entryName.length() > 100) {
+				writeEntry(bytes, "././@LongLink", (byte) 'L', (entryName + '\0').getBytes(StandardCharsets.UTF_8)); //$NON-NLS-1$
+			}
+			writeEntry(bytes, entryName, (byte) '0', contents(i));
+		}
+		bytes.write(new byte[1024]);
+		File file = new File(fRoot, name);
+		try (OutputStream out = compress ? new GZIPOutputStream(new FileOutputStream(file)) : new FileOutputStream(file)) {
+			out.write(bytes.toByteArray());
+		}
+		return file;
+	}
+
+	private static byte[] read(TarFile tarFile, TarEntry entry) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		InputStream in = tarFile.getInputStream(entry);
+		byte[] buf = new byte[256];
+		int n;
+		while ((n = in.read(buf)) >= 0) {
+			out.write(buf, 0, n);
+		}
+		return out.toByteArray();
+	}
+
+	private void checkRandomAccess(File file) throws Exception {
+		TarFile tarFile = new TarFile(file);
+		try {
+			// backwards, so that each entry has been passed already
+			for (int i = NAMES.length - 1; i >= 0; i--) {
+				TarEntry entry = tarFile.getEntry(NAMES[i]);
+				assertNotNull("Missing entry " + NAMES[i], entry); //$NON-NLS-1$
+				assertTrue("Wrong contents for " + NAMES[i], Arrays.equals(contents(i), read(tarFile, entry))); //$NON-NLS-1$
+			}
+			assertNull("There should be no such entry", tarFile.getEntry("x/X.class")); //$NON-NLS-1$ //$NON-NLS-2$
+			assertTrue("Entries should be looked up by name", Arrays.equals(contents(1), read(tarFile, new TarEntry(NAMES[1])))); //$NON-NLS-1$
+		} finally {
+			tarFile.close();
+		}
+	}
+
+	/**
+	 * Tests reading the entries of a .tar archive in any order
+	 *
+	 * @throws Exception
+	 */
+	public void testRandomAccess() throws Exception {
+		checkRandomAccess(writeArchive("test.tar", false, null)); //$NON-NLS-1$
+	}
+
+	/**
+	 * Tests reading the entries of a .tar.gz archive in any order
+	 *
+	 * @throws Exception
+	 */
+	public void testRandomAccessCompressed() throws Exception {
+		checkRandomAccess(writeArchive("test.tar.gz", true, null)); //$NON-NLS-1$
+	}
+
+	/**
+	 * Tests that enumerating the entries indexes them, and that the saved
+	 * index is used until the archive changes
+	 *
+	 * @throws Exception
+	 */
+	public void testSavedIndex() throws Exception {
+		File file = writeArchive("test.tar", false, null); //$NON-NLS-1$
+		File indexFile = new File(file.getPath() + TarFile.INDEX_FILE_EXTENSION);
+		TarFile tarFile = new TarFile(file, true);
+		try {
+			int count = 0;
+			for (Enumeration<?> entries = tarFile.entries(); entries.hasMoreElements();) {
+				assertEquals("Wrong entry", NAMES[count++], ((TarEntry) entries.nextElement()).getName()); //$NON-NLS-1$
+			}
+			assertEquals("Wrong number of entries", NAMES.length, count); //$NON-NLS-1$
+		} finally {
+			tarFile.close();
+		}
+		assertTrue("The index should have been saved", indexFile.exists()); //$NON-NLS-1$
+
+		tarFile = new TarFile(file, true);
+		try {
+			TarEntry entry = tarFile.getEntry(LONG_NAME);
+			assertEquals("Wrong size", contents(2).length, entry.getSize()); //$NON-NLS-1$
+			assertTrue("Wrong contents", Arrays.equals(contents(2), read(tarFile, entry))); //$NON-NLS-1$
+		} finally {
+			tarFile.close();
+		}
+
+		// an archive of another length makes the saved index out of date
+		Util.delete(file);
+		file = writeArchive("test.tar", false, "e/E.class"); //$NON-NLS-1$ //$NON-NLS-2$
+		tarFile = new TarFile(file, true);
+		try {
+			assertNotNull("The new entry should be indexed", tarFile.getEntry("e/E.class")); //$NON-NLS-1$ //$NON-NLS-2$
+			assertTrue("Wrong contents", Arrays.equals(contents(4), read(tarFile, tarFile.getEntry(NAMES[4])))); //$NON-NLS-1$
+		} finally {
+			tarFile.close();
+		}
+	}
+}
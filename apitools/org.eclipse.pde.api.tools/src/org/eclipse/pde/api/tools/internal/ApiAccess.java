@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2013 IBM Corporation and others.
+ * Copyright (c) 2009, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -23,6 +23,13 @@ public class ApiAccess implements IApiAccess {
 
 	public static final IApiAccess NORMAL_ACCESS = new NormalAccess();
 
+	/**
+	 * Shared friend access, instances being immutable
+	 *
+	 * @since 1.1
+	 */
+	public static final IApiAccess FRIEND_ACCESS = new ApiAccess(IApiAccess.FRIEND);
+
 	static class NormalAccess implements IApiAccess {
 		@Override
 		public int getAccessLevel() {
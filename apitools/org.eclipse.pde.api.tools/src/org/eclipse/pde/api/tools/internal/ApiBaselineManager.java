@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2013 IBM Corporation and others.
+ * Copyright (c) 2007, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -19,11 +19,13 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -46,6 +48,7 @@ import org.eclipse.pde.api.tools.internal.model.ApiBaseline;
 import org.eclipse.pde.api.tools.internal.model.ApiModelCache;
 import org.eclipse.pde.api.tools.internal.model.ApiModelFactory;
 import org.eclipse.pde.api.tools.internal.model.StubApiComponent;
+import org.eclipse.pde.api.tools.internal.model.TypeStructureIndex;
 import org.eclipse.pde.api.tools.internal.model.WorkspaceBaseline;
 import org.eclipse.pde.api.tools.internal.provisional.ApiPlugin;
 import org.eclipse.pde.api.tools.internal.provisional.IApiBaselineManager;
@@ -126,6 +129,11 @@ public final class ApiBaselineManager implements IApiBaselineManager, ISaveParti
 	 */
 	private boolean fNeedsSaving = false;
 
+	/**
+	 * The number of detached workspace baselines disposed so far
+	 */
+	private final AtomicInteger fWorkspaceBaselineDisposals = new AtomicInteger();
+
 	/**
 	 * The singleton instance
 	 */
@@ -489,6 +497,8 @@ public final class ApiBaselineManager implements IApiBaselineManager, ISaveParti
 
 	@Override
 	public void saving(ISaveContext context) throws CoreException {
+		TypeStructureIndex.flush();
+		TypeStructureIndex.prune();
 		if (!fNeedsSaving) {
 			return;
 		}
@@ -589,7 +599,23 @@ public final class ApiBaselineManager implements IApiBaselineManager, ISaveParti
 	}
 
 	@Override
-	public synchronized IApiBaseline getWorkspaceBaseline() {
+	public IApiBaseline getWorkspaceBaseline() {
+		// apply the pending workspace changes before the lock is taken, they
+		// may dispose the baseline
+		WorkspaceDeltaProcessor.flushPendingChanges();
+		return getCurrentWorkspaceBaseline();
+	}
+
+	/**
+	 * Returns the workspace baseline, creating it if needed, without applying
+	 * the pending workspace changes first. Used by the API descriptions of
+	 * the workspace, which look up their component while they hold their own
+	 * lock: applying the changes may need that lock.
+	 *
+	 * @return the workspace baseline or <code>null</code> if not running in
+	 *         the framework
+	 */
+	synchronized IApiBaseline getCurrentWorkspaceBaseline() {
 		if (ApiPlugin.isRunningInFramework()) {
 			if (this.workspacebaseline == null) {
 				try {
@@ -604,17 +630,56 @@ public final class ApiBaselineManager implements IApiBaselineManager, ISaveParti
 	}
 
 	/**
-	 * Disposes the workspace baseline such that a new one will be created on
-	 * the next request.
+	 * Detaches the workspace baseline such that a new one will be created on
+	 * the next request. The detached baseline is disposed by the caller with
+	 * {@link #disposeWorkspaceBaseline(IApiBaseline)}.
+	 *
+	 * @return the detached baseline or <code>null</code> if it had not been
+	 *         created
 	 */
-	synchronized void disposeWorkspaceBaseline() {
-		if (workspacebaseline != null) {
-			if (ApiPlugin.DEBUG_BASELINE_MANAGER) {
-				System.out.println("disposing workspace baseline"); //$NON-NLS-1$
+	synchronized IApiBaseline detachWorkspaceBaseline() {
+		IApiBaseline baseline = workspacebaseline;
+		workspacebaseline = null;
+		return baseline;
+	}
+
+	/**
+	 * Disposes a workspace baseline detached with
+	 * {@link #detachWorkspaceBaseline()}.
+	 *
+	 * @param baseline the detached baseline
+	 */
+	void disposeWorkspaceBaseline(IApiBaseline baseline) {
+		if (ApiPlugin.DEBUG_BASELINE_MANAGER) {
+			System.out.println("disposing workspace baseline"); //$NON-NLS-1$
+		}
+		baseline.dispose();
+		StubApiComponent.disposeAllCaches();
+		fWorkspaceBaselineDisposals.incrementAndGet();
+	}
+
+	/**
+	 * Returns the number of workspace baselines disposed after changes in the
+	 * workspace since this manager was created. Used for tracing and tests.
+	 *
+	 * @return the number of disposed workspace baselines
+	 * @since 1.1
+	 */
+	public int getWorkspaceBaselineDisposals() {
+		return fWorkspaceBaselineDisposals.get();
+	}
+
+	/**
+	 * Removes the given packages from the caches of the workspace baseline,
+	 * if it has been created
+	 *
+	 * @param packageNames the names of the removed packages
+	 */
+	synchronized void clearWorkspacePackages(Collection<String> packageNames) {
+		if (workspacebaseline instanceof ApiBaseline) {
+			for (String name : packageNames) {
+				((ApiBaseline) workspacebaseline).clearPackage(name);
 			}
-			workspacebaseline.dispose();
-			StubApiComponent.disposeAllCaches();
-			workspacebaseline = null;
 		}
 	}
 
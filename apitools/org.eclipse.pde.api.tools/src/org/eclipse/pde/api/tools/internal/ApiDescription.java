@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2015 IBM Corporation and others.
+ * Copyright (c) 2007, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,6 +10,8 @@
  *******************************************************************************/
 package org.eclipse.pde.api.tools.internal;
 
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -36,6 +38,7 @@ import org.eclipse.pde.api.tools.internal.provisional.descriptors.IMemberDescrip
 import org.eclipse.pde.api.tools.internal.provisional.descriptors.IMethodDescriptor;
 import org.eclipse.pde.api.tools.internal.provisional.descriptors.IPackageDescriptor;
 import org.eclipse.pde.api.tools.internal.provisional.descriptors.IReferenceTypeDescriptor;
+import org.eclipse.pde.api.tools.internal.util.CompactMap;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
@@ -55,6 +58,13 @@ public class ApiDescription implements IApiDescription {
 	// flag to indicate visibility should be inherited from parent node
 	protected static final int VISIBILITY_INHERITED = 0;
 
+	/**
+	 * Kinds of the nodes saved by {@link ManifestNode#persistBinary}
+	 *
+	 * @since 1.1
+	 */
+	static final byte END_NODE = 0, PACKAGE_NODE = 1, TYPE_NODE = 2, METHOD_NODE = 3, FIELD_NODE = 4;
+
 	/**
 	 * API component identifier of the API component that owns this description.
 	 * All references within a component have no restrictions. We allow this to
@@ -100,7 +110,7 @@ public class ApiDescription implements IApiDescription {
 		protected IElementDescriptor element = null;
 		protected int visibility, restrictions;
 		protected ManifestNode parent = null;
-		protected HashMap<IElementDescriptor, ManifestNode> children = new HashMap<>(1);
+		protected Map<IElementDescriptor, ManifestNode> children = new CompactMap<>();
 
 		public ManifestNode(ManifestNode parent, IElementDescriptor element, int visibility, int restrictions) {
 			this.element = element;
@@ -234,6 +244,41 @@ public class ApiDescription implements IApiDescription {
 			}
 		}
 
+		/**
+		 * Persists this node in the binary form of an API description store,
+		 * saving the same nodes as {@link #persistXML(Document, Element)}.
+		 *
+		 * @param out the stream to write to
+		 * @throws IOException if the node cannot be written
+		 * @since 1.1
+		 */
+		void persistBinary(DataOutputStream out) throws IOException {
+			if (RestrictionModifiers.isUnrestricted(this.restrictions)) {
+				return;
+			}
+			switch (element.getElementType()) {
+				case IElementDescriptor.METHOD: {
+					IMethodDescriptor md = (IMethodDescriptor) element;
+					out.writeByte(METHOD_NODE);
+					out.writeUTF(md.getName());
+					out.writeUTF(md.getSignature());
+					out.writeInt(this.visibility);
+					out.writeInt(this.restrictions);
+					break;
+				}
+				case IElementDescriptor.FIELD: {
+					IFieldDescriptor fd = (IFieldDescriptor) element;
+					out.writeByte(FIELD_NODE);
+					out.writeUTF(fd.getName());
+					out.writeInt(this.visibility);
+					out.writeInt(this.restrictions);
+					break;
+				}
+				default:
+					break;
+			}
+		}
+
 		/**
 		 * Adds visibility and restrictions to the XML element.
 		 *
@@ -262,10 +307,10 @@ public class ApiDescription implements IApiDescription {
 	 * the form:
 	 *
 	 * <pre>
-	 * HashMap<IPackageDescriptor(package), HashMap<IElementDescriptor(component), IApiAccess>>
+	 * HashMap<IPackageDescriptor(package), CompactMap<IElementDescriptor(component), IApiAccess>>
 	 * </pre>
 	 */
-	protected HashMap<IPackageDescriptor, HashMap<IElementDescriptor, IApiAccess>> fAccessMap = new HashMap<>();
+	protected HashMap<IPackageDescriptor, Map<IElementDescriptor, IApiAccess>> fAccessMap = new HashMap<>();
 
 	private float fEmbeddedVersion = 0.0f;
 
@@ -655,7 +700,7 @@ public class ApiDescription implements IApiDescription {
 	@Override
 	public IApiAccess resolveAccessLevel(IElementDescriptor element, IPackageDescriptor pelement) {
 		if (fAccessMap != null) {
-			HashMap<IElementDescriptor, IApiAccess> map = fAccessMap.get(pelement);
+			Map<IElementDescriptor, IApiAccess> map = fAccessMap.get(pelement);
 			if (map != null) {
 				return map.get(element);
 			}
@@ -669,12 +714,12 @@ public class ApiDescription implements IApiDescription {
 			if (fAccessMap == null) {
 				fAccessMap = new HashMap<>();
 			}
-			HashMap<IElementDescriptor, IApiAccess> map = fAccessMap.get(pelement);
+			Map<IElementDescriptor, IApiAccess> map = fAccessMap.get(pelement);
 			if (map == null) {
-				map = new HashMap<>();
+				map = new CompactMap<>();
 				fAccessMap.put(pelement, map);
 			}
-			map.put(element, new ApiAccess(access));
+			map.put(element, access == IApiAccess.FRIEND ? ApiAccess.FRIEND_ACCESS : new ApiAccess(access));
 		}
 	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2015 IBM Corporation and others.
+ * Copyright (c) 2008, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -56,6 +56,12 @@ import com.ibm.icu.text.MessageFormat;
 /**
  * Manages a cache of API descriptions for Java projects. Descriptions are
  * re-used between API components for the same project.
+ * <p>
+ * Descriptions are saved in an {@link ApiDescriptionStore} per project, from
+ * which their packages are restored when first needed. Descriptions saved as
+ * XML by previous versions are restored from the XML file, which is replaced
+ * by a store the next time the description is saved.
+ * </p>
  *
  * @since 1.0
  */
@@ -114,24 +120,29 @@ public final class ApiDescriptionManager implements ISaveParticipant {
 	 *
 	 * @return API description
 	 */
-	public synchronized IApiDescription getApiDescription(ProjectComponent component, BundleDescription bundle) {
-		IJavaProject project = component.getJavaProject();
-		ProjectApiDescription description = (ProjectApiDescription) fDescriptions.get(project);
-		if (description == null) {
-			if (Util.isApiProject(project)) {
-				description = new ProjectApiDescription(project);
-			} else {
-				description = new NonApiProjectDescription(project);
-			}
-			try {
-				restoreDescription(project, description);
-			} catch (CoreException e) {
-				ApiPlugin.log(e.getStatus());
-				description = new ProjectApiDescription(project);
+	public IApiDescription getApiDescription(ProjectComponent component, BundleDescription bundle) {
+		// apply the pending workspace changes first, they may clean the
+		// description
+		WorkspaceDeltaProcessor.flushPendingChanges();
+		synchronized (this) {
+			IJavaProject project = component.getJavaProject();
+			ProjectApiDescription description = (ProjectApiDescription) fDescriptions.get(project);
+			if (description == null) {
+				if (Util.isApiProject(project)) {
+					description = new ProjectApiDescription(project);
+				} else {
+					description = new NonApiProjectDescription(project);
+				}
+				try {
+					restoreDescription(project, description);
+				} catch (CoreException e) {
+					ApiPlugin.log(e.getStatus());
+					description = new ProjectApiDescription(project);
+				}
+				fDescriptions.put(project, description);
 			}
-			fDescriptions.put(project, description);
+			return description;
 		}
-		return description;
 	}
 
 	/**
@@ -156,6 +167,7 @@ public final class ApiDescriptionManager implements ISaveParticipant {
 			if (file.exists()) {
 				file.delete();
 			}
+			ApiDescriptionStore.delete(API_DESCRIPTIONS_CONTAINER_PATH.append(project.getElementName()).toFile());
 			file = API_DESCRIPTIONS_CONTAINER_PATH.append(project.getElementName()).toFile();
 			if (file.exists() && file.isDirectory()) {
 				file.delete();
@@ -237,11 +249,17 @@ public final class ApiDescriptionManager implements ISaveParticipant {
 			ProjectApiDescription desc = (ProjectApiDescription) entry.getValue();
 			if (desc.isModified()) {
 				File dir = API_DESCRIPTIONS_CONTAINER_PATH.append(project.getElementName()).toFile();
-				dir.mkdirs();
-				String xml = desc.getXML();
 				try {
-					Util.saveFile(new File(dir, IApiCoreConstants.API_DESCRIPTION_XML_NAME), xml);
+					int written = desc.save(dir);
 					desc.setModified(false);
+					if (ApiPlugin.DEBUG_API_DESCRIPTION) {
+						System.out.println("Saved " + written + " package(s) of the API description of " + project.getElementName()); //$NON-NLS-1$ //$NON-NLS-2$
+					}
+					// the store replaces the XML file of previous versions
+					File xml = new File(dir, IApiCoreConstants.API_DESCRIPTION_XML_NAME);
+					if (xml.exists()) {
+						xml.delete();
+					}
 				} catch (IOException e) {
 					abort(MessageFormat.format(ScannerMessages.ApiDescriptionManager_0, project.getElementName()), e);
 				}
@@ -250,8 +268,8 @@ public final class ApiDescriptionManager implements ISaveParticipant {
 	}
 
 	/**
-	 * Restores the API description from its saved file, if any and returns true
-	 * if successful.
+	 * Restores the API description from its saved store or file, if any and
+	 * returns true if successful. The packages of a store are restored lazily.
 	 *
 	 * @param project
 	 * @param description
@@ -259,7 +277,20 @@ public final class ApiDescriptionManager implements ISaveParticipant {
 	 * @throws CoreException
 	 */
 	private boolean restoreDescription(IJavaProject project, ProjectApiDescription description) throws CoreException {
-		File file = API_DESCRIPTIONS_CONTAINER_PATH.append(project.getElementName()).append(IApiCoreConstants.API_DESCRIPTION_XML_NAME).toFile();
+		File dir = API_DESCRIPTIONS_CONTAINER_PATH.append(project.getElementName()).toFile();
+		ApiDescriptionStore store = ApiDescriptionStore.open(dir);
+		if (store != null) {
+			String version = store.getVersion();
+			description.setEmbeddedVersion(version);
+			if (IApiXmlConstants.API_DESCRIPTION_CURRENT_VERSION.equals(version)) {
+				description.fPackageTimeStamp = store.getTimeStamp();
+				description.fManifestFile = project.getProject().getFile(JarFile.MANIFEST_NAME);
+				description.setStore(store);
+				return true;
+			}
+			return false;
+		}
+		File file = new File(dir, IApiCoreConstants.API_DESCRIPTION_XML_NAME);
 		if (file.exists()) {
 			BufferedInputStream stream = null;
 			try {
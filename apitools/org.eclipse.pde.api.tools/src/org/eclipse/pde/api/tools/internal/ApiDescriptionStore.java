@@ -0,0 +1,333 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.pde.api.tools.internal.provisional.ApiPlugin;
+
+/**
+ * Binary store of the packages of a saved API description.
+ * <p>
+ * Each package is saved as a block of bytes in a data file, and an index file
+ * maps package names to their blocks. Blocks are read one package at a time,
+ * when the package is first needed. Saving only appends the blocks of the
+ * packages that changed and rewrites the index; the data file is compacted
+ * once less than half of it is used by the blocks of the index.
+ * </p>
+ * <p>
+ * The blocks are checked against the CRC recorded in the index when they are
+ * read, so that a data file left inconsistent with its index is detected.
+ * </p>
+ *
+ * @since 1.1
+ */
+public final class ApiDescriptionStore {
+
+	/**
+	 * Name of the index file of a store
+	 */
+	public static final String INDEX_FILE_NAME = ".api_description.index"; //$NON-NLS-1$
+
+	/**
+	 * Name of the data file of a store
+	 */
+	public static final String DATA_FILE_NAME = ".api_description.data"; //$NON-NLS-1$
+
+	/**
+	 * Size of the data file below which it is never compacted
+	 */
+	static final long MIN_COMPACTION_SIZE = 64 * 1024;
+
+	private static final String STORE_KIND = "API_DESCRIPTION"; //$NON-NLS-1$
+	private static final int VERSION = 1;
+
+	/**
+	 * Location of a block in the data file
+	 */
+	static final class Block {
+		final long offset;
+		final int length;
+		final int crc;
+
+		Block(long offset, int length, int crc) {
+			this.offset = offset;
+			this.length = length;
+			this.crc = crc;
+		}
+	}
+
+	private final File fIndexFile;
+	private final File fDataFile;
+	private String fVersion = null;
+	private long fTimeStamp = -1L;
+	private long fDataLength = 0L;
+	private Map<String, Block> fBlocks = new HashMap<>();
+
+	/**
+	 * Constructs an empty store saved in the given directory. Nothing is read
+	 * or written until the store is saved.
+	 *
+	 * @param directory the directory of the store
+	 */
+	public ApiDescriptionStore(File directory) {
+		fIndexFile = new File(directory, INDEX_FILE_NAME);
+		fDataFile = new File(directory, DATA_FILE_NAME);
+	}
+
+	/**
+	 * Opens the store saved in the given directory. Only the index is read.
+	 *
+	 * @param directory the directory of the store
+	 * @return the store or <code>null</code> if there is no store in the
+	 *         directory
+	 * @throws CoreException if the store cannot be read
+	 */
+	public static ApiDescriptionStore open(File directory) throws CoreException {
+		ApiDescriptionStore store = new ApiDescriptionStore(directory);
+		if (!store.fIndexFile.exists()) {
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(store.fIndexFile)))) {
+			if (!ApiPlugin.PLUGIN_ID.equals(in.readUTF()) || !STORE_KIND.equals(in.readUTF()) || in.readInt() != VERSION) {
+				return null;
+			}
+			store.fVersion = in.readUTF();
+			store.fTimeStamp = in.readLong();
+			store.fDataLength = in.readLong();
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				String name = in.readUTF();
+				store.fBlocks.put(name, new Block(in.readLong(), in.readInt(), in.readInt()));
+			}
+		} catch (IOException e) {
+			throw new CoreException(new Status(IStatus.ERROR, ApiPlugin.PLUGIN_ID, "Unable to read API description index " + store.fIndexFile, e)); //$NON-NLS-1$
+		}
+		if (store.fDataFile.length() < store.fDataLength) {
+			throw new CoreException(new Status(IStatus.ERROR, ApiPlugin.PLUGIN_ID, "Truncated API description data " + store.fDataFile)); //$NON-NLS-1$
+		}
+		return store;
+	}
+
+	/**
+	 * Deletes the files of the store saved in the given directory, if any
+	 *
+	 * @param directory the directory of the store
+	 */
+	public static void delete(File directory) {
+		new File(directory, INDEX_FILE_NAME).delete();
+		new File(directory, DATA_FILE_NAME).delete();
+	}
+
+	/**
+	 * @return the version of the saved API description or <code>null</code> if
+	 *         the store has not been saved
+	 */
+	public synchronized String getVersion() {
+		return fVersion;
+	}
+
+	/**
+	 * @return the time stamp of the package information of the saved API
+	 *         description
+	 */
+	public synchronized long getTimeStamp() {
+		return fTimeStamp;
+	}
+
+	/**
+	 * @return the names of the packages in the store
+	 */
+	public synchronized Set<String> getPackageNames() {
+		return new HashSet<>(fBlocks.keySet());
+	}
+
+	/**
+	 * @return the number of bytes of the data file in use, including the
+	 *         blocks no longer in the index
+	 */
+	synchronized long getDataLength() {
+		return fDataLength;
+	}
+
+	/**
+	 * Reads the block of the given package
+	 *
+	 * @param packageName the name of the package
+	 * @return the block or <code>null</code> if the package is not in the
+	 *         store
+	 * @throws CoreException if the block cannot be read or is corrupt
+	 */
+	public synchronized byte[] read(String packageName) throws CoreException {
+		Block block = fBlocks.get(packageName);
+		if (block == null) {
+			return null;
+		}
+		byte[] bytes = new byte[block.length];
+		try (RandomAccessFile data = new RandomAccessFile(fDataFile, "r")) { //$NON-NLS-1$
+			data.seek(block.offset);
+			data.readFully(bytes);
+		} catch (IOException e) {
+			throw new CoreException(new Status(IStatus.ERROR, ApiPlugin.PLUGIN_ID, "Unable to read API description of package " + packageName, e)); //$NON-NLS-1$
+		}
+		if (crc(bytes) != block.crc) {
+			throw new CoreException(new Status(IStatus.ERROR, ApiPlugin.PLUGIN_ID, "Corrupt API description of package " + packageName)); //$NON-NLS-1$
+		}
+		return bytes;
+	}
+
+	/**
+	 * Saves the store. The given blocks replace the blocks of their packages;
+	 * blocks equal to the saved ones are not written again. The saved blocks
+	 * of the retained packages are kept, and all the other packages are
+	 * removed from the store.
+	 *
+	 * @param version the version of the API description
+	 * @param timeStamp the time stamp of the package information
+	 * @param blocks the blocks of the packages to save, keyed by package name
+	 * @param retained the names of the packages to keep as they are saved
+	 * @return the number of blocks written
+	 * @throws IOException if the store cannot be written
+	 */
+	public synchronized int save(String version, long timeStamp, Map<String, byte[]> blocks, Collection<String> retained) throws IOException {
+		File directory = fIndexFile.getParentFile();
+		if (!directory.exists() && !directory.mkdirs()) {
+			throw new IOException("Unable to create " + directory); //$NON-NLS-1$
+		}
+		Map<String, Block> saved = new HashMap<>();
+		long used = 0;
+		for (String name : retained) {
+			Block block = fBlocks.get(name);
+			if (block != null) {
+				saved.put(name, block);
+				used += block.length;
+			}
+		}
+		int written = 0;
+		long end = fDataLength;
+		// blocks are only appended, the blocks of the saved index are left
+		// untouched until the new index replaces it
+		try (RandomAccessFile data = new RandomAccessFile(fDataFile, "rw")) { //$NON-NLS-1$
+			for (Entry<String, byte[]> entry : blocks.entrySet()) {
+				byte[] bytes = entry.getValue();
+				int crc = crc(bytes);
+				Block block = fBlocks.get(entry.getKey());
+				if (block == null || block.length != bytes.length || block.crc != crc) {
+					data.seek(end);
+					data.write(bytes);
+					block = new Block(end, bytes.length, crc);
+					end += bytes.length;
+					written++;
+				}
+				saved.put(entry.getKey(), block);
+				used += block.length;
+			}
+			data.setLength(end);
+		}
+		fBlocks = saved;
+		fDataLength = end;
+		fVersion = version;
+		fTimeStamp = timeStamp;
+		if (fDataLength > MIN_COMPACTION_SIZE && used * 2 < fDataLength) {
+			compact();
+		}
+		writeIndex();
+		return written;
+	}
+
+	/**
+	 * Rewrites the data file with the blocks of the index only
+	 *
+	 * @throws IOException if the data file cannot be written
+	 */
+	private void compact() throws IOException {
+		File temp = new File(fDataFile.getParentFile(), fDataFile.getName() + ".tmp"); //$NON-NLS-1$
+		Map<String, Block> compacted = new HashMap<>();
+		long end = 0;
+		try (RandomAccessFile data = new RandomAccessFile(fDataFile, "r"); DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) { //$NON-NLS-1$
+			for (Entry<String, Block> entry : fBlocks.entrySet()) {
+				Block block = entry.getValue();
+				byte[] bytes = new byte[block.length];
+				data.seek(block.offset);
+				data.readFully(bytes);
+				out.write(bytes);
+				compacted.put(entry.getKey(), new Block(end, block.length, block.crc));
+				end += block.length;
+			}
+		}
+		fDataFile.delete();
+		if (!temp.renameTo(fDataFile)) {
+			temp.delete();
+			throw new IOException("Unable to replace " + fDataFile); //$NON-NLS-1$
+		}
+		fBlocks = compacted;
+		fDataLength = end;
+	}
+
+	/**
+	 * Replaces the index file with the current index
+	 *
+	 * @throws IOException if the index cannot be written
+	 */
+	private void writeIndex() throws IOException {
+		File temp = new File(fIndexFile.getParentFile(), fIndexFile.getName() + ".tmp"); //$NON-NLS-1$
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+			out.writeUTF(ApiPlugin.PLUGIN_ID);
+			out.writeUTF(STORE_KIND);
+			out.writeInt(VERSION);
+			out.writeUTF(fVersion);
+			out.writeLong(fTimeStamp);
+			out.writeLong(fDataLength);
+			out.writeInt(fBlocks.size());
+			for (Entry<String, Block> entry : fBlocks.entrySet()) {
+				Block block = entry.getValue();
+				out.writeUTF(entry.getKey());
+				out.writeLong(block.offset);
+				out.writeInt(block.length);
+				out.writeInt(block.crc);
+			}
+		} catch (IOException e) {
+			temp.delete();
+			throw e;
+		}
+		if (fIndexFile.exists()) {
+			fIndexFile.delete();
+		}
+		if (!temp.renameTo(fIndexFile)) {
+			temp.delete();
+			throw new IOException("Unable to replace " + fIndexFile); //$NON-NLS-1$
+		}
+	}
+
+	private static int crc(byte[] bytes) {
+		CRC32 crc = new CRC32();
+		crc.update(bytes, 0, bytes.length);
+		return (int) crc.getValue();
+	}
+}
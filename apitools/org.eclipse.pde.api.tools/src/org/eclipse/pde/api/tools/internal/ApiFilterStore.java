@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2013 IBM Corporation and others.
+ * Copyright (c) 2008, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -19,7 +19,9 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IFolder;
@@ -64,9 +66,86 @@ import org.w3c.dom.Element;
 public class ApiFilterStore extends FilterStore implements IResourceChangeListener {
 
 	/**
-	 * Map used to collect unused {@link IApiProblemFilter}s
+	 * Key of the filters in a {@link FilterIndex}: the path of the resource,
+	 * the id of the problem and the name of the type the problem is on
+	 *
+	 * @since 1.1
+	 */
+	static final class FilterKey {
+		final IPath path;
+		final int id;
+		final String typeName;
+		final int hash;
+
+		FilterKey(IPath path, int id, String typeName) {
+			this.path = path;
+			this.id = id;
+			this.typeName = typeName;
+			this.hash = (path.hashCode() * 31 + id) * 31 + (typeName == null ? 0 : typeName.hashCode());
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj instanceof FilterKey) {
+				FilterKey key = (FilterKey) obj;
+				return id == key.id && path.equals(key.path) && Objects.equals(typeName, key.typeName);
+			}
+			return false;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+	/**
+	 * Immutable index of the filters of the store. Only the message arguments
+	 * of the filters found for a key are compared with the problem, as they do
+	 * not need to match exactly.
+	 *
+	 * @since 1.1
+	 */
+	static final class FilterIndex {
+		final HashMap<FilterKey, IApiProblemFilter[]> filters = new HashMap<>();
+		final HashMap<IApiProblemFilter, IResource> resources = new HashMap<>();
+
+		FilterIndex(Map<IResource, Map<String, Set<IApiProblemFilter>>> filterMap) {
+			HashMap<FilterKey, List<IApiProblemFilter>> lists = new HashMap<>();
+			for (Entry<IResource, Map<String, Set<IApiProblemFilter>>> entry : filterMap.entrySet()) {
+				for (Set<IApiProblemFilter> set : entry.getValue().values()) {
+					for (IApiProblemFilter filter : set) {
+						IApiProblem problem = filter.getUnderlyingProblem();
+						FilterKey key = new FilterKey(new Path(problem.getResourcePath()), problem.getId(), problem.getTypeName());
+						List<IApiProblemFilter> list = lists.get(key);
+						if (list == null) {
+							list = new ArrayList<>(1);
+							lists.put(key, list);
+						}
+						list.add(filter);
+						resources.put(filter, entry.getKey());
+					}
+				}
+			}
+			for (Entry<FilterKey, List<IApiProblemFilter>> entry : lists.entrySet()) {
+				List<IApiProblemFilter> list = entry.getValue();
+				filters.put(entry.getKey(), list.toArray(new IApiProblemFilter[list.size()]));
+			}
+		}
+	}
+
+	/**
+	 * Map used to collect unused {@link IApiProblemFilter}s. Filters are
+	 * removed from it by {@link #isFiltered(IApiProblem)}, which does not lock
+	 * the store.
 	 */
-	private HashMap<IResource, Set<IApiProblemFilter>> fUnusedFilters = null;
+	private volatile Map<IResource, Set<IApiProblemFilter>> fUnusedFilters = null;
+
+	/**
+	 * Index used by {@link #isFiltered(IApiProblem)}, built from
+	 * {@link #fFilterMap} when first needed after a change
+	 */
+	private volatile FilterIndex fIndex = null;
 
 	/**
 	 * The backing {@link IJavaProject}
@@ -209,6 +288,7 @@ public class ApiFilterStore extends FilterStore implements IResourceChangeListen
 			}
 			fNeedsSaving |= pfilters.add(filter);
 		}
+		fIndex = null;
 		persistApiFilters();
 	}
 
@@ -246,28 +326,28 @@ public class ApiFilterStore extends FilterStore implements IResourceChangeListen
 	}
 
 	@Override
-	public synchronized boolean isFiltered(IApiProblem problem) {
-		initializeApiFilters();
+	public boolean isFiltered(IApiProblem problem) {
 		String resourcePath = problem.getResourcePath();
 		if (resourcePath == null) {
 			return false;
 		}
-		IResource resource = fProject.getProject().findMember(new Path(resourcePath));
-		if (resource == null) {
-			if (ApiPlugin.DEBUG_FILTER_STORE) {
-				System.out.println("no resource exists: [" + resourcePath + "]"); //$NON-NLS-1$ //$NON-NLS-2$
-			}
-			return false;
-		}
-		IApiProblemFilter[] filters = this.getFilters(resource);
+		FilterIndex index = getIndex();
+		IApiProblemFilter[] filters = index.filters.get(new FilterKey(new Path(resourcePath), problem.getId(), problem.getTypeName()));
 		if (filters == null) {
 			if (ApiPlugin.DEBUG_FILTER_STORE) {
-				System.out.println("no filters defined for [" + resourcePath + "] return not filtered"); //$NON-NLS-1$ //$NON-NLS-2$
+				System.out.println("no filter defined for problem: [" + problem.toString() + "]"); //$NON-NLS-1$ //$NON-NLS-2$
 			}
 			return false;
 		}
 		for (IApiProblemFilter filter : filters) {
 			if (problemsMatch(filter.getUnderlyingProblem(), problem)) {
+				IResource resource = index.resources.get(filter);
+				if (!resource.exists()) {
+					if (ApiPlugin.DEBUG_FILTER_STORE) {
+						System.out.println("no resource exists: [" + resourcePath + "]"); //$NON-NLS-1$ //$NON-NLS-2$
+					}
+					return false;
+				}
 				if (ApiPlugin.DEBUG_FILTER_STORE) {
 					System.out.println("recording filter used: [" + filter.toString() + "]"); //$NON-NLS-1$ //$NON-NLS-2$
 				}
@@ -281,6 +361,27 @@ public class ApiFilterStore extends FilterStore implements IResourceChangeListen
 		return false;
 	}
 
+	/**
+	 * Returns the index of the filters, building it if the filters changed
+	 * since it was last built
+	 *
+	 * @return the index of the filters
+	 */
+	FilterIndex getIndex() {
+		FilterIndex index = fIndex;
+		if (index == null) {
+			synchronized (this) {
+				initializeApiFilters();
+				index = fIndex;
+				if (index == null) {
+					index = new FilterIndex(fFilterMap);
+					fIndex = index;
+				}
+			}
+		}
+		return index;
+	}
+
 	@Override
 	public void dispose() {
 		// if the store is about to be disposed and has pending changes save
@@ -352,6 +453,7 @@ public class ApiFilterStore extends FilterStore implements IResourceChangeListen
 				success &= false;
 			}
 		}
+		fIndex = null;
 		persistApiFilters();
 		return success;
 	}
@@ -555,6 +657,7 @@ public class ApiFilterStore extends FilterStore implements IResourceChangeListen
 			}
 			fNeedsSaving |= filters.add(filter);
 		}
+		fIndex = null;
 	}
 
 	/**
@@ -598,17 +701,18 @@ public class ApiFilterStore extends FilterStore implements IResourceChangeListen
 	 */
 	public synchronized void recordFilterUsage() {
 		initializeApiFilters();
-		fUnusedFilters = new HashMap<>();
+		Map<IResource, Set<IApiProblemFilter>> unusedFilters = new ConcurrentHashMap<>();
 		Map<String, Set<IApiProblemFilter>> types = null;
 		Set<IApiProblemFilter> values = null;
 		for (IResource resource : fFilterMap.keySet()) {
 			types = fFilterMap.get(resource);
-			values = new HashSet<>();
-			fUnusedFilters.put(resource, values);
+			values = ConcurrentHashMap.newKeySet();
+			unusedFilters.put(resource, values);
 			for (Entry<String, Set<IApiProblemFilter>> entry : types.entrySet()) {
 				values.addAll(entry.getValue());
 			}
 		}
+		fUnusedFilters = unusedFilters;
 	}
 
 	/**
@@ -618,12 +722,12 @@ public class ApiFilterStore extends FilterStore implements IResourceChangeListen
 	 * @param filter
 	 */
 	private void recordFilterUsed(IResource resource, IApiProblemFilter filter) {
-		if (fUnusedFilters != null) {
-			Set<IApiProblemFilter> unused = fUnusedFilters.get(resource);
+		Map<IResource, Set<IApiProblemFilter>> unusedFilters = fUnusedFilters;
+		if (unusedFilters != null) {
+			Set<IApiProblemFilter> unused = unusedFilters.get(resource);
 			if (unused != null) {
-				unused.remove(filter);
-				if (unused.isEmpty()) {
-					fUnusedFilters.remove(resource);
+				if (unused.remove(filter) && unused.isEmpty()) {
+					unusedFilters.remove(resource, unused);
 				}
 			}
 		}
@@ -642,12 +746,13 @@ public class ApiFilterStore extends FilterStore implements IResourceChangeListen
 	 *         <code>null</code>
 	 */
 	public IApiProblemFilter[] getUnusedFilters(IResource resource, String typeName, int[] categories) {
-		if (fUnusedFilters != null) {
+		Map<IResource, Set<IApiProblemFilter>> unusedFilters = fUnusedFilters;
+		if (unusedFilters != null) {
 			Set<IApiProblemFilter> unused = new HashSet<>();
 			Set<IApiProblemFilter> set = null;
 			if (resource != null) {
 				// add any unused filters for the resource
-				set = fUnusedFilters.get(resource);
+				set = unusedFilters.get(resource);
 				if (set != null) {
 					collectFilterFor(set, typeName, unused, categories);
 				}
@@ -657,17 +762,19 @@ public class ApiFilterStore extends FilterStore implements IResourceChangeListen
 					// deleted types are only ever passed in with the manifest
 					// associated with them
 					IResource res = null;
-					for (Entry<IResource, Set<IApiProblemFilter>> entry : fUnusedFilters.entrySet()) {
+					for (Entry<IResource, Set<IApiProblemFilter>> entry : unusedFilters.entrySet()) {
 						res = entry.getKey();
 						if (res == null || !res.exists() || !res.getProject().equals(resource.getProject())) {
 							continue;
 						}
-						set = fUnusedFilters.get(res);
-						collectFilterFor(set, typeName, unused, categories);
+						set = entry.getValue();
+						if (set != null) {
+							collectFilterFor(set, typeName, unused, categories);
+						}
 					}
 				}
 			} else {
-				for (Entry<IResource, Set<IApiProblemFilter>> entry : fUnusedFilters.entrySet()) {
+				for (Entry<IResource, Set<IApiProblemFilter>> entry : unusedFilters.entrySet()) {
 					set = entry.getValue();
 					if (set != null) {
 						unused.addAll(set);
@@ -760,9 +867,12 @@ public class ApiFilterStore extends FilterStore implements IResourceChangeListen
 				if (ApiPlugin.DEBUG_FILTER_STORE) {
 					System.out.println("processed REMOVED delta"); //$NON-NLS-1$
 				}
-				if (fFilterMap != null) {
-					fFilterMap.clear();
-					needsbuild = fProject.getProject().isAccessible();
+				synchronized (this) {
+					if (fFilterMap != null) {
+						fFilterMap.clear();
+						fIndex = null;
+						needsbuild = fProject.getProject().isAccessible();
+					}
 				}
 			} else if (leafdelta.getKind() == IResourceDelta.ADDED || (leafdelta.getFlags() & IResourceDelta.CONTENT) != 0 || (leafdelta.getFlags() & IResourceDelta.REPLACED) != 0) {
 				if (ApiPlugin.DEBUG_FILTER_STORE) {
@@ -798,5 +908,6 @@ public class ApiFilterStore extends FilterStore implements IResourceChangeListen
 			fFilterMap.clear();
 			fFilterMap = null;
 		}
+		fIndex = null;
 	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2014 IBM Corporation and others.
+ * Copyright (c) 2008, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -40,6 +40,7 @@ public class CoreMessages extends NLS {
 	public static String JavadocTagManager_method_no_overried;
 	public static String JavadocTagManager_method_no_reference;
 	public static String ProjectComponent_could_not_locate_model;
+	public static String WorkspaceDeltaProcessor_0;
 	static {
 		// initialize resource bundle
 		NLS.initializeMessages(BUNDLE_NAME, CoreMessages.class);
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2013 IBM Corporation and others.
+ * Copyright (c) 2008, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,11 +10,19 @@
  *******************************************************************************/
 package org.eclipse.pde.api.tools.internal;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.jar.JarFile;
 
@@ -32,6 +40,7 @@ import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.IPackageFragment;
 import org.eclipse.jdt.core.IPackageFragmentRoot;
 import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.JavaModelException;
 import org.eclipse.pde.api.tools.internal.builder.BuildStamps;
 import org.eclipse.pde.api.tools.internal.model.BundleComponent;
@@ -87,6 +96,17 @@ public class ProjectApiDescription extends ApiDescription {
 	 */
 	private boolean fInSynch = false;
 
+	/**
+	 * Store the description was restored from or last saved to, or
+	 * <code>null</code>
+	 */
+	private ApiDescriptionStore fStore = null;
+
+	/**
+	 * Names of the packages of the store that have not been restored yet
+	 */
+	private Set<String> fStoredPackages = new HashSet<>();
+
 	/**
 	 * A node for a package.
 	 */
@@ -134,6 +154,19 @@ public class ProjectApiDescription extends ApiDescription {
 			}
 		}
 
+		@Override
+		void persistBinary(DataOutputStream out) throws IOException {
+			if (hasApiVisibility(this)) {
+				out.writeByte(PACKAGE_NODE);
+				out.writeInt(this.visibility);
+				out.writeInt(fFragments.length);
+				for (IPackageFragment fFragment : fFragments) {
+					out.writeUTF(fFragment.getHandleIdentifier());
+				}
+				persistChildren(out, children);
+			}
+		}
+
 		@Override
 		public String toString() {
 			StringBuffer buffer = new StringBuffer();
@@ -308,6 +341,18 @@ public class ProjectApiDescription extends ApiDescription {
 			}
 		}
 
+		@Override
+		void persistBinary(DataOutputStream out) throws IOException {
+			if (hasApiVisibility(this)) {
+				out.writeByte(TYPE_NODE);
+				out.writeUTF(fType.getHandleIdentifier());
+				out.writeInt(this.visibility);
+				out.writeInt(this.restrictions);
+				out.writeLong(fTimeStamp);
+				persistChildren(out, children);
+			}
+		}
+
 		@Override
 		public String toString() {
 			StringBuffer buffer = new StringBuffer();
@@ -333,7 +378,43 @@ public class ProjectApiDescription extends ApiDescription {
 	}
 
 	@Override
-	public synchronized void accept(ApiDescriptionVisitor visitor, IProgressMonitor monitor) {
+	public void accept(ApiDescriptionVisitor visitor, IProgressMonitor monitor) {
+		applyPendingChanges();
+		visitProject(visitor, monitor);
+	}
+
+	@Override
+	public boolean accept(ApiDescriptionVisitor visitor, IElementDescriptor element, IProgressMonitor monitor) {
+		applyPendingChanges();
+		return super.accept(visitor, element, monitor);
+	}
+
+	@Override
+	public IApiAnnotations resolveAnnotations(IElementDescriptor element) {
+		applyPendingChanges();
+		return super.resolveAnnotations(element);
+	}
+
+	/**
+	 * Applies the pending workspace changes before this description is read,
+	 * so that a description obtained before the changes is not read stale.
+	 * Nothing is applied while this thread holds the lock of the description,
+	 * which applying the changes may need.
+	 */
+	private void applyPendingChanges() {
+		if (!Thread.holdsLock(this)) {
+			WorkspaceDeltaProcessor.flushPendingChanges();
+		}
+	}
+
+	/**
+	 * Visits the packages and types of the project, building the cache if it
+	 * is not in synch with the project.
+	 *
+	 * @param visitor
+	 * @param monitor
+	 */
+	private synchronized void visitProject(ApiDescriptionVisitor visitor, IProgressMonitor monitor) {
 		boolean completeVisit = true;
 		if (fInSynch) {
 			super.accept(visitor, monitor);
@@ -426,6 +507,10 @@ public class ProjectApiDescription extends ApiDescription {
 	protected ManifestNode createNode(ManifestNode parentNode, IElementDescriptor element) {
 		switch (element.getElementType()) {
 			case IElementDescriptor.PACKAGE:
+				ManifestNode stored = restorePackage(((IPackageDescriptor) element).getName());
+				if (stored != null) {
+					return stored;
+				}
 				try {
 					IPackageDescriptor pkg = (IPackageDescriptor) element;
 					IPackageFragmentRoot[] roots = getJavaProject().getPackageFragmentRoots();
@@ -565,6 +650,7 @@ public class ProjectApiDescription extends ApiDescription {
 				fRefreshingInProgress = true;
 				// set all existing packages to PRIVATE (could clear
 				// the map, but it would be less efficient)
+				restoreStoredPackages();
 				Iterator<ManifestNode> iterator = fPackageMap.values().iterator();
 				while (iterator.hasNext()) {
 					PackageNode node = (PackageNode) iterator.next();
@@ -684,11 +770,175 @@ public class ProjectApiDescription extends ApiDescription {
 		}
 	}
 
+	/**
+	 * Persists the nodes in the given map, followed by an end marker.
+	 *
+	 * @param out the stream to write to
+	 * @param elementMap elements to persist
+	 * @throws IOException if the nodes cannot be written
+	 */
+	void persistChildren(DataOutputStream out, Map<IElementDescriptor, ManifestNode> elementMap) throws IOException {
+		for (ManifestNode node : elementMap.values()) {
+			node.persistBinary(out);
+		}
+		out.writeByte(END_NODE);
+	}
+
+	/**
+	 * Restores the packages of this description lazily from the given store:
+	 * each package is read from the store the first time it is looked up.
+	 *
+	 * @param store the store the description was saved to
+	 */
+	synchronized void setStore(ApiDescriptionStore store) {
+		fStore = store;
+		fStoredPackages = store.getPackageNames();
+	}
+
+	/**
+	 * Saves this API description to the store in the given directory. Only
+	 * the packages that have been restored or created since the description
+	 * was restored are written, and only if they changed.
+	 *
+	 * @param directory the directory of the store
+	 * @return the number of packages written
+	 * @throws IOException if the description cannot be saved
+	 */
+	synchronized int save(File directory) throws IOException {
+		Map<String, byte[]> blocks = new HashMap<>();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		for (Entry<IElementDescriptor, ManifestNode> entry : fPackageMap.entrySet()) {
+			bytes.reset();
+			DataOutputStream out = new DataOutputStream(bytes);
+			entry.getValue().persistBinary(out);
+			out.flush();
+			if (bytes.size() > 0) {
+				blocks.put(((IPackageDescriptor) entry.getKey()).getName(), bytes.toByteArray());
+			}
+		}
+		if (fStore == null) {
+			fStore = new ApiDescriptionStore(directory);
+		}
+		return fStore.save(IApiXmlConstants.API_DESCRIPTION_CURRENT_VERSION, fPackageTimeStamp, blocks, fStoredPackages);
+	}
+
+	/**
+	 * Restores the given package from the store, if it has not been restored
+	 * yet
+	 *
+	 * @param packageName the name of the package
+	 * @return the restored node or <code>null</code> if the package is not in
+	 *         the store or cannot be restored
+	 */
+	synchronized ManifestNode restorePackage(String packageName) {
+		if (fStore == null || !fStoredPackages.remove(packageName)) {
+			return null;
+		}
+		try {
+			byte[] block = fStore.read(packageName);
+			if (block != null) {
+				return restorePackage(packageName, new DataInputStream(new ByteArrayInputStream(block)));
+			}
+		} catch (CoreException e) {
+			ApiPlugin.log(e.getStatus());
+		} catch (IOException e) {
+			ApiPlugin.log(new Status(IStatus.ERROR, ApiPlugin.PLUGIN_ID, "Unable to restore API description of package " + packageName, e)); //$NON-NLS-1$
+		}
+		return null;
+	}
+
+	/**
+	 * Restores all the packages of the store that have not been restored yet
+	 */
+	private synchronized void restoreStoredPackages() {
+		if (fStoredPackages.isEmpty()) {
+			return;
+		}
+		for (String packageName : new ArrayList<>(fStoredPackages)) {
+			ManifestNode node = restorePackage(packageName);
+			if (node != null) {
+				fPackageMap.put(node.element, node);
+			}
+		}
+	}
+
+	private ManifestNode restorePackage(String packageName, DataInputStream in) throws IOException {
+		if (in.readByte() != PACKAGE_NODE) {
+			throw new IOException("Not a package: " + packageName); //$NON-NLS-1$
+		}
+		int vis = in.readInt();
+		IPackageFragment[] fragments = new IPackageFragment[in.readInt()];
+		for (int i = 0; i < fragments.length; i++) {
+			String handle = in.readUTF();
+			IJavaElement je = JavaCore.create(handle);
+			if (je == null || je.getElementType() != IJavaElement.PACKAGE_FRAGMENT) {
+				throw new IOException("Not a package fragment: " + handle); //$NON-NLS-1$
+			}
+			fragments[i] = (IPackageFragment) je;
+		}
+		PackageNode node = newPackageNode(fragments, null, Factory.packageDescriptor(packageName), vis, RestrictionModifiers.NO_RESTRICTIONS);
+		restoreChildren(in, node);
+		return node;
+	}
+
+	private void restoreChildren(DataInputStream in, ManifestNode parentNode) throws IOException {
+		byte kind = in.readByte();
+		while (kind != END_NODE) {
+			ManifestNode node = null;
+			switch (kind) {
+				case TYPE_NODE: {
+					String handle = in.readUTF();
+					int vis = in.readInt();
+					int res = in.readInt();
+					IJavaElement je = JavaCore.create(handle);
+					if (je == null || je.getElementType() != IJavaElement.TYPE) {
+						throw new IOException("Not a type: " + handle); //$NON-NLS-1$
+					}
+					IType type = (IType) je;
+					TypeNode tn = newTypeNode(type, parentNode, Factory.typeDescriptor(type.getFullyQualifiedName('$')), vis, res);
+					tn.fTimeStamp = in.readLong();
+					node = tn;
+					break;
+				}
+				case METHOD_NODE: {
+					String name = in.readUTF();
+					String sig = in.readUTF();
+					int vis = in.readInt();
+					int res = in.readInt();
+					if (parentNode.element instanceof IReferenceTypeDescriptor) {
+						node = newNode(parentNode, ((IReferenceTypeDescriptor) parentNode.element).getMethod(name, sig), vis, res);
+					}
+					break;
+				}
+				case FIELD_NODE: {
+					String name = in.readUTF();
+					int vis = in.readInt();
+					int res = in.readInt();
+					if (parentNode.element instanceof IReferenceTypeDescriptor) {
+						node = newNode(parentNode, ((IReferenceTypeDescriptor) parentNode.element).getField(name), vis, res);
+					}
+					break;
+				}
+				default:
+					throw new IOException("Unknown node kind: " + kind); //$NON-NLS-1$
+			}
+			if (node == null) {
+				throw new IOException("Member without a type: " + parentNode); //$NON-NLS-1$
+			}
+			parentNode.children.put(node.element, node);
+			if (kind == TYPE_NODE) {
+				restoreChildren(in, node);
+			}
+			kind = in.readByte();
+		}
+	}
+
 	/**
 	 * Cleans this API description so it will be re-populated with fresh data.
 	 */
 	public synchronized void clean() {
 		fPackageMap.clear();
+		fStoredPackages.clear();
 		fPackageTimeStamp = -1L;
 		fInSynch = false;
 		modified();
@@ -727,7 +977,9 @@ public class ProjectApiDescription extends ApiDescription {
 	 * @exception CoreException if the API component cannot be located
 	 */
 	private ProjectComponent getApiComponent() throws CoreException {
-		IApiBaseline baseline = ApiBaselineManager.getManager().getWorkspaceBaseline();
+		// the lock of this description may be held: use the baseline without
+		// applying the pending workspace changes
+		IApiBaseline baseline = ApiBaselineManager.getManager().getCurrentWorkspaceBaseline();
 		ProjectComponent component = (ProjectComponent) baseline.getApiComponent(getJavaProject().getProject());
 		if (component == null) {
 			throw new CoreException(new Status(IStatus.ERROR, ApiPlugin.PLUGIN_ID, "Unable to resolve project API component for API description")); //$NON-NLS-1$
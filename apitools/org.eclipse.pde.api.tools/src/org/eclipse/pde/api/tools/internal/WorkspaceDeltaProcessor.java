@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010, 2013 IBM Corporation and others.
+ * Copyright (c) 2010, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,13 +10,24 @@
  *******************************************************************************/
 package org.eclipse.pde.api.tools.internal;
 
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
 import org.eclipse.pde.api.tools.internal.builder.BuildState;
-import org.eclipse.pde.api.tools.internal.model.ApiBaseline;
 import org.eclipse.pde.api.tools.internal.provisional.ApiPlugin;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiBaseline;
 import org.eclipse.pde.api.tools.internal.util.Util;
 
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
@@ -36,14 +47,291 @@ import org.eclipse.jdt.core.JavaCore;
 /**
  * Standard delta processor for us to track element state changes in the workspace
  * using {@link IJavaElementDelta}s and {@link IResourceDelta}s.
+ * <p>
+ * Deltas are not applied to the models as they arrive: the invalidations they
+ * call for are queued and merged per project, and applied in one batch, so
+ * that the workspace baseline is disposed at most once per batch however many
+ * projects changed. The pending invalidations are applied before a build, when
+ * the workspace baseline or an API description is requested or read, and
+ * otherwise {@link #FLUSH_DELAY} milliseconds after the last delta.
+ * </p>
  *
  * @since 1.1
  */
 public class WorkspaceDeltaProcessor implements IElementChangedListener, IResourceChangeListener {
 
+	/**
+	 * Delay in milliseconds after the last delta before pending invalidations
+	 * are applied if nothing requests the models first
+	 */
+	static final long FLUSH_DELAY = 500;
+
+	/*
+	 * Invalidations merged per project
+	 */
+	static final int PROJECT_CHANGED = 0x1;
+	static final int CLASSPATH_CHANGED = 0x2;
+	static final int RESET_BUILD_STATE = 0x4;
+	static final int FLUSH_COMPONENT = 0x8;
+	static final int REMOVE_DESCRIPTION = 0x10;
+	static final int DELETE_DESCRIPTION = 0x20;
+
+	/**
+	 * The invalidations pending for one project
+	 */
+	static class PendingChanges {
+		int flags = 0;
+		/**
+		 * Compilation units to flush from the model cache
+		 */
+		Set<IJavaElement> units = new LinkedHashSet<>();
+	}
+
+	/**
+	 * The processor registered with the workspace, or <code>null</code>
+	 */
+	private static volatile WorkspaceDeltaProcessor fgDefault = null;
+
 	ApiBaselineManager bmanager = ApiBaselineManager.getManager();
 	ApiDescriptionManager dmanager = ApiDescriptionManager.getManager();
 
+	private Map<IJavaProject, PendingChanges> fPending = new LinkedHashMap<>();
+	private boolean fDisposeBaseline = false;
+	private Set<String> fRemovedPackages = new HashSet<>();
+
+	/**
+	 * Held while a batch of pending invalidations is applied
+	 */
+	private final Object fFlushLock = new Object();
+
+	/**
+	 * Set when invalidations are queued and cleared when they are taken from
+	 * the queue, so that {@link #flush()} returns without locking when
+	 * nothing is pending
+	 */
+	private volatile boolean fDirty = false;
+
+	/**
+	 * Set while a batch of invalidations taken from the queue is applied
+	 */
+	private volatile boolean fApplying = false;
+
+	private final Job fFlushJob = new Job(CoreMessages.WorkspaceDeltaProcessor_0) {
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			flush();
+			return Status.OK_STATUS;
+		}
+	};
+
+	/**
+	 * Constructor, the new processor becoming the one whose pending
+	 * invalidations are applied by {@link #flushPendingChanges()}
+	 */
+	public WorkspaceDeltaProcessor() {
+		fFlushJob.setSystem(true);
+		fgDefault = this;
+	}
+
+	/**
+	 * Applies the invalidations pending in the registered processor, if any.
+	 * Called before the models are read.
+	 */
+	static void flushPendingChanges() {
+		WorkspaceDeltaProcessor processor = fgDefault;
+		if (processor != null) {
+			processor.flush();
+		}
+	}
+
+	/**
+	 * Applies the pending invalidations and stops queuing new ones
+	 */
+	public void dispose() {
+		fFlushJob.cancel();
+		flush();
+		if (fgDefault == this) {
+			fgDefault = null;
+		}
+	}
+
+	/**
+	 * Returns the pending invalidations of the given project, scheduling them
+	 * to be applied. Callers hold the lock of the queue.
+	 *
+	 * @param project
+	 * @return the pending invalidations of the project
+	 */
+	private PendingChanges pending(IJavaProject project) {
+		PendingChanges changes = fPending.get(project);
+		if (changes == null) {
+			changes = new PendingChanges();
+			fPending.put(project, changes);
+		}
+		fDirty = true;
+		schedule();
+		return changes;
+	}
+
+	/**
+	 * Queues invalidations of the given project
+	 *
+	 * @param project
+	 * @param flags the invalidations to apply
+	 */
+	void queue(IJavaProject project, int flags) {
+		if (project == null) {
+			return;
+		}
+		synchronized (fPending) {
+			pending(project).flags |= flags;
+		}
+	}
+
+	/**
+	 * Queues the flush of the given compilation unit from the model cache,
+	 * along with the change of its project
+	 *
+	 * @param project
+	 * @param unit
+	 */
+	void queueUnit(IJavaProject project, IJavaElement unit) {
+		if (project == null) {
+			return;
+		}
+		synchronized (fPending) {
+			PendingChanges changes = pending(project);
+			changes.flags |= PROJECT_CHANGED;
+			changes.units.add(unit);
+		}
+	}
+
+	/**
+	 * Queues the disposal of the workspace baseline
+	 */
+	void queueDisposeBaseline() {
+		synchronized (fPending) {
+			fDisposeBaseline = true;
+			fDirty = true;
+			schedule();
+		}
+	}
+
+	/**
+	 * Queues the removal of the given package from the caches of the
+	 * workspace baseline
+	 *
+	 * @param packageName
+	 */
+	void queueRemovedPackage(String packageName) {
+		synchronized (fPending) {
+			fRemovedPackages.add(packageName);
+			fDirty = true;
+			schedule();
+		}
+	}
+
+	/**
+	 * (Re)schedules the application of the pending invalidations, so that it
+	 * happens once the deltas stop coming
+	 */
+	private void schedule() {
+		if (fgDefault == this) {
+			fFlushJob.cancel();
+			fFlushJob.schedule(FLUSH_DELAY);
+		}
+	}
+
+	/**
+	 * Applies all the pending invalidations in one batch. Nothing is applied
+	 * by a thread in the middle of using one of the managers, such as while
+	 * creating the workspace baseline: the invalidations stay pending until
+	 * the next flush.
+	 * <p>
+	 * A batch is applied holding the flush lock, so that a reader finding the
+	 * queue empty waits for the batch in progress instead of reading models
+	 * it is about to invalidate. The workspace baseline is detached from its
+	 * manager within the batch but disposed, like the packages removed from
+	 * its caches, once the lock is released: both need the locks of the
+	 * baseline and its components, which a waiting reader may hold.
+	 * </p>
+	 * <p>
+	 * Readers call this method before each read, so it returns without
+	 * taking any lock when the queue is empty and no batch is being applied.
+	 * </p>
+	 */
+	void flush() {
+		// a batch sets fApplying before clearing fDirty, read them the other
+		// way around
+		if (!fDirty && !fApplying) {
+			return;
+		}
+		if (Thread.holdsLock(bmanager) || Thread.holdsLock(dmanager)) {
+			return;
+		}
+		IApiBaseline detached = null;
+		Set<String> removedPackages;
+		synchronized (fFlushLock) {
+			Map<IJavaProject, PendingChanges> pending;
+			boolean disposeBaseline;
+			synchronized (fPending) {
+				if (fPending.isEmpty() && !fDisposeBaseline && fRemovedPackages.isEmpty()) {
+					fDirty = false;
+					return;
+				}
+				fApplying = true;
+				fDirty = false;
+				pending = new LinkedHashMap<>(fPending);
+				fPending.clear();
+				disposeBaseline = fDisposeBaseline;
+				fDisposeBaseline = false;
+				removedPackages = new HashSet<>(fRemovedPackages);
+				fRemovedPackages.clear();
+			}
+			try {
+				long time = System.currentTimeMillis();
+				if (disposeBaseline) {
+					detached = bmanager.detachWorkspaceBaseline();
+				}
+				for (Entry<IJavaProject, PendingChanges> entry : pending.entrySet()) {
+					IJavaProject project = entry.getKey();
+					PendingChanges changes = entry.getValue();
+					if ((changes.flags & (REMOVE_DESCRIPTION | DELETE_DESCRIPTION)) != 0) {
+						dmanager.clean(project, (changes.flags & DELETE_DESCRIPTION) != 0, true);
+					}
+					if ((changes.flags & CLASSPATH_CHANGED) != 0) {
+						dmanager.projectClasspathChanged(project);
+					}
+					if ((changes.flags & RESET_BUILD_STATE) != 0) {
+						try {
+							BuildState.setLastBuiltState(project.getProject(), null);
+						} catch (CoreException e) {
+						}
+					}
+					if ((changes.flags & PROJECT_CHANGED) != 0) {
+						dmanager.projectChanged(project);
+					}
+					if ((changes.flags & FLUSH_COMPONENT) != 0) {
+						dmanager.flushElementCache(project);
+					}
+					for (IJavaElement unit : changes.units) {
+						dmanager.flushElementCache(unit);
+					}
+				}
+				if (ApiPlugin.DEBUG_WORKSPACE_DELTA_PROCESSOR) {
+					System.out.println("--> applied pending changes of " + pending.size() + " projects in " + (System.currentTimeMillis() - time) + "ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				}
+			} finally {
+				fApplying = false;
+			}
+		}
+		if (detached != null) {
+			bmanager.disposeWorkspaceBaseline(detached);
+		} else if (!removedPackages.isEmpty()) {
+			bmanager.clearWorkspacePackages(removedPackages);
+		}
+	}
+
 	@Override
 	public void elementChanged(ElementChangedEvent event) {
 		processJavaElementDeltas(event.getDelta().getAffectedChildren(), null);
@@ -72,18 +360,13 @@ public class WorkspaceDeltaProcessor implements IElementChangedListener, IResour
 								if (ApiPlugin.DEBUG_WORKSPACE_DELTA_PROCESSOR) {
 									System.out.println("--> processing OPEN project: [" + proj.getElementName() + "]"); //$NON-NLS-1$ //$NON-NLS-2$
 								}
-								bmanager.disposeWorkspaceBaseline();
+								queueDisposeBaseline();
 							} else if ((flags & IJavaElementDelta.F_RESOLVED_CLASSPATH_CHANGED) != 0 || (flags & IJavaElementDelta.F_CLASSPATH_CHANGED) != 0) {
 								if (ApiPlugin.DEBUG_WORKSPACE_DELTA_PROCESSOR) {
 									System.out.println("--> processing CLASSPATH CHANGE project: [" + proj.getElementName() + "]"); //$NON-NLS-1$ //$NON-NLS-2$
 								}
-								bmanager.disposeWorkspaceBaseline();
-								dmanager.projectClasspathChanged(proj);
-								try {
-									BuildState.setLastBuiltState(proj.getProject(), null);
-								} catch (CoreException e) {
-								}
-								dmanager.flushElementCache(delta.getElement());
+								queueDisposeBaseline();
+								queue(proj, CLASSPATH_CHANGED | RESET_BUILD_STATE | FLUSH_COMPONENT);
 							} else if ((flags & IJavaElementDelta.F_CHILDREN) != 0) {
 								if (ApiPlugin.DEBUG_WORKSPACE_DELTA_PROCESSOR) {
 									System.out.println("--> processing CHILDREN delta of project: [" + proj.getElementName() + "]"); //$NON-NLS-1$ //$NON-NLS-2$
@@ -103,7 +386,7 @@ public class WorkspaceDeltaProcessor implements IElementChangedListener, IResour
 												if (ApiPlugin.DEBUG_WORKSPACE_DELTA_PROCESSOR) {
 													System.out.println("--> processing manifest delta"); //$NON-NLS-1$
 												}
-												bmanager.disposeWorkspaceBaseline();
+												queueDisposeBaseline();
 												break;
 											}
 										}
@@ -127,7 +410,7 @@ public class WorkspaceDeltaProcessor implements IElementChangedListener, IResour
 								if (ApiPlugin.DEBUG_WORKSPACE_DELTA_PROCESSOR) {
 									System.out.println("--> processing PROJECT RENAME from: [" + delta.getMovedFromElement().getJavaProject().getElementName() + "] to: [" + proj.getElementName() + "]"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 								}
-								bmanager.disposeWorkspaceBaseline();
+								queueDisposeBaseline();
 							}
 							break;
 						}
@@ -143,7 +426,7 @@ public class WorkspaceDeltaProcessor implements IElementChangedListener, IResour
 						if (ApiPlugin.DEBUG_WORKSPACE_DELTA_PROCESSOR) {
 							System.out.println("processed CLASSPATH CHANGED for package fragment root: [" + root.getElementName() + "]"); //$NON-NLS-1$ //$NON-NLS-2$
 						}
-						dmanager.projectClasspathChanged(project);
+						queue(project, CLASSPATH_CHANGED);
 					}
 					if ((flags & IJavaElementDelta.F_CHILDREN) != 0) {
 						if (ApiPlugin.DEBUG_WORKSPACE_DELTA_PROCESSOR) {
@@ -159,7 +442,7 @@ public class WorkspaceDeltaProcessor implements IElementChangedListener, IResour
 						if (ApiPlugin.DEBUG_WORKSPACE_DELTA_PROCESSOR) {
 							System.out.println("processed REMOVED delta for package fragment: [" + fragment.getElementName() + "]"); //$NON-NLS-1$ //$NON-NLS-2$
 						}
-						((ApiBaseline) bmanager.getWorkspaceBaseline()).clearPackage(fragment.getElementName());
+						queueRemovedPackage(fragment.getElementName());
 					}
 					int flags = delta.getFlags();
 					if ((flags & IJavaElementDelta.F_CHILDREN) != 0) {
@@ -179,8 +462,7 @@ public class WorkspaceDeltaProcessor implements IElementChangedListener, IResour
 									if (ApiPlugin.DEBUG_WORKSPACE_DELTA_PROCESSOR) {
 										System.out.println("processed CONTENT / FINE_GRAINED / PRIMARY_RESOURCE delta for: [" + delta.getElement().getElementName() + "]"); //$NON-NLS-1$//$NON-NLS-2$
 									}
-									dmanager.projectChanged(project);
-									dmanager.flushElementCache(delta.getElement());
+									queueUnit(project, delta.getElement());
 									continue;
 								}
 							}
@@ -196,8 +478,7 @@ public class WorkspaceDeltaProcessor implements IElementChangedListener, IResour
 										System.out.println("processed REMOVED delta for: [" + delta.getElement().getElementName() + "]"); //$NON-NLS-1$//$NON-NLS-2$
 									}
 								}
-								dmanager.projectChanged(project);
-								dmanager.flushElementCache(delta.getElement());
+								queueUnit(project, delta.getElement());
 								continue;
 							}
 							break;
@@ -235,14 +516,16 @@ public class WorkspaceDeltaProcessor implements IElementChangedListener, IResour
 							if (Util.isApiProject(project) || Util.isJavaProject(project)) {
 								if ((element.getFlags() & IResourceDelta.DESCRIPTION) != 0) {
 									IJavaProject jp = (IJavaProject) JavaCore.create(resource);
-									dmanager.clean(jp, true, true);
-									bmanager.disposeWorkspaceBaseline();
+									queue(jp, DELETE_DESCRIPTION);
+									queueDisposeBaseline();
 									break;
 								}
 							}
 						}
 					}
 				}
+				// apply everything pending before anything is built
+				flush();
 				break;
 			}
 			case IResourceChangeEvent.PRE_CLOSE:
@@ -259,10 +542,11 @@ public class WorkspaceDeltaProcessor implements IElementChangedListener, IResour
 								}
 							}
 						}
-						bmanager.disposeWorkspaceBaseline();
+						queueDisposeBaseline();
 						IJavaProject javaProject = (IJavaProject) JavaCore.create(resource);
-						dmanager.clean(javaProject, false, true);
-						dmanager.flushElementCache(javaProject);
+						queue(javaProject, REMOVE_DESCRIPTION | FLUSH_COMPONENT);
+						// the project must be released before it goes away
+						flush();
 					}
 				}
 				break;
@@ -66,6 +66,7 @@ import org.eclipse.osgi.util.NLS;
 import org.eclipse.pde.api.tools.internal.ApiBaselineManager;
 import org.eclipse.pde.api.tools.internal.ApiFilterStore;
 import org.eclipse.pde.api.tools.internal.IApiCoreConstants;
+import org.eclipse.pde.api.tools.internal.comparator.ContentHashComparator;
 import org.eclipse.pde.api.tools.internal.comparator.Delta;
 import org.eclipse.pde.api.tools.internal.model.ProjectComponent;
 import org.eclipse.pde.api.tools.internal.model.StubApiComponent;
@@ -133,7 +134,7 @@ public class BaseApiAnalyzer implements IApiAnalyzer {
 	}
 
 	/**
-	 * The backing list of problems found so far
+	 * The backing list of problems found so far, guarded by itself
 	 */
 	private ArrayList<IApiProblem> fProblems = new ArrayList<>(25);
 
@@ -583,11 +584,13 @@ public class BaseApiAnalyzer implements IApiAnalyzer {
 	 */
 	private void checkCompatibility(String[] changedtypes, IApiComponent reference, IApiComponent component, SubMonitor localMonitor) throws CoreException {
 		localMonitor.setWorkRemaining(changedtypes.length);
+		// share the fingerprints of common super types between the types
+		ContentHashComparator contentHashes = new ContentHashComparator();
 		for (String changedtype : changedtypes) {
 			if (changedtype == null) {
 				continue;
 			}
-			checkCompatibility(changedtype, reference, component, localMonitor.split(1));
+			checkCompatibility(changedtype, reference, component, contentHashes, localMonitor.split(1));
 		}
 	}
 
@@ -884,7 +887,9 @@ public class BaseApiAnalyzer implements IApiAnalyzer {
 		if (fProblems == null) {
 			return new IApiProblem[0];
 		}
-		return fProblems.toArray(new IApiProblem[fProblems.size()]);
+		synchronized (fProblems) {
+			return fProblems.toArray(new IApiProblem[fProblems.size()]);
+		}
 	}
 
 	@Override
@@ -1231,9 +1236,11 @@ public class BaseApiAnalyzer implements IApiAnalyzer {
 	 * @param typeName the type to check in each component
 	 * @param reference
 	 * @param component
+	 * @param contentHashes the comparator of fingerprints shared by the types
+	 *            of the component
 	 * @param monitor
 	 */
-	private void checkCompatibility(final String typeName, final IApiComponent reference, final IApiComponent component, IProgressMonitor monitor) throws CoreException {
+	private void checkCompatibility(final String typeName, final IApiComponent reference, final IApiComponent component, final ContentHashComparator contentHashes, IProgressMonitor monitor) throws CoreException {
 		String id = component.getSymbolicName();
 		if (ApiPlugin.DEBUG_API_ANALYZER) {
 			System.out.println("comparing components [" + reference.getSymbolicName() + "] and [" + id + "] for type [" + typeName + "]"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
@@ -1335,7 +1342,7 @@ public class BaseApiAnalyzer implements IApiAnalyzer {
 				if (reexported) {
 					exporter = component;
 				}
-				delta = ApiComparator.compare(classFile, reference, provider, exporter, reference.getBaseline(), provider.getBaseline(), VisibilityModifiers.API, subMonitor.split(1));
+				delta = ApiComparator.compare(classFile, reference, provider, exporter, reference.getBaseline(), provider.getBaseline(), VisibilityModifiers.API, contentHashes, subMonitor.split(1));
 			} catch (OperationCanceledException oce) {
 				// do nothing, but don't forward it
 				// https://bugs.eclipse.org/bugs/show_bug.cgi?id=304315
@@ -2200,7 +2207,9 @@ public class BaseApiAnalyzer implements IApiAnalyzer {
 		if (problem == null || isProblemFiltered(problem)) {
 			return false;
 		}
-		return fProblems.add(problem);
+		synchronized (fProblems) {
+			return fProblems.add(problem);
+		}
 	}
 
 	/**
@@ -12,13 +12,19 @@ package org.eclipse.pde.api.tools.internal.builder;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -57,7 +63,59 @@ import org.eclipse.pde.core.build.IBuildModel;
 public class BuildState {
 	private static final IDelta[] EMPTY_DELTAS = new IDelta[0];
 	private static final String[] NO_REEXPORTED_COMPONENTS = new String[0];
-	private static final int VERSION = 33;
+	private static final int VERSION = 35;
+
+	/**
+	 * Section identifiers, written to the section index of the state file in
+	 * this order
+	 */
+	static final int SECTION_BUILD_PATH_CRC = 0;
+	static final int SECTION_COMPATIBLE_CHANGES = 1;
+	static final int SECTION_BREAKING_CHANGES = 2;
+	static final int SECTION_REEXPORTED_COMPONENTS = 3;
+	static final int SECTION_DEPENDENT_PROJECTS = 4;
+	static final int SECTION_MANIFEST = 5;
+	static final int SECTION_BUILD_PROPERTIES = 6;
+	static final int SECTION_COUNT = 7;
+
+	private static final int ALL_SECTIONS = (1 << SECTION_COUNT) - 1;
+
+	/**
+	 * Input stream over the remaining bytes of a {@link ByteBuffer}
+	 *
+	 * @since 1.1
+	 */
+	static class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer fBuffer;
+
+		ByteBufferInputStream(ByteBuffer buffer) {
+			fBuffer = buffer;
+		}
+
+		@Override
+		public int read() throws IOException {
+			return fBuffer.hasRemaining() ? fBuffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			if (!fBuffer.hasRemaining()) {
+				return -1;
+			}
+			int count = Math.min(len, fBuffer.remaining());
+			fBuffer.get(b, off, count);
+			return count;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return fBuffer.remaining();
+		}
+	}
 
 	private Map<String, Set<IDelta>> compatibleChanges;
 	private Map<String, Set<IDelta>> breakingChanges;
@@ -78,7 +136,30 @@ public class BuildState {
 	private long buildpathCRC = -1L;
 
 	/**
-	 * Constructor
+	 * The serialized sections this state was read from, or <code>null</code>
+	 * once every section has been decoded
+	 *
+	 * @since 1.1
+	 */
+	private ByteBuffer source;
+	/**
+	 * The offset and length of each section in {@link #source}, indexed by
+	 * section identifier. Sections missing from the source have a length of
+	 * <code>-1</code>
+	 *
+	 * @since 1.1
+	 */
+	private int[] sectionOffsets;
+	private int[] sectionLengths;
+	/**
+	 * Bit mask of the sections that have been decoded or overwritten
+	 *
+	 * @since 1.1
+	 */
+	private int loadedSections = ALL_SECTIONS;
+
+	/**
+	 * Constructor for an empty state
 	 */
 	BuildState() {
 		this.compatibleChanges = new HashMap<>();
@@ -88,13 +169,136 @@ public class BuildState {
 	}
 
 	/**
-	 * Reads the build state from an input stream
+	 * Reads the build state from an input stream. All sections are read and
+	 * checked against their checksums, only their decoding is deferred until
+	 * they are first accessed.
 	 *
 	 * @param in
 	 * @return the {@link BuildState} from the given input stream
 	 * @throws IOException
 	 */
 	public static BuildState read(DataInputStream in) throws IOException {
+		if (!readHeader(in)) {
+			return null;
+		}
+		int[] offsets = new int[SECTION_COUNT];
+		int[] lengths = new int[SECTION_COUNT];
+		int[] crcs = new int[SECTION_COUNT];
+		int size = readSectionIndex(in, offsets, lengths, crcs);
+		byte[] bytes = new byte[size];
+		try {
+			in.readFully(bytes);
+		} catch (EOFException e) {
+			// truncated state - a full build is required
+			return null;
+		}
+		if (!checkSections(bytes, offsets, lengths, crcs)) {
+			return null;
+		}
+		return new BuildState(ByteBuffer.wrap(bytes), offsets, lengths);
+	}
+
+	/**
+	 * Reads the build state from the given file. The sections are checked
+	 * against their checksums but only decoded when they are first accessed.
+	 * <p>
+	 * This does not reduce I/O: the whole file is read up front. Reading a
+	 * section only when it is first accessed would read a state file that a
+	 * later build has rewritten in the meantime with stale offsets, and find
+	 * a corrupt section long after a full build could have been scheduled.
+	 * </p>
+	 *
+	 * @param file the file to read from
+	 * @return the {@link BuildState} from the given file or <code>null</code>
+	 *         if the file is from an older version, truncated or corrupt
+	 * @throws IOException
+	 */
+	static BuildState read(File file) throws IOException {
+		try (FileInputStream stream = new FileInputStream(file)) {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 512));
+			if (!readHeader(in)) {
+				return null;
+			}
+			int[] offsets = new int[SECTION_COUNT];
+			int[] lengths = new int[SECTION_COUNT];
+			int[] crcs = new int[SECTION_COUNT];
+			int size = readSectionIndex(in, offsets, lengths, crcs);
+			long start = file.length() - size;
+			if (start < 0) {
+				// truncated state - a full build is required
+				return null;
+			}
+			ByteBuffer buffer = ByteBuffer.allocate(size);
+			FileChannel channel = stream.getChannel();
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, start + buffer.position()) < 0) {
+					return null;
+				}
+			}
+			if (!checkSections(buffer.array(), offsets, lengths, crcs)) {
+				return null;
+			}
+			buffer.flip();
+			return new BuildState(buffer, offsets, lengths);
+		}
+	}
+
+	/**
+	 * Checks the sections of a serialized state against the checksums recorded
+	 * in its index, so that a corrupt state is rejected as a whole instead of
+	 * being decoded as empty sections later on
+	 *
+	 * @param bytes the serialized sections
+	 * @param offsets the offset of each section
+	 * @param lengths the length of each section or <code>-1</code> if the
+	 *            section is missing
+	 * @param crcs the checksum of each section
+	 * @return <code>true</code> if all sections are intact
+	 */
+	private static boolean checkSections(byte[] bytes, int[] offsets, int[] lengths, int[] crcs) {
+		CRC32 crc = new CRC32();
+		for (int i = 0; i < SECTION_COUNT; i++) {
+			if (lengths[i] < 0) {
+				continue;
+			}
+			crc.reset();
+			crc.update(bytes, offsets[i], lengths[i]);
+			if ((int) crc.getValue() != crcs[i]) {
+				if (ApiPlugin.DEBUG_BUILDER) {
+					System.out.println("ApiAnalysisBuilder: Corrupt build state section: " + i); //$NON-NLS-1$
+				}
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Constructor for a state whose sections are decoded lazily from the given
+	 * buffer
+	 *
+	 * @param source the serialized sections
+	 * @param offsets the offset of each section in the buffer
+	 * @param lengths the length of each section in the buffer or
+	 *            <code>-1</code> if the section is missing
+	 */
+	private BuildState(ByteBuffer source, int[] offsets, int[] lengths) {
+		this();
+		this.source = source;
+		this.sectionOffsets = offsets;
+		this.sectionLengths = lengths;
+		this.loadedSections = 0;
+	}
+
+	/**
+	 * Reads and checks the header of a build state
+	 *
+	 * @param in the stream to read from
+	 * @return <code>true</code> if the state can be read, <code>false</code>
+	 *         if it is from an older version and a full build is required
+	 * @throws IOException if the stream is not a build state
+	 */
+	private static boolean readHeader(DataInputStream in) throws IOException {
 		String pluginID = in.readUTF();
 		if (!pluginID.equals(ApiPlugin.PLUGIN_ID)) {
 			throw new IOException(BuilderMessages.build_wrongFileFormat);
@@ -105,64 +309,187 @@ public class BuildState {
 		}
 		if (in.readInt() != VERSION) {
 			// this is an old build state - a full build is required
-			return null;
+			return false;
 		}
-		if (in.readBoolean()) {
-			// continue to read
-			BuildState state = new BuildState();
-			state.buildpathCRC = in.readLong();
-			int count = in.readInt();
-			// read all compatible deltas
-			for (int i = 0; i < count; i++) {
-				state.addCompatibleChange(readDelta(in));
+		return in.readBoolean();
+	}
+
+	/**
+	 * Reads the section index that follows the header. Sections with unknown
+	 * identifiers are ignored.
+	 *
+	 * @param in the stream to read from
+	 * @param offsets receives the offset of each known section
+	 * @param lengths receives the length of each known section or
+	 *            <code>-1</code> if the section is missing
+	 * @param crcs receives the checksum of each known section
+	 * @return the total size of the sections that follow the index
+	 * @throws IOException
+	 */
+	private static int readSectionIndex(DataInputStream in, int[] offsets, int[] lengths, int[] crcs) throws IOException {
+		Arrays.fill(lengths, -1);
+		int count = in.readInt();
+		long size = 0;
+		for (int i = 0; i < count; i++) {
+			int id = in.readInt();
+			int offset = in.readInt();
+			int length = in.readInt();
+			int crc = in.readInt();
+			if (offset < 0 || length < 0) {
+				throw new IOException(BuilderMessages.build_wrongFileFormat);
 			}
-			count = in.readInt();
-			// read all breaking deltas
-			for (int i = 0; i < count; i++) {
-				state.addBreakingChange(readDelta(in));
+			if (id >= 0 && id < SECTION_COUNT) {
+				offsets[id] = offset;
+				lengths[id] = length;
+				crcs[id] = crc;
 			}
-			count = in.readInt();
-			// read all re-exported component names
-			String[] components = new String[count];
-			for (int i = 0; i < count; i++) {
-				components[i] = in.readUTF();
+			size = Math.max(size, (long) offset + length);
+		}
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException(BuilderMessages.build_wrongFileFormat);
+		}
+		return (int) size;
+	}
+
+	/**
+	 * Decodes the given section from the source this state was read from, if
+	 * it has not been decoded or overwritten yet. The sections have been
+	 * checked against their checksums when the state was read, so a section
+	 * that cannot be decoded is a format error and fails loudly rather than
+	 * being decoded as empty.
+	 *
+	 * @param section the section identifier
+	 * @throws IllegalStateException if the section cannot be decoded
+	 */
+	private void load(int section) {
+		int mask = 1 << section;
+		if ((this.loadedSections & mask) != 0) {
+			return;
+		}
+		this.loadedSections |= mask;
+		try {
+			if (this.sectionLengths[section] >= 0) {
+				ByteBuffer buffer = this.source.duplicate();
+				buffer.position(this.sectionOffsets[section]);
+				buffer.limit(this.sectionOffsets[section] + this.sectionLengths[section]);
+				readSection(section, new DataInputStream(new ByteBufferInputStream(buffer)));
 			}
-			state.reexportedComponents = components;
-			count = in.readInt();
-			for (int i = 0; i < count; i++) {
-				state.addApiToolingDependentProject(in.readUTF());
-			}
-			if (in.available() > 0) {
-				count = in.readInt();
-				if (count > 0) {
-					// read the saved headers
-					HashMap<String, String> map = new HashMap<>(count);
-					for (int i = 0; i < count; i++) {
-						String key = in.readUTF();
-						String value = in.readUTF();
-						map.put(key, value);
-					}
-					state.setManifestState(map);
+		} catch (IOException e) {
+			throw new IllegalStateException(BuilderMessages.build_wrongFileFormat, e);
+		} finally {
+			if (this.loadedSections == ALL_SECTIONS) {
+				this.source = null;
+				this.sectionOffsets = null;
+				this.sectionLengths = null;
+			}
+		}
+	}
+
+	/**
+	 * Marks the given section as loaded without decoding it, used when the
+	 * section is about to be overwritten
+	 *
+	 * @param section the section identifier
+	 */
+	private void discard(int section) {
+		this.loadedSections |= 1 << section;
+		if (this.loadedSections == ALL_SECTIONS) {
+			this.source = null;
+			this.sectionOffsets = null;
+			this.sectionLengths = null;
+		}
+	}
+
+	/**
+	 * Decodes a single section into this state
+	 *
+	 * @param section the section identifier
+	 * @param in the stream positioned at the start of the section
+	 * @throws IOException
+	 */
+	private void readSection(int section, DataInputStream in) throws IOException {
+		switch (section) {
+			case SECTION_BUILD_PATH_CRC: {
+				this.buildpathCRC = in.readLong();
+				break;
+			}
+			case SECTION_COMPATIBLE_CHANGES: {
+				int count = in.readInt();
+				for (int i = 0; i < count; i++) {
+					addDelta(this.compatibleChanges, readDelta(in));
 				}
-				count = in.readInt();
-				if (count > 0) {
-					// read the saved headers
-					HashMap<String, String> map = new HashMap<>(count);
-					for (int i = 0; i < count; i++) {
-						String key = in.readUTF();
-						String value = in.readUTF();
-						map.put(key, value);
-					}
-					state.setBuildPropertiesState(map);
+				break;
+			}
+			case SECTION_BREAKING_CHANGES: {
+				int count = in.readInt();
+				for (int i = 0; i < count; i++) {
+					addDelta(this.breakingChanges, readDelta(in));
+				}
+				break;
+			}
+			case SECTION_REEXPORTED_COMPONENTS: {
+				int count = in.readInt();
+				String[] components = new String[count];
+				for (int i = 0; i < count; i++) {
+					components[i] = in.readUTF();
+				}
+				this.reexportedComponents = components;
+				break;
+			}
+			case SECTION_DEPENDENT_PROJECTS: {
+				int count = in.readInt();
+				for (int i = 0; i < count; i++) {
+					addApiToolingDependentProject(in.readUTF());
 				}
+				break;
+			}
+			case SECTION_MANIFEST: {
+				Map<String, String> map = readMap(in);
+				if (map != null) {
+					this.manifestChanges = map;
+				}
+				break;
+			}
+			case SECTION_BUILD_PROPERTIES: {
+				Map<String, String> map = readMap(in);
+				if (map != null) {
+					this.buildPropChanges = map;
+				}
+				break;
+			}
+			default:
+				break;
+		}
+	}
+
+	/**
+	 * Reads a map of saved headers
+	 *
+	 * @param in the stream to read from
+	 * @return the map or <code>null</code> if it was empty
+	 * @throws IOException
+	 */
+	private static Map<String, String> readMap(DataInputStream in) throws IOException {
+		int count = in.readInt();
+		if (count > 0) {
+			HashMap<String, String> map = new HashMap<>(count);
+			for (int i = 0; i < count; i++) {
+				String key = in.readUTF();
+				String value = in.readUTF();
+				map.put(key, value);
 			}
-			return state;
+			return map;
 		}
 		return null;
 	}
 
 	/**
-	 * Writes the given {@link BuildState} to the given output stream
+	 * Writes the given {@link BuildState} to the given output stream.
+	 * <p>
+	 * After the header an index of section identifiers, offsets, lengths and
+	 * checksums is written, followed by the sections themselves, so that a
+	 * section can be read without decoding the ones before it.
+	 * </p>
 	 *
 	 * @param state
 	 * @param out
@@ -173,32 +500,99 @@ public class BuildState {
 		out.writeUTF("STATE"); //$NON-NLS-1$
 		out.writeInt(VERSION);
 		out.writeBoolean(true);
-		out.writeLong(state.buildpathCRC);
-		IDelta[] compatibleChangesDeltas = state.getCompatibleChanges();
-		int length = compatibleChangesDeltas.length;
-		out.writeInt(length);
-		for (int i = 0; i < length; i++) {
-			writeDelta(compatibleChangesDeltas[i], out);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+		DataOutputStream sections = new DataOutputStream(bytes);
+		int[] offsets = new int[SECTION_COUNT];
+		for (int i = 0; i < SECTION_COUNT; i++) {
+			offsets[i] = sections.size();
+			writeSection(state, i, sections);
 		}
-		IDelta[] breakingChangesDeltas = state.getBreakingChanges();
-		length = breakingChangesDeltas.length;
-		out.writeInt(length);
-		for (int i = 0; i < length; i++) {
-			writeDelta(breakingChangesDeltas[i], out);
+		sections.flush();
+		byte[] contents = bytes.toByteArray();
+		CRC32 crc = new CRC32();
+		out.writeInt(SECTION_COUNT);
+		for (int i = 0; i < SECTION_COUNT; i++) {
+			int length = (i + 1 < SECTION_COUNT ? offsets[i + 1] : contents.length) - offsets[i];
+			crc.reset();
+			crc.update(contents, offsets[i], length);
+			out.writeInt(i);
+			out.writeInt(offsets[i]);
+			out.writeInt(length);
+			out.writeInt((int) crc.getValue());
 		}
-		String[] reexportedComponents = state.getReexportedComponents();
-		length = reexportedComponents.length;
-		out.writeInt(length);
-		for (int i = 0; i < length; i++) {
-			out.writeUTF(reexportedComponents[i]);
-		}
-		Set<String> apiToolingDependentsProjects = state.getApiToolingDependentProjects();
-		length = apiToolingDependentsProjects.size();
-		out.writeInt(length);
-		for (String string : apiToolingDependentsProjects) {
-			out.writeUTF(string);
+		out.write(contents);
+	}
+
+	/**
+	 * Writes a single section of the given state
+	 *
+	 * @param state the state to write
+	 * @param section the section identifier
+	 * @param out the stream to write to
+	 * @throws IOException
+	 */
+	private static void writeSection(BuildState state, int section, DataOutputStream out) throws IOException {
+		switch (section) {
+			case SECTION_BUILD_PATH_CRC: {
+				out.writeLong(state.getBuildPathCRC());
+				break;
+			}
+			case SECTION_COMPATIBLE_CHANGES: {
+				IDelta[] compatibleChangesDeltas = state.getCompatibleChanges();
+				int length = compatibleChangesDeltas.length;
+				out.writeInt(length);
+				for (int i = 0; i < length; i++) {
+					writeDelta(compatibleChangesDeltas[i], out);
+				}
+				break;
+			}
+			case SECTION_BREAKING_CHANGES: {
+				IDelta[] breakingChangesDeltas = state.getBreakingChanges();
+				int length = breakingChangesDeltas.length;
+				out.writeInt(length);
+				for (int i = 0; i < length; i++) {
+					writeDelta(breakingChangesDeltas[i], out);
+				}
+				break;
+			}
+			case SECTION_REEXPORTED_COMPONENTS: {
+				String[] reexportedComponents = state.getReexportedComponents();
+				int length = reexportedComponents.length;
+				out.writeInt(length);
+				for (int i = 0; i < length; i++) {
+					out.writeUTF(reexportedComponents[i]);
+				}
+				break;
+			}
+			case SECTION_DEPENDENT_PROJECTS: {
+				Set<String> apiToolingDependentsProjects = state.getApiToolingDependentProjects();
+				out.writeInt(apiToolingDependentsProjects.size());
+				for (String string : apiToolingDependentsProjects) {
+					out.writeUTF(string);
+				}
+				break;
+			}
+			case SECTION_MANIFEST: {
+				writeMap(state.getManifestState(), out);
+				break;
+			}
+			case SECTION_BUILD_PROPERTIES: {
+				writeMap(state.getBuildPropertiesState(), out);
+				break;
+			}
+			default:
+				break;
 		}
-		Map<String, String> map = state.getManifestState();
+	}
+
+	/**
+	 * Writes a map of saved headers
+	 *
+	 * @param map the map to write
+	 * @param out the stream to write to
+	 * @throws IOException
+	 */
+	private static void writeMap(Map<String, String> map, DataOutputStream out) throws IOException {
 		out.writeInt(map.size());
 		Entry<String, String> entry = null;
 		for (Iterator<Entry<String, String>> i = map.entrySet().iterator(); i.hasNext();) {
@@ -206,14 +600,6 @@ public class BuildState {
 			out.writeUTF(entry.getKey());
 			out.writeUTF(entry.getValue());
 		}
-		map = state.getBuildPropertiesState();
-		out.writeInt(map.size());
-		entry = null;
-		for (Iterator<Entry<String, String>> i = map.entrySet().iterator(); i.hasNext();) {
-			entry = i.next();
-			out.writeUTF(entry.getKey());
-			out.writeUTF(entry.getValue());
-		}
 	}
 
 	/**
@@ -297,15 +683,8 @@ public class BuildState {
 	 * @param delta the {@link IDelta} to add to the state
 	 */
 	public void addCompatibleChange(IDelta delta) {
-		String typeName = delta.getTypeName();
-		Set<IDelta> object = this.compatibleChanges.get(typeName);
-		if (object == null) {
-			Set<IDelta> changes = new HashSet<>();
-			changes.add(delta);
-			this.compatibleChanges.put(typeName, changes);
-		} else {
-			object.add(delta);
-		}
+		load(SECTION_COMPATIBLE_CHANGES);
+		addDelta(this.compatibleChanges, delta);
 	}
 
 	/**
@@ -315,12 +694,23 @@ public class BuildState {
 	 * @param delta the {@link IDelta} to add to the state
 	 */
 	public void addBreakingChange(IDelta delta) {
+		load(SECTION_BREAKING_CHANGES);
+		addDelta(this.breakingChanges, delta);
+	}
+
+	/**
+	 * Adds an {@link IDelta} to the given map of changes, keyed by type name
+	 *
+	 * @param changes the map to add to
+	 * @param delta the {@link IDelta} to add
+	 */
+	private static void addDelta(Map<String, Set<IDelta>> changes, IDelta delta) {
 		String typeName = delta.getTypeName();
-		Set<IDelta> object = this.breakingChanges.get(typeName);
+		Set<IDelta> object = changes.get(typeName);
 		if (object == null) {
-			Set<IDelta> changes = new HashSet<>();
-			changes.add(delta);
-			this.breakingChanges.put(typeName, changes);
+			Set<IDelta> set = new HashSet<>();
+			set.add(delta);
+			changes.put(typeName, set);
 		} else {
 			object.add(delta);
 		}
@@ -331,6 +721,7 @@ public class BuildState {
 	 *         removed, or an empty array, never <code>null</code>
 	 */
 	public IDelta[] getBreakingChanges() {
+		load(SECTION_BREAKING_CHANGES);
 		if (this.breakingChanges == null || this.breakingChanges.size() == 0) {
 			return EMPTY_DELTAS;
 		}
@@ -347,6 +738,7 @@ public class BuildState {
 	 *         removed, or an empty array, never <code>null</code>
 	 */
 	public IDelta[] getCompatibleChanges() {
+		load(SECTION_COMPATIBLE_CHANGES);
 		if (this.compatibleChanges == null || this.compatibleChanges.size() == 0) {
 			return EMPTY_DELTAS;
 		}
@@ -362,6 +754,7 @@ public class BuildState {
 	 * @return the complete list of re-exported {@link IApiComponent}s
 	 */
 	public String[] getReexportedComponents() {
+		load(SECTION_REEXPORTED_COMPONENTS);
 		if (this.reexportedComponents == null) {
 			return NO_REEXPORTED_COMPONENTS;
 		}
@@ -374,6 +767,9 @@ public class BuildState {
 	 * @param typeName the given type name
 	 */
 	public void cleanup(String typeName) {
+		load(SECTION_BREAKING_CHANGES);
+		load(SECTION_COMPATIBLE_CHANGES);
+		discard(SECTION_REEXPORTED_COMPONENTS);
 		this.breakingChanges.remove(typeName);
 		this.compatibleChanges.remove(typeName);
 		this.reexportedComponents = null;
@@ -389,6 +785,7 @@ public class BuildState {
 		if (components == null) {
 			return;
 		}
+		load(SECTION_REEXPORTED_COMPONENTS);
 		if (this.reexportedComponents == null) {
 			final int length = components.length;
 			String[] result = new String[length];
@@ -405,6 +802,7 @@ public class BuildState {
 	 * @param projectName
 	 */
 	public void addApiToolingDependentProject(String projectName) {
+		load(SECTION_DEPENDENT_PROJECTS);
 		if (this.apiToolingDependentProjects == null) {
 			this.apiToolingDependentProjects = new HashSet<>(3);
 		}
@@ -415,6 +813,7 @@ public class BuildState {
 	 * @return the complete listing of dependent projects
 	 */
 	public Set<String> getApiToolingDependentProjects() {
+		load(SECTION_DEPENDENT_PROJECTS);
 		return this.apiToolingDependentProjects == null ? Collections.EMPTY_SET : this.apiToolingDependentProjects;
 	}
 
@@ -427,6 +826,7 @@ public class BuildState {
 	 * @since 1.0.3
 	 */
 	public void setManifestState(Map<String, String> state) {
+		discard(SECTION_MANIFEST);
 		if (state != null) {
 			Map<String, String> compact = new HashMap<>(7);
 			for (String key : ApiAnalysisBuilder.IMPORTANT_HEADERS) {
@@ -450,6 +850,7 @@ public class BuildState {
 	 * @since 1.0.3
 	 */
 	public Map<String, String> getManifestState() {
+		load(SECTION_MANIFEST);
 		return this.manifestChanges;
 	}
 
@@ -469,6 +870,7 @@ public class BuildState {
 	 * @since 1.0.3
 	 */
 	public void setBuildPropertiesState(IBuildModel model) {
+		load(SECTION_BUILD_PROPERTIES);
 		if (model != null) {
 			IBuildEntry[] entries = model.getBuild().getBuildEntries();
 			String name = null;
@@ -495,6 +897,7 @@ public class BuildState {
 	 * @since 1.0.3
 	 */
 	void setBuildPropertiesState(Map<String, String> map) {
+		discard(SECTION_BUILD_PROPERTIES);
 		if (map != null) {
 			this.buildPropChanges = map;
 		} else {
@@ -511,6 +914,7 @@ public class BuildState {
 	 * @since 1.0.3
 	 */
 	public Map<String, String> getBuildPropertiesState() {
+		load(SECTION_BUILD_PROPERTIES);
 		return this.buildPropChanges;
 	}
 
@@ -520,6 +924,7 @@ public class BuildState {
 	 * @return CRC32 code of the project's build path or -1
 	 */
 	public long getBuildPathCRC() {
+		load(SECTION_BUILD_PATH_CRC);
 		return buildpathCRC;
 	}
 
@@ -529,6 +934,7 @@ public class BuildState {
 	 * @param crc32 crc32 code
 	 */
 	public void setBuildPathCRC(long crc32) {
+		discard(SECTION_BUILD_PATH_CRC);
 		buildpathCRC = crc32;
 	}
 
@@ -553,14 +959,12 @@ public class BuildState {
 		File file = getSerializationFile(project);
 		if (file != null && file.exists()) {
 			try {
-				DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
 				try {
-					return read(in);
+					return read(file);
 				} finally {
 					if (ApiPlugin.DEBUG_BUILDER) {
 						System.out.println("ApiAnalysisBuilder: Saved state thinks last build failed for " + project.getName()); //$NON-NLS-1$
 					}
-					in.close();
 				}
 			} catch (Exception e) {
 				e.printStackTrace();
@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.internal.builder;
+
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.pde.api.tools.internal.provisional.IApiFilterStore;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiBaseline;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiComponent;
+import org.eclipse.pde.api.tools.internal.provisional.problems.IApiProblem;
+
+/**
+ * Analyzes a set of components against a baseline, running one
+ * {@link BaseApiAnalyzer} per component on a {@link ForkJoinPool}.
+ * <p>
+ * Each component is analyzed by its own analyzer so problems are collected
+ * without sharing any state between workers. Results are returned in the order
+ * of the components given, regardless of the order in which the analysis
+ * finished.
+ * </p>
+ *
+ * @since 1.1
+ */
+public class ParallelApiAnalyzer {
+
+	static final IApiProblem[] NO_PROBLEMS = new IApiProblem[0];
+
+	/**
+	 * Analyzes a range of components, forking until a single component is
+	 * left
+	 */
+	class AnalysisAction extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		final int fStart;
+		final int fEnd;
+
+		AnalysisAction(int start, int end) {
+			fStart = start;
+			fEnd = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (fEnd - fStart == 1) {
+				analyze(fStart);
+				return;
+			}
+			int middle = (fStart + fEnd) >>> 1;
+			invokeAll(new AnalysisAction(fStart, middle), new AnalysisAction(middle, fEnd));
+		}
+	}
+
+	private final int fThreads;
+	private final boolean fContinueOnResolverError;
+
+	private IApiBaseline fBaseline;
+	private IApiComponent[] fComponents;
+	private IApiFilterStore[] fFilterStores;
+	private Properties fPreferences;
+	private IApiProblem[][] fResults;
+	private IProgressMonitor fMonitor;
+
+	/**
+	 * Constructor
+	 *
+	 * @param threads the number of worker threads to use, a value less than
+	 *            two analyzes the components on the calling thread
+	 * @param continueOnResolverError whether to keep analyzing components that
+	 *            have resolver errors
+	 * @see BaseApiAnalyzer#setContinueOnResolverError(boolean)
+	 */
+	public ParallelApiAnalyzer(int threads, boolean continueOnResolverError) {
+		fThreads = threads;
+		fContinueOnResolverError = continueOnResolverError;
+	}
+
+	/**
+	 * Analyzes the given components and returns the problems found for each
+	 * of them.
+	 *
+	 * @param baseline the baseline to compare against or <code>null</code>
+	 * @param components the components to analyze
+	 * @param filterStores the filter store to use for each component, the
+	 *            array may contain <code>null</code> entries
+	 * @param preferences the preferences to use for the analysis
+	 * @param monitor progress monitor or <code>null</code>
+	 * @return the problems for each component, in the order of the given
+	 *         components
+	 * @throws OperationCanceledException if the monitor was canceled
+	 */
+	public synchronized IApiProblem[][] analyze(IApiBaseline baseline, IApiComponent[] components, IApiFilterStore[] filterStores, Properties preferences, IProgressMonitor monitor) {
+		fBaseline = baseline;
+		fComponents = components;
+		fFilterStores = filterStores;
+		fPreferences = preferences;
+		fResults = new IApiProblem[components.length][];
+		fMonitor = monitor == null ? new NullProgressMonitor() : monitor;
+		try {
+			if (components.length == 0) {
+				return fResults;
+			}
+			if (fThreads < 2 || components.length == 1) {
+				for (int i = 0; i < components.length; i++) {
+					analyze(i);
+				}
+			} else {
+				ForkJoinPool pool = new ForkJoinPool(fThreads);
+				try {
+					pool.invoke(new AnalysisAction(0, components.length));
+				} finally {
+					pool.shutdown();
+				}
+			}
+			return fResults;
+		} finally {
+			fBaseline = null;
+			fComponents = null;
+			fFilterStores = null;
+			fPreferences = null;
+			fMonitor = null;
+		}
+	}
+
+	/**
+	 * Analyzes the component at the given index and stores its problems
+	 *
+	 * @param index the index of the component
+	 */
+	void analyze(int index) {
+		if (fMonitor.isCanceled()) {
+			throw new OperationCanceledException();
+		}
+		BaseApiAnalyzer analyzer = new BaseApiAnalyzer();
+		try {
+			analyzer.setContinueOnResolverError(fContinueOnResolverError);
+			IApiFilterStore store = fFilterStores == null ? null : fFilterStores[index];
+			analyzer.analyzeComponent(null, store, fPreferences, fBaseline, fComponents[index], new BuildContext(), new NullProgressMonitor());
+			IApiProblem[] problems = analyzer.getProblems();
+			fResults[index] = problems == null ? NO_PROBLEMS : problems;
+		} finally {
+			analyzer.dispose();
+		}
+	}
+}
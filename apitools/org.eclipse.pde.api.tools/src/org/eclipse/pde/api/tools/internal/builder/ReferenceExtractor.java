@@ -16,15 +16,14 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
-import java.util.SortedSet;
 import java.util.Stack;
-import java.util.TreeSet;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.osgi.util.NLS;
 import org.eclipse.pde.api.tools.internal.model.AbstractApiTypeRoot;
+import org.eclipse.pde.api.tools.internal.model.ApiBaseline;
 import org.eclipse.pde.api.tools.internal.provisional.ApiPlugin;
 import org.eclipse.pde.api.tools.internal.provisional.builder.IReference;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiBaseline;
@@ -34,6 +33,7 @@ import org.eclipse.pde.api.tools.internal.provisional.model.IApiMember;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiMethod;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiType;
 import org.eclipse.pde.api.tools.internal.util.Signatures;
+import org.eclipse.pde.api.tools.internal.util.SymbolTable;
 import org.eclipse.pde.api.tools.internal.util.Util;
 import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.Attribute;
@@ -267,7 +267,13 @@ public class ReferenceExtractor extends ClassVisitor {
 			switch (opcode) {
 				case Opcodes.ASTORE: {
 					if (this.lastLineNumber != -1) {
-						this.localVariableMarker = new LocalLineNumberMarker(this.lastLineNumber, var);
+						if (this.localVariableMarker != null) {
+							// not attached to a label yet, reuse it
+							this.localVariableMarker.lineNumber = this.lastLineNumber;
+							this.localVariableMarker.varIndex = var;
+						} else {
+							this.localVariableMarker = new LocalLineNumberMarker(this.lastLineNumber, var);
+						}
 					}
 					break;
 				}
@@ -715,13 +721,16 @@ public class ReferenceExtractor extends ClassVisitor {
 
 	static class LinePositionTracker {
 		List<Object> labelsAndLocations;
-		SortedSet<LineInfo> lineInfos;
+		/**
+		 * The smallest line number found for the method, or
+		 * {@link Integer#MAX_VALUE} if none
+		 */
+		int firstLine = Integer.MAX_VALUE;
 		List<LabelInfo> catchLabelInfos;
 		HashMap<Label, Integer> lineMap;
 
 		public LinePositionTracker() {
 			this.labelsAndLocations = new ArrayList<>();
-			this.lineInfos = new TreeSet<>();
 			this.catchLabelInfos = new ArrayList<>();
 			this.lineMap = new HashMap<>();
 		}
@@ -731,7 +740,9 @@ public class ReferenceExtractor extends ClassVisitor {
 		}
 
 		void addLineInfo(int line, Label label) {
-			this.lineInfos.add(new LineInfo(line, label));
+			if (line < this.firstLine) {
+				this.firstLine = line;
+			}
 			this.lineMap.put(label, Integer.valueOf(line));
 		}
 
@@ -745,68 +756,53 @@ public class ReferenceExtractor extends ClassVisitor {
 
 		public void computeLineNumbers() {
 
-			if (this.lineInfos.size() < 1 || this.labelsAndLocations.size() < 1) {
+			if (this.lineMap.isEmpty() || this.labelsAndLocations.size() < 1) {
 				// nothing to do
 				return;
 			}
-			Iterator<LineInfo> lineInfosIterator = this.lineInfos.iterator();
-			LineInfo firstLineInfo = lineInfosIterator.next();
-			int currentLineNumber = firstLineInfo.line;
+			int currentLineNumber = this.firstLine;
 
-			List<LabelInfo> remainingCatchLabelInfos = new ArrayList<>();
+			List<LabelInfo> remainingCatchLabelInfos = null;
 			for (LabelInfo catchLabelInfo : this.catchLabelInfos) {
 				Integer lineValue = this.lineMap.get(catchLabelInfo.label);
 				if (lineValue != null) {
 					catchLabelInfo.location.setLineNumber(lineValue.intValue());
 				} else {
+					if (remainingCatchLabelInfos == null) {
+						remainingCatchLabelInfos = new ArrayList<>();
+					}
 					remainingCatchLabelInfos.add(catchLabelInfo);
 				}
 			}
 			// Iterate over List of Labels and SourceLocations.
-			List<Object> computedEntries = new ArrayList<>();
 			for (Object current : this.labelsAndLocations) {
 				if (current instanceof Label) {
-					// label
 					Integer lineValue = this.lineMap.get(current);
 					if (lineValue != null) {
-						computedEntries.add(new LineInfo(lineValue.intValue(), (Label) current));
-					} else {
-						computedEntries.add(current);
-					}
-				} else {
-					// location
-					computedEntries.add(current);
-				}
-			}
-			List<LabelInfo> remaingEntriesTemp;
-			for (Object current : computedEntries) {
-				if (current instanceof Label) {
-					// try to set the line number for remaining catch labels
-					if (remainingCatchLabelInfos != null) {
-						remaingEntriesTemp = new ArrayList<>();
-						loop: for (LabelInfo catchLabelInfo : remainingCatchLabelInfos) {
-							if (!current.equals(catchLabelInfo.label)) {
-								remaingEntriesTemp.add(catchLabelInfo);
-								continue loop;
+						// label with line information
+						currentLineNumber = lineValue.intValue();
+					} else if (remainingCatchLabelInfos != null) {
+						// try to set the line number for remaining catch
+						// labels
+						for (Iterator<LabelInfo> iter = remainingCatchLabelInfos.iterator(); iter.hasNext();) {
+							LabelInfo catchLabelInfo = iter.next();
+							if (current.equals(catchLabelInfo.label)) {
+								catchLabelInfo.location.setLineNumber(currentLineNumber);
+								iter.remove();
 							}
-							catchLabelInfo.location.setLineNumber(currentLineNumber);
 						}
-						if (remaingEntriesTemp.size() == 0) {
+						if (remainingCatchLabelInfos.isEmpty()) {
 							remainingCatchLabelInfos = null;
-						} else {
-							remainingCatchLabelInfos = remaingEntriesTemp;
 						}
 					}
-				} else if (current instanceof Reference) {
+				} else {
+					// location
 					Reference ref = (Reference) current;
 					if (ref.getLineNumber() == -1) {
 						ref.setLineNumber(currentLineNumber);
 					} else {
 						currentLineNumber = ref.getLineNumber();
 					}
-				} else if (current instanceof LineInfo) {
-					LineInfo lineInfo = (LineInfo) current;
-					currentLineNumber = lineInfo.line;
 				}
 			}
 		}
@@ -829,42 +825,6 @@ public class ReferenceExtractor extends ClassVisitor {
 		}
 	}
 
-	static class LineInfo implements Comparable<Object> {
-		int line;
-		Label label;
-
-		LineInfo(int line, Label label) {
-			this.line = line;
-			this.label = label;
-		}
-
-		@Override
-		public int compareTo(Object o) {
-			return this.line - ((LineInfo) o).line;
-		}
-
-		@Override
-		public boolean equals(Object obj) {
-			if (obj instanceof LineInfo) {
-				LineInfo lineInfo2 = (LineInfo) obj;
-				return this.line == lineInfo2.line && this.label.equals(lineInfo2.label);
-			}
-			return super.equals(obj);
-		}
-
-		@Override
-		public int hashCode() {
-			return this.line + (this.label != null ? this.label.hashCode() : 0);
-		}
-
-		@Override
-		public String toString() {
-			StringBuffer buffer = new StringBuffer();
-			buffer.append('(').append(this.line).append(',').append(this.label).append(')');
-			return String.valueOf(buffer);
-		}
-	}
-
 	static class LocalLineNumberMarker {
 		int lineNumber;
 		int varIndex;
@@ -935,6 +895,12 @@ public class ReferenceExtractor extends ClassVisitor {
 	 */
 	private int fReferenceKinds = 0;
 
+	/**
+	 * Names shared by the references extracted from the class files of the
+	 * baseline, or <code>null</code> if names are not shared
+	 */
+	private final SymbolTable fSymbols;
+
 	/**
 	 * Track synthetic field / accessor
 	 *
@@ -989,6 +955,27 @@ public class ReferenceExtractor extends ClassVisitor {
 		fReferenceKinds = referenceKinds;
 		fIsVisitMembers = (VISIT_MEMBERS_MASK & fReferenceKinds) > 0;
 		fieldtracker = new FieldTracker(this);
+		fSymbols = getSymbolTable(type);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param type the type to extract references from
+	 * @param collector the listing of references to annotate from this pass
+	 * @param referenceKinds kinds of references to extract as defined by
+	 *            {@link ReferenceModifiers}
+	 * @param symbols the table sharing the names of the extracted references
+	 *            or <code>null</code> to not share names
+	 */
+	public ReferenceExtractor(IApiType type, Set<Reference> collector, int referenceKinds, SymbolTable symbols) {
+		super(Opcodes.ASM5, new ClassNode());
+		fType = type;
+		this.collector = collector;
+		fReferenceKinds = referenceKinds;
+		fIsVisitMembers = (VISIT_MEMBERS_MASK & fReferenceKinds) > 0;
+		fieldtracker = new FieldTracker(this);
+		fSymbols = symbols;
 	}
 
 	/**
@@ -1006,6 +993,56 @@ public class ReferenceExtractor extends ClassVisitor {
 		fReferenceKinds = referenceKinds;
 		fIsVisitMembers = (VISIT_MEMBERS_MASK & fReferenceKinds) > 0;
 		fieldtracker = tracker;
+		fSymbols = getSymbolTable(type);
+	}
+
+	/**
+	 * Returns the table of the baseline of the given type, or a new table if
+	 * the type is not part of an {@link ApiBaseline}
+	 *
+	 * @param type the type references are extracted from
+	 * @return the table to use for the type, never <code>null</code>
+	 */
+	private static SymbolTable getSymbolTable(IApiType type) {
+		IApiComponent component = type.getApiComponent();
+		if (component != null) {
+			try {
+				IApiBaseline baseline = component.getBaseline();
+				if (baseline instanceof ApiBaseline) {
+					return ((ApiBaseline) baseline).getSymbolTable();
+				}
+			} catch (CoreException e) {
+				// no baseline, fall through
+			}
+		}
+		return new SymbolTable();
+	}
+
+	/**
+	 * Returns the dot separated name of the given internal (slash separated)
+	 * type name
+	 *
+	 * @param internalName the internal name of a type
+	 * @return the dot separated name
+	 */
+	private String getTypeName(String internalName) {
+		if (fSymbols == null) {
+			return internalName.replace('/', '.');
+		}
+		return fSymbols.getTypeName(internalName);
+	}
+
+	/**
+	 * Returns the shared instance of the given member name or signature
+	 *
+	 * @param name the name or <code>null</code>
+	 * @return the shared instance of the name
+	 */
+	private String getSymbol(String name) {
+		if (fSymbols == null) {
+			return name;
+		}
+		return fSymbols.intern(name);
 	}
 
 	@Override
@@ -1075,12 +1112,7 @@ public class ReferenceExtractor extends ClassVisitor {
 	 * @return
 	 */
 	protected String processName(String name) {
-		String newname = name;
-		Type type = Type.getObjectType(name);
-		if (type != null && type.getSort() == Type.OBJECT) {
-			newname = type.getInternalName();
-		}
-		return newname.replaceAll("/", "."); //$NON-NLS-1$ //$NON-NLS-2$
+		return getTypeName(name);
 	}
 
 	/**
@@ -1094,9 +1126,12 @@ public class ReferenceExtractor extends ClassVisitor {
 	 * @return reference added, or <code>null</code> if none
 	 */
 	protected Reference addTypeReference(Type type, int kind) {
+		if ((kind & fReferenceKinds) == 0) {
+			return null;
+		}
 		Type rtype = this.resolveType(type.getDescriptor());
 		if (rtype != null) {
-			return addReference(Reference.typeReference(getMember(), rtype.getClassName(), kind));
+			return addReference(Reference.typeReference(getMember(), getTypeName(rtype.getInternalName()), kind));
 		}
 		return null;
 	}
@@ -1112,9 +1147,12 @@ public class ReferenceExtractor extends ClassVisitor {
 	 * @return reference added, or <code>null</code> if none
 	 */
 	protected Reference addFieldReference(Type declaringType, String name, int kind) {
+		if ((kind & fReferenceKinds) == 0) {
+			return null;
+		}
 		Type rtype = this.resolveType(declaringType.getDescriptor());
 		if (rtype != null) {
-			return addReference(Reference.fieldReference(getMember(), rtype.getClassName(), name, kind));
+			return addReference(Reference.fieldReference(getMember(), getTypeName(rtype.getInternalName()), getSymbol(name), kind));
 		}
 		return null;
 	}
@@ -1133,9 +1171,12 @@ public class ReferenceExtractor extends ClassVisitor {
 	 * @return reference added, or <code>null</code> if none
 	 */
 	protected Reference addMethodReference(Type declaringType, String name, String signature, int kind, int flags) {
+		if ((kind & fReferenceKinds) == 0) {
+			return null;
+		}
 		Type rtype = this.resolveType(declaringType.getDescriptor());
 		if (rtype != null) {
-			return this.addReference(Reference.methodReference(getMember(), rtype.getClassName(), name, signature, kind, flags));
+			return this.addReference(Reference.methodReference(getMember(), getTypeName(rtype.getInternalName()), getSymbol(name), getSymbol(signature), kind, flags));
 		}
 		return null;
 	}
@@ -0,0 +1,240 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.internal.comparator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.pde.api.tools.internal.model.AbstractApiTypeRoot;
+import org.eclipse.pde.api.tools.internal.provisional.ApiDescriptionVisitor;
+import org.eclipse.pde.api.tools.internal.provisional.Factory;
+import org.eclipse.pde.api.tools.internal.provisional.IApiAnnotations;
+import org.eclipse.pde.api.tools.internal.provisional.IApiDescription;
+import org.eclipse.pde.api.tools.internal.provisional.descriptors.IElementDescriptor;
+import org.eclipse.pde.api.tools.internal.provisional.descriptors.IReferenceTypeDescriptor;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiBaseline;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiComponent;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiTypeRoot;
+import org.eclipse.pde.api.tools.internal.util.Signatures;
+import org.eclipse.pde.api.tools.internal.util.Util;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Finds the types that are unchanged between two baselines without building
+ * their structures, so that {@link ClassFileComparator} only needs to compare
+ * the types that changed.
+ * <p>
+ * A type is unchanged when its class files have the same bytes, its API
+ * descriptions are the same in both components, and its super types and
+ * member types are unchanged as well, since the comparison of a type also
+ * looks at its hierarchy and member types. The fingerprints of the class
+ * files (see {@link AbstractApiTypeRoot#getContentHash()}) only rule out the
+ * class files that differ without reading them: a fingerprint is a size and a
+ * CRC-32, which two different class files can share, so the bytes of class
+ * files with the same fingerprint are always compared.
+ * </p>
+ * <p>
+ * Results are cached per instance, which is meant to be used for the
+ * comparison of one pair of components from a single thread.
+ * </p>
+ *
+ * @since 1.1
+ */
+public final class ContentHashComparator {
+
+	/**
+	 * System property used to turn the comparison of fingerprints off by
+	 * setting it to <code>false</code>
+	 */
+	public static final String CONTENT_HASH_PROPERTY = "org.eclipse.pde.api.tools.compareContentHashes"; //$NON-NLS-1$
+
+	private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty(CONTENT_HASH_PROPERTY, Boolean.TRUE.toString()));
+
+	/**
+	 * Reads the super types and member types of a class file
+	 */
+	static class TypeHeader extends ClassVisitor {
+		String name = null;
+		List<String> supertypes = new ArrayList<>(4);
+		List<String> memberTypes = new ArrayList<>(2);
+
+		TypeHeader() {
+			super(Opcodes.ASM5);
+		}
+
+		@Override
+		public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+			this.name = name;
+			if (superName != null) {
+				supertypes.add(superName.replace('/', '.'));
+			}
+			if (interfaces != null) {
+				for (String iface : interfaces) {
+					supertypes.add(iface.replace('/', '.'));
+				}
+			}
+		}
+
+		@Override
+		public void visitInnerClass(String name, String outerName, String innerName, int access) {
+			if (outerName != null && outerName.equals(this.name)) {
+				memberTypes.add(name.replace('/', '.'));
+			}
+		}
+	}
+
+	/**
+	 * Collects the annotations of an element of an API description and of
+	 * its children
+	 */
+	static class AnnotationsCollector extends ApiDescriptionVisitor {
+		List<Object> annotations = new ArrayList<>();
+
+		@Override
+		public boolean visitElement(IElementDescriptor element, IApiAnnotations description) {
+			annotations.add(element);
+			annotations.add(Integer.valueOf(description.getVisibility()));
+			annotations.add(Integer.valueOf(description.getRestrictions()));
+			return true;
+		}
+	}
+
+	private final Map<String, Boolean> fResults = new HashMap<>();
+
+	/**
+	 * Returns if the comparison of fingerprints is enabled
+	 *
+	 * @return <code>true</code> unless turned off with the
+	 *         {@link #CONTENT_HASH_PROPERTY} system property
+	 */
+	public static boolean isEnabled() {
+		return ENABLED;
+	}
+
+	/**
+	 * Returns if the given type root is unchanged in the second component,
+	 * in which case comparing the two type roots reports no delta.
+	 * <code>false</code> is returned whenever this cannot be established
+	 * cheaply.
+	 *
+	 * @param typeRoot the type root from the reference component
+	 * @param typeRoot2 the type root to compare with
+	 * @param component the reference component
+	 * @param component2 the component to compare with
+	 * @return <code>true</code> if the type is unchanged
+	 */
+	public boolean isUnchanged(IApiTypeRoot typeRoot, IApiTypeRoot typeRoot2, IApiComponent component, IApiComponent component2) {
+		if (!ENABLED || component == null || component2 == null) {
+			return false;
+		}
+		String key = getKey(typeRoot.getTypeName(), component, component2);
+		Boolean result = fResults.get(key);
+		if (result != null) {
+			return result.booleanValue();
+		}
+		// types being checked are considered changed, to stop at cycles
+		fResults.put(key, Boolean.FALSE);
+		boolean unchanged = false;
+		try {
+			unchanged = internalIsUnchanged(typeRoot, typeRoot2, component, component2);
+		} catch (CoreException e) {
+			// let the comparator report the problem
+		}
+		fResults.put(key, Boolean.valueOf(unchanged));
+		return unchanged;
+	}
+
+	private boolean internalIsUnchanged(IApiTypeRoot typeRoot, IApiTypeRoot typeRoot2, IApiComponent component, IApiComponent component2) throws CoreException {
+		if (!(typeRoot instanceof AbstractApiTypeRoot) || !(typeRoot2 instanceof AbstractApiTypeRoot)) {
+			return false;
+		}
+		AbstractApiTypeRoot root = (AbstractApiTypeRoot) typeRoot;
+		AbstractApiTypeRoot root2 = (AbstractApiTypeRoot) typeRoot2;
+		if (root.getContentHash() != root2.getContentHash()) {
+			return false;
+		}
+		String typeName = typeRoot.getTypeName();
+		if (!typeName.equals(typeRoot2.getTypeName())) {
+			return false;
+		}
+		byte[] contents = root.getContents();
+		if (!Arrays.equals(contents, root2.getContents()) || !hasSameDescription(typeName, component, component2)) {
+			return false;
+		}
+		TypeHeader header = new TypeHeader();
+		new ClassReader(contents).accept(header, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+		for (String supertype : header.supertypes) {
+			IApiTypeRoot superRoot = resolveType(supertype, component);
+			IApiTypeRoot superRoot2 = resolveType(supertype, component2);
+			if (superRoot == null || superRoot2 == null || !isUnchanged(superRoot, superRoot2, superRoot.getApiComponent(), superRoot2.getApiComponent())) {
+				return false;
+			}
+		}
+		for (String memberType : header.memberTypes) {
+			IApiTypeRoot memberRoot = component.findTypeRoot(memberType);
+			IApiTypeRoot memberRoot2 = component2.findTypeRoot(memberType);
+			if (memberRoot == null || memberRoot2 == null || !isUnchanged(memberRoot, memberRoot2, component, component2)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns if the API descriptions of both components describe the given
+	 * type and its members the same way
+	 */
+	private boolean hasSameDescription(String typeName, IApiComponent component, IApiComponent component2) throws CoreException {
+		if (component.hasApiDescription() != component2.hasApiDescription()) {
+			return false;
+		}
+		IReferenceTypeDescriptor type = Factory.typeDescriptor(typeName);
+		IApiDescription description = component.getApiDescription();
+		IApiDescription description2 = component2.getApiDescription();
+		IApiAnnotations annotations = description.resolveAnnotations(type);
+		IApiAnnotations annotations2 = description2.resolveAnnotations(type);
+		if (annotations == null || annotations2 == null) {
+			if (annotations != annotations2) {
+				return false;
+			}
+		} else if (annotations.getVisibility() != annotations2.getVisibility() || annotations.getRestrictions() != annotations2.getRestrictions()) {
+			return false;
+		}
+		AnnotationsCollector collector = new AnnotationsCollector();
+		description.accept(collector, type, null);
+		AnnotationsCollector collector2 = new AnnotationsCollector();
+		description2.accept(collector2, type, null);
+		return Objects.equals(collector.annotations, collector2.annotations);
+	}
+
+	/**
+	 * Resolves the given type the way the types of the hierarchy are resolved
+	 * when comparing types
+	 */
+	private IApiTypeRoot resolveType(String typeName, IApiComponent component) throws CoreException {
+		IApiBaseline baseline = component.getBaseline();
+		if (baseline == null) {
+			return null;
+		}
+		return Util.getClassFile(baseline.resolvePackage(component, Signatures.getPackageName(typeName)), typeName);
+	}
+
+	private static String getKey(String typeName, IApiComponent component, IApiComponent component2) {
+		return component.getSymbolicName() + '/' + component2.getSymbolicName() + '/' + typeName;
+	}
+}
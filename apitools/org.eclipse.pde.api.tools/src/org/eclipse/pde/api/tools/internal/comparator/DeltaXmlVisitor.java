@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2013 IBM Corporation and others.
+ * Copyright (c) 2007, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,6 +10,8 @@
  *******************************************************************************/
 package org.eclipse.pde.api.tools.internal.comparator;
 
+import java.util.ArrayList;
+
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.pde.api.tools.internal.IApiXmlConstants;
 import org.eclipse.pde.api.tools.internal.provisional.comparator.ApiComparator;
@@ -22,6 +24,11 @@ import org.w3c.dom.Element;
 
 /**
  * Delta visitor that generates XML for the delta.
+ * <p>
+ * When constructed with an {@link IDeltaWriter}, leaf deltas are handed to the
+ * writer as they are visited instead of being added to a document, and
+ * {@link #close()} has to be called once all deltas have been visited.
+ * </p>
  *
  * @since 1.0.0
  */
@@ -36,6 +43,17 @@ public class DeltaXmlVisitor extends DeltaVisitor {
 	 */
 	private Element fDeltas;
 
+	/**
+	 * Writer the leaf deltas are streamed to, or <code>null</code> when
+	 * generating a document
+	 */
+	private IDeltaWriter fWriter = null;
+
+	/**
+	 * First failure of the writer, reported by {@link #close()}
+	 */
+	private CoreException fWriteFailure = null;
+
 	/**
 	 * Constructs a new visitor for the given component.
 	 *
@@ -48,6 +66,17 @@ public class DeltaXmlVisitor extends DeltaVisitor {
 		fDoc.appendChild(fDeltas);
 	}
 
+	/**
+	 * Constructs a new visitor streaming the leaf deltas to the given writer.
+	 * No document is generated.
+	 *
+	 * @param writer the writer to hand the leaf deltas to
+	 * @since 1.1
+	 */
+	public DeltaXmlVisitor(IDeltaWriter writer) {
+		fWriter = writer;
+	}
+
 	@Override
 	public boolean visit(IDelta delta) {
 		if (delta == ApiComparator.NO_DELTA) {
@@ -60,24 +89,21 @@ public class DeltaXmlVisitor extends DeltaVisitor {
 	}
 
 	protected void processLeafDelta(IDelta delta) {
-		Element deltaElement = fDoc.createElement(IApiXmlConstants.DELTA_ELEMENT_NAME);
-		deltaElement.setAttribute(IApiXmlConstants.ATTR_FLAGS, Integer.toString(delta.getFlags()));
-		deltaElement.setAttribute(IApiXmlConstants.ATTR_KIND, Util.getDeltaKindName(delta));
-		deltaElement.setAttribute(IApiXmlConstants.ATTR_NAME_ELEMENT_TYPE, Util.getDeltaElementType(delta));
-		deltaElement.setAttribute(IApiXmlConstants.ATTR_KEY, delta.getKey());
-		String typeName = delta.getTypeName();
-		if (typeName != null) {
-			deltaElement.setAttribute(IApiXmlConstants.ATTR_NAME_TYPE_NAME, typeName);
+		if (fWriter != null) {
+			if (fWriteFailure == null) {
+				try {
+					fWriter.writeDelta(delta);
+				} catch (CoreException e) {
+					fWriteFailure = e;
+				}
+			}
+			return;
 		}
-		deltaElement.setAttribute(IApiXmlConstants.ATTR_NAME_COMPATIBLE, Boolean.toString(DeltaProcessor.isCompatible(delta)));
-		deltaElement.setAttribute(IApiXmlConstants.ATTR_NAME_OLD_MODIFIERS, Integer.toString(delta.getOldModifiers()));
-		deltaElement.setAttribute(IApiXmlConstants.ATTR_NAME_NEW_MODIFIERS, Integer.toString(delta.getNewModifiers()));
-		deltaElement.setAttribute(IApiXmlConstants.ATTR_RESTRICTIONS, Integer.toString(delta.getCurrentRestrictions()));
-		String apiComponentID = delta.getComponentVersionId();
-		if (apiComponentID != null) {
-			deltaElement.setAttribute(IApiXmlConstants.ATTR_NAME_COMPONENT_ID, apiComponentID);
+		Element deltaElement = fDoc.createElement(IApiXmlConstants.DELTA_ELEMENT_NAME);
+		String[] attributes = getDeltaAttributes(delta);
+		for (int i = 0; i < attributes.length; i += 2) {
+			deltaElement.setAttribute(attributes[i], attributes[i + 1]);
 		}
-		deltaElement.setAttribute(IApiXmlConstants.ATTR_MESSAGE, delta.getMessage());
 		String[] messageArguments = delta.getArguments();
 		int length = messageArguments.length;
 		if (length > 0) {
@@ -92,18 +118,81 @@ public class DeltaXmlVisitor extends DeltaVisitor {
 		fDeltas.appendChild(deltaElement);
 	}
 
+	/**
+	 * Returns the attributes of the element describing the given leaf delta,
+	 * shared by the generated document and {@link XmlDeltaWriter}
+	 *
+	 * @param delta the leaf delta
+	 * @return the names and values of the attributes, one after the other, in
+	 *         the order they are written
+	 * @since 1.1
+	 */
+	static String[] getDeltaAttributes(IDelta delta) {
+		ArrayList<String> attributes = new ArrayList<>(24);
+		attributes.add(IApiXmlConstants.ATTR_FLAGS);
+		attributes.add(Integer.toString(delta.getFlags()));
+		attributes.add(IApiXmlConstants.ATTR_KIND);
+		attributes.add(Util.getDeltaKindName(delta));
+		attributes.add(IApiXmlConstants.ATTR_NAME_ELEMENT_TYPE);
+		attributes.add(Util.getDeltaElementType(delta));
+		attributes.add(IApiXmlConstants.ATTR_KEY);
+		attributes.add(delta.getKey());
+		String typeName = delta.getTypeName();
+		if (typeName != null) {
+			attributes.add(IApiXmlConstants.ATTR_NAME_TYPE_NAME);
+			attributes.add(typeName);
+		}
+		attributes.add(IApiXmlConstants.ATTR_NAME_COMPATIBLE);
+		attributes.add(Boolean.toString(DeltaProcessor.isCompatible(delta)));
+		attributes.add(IApiXmlConstants.ATTR_NAME_OLD_MODIFIERS);
+		attributes.add(Integer.toString(delta.getOldModifiers()));
+		attributes.add(IApiXmlConstants.ATTR_NAME_NEW_MODIFIERS);
+		attributes.add(Integer.toString(delta.getNewModifiers()));
+		attributes.add(IApiXmlConstants.ATTR_RESTRICTIONS);
+		attributes.add(Integer.toString(delta.getCurrentRestrictions()));
+		String apiComponentID = delta.getComponentVersionId();
+		if (apiComponentID != null) {
+			attributes.add(IApiXmlConstants.ATTR_NAME_COMPONENT_ID);
+			attributes.add(apiComponentID);
+		}
+		attributes.add(IApiXmlConstants.ATTR_MESSAGE);
+		attributes.add(delta.getMessage());
+		return attributes.toArray(new String[attributes.size()]);
+	}
+
 	@Override
 	public void endVisit(IDelta delta) {
 		// nothing to do
 	}
 
+	/**
+	 * Ends the report of a visitor constructed with an {@link IDeltaWriter}.
+	 * Does nothing for a visitor generating a document.
+	 *
+	 * @throws CoreException if the deltas could not be written
+	 * @since 1.1
+	 */
+	public void close() throws CoreException {
+		if (fWriter == null) {
+			return;
+		}
+		if (fWriteFailure != null) {
+			throw fWriteFailure;
+		}
+		fWriter.close();
+	}
+
 	/**
 	 * Returns the settings as a UTF-8 string containing XML.
 	 *
-	 * @return XML
+	 * @return XML, or <code>null</code> for a visitor constructed with an
+	 *         {@link IDeltaWriter}
 	 * @throws CoreException if something goes wrong
 	 */
 	public String getXML() throws CoreException {
+		if (fDoc == null) {
+			return null;
+		}
 		return Util.serializeDocument(fDoc);
 	}
 
@@ -111,7 +200,8 @@ public class DeltaXmlVisitor extends DeltaVisitor {
 	 * Return the xml dom document this visitor generates. Use {@link #getXML()}
 	 * to get the serialized xml string.
 	 *
-	 * @return xml dom document
+	 * @return xml dom document, or <code>null</code> for a visitor
+	 *         constructed with an {@link IDeltaWriter}
 	 */
 	public Document getDocument() {
 		return fDoc;
@@ -0,0 +1,38 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.internal.comparator;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.pde.api.tools.internal.provisional.comparator.IDelta;
+
+/**
+ * Writes leaf deltas to a report one at a time, so that a report can be
+ * written while the deltas are computed without keeping them in memory.
+ *
+ * @since 1.1
+ */
+public interface IDeltaWriter {
+
+	/**
+	 * Writes the given leaf delta
+	 *
+	 * @param delta the delta to write
+	 * @throws CoreException if the delta could not be written
+	 */
+	public void writeDelta(IDelta delta) throws CoreException;
+
+	/**
+	 * Ends the report and flushes it. The underlying writer is not closed.
+	 *
+	 * @throws CoreException if the report could not be written
+	 */
+	public void close() throws CoreException;
+}
@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.internal.comparator;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.pde.api.tools.internal.IApiXmlConstants;
+import org.eclipse.pde.api.tools.internal.provisional.ApiPlugin;
+import org.eclipse.pde.api.tools.internal.provisional.comparator.DeltaProcessor;
+import org.eclipse.pde.api.tools.internal.provisional.comparator.IDelta;
+import org.eclipse.pde.api.tools.internal.util.Util;
+
+/**
+ * Writes deltas as JSON lines: one JSON object per delta, on its own line.
+ * The members of the objects are named after the attributes of the XML
+ * written by {@link XmlDeltaWriter}, and the message arguments are written
+ * as an array named {@link IApiXmlConstants#ELEMENT_DELTA_MESSAGE_ARGUMENTS}.
+ *
+ * @since 1.1
+ */
+public class JsonDeltaWriter implements IDeltaWriter {
+
+	private final Writer fWriter;
+	private final StringBuilder fLine = new StringBuilder(256);
+
+	/**
+	 * Constructor
+	 *
+	 * @param writer the writer to write the JSON lines to
+	 */
+	public JsonDeltaWriter(Writer writer) {
+		fWriter = writer;
+	}
+
+	@Override
+	public void writeDelta(IDelta delta) throws CoreException {
+		StringBuilder line = fLine;
+		line.setLength(0);
+		line.append('{');
+		appendMember(line, IApiXmlConstants.ATTR_FLAGS, delta.getFlags());
+		appendMember(line, IApiXmlConstants.ATTR_KIND, Util.getDeltaKindName(delta));
+		appendMember(line, IApiXmlConstants.ATTR_NAME_ELEMENT_TYPE, Util.getDeltaElementType(delta));
+		appendMember(line, IApiXmlConstants.ATTR_KEY, delta.getKey());
+		appendMember(line, IApiXmlConstants.ATTR_NAME_TYPE_NAME, delta.getTypeName());
+		appendName(line, IApiXmlConstants.ATTR_NAME_COMPATIBLE).append(DeltaProcessor.isCompatible(delta)).append(',');
+		appendMember(line, IApiXmlConstants.ATTR_NAME_OLD_MODIFIERS, delta.getOldModifiers());
+		appendMember(line, IApiXmlConstants.ATTR_NAME_NEW_MODIFIERS, delta.getNewModifiers());
+		appendMember(line, IApiXmlConstants.ATTR_RESTRICTIONS, delta.getCurrentRestrictions());
+		appendMember(line, IApiXmlConstants.ATTR_NAME_COMPONENT_ID, delta.getComponentVersionId());
+		appendMember(line, IApiXmlConstants.ATTR_MESSAGE, delta.getMessage());
+		appendName(line, IApiXmlConstants.ELEMENT_DELTA_MESSAGE_ARGUMENTS).append('[');
+		String[] arguments = delta.getArguments();
+		for (int i = 0; i < arguments.length; i++) {
+			if (i > 0) {
+				line.append(',');
+			}
+			appendString(line, arguments[i]);
+		}
+		line.append("]}\n"); //$NON-NLS-1$
+		try {
+			fWriter.write(line.toString());
+		} catch (IOException e) {
+			throw new CoreException(new Status(IStatus.ERROR, ApiPlugin.PLUGIN_ID, "Unable to write delta: " + delta.getKey(), e)); //$NON-NLS-1$
+		}
+	}
+
+	@Override
+	public void close() throws CoreException {
+		try {
+			fWriter.flush();
+		} catch (IOException e) {
+			throw new CoreException(new Status(IStatus.ERROR, ApiPlugin.PLUGIN_ID, "Unable to write deltas", e)); //$NON-NLS-1$
+		}
+	}
+
+	private static void appendMember(StringBuilder line, String name, int value) {
+		appendName(line, name).append(value).append(',');
+	}
+
+	private static void appendMember(StringBuilder line, String name, String value) {
+		if (value != null) {
+			appendString(appendName(line, name), value).append(',');
+		}
+	}
+
+	private static StringBuilder appendName(StringBuilder line, String name) {
+		return appendString(line, name).append(':');
+	}
+
+	/**
+	 * Appends the given string as a JSON string literal
+	 *
+	 * @param line the line to append to
+	 * @param value the string or <code>null</code>
+	 * @return the line
+	 */
+	static StringBuilder appendString(StringBuilder line, String value) {
+		if (value == null) {
+			return line.append("null"); //$NON-NLS-1$
+		}
+		line.append('"');
+		for (int i = 0, max = value.length(); i < max; i++) {
+			char c = value.charAt(i);
+			switch (c) {
+				case '"':
+					line.append("\\\""); //$NON-NLS-1$
+					break;
+				case '\\':
+					line.append("\\\\"); //$NON-NLS-1$
+					break;
+				case '\n':
+					line.append("\\n"); //$NON-NLS-1$
+					break;
+				case '\r':
+					line.append("\\r"); //$NON-NLS-1$
+					break;
+				case '\t':
+					line.append("\\t"); //$NON-NLS-1$
+					break;
+				default:
+					if (c < 0x20) {
+						line.append("\\u00").append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xF, 16)); //$NON-NLS-1$
+					} else {
+						line.append(c);
+					}
+					break;
+			}
+		}
+		return line.append('"');
+	}
+}
@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.internal.comparator;
+
+import java.io.Writer;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.pde.api.tools.internal.IApiCoreConstants;
+import org.eclipse.pde.api.tools.internal.IApiXmlConstants;
+import org.eclipse.pde.api.tools.internal.provisional.ApiPlugin;
+import org.eclipse.pde.api.tools.internal.provisional.comparator.IDelta;
+
+/**
+ * Writes deltas as the XML generated by {@link DeltaXmlVisitor}, one element
+ * at a time
+ *
+ * @since 1.1
+ */
+public class XmlDeltaWriter implements IDeltaWriter {
+
+	private final Writer fWriter;
+	private XMLStreamWriter fXmlWriter = null;
+
+	/**
+	 * Constructor
+	 *
+	 * @param writer the writer to write the XML to, expected to encode
+	 *            characters in UTF-8
+	 */
+	public XmlDeltaWriter(Writer writer) {
+		fWriter = writer;
+	}
+
+	@Override
+	public void writeDelta(IDelta delta) throws CoreException {
+		try {
+			XMLStreamWriter writer = getXmlWriter();
+			String[] messageArguments = delta.getArguments();
+			if (messageArguments.length > 0) {
+				writer.writeStartElement(IApiXmlConstants.DELTA_ELEMENT_NAME);
+			} else {
+				writer.writeEmptyElement(IApiXmlConstants.DELTA_ELEMENT_NAME);
+			}
+			String[] attributes = DeltaXmlVisitor.getDeltaAttributes(delta);
+			for (int i = 0; i < attributes.length; i += 2) {
+				writer.writeAttribute(attributes[i], attributes[i + 1]);
+			}
+			if (messageArguments.length > 0) {
+				writer.writeStartElement(IApiXmlConstants.ELEMENT_DELTA_MESSAGE_ARGUMENTS);
+				for (String argument : messageArguments) {
+					writer.writeEmptyElement(IApiXmlConstants.ELEMENT_DELTA_MESSAGE_ARGUMENT);
+					writer.writeAttribute(IApiXmlConstants.ATTR_VALUE, String.valueOf(argument));
+				}
+				writer.writeEndElement();
+				writer.writeEndElement();
+			}
+		} catch (XMLStreamException e) {
+			throw new CoreException(new Status(IStatus.ERROR, ApiPlugin.PLUGIN_ID, "Unable to write delta: " + delta.getKey(), e)); //$NON-NLS-1$
+		}
+	}
+
+	@Override
+	public void close() throws CoreException {
+		try {
+			XMLStreamWriter writer = getXmlWriter();
+			writer.writeEndElement();
+			writer.writeEndDocument();
+			writer.flush();
+			writer.close();
+		} catch (XMLStreamException e) {
+			throw new CoreException(new Status(IStatus.ERROR, ApiPlugin.PLUGIN_ID, "Unable to write deltas", e)); //$NON-NLS-1$
+		}
+	}
+
+	private XMLStreamWriter getXmlWriter() throws XMLStreamException {
+		if (fXmlWriter == null) {
+			fXmlWriter = XMLOutputFactory.newInstance().createXMLStreamWriter(fWriter);
+			fXmlWriter.writeStartDocument(IApiCoreConstants.UTF_8, "1.0"); //$NON-NLS-1$
+			fXmlWriter.writeStartElement(IApiXmlConstants.DELTAS_ELEMENT_NAME);
+		}
+		return fXmlWriter;
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2009 IBM Corporation and others.
+ * Copyright (c) 2007, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,6 +10,8 @@
  *******************************************************************************/
 package org.eclipse.pde.api.tools.internal.model;
 
+import java.util.zip.CRC32;
+
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiBaseline;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiComponent;
@@ -24,6 +26,12 @@ import org.eclipse.pde.api.tools.internal.provisional.model.IApiTypeRoot;
  */
 public abstract class AbstractApiTypeRoot extends ApiElement implements IApiTypeRoot {
 
+	/**
+	 * Fingerprint of the contents of this type root, <code>-1</code> until
+	 * computed
+	 */
+	private volatile long fContentHash = -1L;
+
 	/**
 	 * Constructor
 	 *
@@ -46,7 +54,7 @@ public abstract class AbstractApiTypeRoot extends ApiElement implements IApiType
 			type = (IApiType) cache.getElementInfo(baseline.getName(), comp.getSymbolicName(), this.getTypeName(), IApiElement.TYPE);
 		}
 		if (type == null) {
-			type = TypeStructureBuilder.buildTypeStructure(getContents(), getApiComponent(), this);
+			type = buildStructure();
 			if (type == null) {
 				return null;
 			}
@@ -55,6 +63,66 @@ public abstract class AbstractApiTypeRoot extends ApiElement implements IApiType
 		return type;
 	}
 
+	/**
+	 * Builds the type structure of this type root when it is not cached
+	 *
+	 * @return the type structure or <code>null</code> if it could not be
+	 *         built
+	 * @throws CoreException if the contents of this type root could not be
+	 *             read
+	 * @since 1.1
+	 */
+	protected IApiType buildStructure() throws CoreException {
+		return TypeStructureBuilder.buildTypeStructure(getContents(), getApiComponent(), this);
+	}
+
+	/**
+	 * Returns a fingerprint of the class file bytes of this type root, made of
+	 * their size and CRC-32. Type roots with different fingerprints have
+	 * different contents, but type roots with the same fingerprint can still
+	 * have different contents. The fingerprint is computed once per type root.
+	 *
+	 * @return the fingerprint of the contents of this type root
+	 * @throws CoreException if the contents of this type root could not be
+	 *             read
+	 * @since 1.1
+	 */
+	public long getContentHash() throws CoreException {
+		long hash = fContentHash;
+		if (hash == -1L) {
+			hash = computeContentHash();
+			fContentHash = hash;
+		}
+		return hash;
+	}
+
+	/**
+	 * Computes the fingerprint of the contents of this type root. By default
+	 * the contents are read and their CRC-32 computed.
+	 *
+	 * @return the fingerprint of the contents of this type root
+	 * @throws CoreException if the contents of this type root could not be
+	 *             read
+	 * @since 1.1
+	 */
+	protected long computeContentHash() throws CoreException {
+		byte[] contents = getContents();
+		CRC32 crc = new CRC32();
+		crc.update(contents);
+		return toContentHash(crc.getValue(), contents.length);
+	}
+
+	/**
+	 * Returns the fingerprint of contents with the given CRC-32 and size
+	 *
+	 * @param crc the CRC-32 of the contents
+	 * @param size the size of the contents
+	 * @return the fingerprint
+	 */
+	static long toContentHash(long crc, long size) {
+		return (size << 32) | (crc & 0xFFFFFFFFL);
+	}
+
 	/**
 	 * @see org.eclipse.pde.api.tools.internal.provisional.IApiTypeRoot#getApiComponent()
 	 */
@@ -61,6 +61,7 @@ import org.eclipse.pde.api.tools.internal.provisional.ApiPlugin;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiBaseline;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiComponent;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiElement;
+import org.eclipse.pde.api.tools.internal.util.SymbolTable;
 import org.eclipse.pde.api.tools.internal.util.Util;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.Constants;
@@ -156,6 +157,12 @@ public class ApiBaseline extends ApiElement implements IApiBaseline, IVMInstallC
 	 */
 	private IVMInstall fVMBinding = null;
 
+	/**
+	 * The names shared by the references extracted from the class files of
+	 * this baseline
+	 */
+	private final SymbolTable fSymbolTable = new SymbolTable();
+
 	/**
 	 * Constructs a new API baseline with the given name.
 	 *
@@ -791,6 +798,19 @@ public class ApiBaseline extends ApiElement implements IApiBaseline, IVMInstallC
 			fSystemLibraryComponent.dispose();
 			fSystemLibraryComponent = null;
 		}
+		ArchiveHandlePool.getPool().evict(this);
+		TypeStructureIndex.flush(this);
+		fSymbolTable.clear();
+	}
+
+	/**
+	 * Returns the table of names shared by the references extracted from the
+	 * class files of this baseline
+	 *
+	 * @return the symbol table of this baseline
+	 */
+	public SymbolTable getSymbolTable() {
+		return fSymbolTable;
 	}
 
 	/**
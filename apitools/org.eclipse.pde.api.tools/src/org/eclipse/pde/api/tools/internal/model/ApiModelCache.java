@@ -10,61 +10,109 @@
  *******************************************************************************/
 package org.eclipse.pde.api.tools.internal.model;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
 import org.eclipse.core.runtime.CoreException;
-import org.eclipse.jdt.internal.core.OverflowingLRUCache;
-import org.eclipse.jdt.internal.core.util.LRUCache;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences.IPreferenceChangeListener;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences.PreferenceChangeEvent;
+import org.eclipse.core.runtime.preferences.InstanceScope;
+import org.eclipse.pde.api.tools.internal.provisional.ApiPlugin;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiBaseline;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiComponent;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiElement;
 
 /**
  * Manages the caches of {@link IApiElement}s
+ * <p>
+ * The cache is safe for concurrent use: lookups do not lock and updates only
+ * contend on the hash bins they touch. The total size of the cache is bounded
+ * by the estimated memory retained by the cached elements rather than by the
+ * number of entries. When the bound is exceeded the least recently used
+ * elements are evicted. The bound can be set with the
+ * {@link ApiPlugin#MODEL_CACHE_SIZE} preference.
+ * </p>
  *
  * @since 1.0.2
  */
 public final class ApiModelCache {
 
 	/**
-	 * Cache used for {@link IApiElement}s
+	 * An entry in the cache
 	 */
-	class Cache extends OverflowingLRUCache {
+	static final class CacheEntry {
+		final IApiElement fElement;
+		final long fWeight;
+		volatile long fLastAccess;
 
-		/**
-		 * Constructor
-		 *
-		 * @param size
-		 * @param overflow
-		 */
-		public Cache(int size, int overflow) {
-			super(size, overflow);
-		}
-
-		@Override
-		protected boolean close(LRUCacheEntry entry) {
-			return true;
+		CacheEntry(IApiElement element, long weight, long tick) {
+			fElement = element;
+			fWeight = weight;
+			fLastAccess = tick;
 		}
+	}
 
-		@Override
-		protected LRUCache newInstance(int size, int newOverflow) {
-			return new Cache(size, newOverflow);
-		}
+	/**
+	 * A cache entry and the map it is stored in, used while evicting
+	 */
+	static final class EvictionCandidate {
+		final Map<String, CacheEntry> fMap;
+		final String fKey;
+		final CacheEntry fEntry;
+		final long fLastAccess;
 
-		/**
-		 * Returns if the cache has any elements in it or not
-		 *
-		 * @return true if the cache has no entries, false otherwise
-		 */
-		public boolean isEmpty() {
-			return !keys().hasMoreElements();
+		EvictionCandidate(Map<String, CacheEntry> map, String key, CacheEntry entry) {
+			fMap = map;
+			fKey = key;
+			fEntry = entry;
+			fLastAccess = entry.fLastAccess;
 		}
 	}
 
-	static final int DEFAULT_CACHE_SIZE = 1000;
-	static final int DEFAULT_OVERFLOW = (int) (DEFAULT_CACHE_SIZE * 0.1f);
+	/**
+	 * Default maximum size of the cache, in megabytes
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 64;
+
+	/**
+	 * Weight used for elements that cannot estimate their own size
+	 */
+	static final long DEFAULT_ELEMENT_WEIGHT = 512;
+
+	/**
+	 * Percentage of the maximum weight the cache is trimmed to when evicting
+	 */
+	static final int EVICTION_TARGET_PERCENT = 90;
+
 	static ApiModelCache fInstance = null;
 
-	Cache fRootCache = null;
-	Cache fMemberTypeCache = null;
+	/**
+	 * Cache of root types: baseline name -> component id -> type name
+	 */
+	final ConcurrentHashMap<String, ConcurrentHashMap<String, ConcurrentHashMap<String, CacheEntry>>> fRootCache = new ConcurrentHashMap<>();
+
+	/**
+	 * Cache of member types: [baselineid].[componentid].[roottypename] -> type
+	 * name
+	 */
+	final ConcurrentHashMap<String, ConcurrentHashMap<String, CacheEntry>> fMemberTypeCache = new ConcurrentHashMap<>();
+
+	private final AtomicLong fClock = new AtomicLong();
+	private final AtomicLong fWeight = new AtomicLong();
+	private final AtomicLong fHits = new AtomicLong();
+	private final AtomicLong fMisses = new AtomicLong();
+	private final AtomicLong fEvictions = new AtomicLong();
+	private final ReentrantLock fEvictionLock = new ReentrantLock();
+	private volatile long fMaxWeight = DEFAULT_CACHE_SIZE * 1024L * 1024L;
 
 	/**
 	 * Constructor - no instantiation
@@ -80,10 +128,101 @@ public final class ApiModelCache {
 	public static synchronized ApiModelCache getCache() {
 		if (fInstance == null) {
 			fInstance = new ApiModelCache();
+			fInstance.initializeMaxWeight();
 		}
 		return fInstance;
 	}
 
+	/**
+	 * Reads the maximum size of the cache from the preferences, and listens
+	 * for changes to it, when the framework is running.
+	 */
+	private void initializeMaxWeight() {
+		if (!ApiPlugin.isRunningInFramework()) {
+			return;
+		}
+		int size = Platform.getPreferencesService().getInt(ApiPlugin.PLUGIN_ID, ApiPlugin.MODEL_CACHE_SIZE, DEFAULT_CACHE_SIZE, null);
+		setMaxSize(size);
+		IEclipsePreferences node = InstanceScope.INSTANCE.getNode(ApiPlugin.PLUGIN_ID);
+		if (node != null) {
+			node.addPreferenceChangeListener(new IPreferenceChangeListener() {
+				@Override
+				public void preferenceChange(PreferenceChangeEvent event) {
+					if (ApiPlugin.MODEL_CACHE_SIZE.equals(event.getKey())) {
+						setMaxSize(Platform.getPreferencesService().getInt(ApiPlugin.PLUGIN_ID, ApiPlugin.MODEL_CACHE_SIZE, DEFAULT_CACHE_SIZE, null));
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Sets the maximum size of the cache in megabytes, evicting elements if
+	 * the cache is now too large
+	 *
+	 * @param megabytes the maximum size, values less than one are ignored
+	 */
+	public void setMaxSize(int megabytes) {
+		if (megabytes > 0) {
+			setMaxWeight(megabytes * 1024L * 1024L);
+		}
+	}
+
+	/**
+	 * Sets the maximum estimated number of bytes held by the cache, evicting
+	 * elements if the cache is now too large
+	 *
+	 * @param weight the maximum weight
+	 */
+	public void setMaxWeight(long weight) {
+		fMaxWeight = weight;
+		evictIfNeeded();
+	}
+
+	/**
+	 * @return the maximum estimated number of bytes held by the cache
+	 */
+	public long getMaxWeight() {
+		return fMaxWeight;
+	}
+
+	/**
+	 * @return the estimated number of bytes currently held by the cache
+	 */
+	public long getWeight() {
+		return fWeight.get();
+	}
+
+	/**
+	 * @return the number of lookups that found a cached element
+	 */
+	public long getHitCount() {
+		return fHits.get();
+	}
+
+	/**
+	 * @return the number of lookups that did not find a cached element
+	 */
+	public long getMissCount() {
+		return fMisses.get();
+	}
+
+	/**
+	 * @return the number of elements evicted because the cache was full
+	 */
+	public long getEvictionCount() {
+		return fEvictions.get();
+	}
+
+	/**
+	 * Resets the hit, miss and eviction counters
+	 */
+	public void resetStatistics() {
+		fHits.set(0);
+		fMisses.set(0);
+		fEvictions.set(0);
+	}
+
 	/**
 	 * Returns the key to use in a cache. The key is of the form:
 	 * <code>[baselineid].[componentid].[typename]</code><br>
@@ -99,6 +238,139 @@ public final class ApiModelCache {
 		return buffer.toString();
 	}
 
+	/**
+	 * Returns the estimated weight of the given element
+	 *
+	 * @param element
+	 * @return the weight of the element
+	 */
+	private long weigh(IApiElement element) {
+		if (element instanceof ApiType) {
+			return ((ApiType) element).estimateSize();
+		}
+		return DEFAULT_ELEMENT_WEIGHT;
+	}
+
+	/**
+	 * Stores the given element in the given map, keeping the weight of the
+	 * cache up to date
+	 *
+	 * @param map
+	 * @param key
+	 * @param element
+	 */
+	private void put(Map<String, CacheEntry> map, String key, IApiElement element) {
+		CacheEntry entry = new CacheEntry(element, weigh(element), fClock.incrementAndGet());
+		CacheEntry old = map.put(key, entry);
+		fWeight.addAndGet(old == null ? entry.fWeight : entry.fWeight - old.fWeight);
+		evictIfNeeded();
+	}
+
+	/**
+	 * Looks up the element stored under the given key, recording a hit or miss
+	 *
+	 * @param map the map to look in or <code>null</code>
+	 * @param key
+	 * @return the element or <code>null</code>
+	 */
+	private IApiElement get(Map<String, CacheEntry> map, String key) {
+		CacheEntry entry = map == null ? null : map.get(key);
+		if (entry == null) {
+			fMisses.incrementAndGet();
+			return null;
+		}
+		fHits.incrementAndGet();
+		entry.fLastAccess = fClock.incrementAndGet();
+		return entry.fElement;
+	}
+
+	/**
+	 * Removes the element stored under the given key
+	 *
+	 * @param map
+	 * @param key
+	 * @return <code>true</code> if an element was removed
+	 */
+	private boolean remove(Map<String, CacheEntry> map, String key) {
+		CacheEntry old = map.remove(key);
+		if (old != null) {
+			fWeight.addAndGet(-old.fWeight);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Subtracts the weight of all entries in the given map from the weight of
+	 * the cache, once the map has been removed from the cache
+	 *
+	 * @param map
+	 */
+	private void discard(Map<String, CacheEntry> map) {
+		if (map == null) {
+			return;
+		}
+		long weight = 0;
+		for (CacheEntry entry : map.values()) {
+			weight += entry.fWeight;
+		}
+		fWeight.addAndGet(-weight);
+	}
+
+	/**
+	 * Evicts the least recently used elements if the cache has grown larger
+	 * than its maximum weight. Only one thread evicts at a time; other threads
+	 * carry on without waiting.
+	 */
+	private void evictIfNeeded() {
+		if (fWeight.get() <= fMaxWeight || !fEvictionLock.tryLock()) {
+			return;
+		}
+		try {
+			List<EvictionCandidate> candidates = new ArrayList<>();
+			long weight = 0;
+			for (ConcurrentHashMap<String, ConcurrentHashMap<String, CacheEntry>> compcache : fRootCache.values()) {
+				for (ConcurrentHashMap<String, CacheEntry> typecache : compcache.values()) {
+					weight += collect(typecache, candidates);
+				}
+			}
+			for (ConcurrentHashMap<String, CacheEntry> mcache : fMemberTypeCache.values()) {
+				weight += collect(mcache, candidates);
+			}
+			// the scan gives the exact weight, correcting any drift caused by
+			// maps pruned while being written to
+			fWeight.set(weight);
+			long target = fMaxWeight / 100 * EVICTION_TARGET_PERCENT;
+			if (weight <= target) {
+				return;
+			}
+			Collections.sort(candidates, new Comparator<EvictionCandidate>() {
+				@Override
+				public int compare(EvictionCandidate o1, EvictionCandidate o2) {
+					return Long.compare(o1.fLastAccess, o2.fLastAccess);
+				}
+			});
+			for (Iterator<EvictionCandidate> iter = candidates.iterator(); iter.hasNext() && fWeight.get() > target;) {
+				EvictionCandidate candidate = iter.next();
+				if (candidate.fMap.remove(candidate.fKey, candidate.fEntry)) {
+					fWeight.addAndGet(-candidate.fEntry.fWeight);
+					fEvictions.incrementAndGet();
+				}
+			}
+		} finally {
+			fEvictionLock.unlock();
+		}
+	}
+
+	private long collect(Map<String, CacheEntry> map, List<EvictionCandidate> candidates) {
+		long weight = 0;
+		for (Map.Entry<String, CacheEntry> entry : map.entrySet()) {
+			candidates.add(new EvictionCandidate(map, entry.getKey(), entry.getValue()));
+			weight += entry.getValue().fWeight;
+		}
+		return weight;
+	}
+
 	/**
 	 * Caches the given {@link IApiElement} in the correct cache based on its
 	 * type.
@@ -111,9 +383,6 @@ public final class ApiModelCache {
 	public void cacheElementInfo(IApiElement element) throws CoreException {
 		switch (element.getType()) {
 			case IApiElement.TYPE: {
-				if (fRootCache == null) {
-					fRootCache = new Cache(DEFAULT_CACHE_SIZE, DEFAULT_OVERFLOW);
-				}
 				IApiComponent comp = element.getApiComponent();
 				if (comp != null) {
 					IApiBaseline baseline = comp.getBaseline();
@@ -121,45 +390,17 @@ public final class ApiModelCache {
 					if (id == null) {
 						return;
 					}
-					Cache compcache = (Cache) fRootCache.get(baseline.getName());
-					if (compcache == null) {
-						compcache = new Cache(DEFAULT_CACHE_SIZE, DEFAULT_OVERFLOW);
-						fRootCache.put(baseline.getName(), compcache);
-					}
-					Cache typecache = (Cache) compcache.get(id);
-					if (typecache == null) {
-						typecache = new Cache(DEFAULT_CACHE_SIZE, DEFAULT_OVERFLOW);
-						compcache.put(comp.getSymbolicName(), typecache);
-					}
 					ApiType type = (ApiType) element;
-					if (type.isMemberType() || isMemberType(type.getName()) /*
-																			 * cache
-																			 * even
-																			 * a
-																			 * root
-																			 * type
-																			 * with
-																			 * a
-																			 * '$'
-																			 * in
-																			 * its
-																			 * name
-																			 * here
-																			 * as
-																			 * well
-																			 */) {
-						if (this.fMemberTypeCache == null) {
-							this.fMemberTypeCache = new Cache(DEFAULT_CACHE_SIZE, DEFAULT_OVERFLOW);
-						}
+					// cache even a root type with a '$' in its name here as
+					// well
+					if (type.isMemberType() || isMemberType(type.getName())) {
 						String key = getCacheKey(baseline.getName(), id, getRootName(type.getName()));
-						Cache mcache = (Cache) this.fMemberTypeCache.get(key);
-						if (mcache == null) {
-							mcache = new Cache(DEFAULT_CACHE_SIZE, DEFAULT_OVERFLOW);
-							this.fMemberTypeCache.put(key, mcache);
-						}
-						mcache.put(type.getName(), type);
+						ConcurrentHashMap<String, CacheEntry> mcache = fMemberTypeCache.computeIfAbsent(key, k -> new ConcurrentHashMap<>());
+						put(mcache, type.getName(), type);
 					} else {
-						typecache.put(element.getName(), element);
+						ConcurrentHashMap<String, ConcurrentHashMap<String, CacheEntry>> compcache = fRootCache.computeIfAbsent(baseline.getName(), k -> new ConcurrentHashMap<>());
+						ConcurrentHashMap<String, CacheEntry> typecache = compcache.computeIfAbsent(id, k -> new ConcurrentHashMap<>());
+						put(typecache, element.getName(), element);
 					}
 				}
 				break;
@@ -215,25 +456,14 @@ public final class ApiModelCache {
 		}
 		switch (type) {
 			case IApiElement.TYPE: {
+				if (identifier == null) {
+					return null;
+				}
 				if (isMemberType(identifier)) {
-					if (this.fMemberTypeCache != null) {
-						Cache mcache = (Cache) this.fMemberTypeCache.get(getCacheKey(baselineid, componentid, getRootName(identifier)));
-						if (mcache != null) {
-							return (IApiElement) mcache.get(identifier);
-						}
-					}
-				} else {
-					if (this.fRootCache != null) {
-						Cache compcache = (Cache) fRootCache.get(baselineid);
-						if (compcache != null) {
-							Cache typecache = (Cache) compcache.get(componentid);
-							if (typecache != null && identifier != null) {
-								return (IApiElement) typecache.get(identifier);
-							}
-						}
-					}
+					return get(fMemberTypeCache.get(getCacheKey(baselineid, componentid, getRootName(identifier))), identifier);
 				}
-				break;
+				ConcurrentHashMap<String, ConcurrentHashMap<String, CacheEntry>> compcache = fRootCache.get(baselineid);
+				return get(compcache == null ? null : compcache.get(componentid), identifier);
 			}
 			default:
 				break;
@@ -260,46 +490,42 @@ public final class ApiModelCache {
 				if (componentid != null && identifier != null) {
 					boolean removed = true;
 					// clean member type cache
-					if (this.fMemberTypeCache != null) {
-						if (isMemberType(identifier)) {
-							Cache mcache = (Cache) this.fMemberTypeCache.get(getCacheKey(baselineid, componentid, getRootName(identifier)));
-							if (mcache != null) {
-								return mcache.remove(identifier) != null;
-							}
-						} else {
-							this.fMemberTypeCache.remove(getCacheKey(baselineid, componentid, getRootName(identifier)));
+					String key = getCacheKey(baselineid, componentid, getRootName(identifier));
+					if (isMemberType(identifier)) {
+						ConcurrentHashMap<String, CacheEntry> mcache = fMemberTypeCache.get(key);
+						if (mcache != null) {
+							return remove(mcache, identifier);
 						}
+					} else {
+						discard(fMemberTypeCache.remove(key));
 					}
-					if (fRootCache != null) {
-						Cache compcache = (Cache) fRootCache.get(baselineid);
-						if (compcache != null) {
-							Cache typecache = (Cache) compcache.get(componentid);
-							if (typecache != null) {
-								removed &= typecache.remove(identifier) != null;
-								if (typecache.isEmpty()) {
-									removed &= compcache.remove(componentid) != null;
-								}
-								if (compcache.isEmpty()) {
-									removed &= fRootCache.remove(baselineid) != null;
-								}
-								return removed;
+					ConcurrentHashMap<String, ConcurrentHashMap<String, CacheEntry>> compcache = fRootCache.get(baselineid);
+					if (compcache != null) {
+						ConcurrentHashMap<String, CacheEntry> typecache = compcache.get(componentid);
+						if (typecache != null) {
+							removed &= remove(typecache, identifier);
+							if (typecache.isEmpty()) {
+								removed &= compcache.remove(componentid, typecache);
 							}
-
+							if (compcache.isEmpty()) {
+								removed &= fRootCache.remove(baselineid, compcache);
+							}
+							return removed;
 						}
-					} else {
-						return false;
 					}
 				}
 				break;
 			}
 			case IApiElement.COMPONENT: {
 				flushMemberCache();
-				if (fRootCache != null && componentid != null) {
-					Cache compcache = (Cache) fRootCache.get(baselineid);
+				if (componentid != null) {
+					ConcurrentHashMap<String, ConcurrentHashMap<String, CacheEntry>> compcache = fRootCache.get(baselineid);
 					if (compcache != null) {
-						boolean removed = compcache.remove(componentid) != null;
+						ConcurrentHashMap<String, CacheEntry> typecache = compcache.remove(componentid);
+						discard(typecache);
+						boolean removed = typecache != null;
 						if (compcache.isEmpty()) {
-							removed &= fRootCache.remove(baselineid) != null;
+							removed &= fRootCache.remove(baselineid, compcache);
 						}
 						return removed;
 					}
@@ -308,10 +534,7 @@ public final class ApiModelCache {
 			}
 			case IApiElement.BASELINE: {
 				flushMemberCache();
-				if (fRootCache != null) {
-					return fRootCache.remove(baselineid) != null;
-				}
-				break;
+				return removeBaseline(baselineid);
 			}
 			default:
 				break;
@@ -319,6 +542,23 @@ public final class ApiModelCache {
 		return false;
 	}
 
+	/**
+	 * Removes all cached elements of the given baseline
+	 *
+	 * @param baselineid
+	 * @return <code>true</code> if the baseline had cached elements
+	 */
+	private boolean removeBaseline(String baselineid) {
+		ConcurrentHashMap<String, ConcurrentHashMap<String, CacheEntry>> compcache = fRootCache.remove(baselineid);
+		if (compcache == null) {
+			return false;
+		}
+		for (ConcurrentHashMap<String, CacheEntry> typecache : compcache.values()) {
+			discard(typecache);
+		}
+		return true;
+	}
+
 	/**
 	 * Removes the given {@link IApiElement} info from the cache and returns it
 	 * if present
@@ -336,25 +576,20 @@ public final class ApiModelCache {
 		switch (element.getType()) {
 			case IApiElement.COMPONENT:
 			case IApiElement.TYPE: {
-				if (fRootCache != null) {
-					IApiComponent comp = element.getApiComponent();
-					if (comp != null) {
-						try {
-							IApiBaseline baseline = comp.getBaseline();
-							return removeElementInfo(baseline.getName(), comp.getSymbolicName(), element.getName(), element.getType());
-						} catch (CoreException ce) {
-						}
+				IApiComponent comp = element.getApiComponent();
+				if (comp != null) {
+					try {
+						IApiBaseline baseline = comp.getBaseline();
+						return removeElementInfo(baseline.getName(), comp.getSymbolicName(), element.getName(), element.getType());
+					} catch (CoreException ce) {
 					}
 				}
 				break;
 			}
 			case IApiElement.BASELINE: {
 				flushMemberCache();
-				if (fRootCache != null) {
-					IApiBaseline baseline = (IApiBaseline) element;
-					return fRootCache.remove(baseline.getName()) != null;
-				}
-				break;
+				IApiBaseline baseline = (IApiBaseline) element;
+				return removeBaseline(baseline.getName());
 			}
 			default:
 				break;
@@ -366,8 +601,8 @@ public final class ApiModelCache {
 	 * Clears out all cached information.
 	 */
 	public void flushCaches() {
-		if (fRootCache != null) {
-			fRootCache.flush();
+		for (String baselineid : fRootCache.keySet()) {
+			removeBaseline(baselineid);
 		}
 		flushMemberCache();
 	}
@@ -376,8 +611,8 @@ public final class ApiModelCache {
 	 * Flushes the cache of member types
 	 */
 	private void flushMemberCache() {
-		if (this.fMemberTypeCache != null) {
-			this.fMemberTypeCache.flush();
+		for (String key : fMemberTypeCache.keySet()) {
+			discard(fMemberTypeCache.remove(key));
 		}
 	}
 
@@ -387,13 +622,6 @@ public final class ApiModelCache {
 	 * @return true if the cache has no entries, false otherwise
 	 */
 	public boolean isEmpty() {
-		boolean empty = true;
-		if (fRootCache != null) {
-			empty &= fRootCache.isEmpty();
-		}
-		if (this.fMemberTypeCache != null) {
-			empty &= this.fMemberTypeCache.isEmpty();
-		}
-		return empty;
+		return fRootCache.isEmpty() && fMemberTypeCache.isEmpty();
 	}
 }
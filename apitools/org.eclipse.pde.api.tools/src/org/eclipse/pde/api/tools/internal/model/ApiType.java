@@ -58,6 +58,7 @@ public class ApiType extends ApiMember implements IApiType {
 	private static final IApiMethod[] EMPTY_METHODS = new IApiMethod[0];
 	private static final IApiField[] EMPTY_FIELDS = new IApiField[0];
 	private static final IApiType[] EMPTY_TYPES = new IApiType[0];
+	private static final String[] NO_MEMBER_TYPE_NAMES = new String[0];
 
 	/*
 	 * Use to tag fEnclosingMethodName and fEnclosingMethodSignature when there
@@ -163,6 +164,29 @@ public class ApiType extends ApiMember implements IApiType {
 		return new LinkedList<>(references);
 	}
 
+	/**
+	 * Returns a rough estimate of the number of bytes retained by this type
+	 * and its members, used to weigh entries in the {@link ApiModelCache}
+	 *
+	 * @return the estimated size of this type in bytes
+	 */
+	long estimateSize() {
+		long size = 160 + 2L * getName().length();
+		if (fFields != null) {
+			size += 120L * fFields.size();
+		}
+		if (fMethods != null) {
+			size += 200L * fMethods.size();
+		}
+		if (fMemberTypes != null) {
+			size += 64L * fMemberTypes.size();
+		}
+		if (fSuperInterfaceNames != null) {
+			size += 48L * fSuperInterfaceNames.length;
+		}
+		return size;
+	}
+
 	@Override
 	public IApiField getField(String name) {
 		if (fFields != null) {
@@ -384,6 +408,47 @@ public class ApiType extends ApiMember implements IApiType {
 		}
 	}
 
+	/**
+	 * Returns the raw name of the enclosing method as recorded when building
+	 * the type structure, used when persisting the structure.
+	 *
+	 * @return the enclosing method name, the empty string if there is none or
+	 *         <code>null</code> if it has not been computed
+	 */
+	String getEnclosingMethodName() {
+		return fEnclosingMethodName;
+	}
+
+	/**
+	 * Returns the raw signature of the enclosing method as recorded when
+	 * building the type structure, used when persisting the structure.
+	 *
+	 * @return the enclosing method signature, the empty string if there is
+	 *         none or <code>null</code> if it has not been computed
+	 */
+	String getEnclosingMethodSignature() {
+		return fEnclosingMethodSignature;
+	}
+
+	/**
+	 * @return the name of the enclosing type given when this type was created
+	 *         or <code>null</code>
+	 */
+	String getEnclosingTypeName() {
+		return fEnclosingTypeName;
+	}
+
+	/**
+	 * @return the simple names of the member types of this type, never
+	 *         <code>null</code>
+	 */
+	String[] getMemberTypeNames() {
+		if (fMemberTypes == null) {
+			return NO_MEMBER_TYPE_NAMES;
+		}
+		return fMemberTypes.keySet().toArray(new String[fMemberTypes.size()]);
+	}
+
 	@Override
 	public IApiMethod getEnclosingMethod() {
 		if (fEnclosingMethod == null) {
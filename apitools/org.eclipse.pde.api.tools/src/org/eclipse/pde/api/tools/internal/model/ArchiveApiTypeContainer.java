@@ -11,29 +11,29 @@
 package org.eclipse.pde.api.tools.internal.model;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 import org.eclipse.core.runtime.CoreException;
-import org.eclipse.pde.api.tools.internal.provisional.ApiPlugin;
+import org.eclipse.pde.api.tools.internal.model.ArchiveHandlePool.ArchiveHandle;
 import org.eclipse.pde.api.tools.internal.provisional.model.ApiTypeContainerVisitor;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiComponent;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiElement;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiType;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiTypeContainer;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiTypeRoot;
 import org.eclipse.pde.api.tools.internal.util.Util;
 
 /**
  * {@link IApiTypeContainer} container for an archive (jar or zip) file.
+ * Archive handles are shared through the {@link ArchiveHandlePool} and type
+ * structures are read from the {@link TypeStructureIndex} when available.
  *
  * @since 1.0.0
  */
@@ -96,48 +96,52 @@ public class ArchiveApiTypeContainer extends ApiElement implements IApiTypeConta
 				return fContents;
 			}
 			ArchiveApiTypeContainer archive = (ArchiveApiTypeContainer) getParent();
-			ZipFile zipFile;
+			ArchiveHandle handle = archive.acquireArchive();
 			try {
-				zipFile = new ZipFile(archive.fLocation);
+				fContents = handle.getContents(getName());
+				if (fContents != null) {
+					return fContents;
+				}
 			} catch (IOException e) {
-				abort("Failed to open archive: " + archive.fLocation, e); //$NON-NLS-1$
+				abort("Unable to read class file: " + getTypeName() + " in archive: " + archive.fLocation, e); //$NON-NLS-1$ //$NON-NLS-2$
 				return null;
-			}
-			try {
-				ZipEntry entry = zipFile.getEntry(getName());
-				InputStream stream = null;
-				if (entry != null) {
-					try {
-						stream = zipFile.getInputStream(entry);
-					} catch (IOException e) {
-						abort("Failed to open class file: " + getTypeName() + " in archive: " + archive.fLocation, e); //$NON-NLS-1$ //$NON-NLS-2$
-						return null;
-					}
-					try {
-						fContents = Util.getInputStreamAsByteArray(stream, -1);
-						return fContents;
-					} catch (IOException ioe) {
-						abort("Unable to read class file: " + getTypeName(), ioe); //$NON-NLS-1$
-						return null;
-					} finally {
-						try {
-							stream.close();
-						} catch (IOException e) {
-							ApiPlugin.log(e);
-						}
-					}
-				}
 			} finally {
-				try {
-					zipFile.close();
-				} catch (IOException e) {
-					abort("Failed to close class file archive", e); //$NON-NLS-1$
-				}
+				handle.release();
 			}
 			abort("Class file not found: " + getTypeName() + " in archive: " + archive.fLocation, null); //$NON-NLS-1$ //$NON-NLS-2$
 			return null;
 		}
 
+		@Override
+		protected IApiType buildStructure() throws CoreException {
+			ArchiveApiTypeContainer archive = (ArchiveApiTypeContainer) getParent();
+			TypeStructureIndex index = archive.getTypeIndex();
+			if (index == null) {
+				return super.buildStructure();
+			}
+			IApiType type = index.getType(getTypeName(), getApiComponent(), this);
+			if (type == null) {
+				type = super.buildStructure();
+				if (type instanceof ApiType) {
+					index.record(getTypeName(), (ApiType) type);
+				}
+			}
+			return type;
+		}
+
+		@Override
+		protected long computeContentHash() throws CoreException {
+			ArchiveApiTypeContainer archive = (ArchiveApiTypeContainer) getParent();
+			ArchiveHandle handle = archive.acquireArchive();
+			long hash;
+			try {
+				hash = handle.getContentHash(getName());
+			} finally {
+				handle.release();
+			}
+			return hash == -1L ? super.computeContentHash() : hash;
+		}
+
 		@Override
 		public String toString() {
 			return getTypeName();
@@ -160,6 +164,13 @@ public class ArchiveApiTypeContainer extends ApiElement implements IApiTypeConta
 	 */
 	private String[] fPackageNames;
 
+	/**
+	 * Persistent index of the type structures in this archive, or
+	 * <code>null</code> if not available
+	 */
+	private TypeStructureIndex fTypeIndex;
+	private boolean fTypeIndexInitialized = false;
+
 	/**
 	 * Constructs an {@link IApiTypeContainer} container for the given jar or
 	 * zip file at the specified location.
@@ -264,18 +275,9 @@ public class ArchiveApiTypeContainer extends ApiElement implements IApiTypeConta
 	private synchronized void init() throws CoreException {
 		if (fPackages == null) {
 			fPackages = new HashMap<>();
-			ZipFile zipFile;
-			try {
-				zipFile = new ZipFile(fLocation);
-			} catch (IOException e) {
-				abort("Failed to open archive: " + fLocation, e); //$NON-NLS-1$
-				return;
-			}
+			ArchiveHandle handle = acquireArchive();
 			try {
-				Enumeration<? extends ZipEntry> entries = zipFile.entries();
-				while (entries.hasMoreElements()) {
-					ZipEntry entry = entries.nextElement();
-					String name = entry.getName();
+				for (String name : handle.getEntryNames()) {
 					if (name.endsWith(Util.DOT_CLASS_SUFFIX)) {
 						String pkg = Util.DEFAULT_PACKAGE_NAME;
 						int index = name.lastIndexOf('/');
@@ -291,12 +293,53 @@ public class ArchiveApiTypeContainer extends ApiElement implements IApiTypeConta
 					}
 				}
 			} finally {
-				try {
-					zipFile.close();
-				} catch (IOException e) {
-					abort("Failed to close class file archive", e); //$NON-NLS-1$
-				}
+				handle.release();
+			}
+		}
+	}
+
+	/**
+	 * Returns the persistent index of the type structures in this archive. The
+	 * index is loaded on behalf of the baseline of this container so that it is
+	 * saved and released when the baseline is disposed.
+	 *
+	 * @return the index or <code>null</code> if indexes are not available
+	 * @throws CoreException if the baseline of this container could not be
+	 *             determined
+	 * @see TypeStructureIndex
+	 */
+	synchronized TypeStructureIndex getTypeIndex() throws CoreException {
+		if (!fTypeIndexInitialized) {
+			Object owner = null;
+			IApiComponent component = getApiComponent();
+			if (component != null) {
+				owner = component.getBaseline();
 			}
+			fTypeIndexInitialized = true;
+			fTypeIndex = TypeStructureIndex.getIndex(owner, fLocation);
+		}
+		return fTypeIndex;
+	}
+
+	/**
+	 * Acquires a shared handle to this archive from the {@link ArchiveHandlePool}.
+	 * The handle is owned by the baseline of this container so that it is
+	 * evicted when the baseline is disposed. Callers must release the handle.
+	 *
+	 * @return a shared handle to this archive
+	 * @throws CoreException if the archive could not be opened
+	 */
+	ArchiveHandle acquireArchive() throws CoreException {
+		Object owner = null;
+		IApiComponent component = getApiComponent();
+		if (component != null) {
+			owner = component.getBaseline();
+		}
+		try {
+			return ArchiveHandlePool.getPool().acquire(owner, fLocation);
+		} catch (IOException e) {
+			abort("Failed to open archive: " + fLocation, e); //$NON-NLS-1$
+			return null;
 		}
 	}
 
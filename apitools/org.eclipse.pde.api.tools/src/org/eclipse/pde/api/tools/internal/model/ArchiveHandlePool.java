@@ -0,0 +1,424 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.internal.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.eclipse.pde.api.tools.internal.provisional.ApiPlugin;
+import org.eclipse.pde.api.tools.internal.util.MappedArchive;
+import org.eclipse.pde.api.tools.internal.util.Util;
+
+/**
+ * A bounded pool of shared, reference counted {@link ZipFile} handles.
+ * <p>
+ * Opening a {@link ZipFile} requires the central directory of the archive to
+ * be parsed, which is expensive when done for each class file read from a
+ * large baseline. Handles are kept open in least recently used order and are
+ * only closed once they are no longer referenced and either fall off the end
+ * of the pool or all of their owners have been evicted.
+ * </p>
+ * <p>
+ * When memory mapping is enabled archives are mapped once as a
+ * {@link MappedArchive} instead, falling back to a {@link ZipFile} for
+ * archives that cannot be mapped. Memory mapping is off by default and can be
+ * turned on with the <code>org.eclipse.pde.api.tools.mappedArchives</code>
+ * system property or {@link #setMemoryMapped(boolean)}. Mapped archives are
+ * unmapped as soon as they are closed, like zip files.
+ * </p>
+ *
+ * @since 1.1
+ */
+public final class ArchiveHandlePool {
+
+	/**
+	 * A shared handle to an open archive. Clients must call {@link #release()}
+	 * once they are done with the handle.
+	 */
+	public final class ArchiveHandle {
+
+		final String fLocation;
+		final ZipFile fZipFile;
+		final MappedArchive fMappedArchive;
+		Set<Object> fOwners = new HashSet<>(2);
+		int fRefCount = 0;
+		boolean fStale = false;
+
+		ArchiveHandle(String location, ZipFile zipFile, MappedArchive mappedArchive) {
+			fLocation = location;
+			fZipFile = zipFile;
+			fMappedArchive = mappedArchive;
+		}
+
+		/**
+		 * Returns the open {@link ZipFile} for this handle
+		 *
+		 * @return the open {@link ZipFile} or <code>null</code> if the archive
+		 *         is memory mapped
+		 */
+		public ZipFile getZipFile() {
+			return fZipFile;
+		}
+
+		/**
+		 * Returns the {@link MappedArchive} for this handle
+		 *
+		 * @return the {@link MappedArchive} or <code>null</code> if the archive
+		 *         is not memory mapped
+		 */
+		public MappedArchive getMappedArchive() {
+			return fMappedArchive;
+		}
+
+		/**
+		 * Returns the names of all entries in the archive
+		 *
+		 * @return the entry names
+		 */
+		public List<String> getEntryNames() {
+			if (fMappedArchive != null) {
+				String[] names = fMappedArchive.getEntryNames();
+				List<String> result = new ArrayList<>(names.length);
+				for (String name : names) {
+					result.add(name);
+				}
+				return result;
+			}
+			List<String> result = new ArrayList<>(fZipFile.size());
+			Enumeration<? extends ZipEntry> entries = fZipFile.entries();
+			while (entries.hasMoreElements()) {
+				result.add(entries.nextElement().getName());
+			}
+			return result;
+		}
+
+		/**
+		 * Returns the uncompressed contents of the given entry
+		 *
+		 * @param entryName the name of the entry
+		 * @return the contents or <code>null</code> if there is no such entry
+		 * @throws IOException if the entry could not be read
+		 */
+		public byte[] getContents(String entryName) throws IOException {
+			if (fMappedArchive != null) {
+				return fMappedArchive.getContents(entryName);
+			}
+			ZipEntry entry = fZipFile.getEntry(entryName);
+			if (entry == null) {
+				return null;
+			}
+			try (InputStream stream = fZipFile.getInputStream(entry)) {
+				return Util.getInputStreamAsByteArray(stream, (int) entry.getSize());
+			}
+		}
+
+		/**
+		 * Returns the fingerprint of the given entry, computed from the size
+		 * and CRC-32 recorded in the central directory of the archive
+		 *
+		 * @param entryName the name of the entry
+		 * @return the fingerprint or <code>-1</code> if there is no such entry
+		 *         or its CRC is unknown
+		 * @see AbstractApiTypeRoot#getContentHash()
+		 */
+		public long getContentHash(String entryName) {
+			long crc;
+			long size;
+			if (fMappedArchive != null) {
+				crc = fMappedArchive.getCrc(entryName);
+				size = fMappedArchive.getSize(entryName);
+			} else {
+				ZipEntry entry = fZipFile.getEntry(entryName);
+				if (entry == null) {
+					return -1L;
+				}
+				crc = entry.getCrc();
+				size = entry.getSize();
+			}
+			if (crc == -1L || size == -1L) {
+				return -1L;
+			}
+			return AbstractApiTypeRoot.toContentHash(crc, size);
+		}
+
+		/**
+		 * Releases this handle back to the pool
+		 */
+		public void release() {
+			ArchiveHandlePool.this.release(this);
+		}
+	}
+
+	/**
+	 * Default number of archives kept open at once
+	 */
+	static final int DEFAULT_POOL_SIZE = 64;
+
+	/**
+	 * System property used to enable memory mapping of archives
+	 */
+	public static final String MAPPED_ARCHIVES_PROPERTY = "org.eclipse.pde.api.tools.mappedArchives"; //$NON-NLS-1$
+
+	static ArchiveHandlePool fInstance = null;
+
+	/**
+	 * Open handles in access order
+	 */
+	private LinkedHashMap<String, ArchiveHandle> fHandles = new LinkedHashMap<>(16, 0.75f, true);
+
+	private int fMaxSize;
+	private boolean fMemoryMapped = Boolean.getBoolean(MAPPED_ARCHIVES_PROPERTY);
+	private long fHits = 0;
+	private long fMisses = 0;
+	private long fOpens = 0;
+
+	/**
+	 * Constructor
+	 *
+	 * @param maxSize the maximum number of unreferenced archives to keep open
+	 */
+	ArchiveHandlePool(int maxSize) {
+		fMaxSize = maxSize;
+	}
+
+	/**
+	 * Returns the singleton instance of the pool
+	 *
+	 * @return the pool
+	 */
+	public static synchronized ArchiveHandlePool getPool() {
+		if (fInstance == null) {
+			fInstance = new ArchiveHandlePool(DEFAULT_POOL_SIZE);
+		}
+		return fInstance;
+	}
+
+	/**
+	 * Acquires a shared handle to the archive at the given location, opening
+	 * the archive if it is not already open. The returned handle must be
+	 * released by the caller.
+	 *
+	 * @param owner the object that will evict the handle, typically the
+	 *            {@link org.eclipse.pde.api.tools.internal.provisional.model.IApiBaseline}
+	 *            the archive belongs to, or <code>null</code>
+	 * @param location the location of the archive in the local file system
+	 * @return a shared handle to the archive, never <code>null</code>
+	 * @throws IOException if the archive could not be opened
+	 */
+	public synchronized ArchiveHandle acquire(Object owner, String location) throws IOException {
+		ArchiveHandle handle = fHandles.get(location);
+		if (handle == null) {
+			fMisses++;
+			handle = open(location);
+			fOpens++;
+			fHandles.put(location, handle);
+		} else {
+			fHits++;
+		}
+		if (owner != null) {
+			handle.fOwners.add(owner);
+		}
+		handle.fRefCount++;
+		trim();
+		return handle;
+	}
+
+	/**
+	 * Opens a new handle to the given archive, memory mapping it if enabled
+	 *
+	 * @param location the location of the archive
+	 * @return a new handle
+	 * @throws IOException if the archive could not be opened
+	 */
+	private ArchiveHandle open(String location) throws IOException {
+		if (fMemoryMapped) {
+			try {
+				return new ArchiveHandle(location, null, MappedArchive.open(location));
+			} catch (IOException e) {
+				// not mappable (i.e. zip64 or too large), use a ZipFile instead
+			}
+		}
+		return new ArchiveHandle(location, new ZipFile(location), null);
+	}
+
+	/**
+	 * Enables or disables memory mapping of archives. Archives already in the
+	 * pool are evicted; the counters are kept. Clients changing the mode of
+	 * the shared pool must restore the previous mode once they are done.
+	 *
+	 * @param mapped whether archives should be memory mapped
+	 * @return whether archives were memory mapped before the call
+	 */
+	public synchronized boolean setMemoryMapped(boolean mapped) {
+		boolean previous = fMemoryMapped;
+		if (previous != mapped) {
+			fMemoryMapped = mapped;
+			evictAll();
+		}
+		return previous;
+	}
+
+	/**
+	 * @return whether archives are memory mapped
+	 */
+	public synchronized boolean isMemoryMapped() {
+		return fMemoryMapped;
+	}
+
+	/**
+	 * Releases the given handle. If the handle is no longer referenced and has
+	 * been evicted from the pool its archive is closed.
+	 *
+	 * @param handle the handle to release
+	 */
+	synchronized void release(ArchiveHandle handle) {
+		if (handle.fRefCount > 0) {
+			handle.fRefCount--;
+		}
+		if (handle.fRefCount == 0) {
+			if (handle.fStale) {
+				close(handle);
+			} else {
+				trim();
+			}
+		}
+	}
+
+	/**
+	 * Evicts all archives owned by the given owner. Archives that are still
+	 * shared with other owners stay open; archives that are in use are closed
+	 * once they are released.
+	 *
+	 * @param owner the owner to evict the archives for
+	 */
+	public synchronized void evict(Object owner) {
+		List<ArchiveHandle> evicted = new ArrayList<>();
+		for (Iterator<ArchiveHandle> iter = fHandles.values().iterator(); iter.hasNext();) {
+			ArchiveHandle handle = iter.next();
+			if (handle.fOwners.remove(owner) && handle.fOwners.isEmpty()) {
+				iter.remove();
+				evicted.add(handle);
+			}
+		}
+		for (ArchiveHandle handle : evicted) {
+			handle.fStale = true;
+			if (handle.fRefCount == 0) {
+				close(handle);
+			}
+		}
+	}
+
+	/**
+	 * Evicts the archive at the given location regardless of its owners
+	 *
+	 * @param location the location of the archive
+	 */
+	public synchronized void evictArchive(String location) {
+		ArchiveHandle handle = fHandles.remove(location);
+		if (handle != null) {
+			handle.fStale = true;
+			if (handle.fRefCount == 0) {
+				close(handle);
+			}
+		}
+	}
+
+	/**
+	 * Evicts all archives from the pool and resets the counters
+	 */
+	public synchronized void clear() {
+		evictAll();
+		fHits = 0;
+		fMisses = 0;
+		fOpens = 0;
+	}
+
+	/**
+	 * Evicts all archives from the pool. Archives that are in use are closed
+	 * once they are released.
+	 */
+	private void evictAll() {
+		for (ArchiveHandle handle : fHandles.values()) {
+			handle.fStale = true;
+			if (handle.fRefCount == 0) {
+				close(handle);
+			}
+		}
+		fHandles.clear();
+	}
+
+	/**
+	 * Closes the least recently used unreferenced archives until the pool is
+	 * within its bounds again
+	 */
+	private void trim() {
+		if (fHandles.size() <= fMaxSize) {
+			return;
+		}
+		for (Iterator<ArchiveHandle> iter = fHandles.values().iterator(); iter.hasNext() && fHandles.size() > fMaxSize;) {
+			ArchiveHandle handle = iter.next();
+			if (handle.fRefCount == 0) {
+				iter.remove();
+				handle.fStale = true;
+				close(handle);
+			}
+		}
+	}
+
+	private void close(ArchiveHandle handle) {
+		if (handle.fMappedArchive != null) {
+			handle.fMappedArchive.close();
+			return;
+		}
+		try {
+			handle.fZipFile.close();
+		} catch (IOException e) {
+			ApiPlugin.log(e);
+		}
+	}
+
+	/**
+	 * @return the number of times an already open archive was handed out
+	 */
+	public synchronized long getHitCount() {
+		return fHits;
+	}
+
+	/**
+	 * @return the number of times a requested archive was not open
+	 */
+	public synchronized long getMissCount() {
+		return fMisses;
+	}
+
+	/**
+	 * @return the total number of archives opened by this pool
+	 */
+	public synchronized long getOpenCount() {
+		return fOpens;
+	}
+
+	/**
+	 * @return the number of archives currently held open by the pool
+	 */
+	public synchronized int size() {
+		return fHandles.size();
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2013 IBM Corporation and others.
+ * Copyright (c) 2009, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -33,6 +33,7 @@ import org.eclipse.pde.api.tools.internal.provisional.ProfileModifiers;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiBaseline;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiComponent;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiTypeContainer;
+import org.eclipse.pde.api.tools.internal.util.MappedStubFile;
 
 /**
  * An API component for a system library.
@@ -75,23 +76,10 @@ public class StubApiComponent extends SystemLibraryApiComponent {
 				default:
 					break;
 			}
-			String stubName = lname + ".zip"; //$NON-NLS-1$
-			URL stub = null;
-			if (Platform.isRunning()) {
-				stub = ApiPlugin.getDefault().getBundle().getResource(STUB_PATH + stubName);
-				if (stub == null) {
-					return null;
-				}
-				stub = FileLocator.toFileURL(stub);
-			} else {
-				stub = ApiPlugin.class.getResource(STUB_PATH + stubName);
-				if (stub == null) {
-					return null;
-				}
-			}
-			File stubFile = new File(stub.getFile());
-			if (!stubFile.exists()) {
-				return null;
+			// prefer the stub file, mapped without reading the stubs
+			File stubFile = getStubResource(lname + MappedStubFile.STUB_FILE_EXTENSION);
+			if (stubFile == null) {
+				stubFile = getStubResource(lname + ".zip"); //$NON-NLS-1$
 			}
 			return stubFile;
 		} catch (IOException e) {
@@ -99,6 +87,35 @@ public class StubApiComponent extends SystemLibraryApiComponent {
 		}
 	}
 
+	/**
+	 * Returns the local file of the given stub resource
+	 *
+	 * @param stubName the name of the stub file or archive
+	 * @return the file or <code>null</code> if the resource does not exist
+	 * @throws IOException if the resource could not be converted to a local
+	 *             file
+	 */
+	private static File getStubResource(String stubName) throws IOException {
+		URL stub = null;
+		if (Platform.isRunning()) {
+			stub = ApiPlugin.getDefault().getBundle().getResource(STUB_PATH + stubName);
+			if (stub == null) {
+				return null;
+			}
+			stub = FileLocator.toFileURL(stub);
+		} else {
+			stub = ApiPlugin.class.getResource(STUB_PATH + stubName);
+			if (stub == null) {
+				return null;
+			}
+		}
+		File stubFile = new File(stub.getFile());
+		if (!stubFile.exists()) {
+			return null;
+		}
+		return stubFile;
+	}
+
 	/**
 	 * Returns a listing of all of the installed meta-data or an empty array,
 	 * never <code>null</code>
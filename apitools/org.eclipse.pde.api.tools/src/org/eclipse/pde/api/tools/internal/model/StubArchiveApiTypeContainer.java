@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2013 IBM Corporation and others.
+ * Copyright (c) 2009, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,6 +10,7 @@
  *******************************************************************************/
 package org.eclipse.pde.api.tools.internal.model;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -31,10 +32,19 @@ import org.eclipse.pde.api.tools.internal.provisional.model.IApiElement;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiType;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiTypeContainer;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiTypeRoot;
+import org.eclipse.pde.api.tools.internal.util.MappedStubFile;
 import org.eclipse.pde.api.tools.internal.util.Util;
 
 /**
  * {@link IApiTypeContainer} container for an archive (jar or zip) file.
+ * <p>
+ * The stubs are read from a {@link MappedStubFile} when the container is
+ * created on a stub file, or when a stub file can be written from the stub
+ * archive: in the state location of the plug-in when running in the
+ * framework, or in the directory given by the
+ * {@link #STUB_LOCATION_PROPERTY} system property. The archive is only read
+ * directly otherwise.
+ * </p>
  *
  * @since 1.0.0
  */
@@ -98,6 +108,14 @@ public class StubArchiveApiTypeContainer extends ApiElement implements IApiTypeC
 		@Override
 		public byte[] getContents() throws CoreException {
 			StubArchiveApiTypeContainer archive = (StubArchiveApiTypeContainer) getParent();
+			MappedStubFile stubFile = archive.getStubFile();
+			if (stubFile != null) {
+				byte[] contents = stubFile.getContents(getName());
+				if (contents == null) {
+					abort("Class file not found: " + getTypeName() + " in stub file: " + stubFile.getLocation(), null); //$NON-NLS-1$ //$NON-NLS-2$
+				}
+				return contents;
+			}
 			ZipFile zipFile = archive.open();
 			ZipEntry entry = zipFile.getEntry(getName());
 			InputStream stream = null;
@@ -126,6 +144,16 @@ public class StubArchiveApiTypeContainer extends ApiElement implements IApiTypeC
 		}
 	}
 
+	/**
+	 * System property used to set the directory of the stub files written
+	 * from stub archives when not running in the framework
+	 *
+	 * @since 1.1
+	 */
+	public static final String STUB_LOCATION_PROPERTY = "org.eclipse.pde.api.tools.stubLocation"; //$NON-NLS-1$
+
+	private static final String STUB_DIRECTORY = ".ee_stubs"; //$NON-NLS-1$
+
 	/**
 	 * Location of the archive in the local file system.
 	 */
@@ -147,6 +175,13 @@ public class StubArchiveApiTypeContainer extends ApiElement implements IApiTypeC
 	 */
 	private ZipFile fZipFile = null;
 
+	/**
+	 * Mapped stub file, or <code>null</code> if the archive is read directly.
+	 * Mapped stub files hold no file handle and are kept open.
+	 */
+	private MappedStubFile fStubFile = null;
+	private boolean fStubFileInitialized = false;
+
 	/**
 	 * Constructs an {@link IApiTypeContainer} container for the given jar or
 	 * zip file at the specified location.
@@ -217,6 +252,13 @@ public class StubArchiveApiTypeContainer extends ApiElement implements IApiTypeC
 	 */
 	@Override
 	public IApiTypeRoot findTypeRoot(String qualifiedName) throws CoreException {
+		String fileName = qualifiedName.replace('.', '/');
+		MappedStubFile stubFile = getStubFile();
+		if (stubFile != null) {
+			// looked up in the index of the stub file, without caching the
+			// packages
+			return stubFile.hasStub(fileName) ? new ArchiveApiTypeRoot(this, fileName) : null;
+		}
 		init();
 		int index = qualifiedName.lastIndexOf('.');
 		String packageName = Util.DEFAULT_PACKAGE_NAME;
@@ -225,7 +267,6 @@ public class StubArchiveApiTypeContainer extends ApiElement implements IApiTypeC
 		}
 		Set<String> classFileNames = fPackages.get(packageName);
 		if (classFileNames != null) {
-			String fileName = qualifiedName.replace('.', '/');
 			if (classFileNames.contains(fileName)) {
 				return new ArchiveApiTypeRoot(this, fileName);
 			}
@@ -257,13 +298,19 @@ public class StubArchiveApiTypeContainer extends ApiElement implements IApiTypeC
 	 * @throws CoreException
 	 */
 	private synchronized void init() throws CoreException {
-		ZipFile zipFile = open();
 		if (fPackages == null) {
 			fPackages = new HashMap<>();
-			Enumeration<? extends ZipEntry> entries = zipFile.entries();
-			while (entries.hasMoreElements()) {
-				ZipEntry entry = entries.nextElement();
-				String name = entry.getName();
+			List<String> names = new ArrayList<>();
+			MappedStubFile stubFile = getStubFile();
+			if (stubFile != null) {
+				names.addAll(Arrays.asList(stubFile.getNames()));
+			} else {
+				Enumeration<? extends ZipEntry> entries = open().entries();
+				while (entries.hasMoreElements()) {
+					names.add(entries.nextElement().getName());
+				}
+			}
+			for (String name : names) {
 				String pkg = Util.DEFAULT_PACKAGE_NAME;
 				int index = name.lastIndexOf('/');
 				if (index >= 0) {
@@ -279,6 +326,83 @@ public class StubArchiveApiTypeContainer extends ApiElement implements IApiTypeC
 		}
 	}
 
+	/**
+	 * Returns the mapped stub file of this container, writing it from the
+	 * stub archive first if needed.
+	 *
+	 * @return the stub file or <code>null</code> if the archive has to be read
+	 *         directly
+	 * @throws CoreException if the container is on a stub file that cannot be
+	 *             read
+	 */
+	synchronized MappedStubFile getStubFile() throws CoreException {
+		if (!fStubFileInitialized) {
+			fStubFileInitialized = true;
+			if (fLocation.endsWith(MappedStubFile.STUB_FILE_EXTENSION)) {
+				try {
+					fStubFile = MappedStubFile.open(fLocation);
+				} catch (IOException e) {
+					abort("Failed to open stub file: " + fLocation, e); //$NON-NLS-1$
+				}
+			} else {
+				File directory = getStubLocation();
+				if (directory != null) {
+					try {
+						fStubFile = openWrittenStubFile(new File(fLocation), directory);
+					} catch (IOException e) {
+						// read the archive directly
+						ApiPlugin.log(e);
+					}
+				}
+			}
+		}
+		return fStubFile;
+	}
+
+	/**
+	 * Opens the stub file written from the given stub archive in the given
+	 * directory, writing it again if it is missing or out of date
+	 *
+	 * @param archive the stub archive
+	 * @param directory the directory of the written stub files
+	 * @return the stub file
+	 * @throws IOException if the stub file could not be written or read
+	 */
+	static MappedStubFile openWrittenStubFile(File archive, File directory) throws IOException {
+		String name = archive.getName();
+		int index = name.lastIndexOf('.');
+		if (index > 0) {
+			name = name.substring(0, index);
+		}
+		File file = new File(directory, name + MappedStubFile.STUB_FILE_EXTENSION);
+		// check the header before mapping, a stale file must not be mapped
+		// while it is replaced
+		if (MappedStubFile.isWrittenFrom(file, archive)) {
+			try {
+				return MappedStubFile.open(file.getPath());
+			} catch (IOException e) {
+				// written again below
+			}
+		}
+		if (!directory.exists() && !directory.mkdirs()) {
+			throw new IOException("Unable to create " + directory); //$NON-NLS-1$
+		}
+		MappedStubFile.write(archive, file);
+		return MappedStubFile.open(file.getPath());
+	}
+
+	/**
+	 * @return the directory to write stub files in or <code>null</code> if
+	 *         stub archives are read directly
+	 */
+	private static File getStubLocation() {
+		if (ApiPlugin.isRunningInFramework()) {
+			return ApiPlugin.getDefault().getStateLocation().append(STUB_DIRECTORY).toFile();
+		}
+		String location = System.getProperty(STUB_LOCATION_PROPERTY);
+		return location == null ? null : new File(location);
+	}
+
 	/**
 	 * Returns an open zip file for this archive.
 	 *
@@ -0,0 +1,669 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.internal.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import org.eclipse.pde.api.tools.internal.provisional.ApiPlugin;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiComponent;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiField;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiMethod;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiTypeRoot;
+
+/**
+ * A persistent index of the type structures of the class files in an archive.
+ * <p>
+ * The index records the signatures, modifiers and super types of each type,
+ * along with its fields and methods, so that an {@link ApiType} can be
+ * re-created without reading and parsing the class file. Indexes are stored
+ * in one file per archive, named after a checksum of the central directory of
+ * the archive, so the same index is shared by every baseline that contains
+ * the archive and is ignored as soon as the archive changes.
+ * </p>
+ * <p>
+ * Indexes are only available when a location to store them is known: the
+ * state location of the plug-in when running in the framework, or the
+ * directory given by the {@link #INDEX_LOCATION_PROPERTY} system property.
+ * There is at most one loaded index per index file. An index is loaded on
+ * behalf of owners, usually the baselines that contain the archive, and
+ * newly recorded types are written when the last owner is released by
+ * {@link #flush(Object)} or when all indexes are saved by {@link #flush()}.
+ * Index files that have not been used for {@link #MAX_UNUSED_AGE} are deleted
+ * by {@link #prune()}.
+ * </p>
+ *
+ * @since 1.1
+ */
+public final class TypeStructureIndex {
+
+	/**
+	 * System property used to set the directory of the index files when not
+	 * running in the framework
+	 */
+	public static final String INDEX_LOCATION_PROPERTY = "org.eclipse.pde.api.tools.typeIndexLocation"; //$NON-NLS-1$
+
+	/**
+	 * Age in milliseconds after which an index file that has not been loaded is
+	 * considered orphaned: the archive it was built for has changed or is no
+	 * longer part of any baseline
+	 */
+	public static final long MAX_UNUSED_AGE = 30L * 24 * 60 * 60 * 1000;
+
+	private static final int VERSION = 1;
+	private static final String INDEX_KIND = "TYPES"; //$NON-NLS-1$
+	private static final String INDEX_DIRECTORY = ".type_index"; //$NON-NLS-1$
+	private static final String INDEX_EXTENSION = ".idx"; //$NON-NLS-1$
+	private static final String TEMP_EXTENSION = ".tmp"; //$NON-NLS-1$
+
+	private static final int END_HEADER_SIG = 0x06054b50;
+	private static final int END_HEADER_SIZE = 22;
+
+	private static final int ANONYMOUS = 0x1;
+	private static final int LOCAL = 0x2;
+	private static final int MEMBER = 0x4;
+
+	private static final byte NO_VALUE = 0;
+	private static final byte STRING_VALUE = 1;
+	private static final byte INT_VALUE = 2;
+	private static final byte LONG_VALUE = 3;
+	private static final byte FLOAT_VALUE = 4;
+	private static final byte DOUBLE_VALUE = 5;
+
+	/**
+	 * Loaded indexes by index file. Archives with the same contents share the
+	 * same index file, and so the same index.
+	 */
+	private static final Map<File, TypeStructureIndex> fIndexes = new HashMap<>();
+
+	/**
+	 * Indexes with types that have not been written yet
+	 */
+	private static final Set<TypeStructureIndex> fDirty = new LinkedHashSet<>();
+
+	private static File fLocation = null;
+	private static boolean fLocationInitialized = false;
+
+	private final File fFile;
+	private final long fChecksum;
+
+	/**
+	 * Encoded type structures by type name
+	 */
+	private final Map<String, byte[]> fTypes = new ConcurrentHashMap<>();
+
+	/**
+	 * The owners this index is loaded for, guarded by the class lock
+	 */
+	private final Set<Object> fOwners = new HashSet<>();
+	private boolean fModified = false;
+
+	/**
+	 * Whether this index has been unloaded. Types recorded in an unloaded
+	 * index are not saved, the index file belongs to the index loaded next.
+	 */
+	private boolean fUnloaded = false;
+
+	private TypeStructureIndex(File file, long checksum) {
+		fFile = file;
+		fChecksum = checksum;
+	}
+
+	/**
+	 * Returns the index for the archive at the given location, loading it from
+	 * disk if it was saved before. The index stays loaded until the given
+	 * owner is released by {@link #flush(Object)}. Indexes loaded without an
+	 * owner stay loaded until the index location changes.
+	 *
+	 * @param owner the owner of the index, usually the baseline containing
+	 *            the archive, or <code>null</code>
+	 * @param location the location of the archive in the local file system
+	 * @return the index for the archive or <code>null</code> if indexes are
+	 *         not available or the archive could not be read
+	 */
+	public static TypeStructureIndex getIndex(Object owner, String location) {
+		File directory;
+		synchronized (TypeStructureIndex.class) {
+			directory = getIndexLocation();
+		}
+		if (directory == null) {
+			return null;
+		}
+		File archive = new File(location);
+		long checksum;
+		try {
+			checksum = computeChecksum(archive);
+		} catch (IOException e) {
+			return null;
+		}
+		if (checksum == -1L) {
+			return null;
+		}
+		File file = new File(directory, Long.toHexString(checksum) + '-' + Long.toHexString(archive.length()) + INDEX_EXTENSION);
+		synchronized (TypeStructureIndex.class) {
+			if (!directory.equals(fLocation)) {
+				// the location changed meanwhile
+				return null;
+			}
+			TypeStructureIndex index = fIndexes.get(file);
+			if (index == null) {
+				index = new TypeStructureIndex(file, checksum);
+				index.load();
+				fIndexes.put(file, index);
+			}
+			if (owner != null) {
+				index.fOwners.add(owner);
+			}
+			return index;
+		}
+	}
+
+	/**
+	 * Writes all indexes with newly recorded types to disk. The indexes stay
+	 * loaded.
+	 */
+	public static void flush() {
+		List<TypeStructureIndex> dirty;
+		synchronized (TypeStructureIndex.class) {
+			dirty = new ArrayList<>(fDirty);
+		}
+		for (TypeStructureIndex index : dirty) {
+			index.save();
+		}
+	}
+
+	/**
+	 * Releases the indexes loaded for the given owner. Indexes that have no
+	 * other owner are written to disk if they have newly recorded types and
+	 * unloaded. Indexes of other owners are left untouched.
+	 *
+	 * @param owner the owner to release
+	 */
+	public static void flush(Object owner) {
+		List<TypeStructureIndex> released = new ArrayList<>();
+		synchronized (TypeStructureIndex.class) {
+			for (TypeStructureIndex index : fIndexes.values()) {
+				if (index.fOwners.remove(owner) && index.fOwners.isEmpty()) {
+					released.add(index);
+				}
+			}
+		}
+		if (released.isEmpty()) {
+			return;
+		}
+		for (TypeStructureIndex index : released) {
+			if (index.isModified()) {
+				index.save();
+			}
+		}
+		synchronized (TypeStructureIndex.class) {
+			for (TypeStructureIndex index : released) {
+				// the index may have been loaded again or modified while it
+				// was being saved
+				if (index.fOwners.isEmpty() && !index.fModified && fIndexes.get(index.fFile) == index) {
+					fIndexes.remove(index.fFile);
+					index.fUnloaded = true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Deletes the index files that are not loaded and have not been used for
+	 * {@link #MAX_UNUSED_AGE}, along with leftover temporary files.
+	 */
+	public static synchronized void prune() {
+		File directory = getIndexLocation();
+		if (directory == null) {
+			return;
+		}
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		long oldest = System.currentTimeMillis() - MAX_UNUSED_AGE;
+		for (File file : files) {
+			String name = file.getName();
+			if (!name.endsWith(INDEX_EXTENSION) && !name.endsWith(TEMP_EXTENSION)) {
+				continue;
+			}
+			if (fIndexes.containsKey(file) || file.lastModified() >= oldest) {
+				continue;
+			}
+			file.delete();
+		}
+	}
+
+	/**
+	 * Sets the directory used to store index files, or <code>null</code> to
+	 * use the default location. Loaded indexes are saved and unloaded first.
+	 *
+	 * @param location the directory or <code>null</code>
+	 */
+	public static void setIndexLocation(File location) {
+		flush();
+		synchronized (TypeStructureIndex.class) {
+			for (TypeStructureIndex index : fIndexes.values()) {
+				index.fUnloaded = true;
+			}
+			fIndexes.clear();
+			fDirty.clear();
+			fLocation = location;
+			fLocationInitialized = location != null;
+		}
+	}
+
+	/**
+	 * @return the directory to store index files in or <code>null</code> if
+	 *         indexes are not available
+	 */
+	private static File getIndexLocation() {
+		if (!fLocationInitialized) {
+			fLocationInitialized = true;
+			if (ApiPlugin.isRunningInFramework()) {
+				fLocation = ApiPlugin.getDefault().getStateLocation().append(INDEX_DIRECTORY).toFile();
+			} else {
+				String location = System.getProperty(INDEX_LOCATION_PROPERTY);
+				if (location != null) {
+					fLocation = new File(location);
+				}
+			}
+		}
+		return fLocation;
+	}
+
+	/**
+	 * Computes a checksum of the central directory of the given archive. The
+	 * central directory holds the name, size and CRC of every entry, so the
+	 * checksum changes whenever the contents of the archive change, without
+	 * having to read the entries themselves.
+	 *
+	 * @param archive the archive
+	 * @return the checksum or <code>-1</code> if the archive is not a
+	 *         supported zip archive
+	 * @throws IOException if the archive could not be read
+	 */
+	static long computeChecksum(File archive) throws IOException {
+		try (RandomAccessFile file = new RandomAccessFile(archive, "r")) { //$NON-NLS-1$
+			long length = file.length();
+			int tail = (int) Math.min(length, END_HEADER_SIZE + 0xFFFF);
+			byte[] bytes = new byte[tail];
+			file.seek(length - tail);
+			file.readFully(bytes);
+			for (int pos = tail - END_HEADER_SIZE; pos >= 0; pos--) {
+				if (readInt(bytes, pos) == END_HEADER_SIG) {
+					long size = readInt(bytes, pos + 12) & 0xFFFFFFFFL;
+					long offset = readInt(bytes, pos + 16) & 0xFFFFFFFFL;
+					if (offset + size > length || size > Integer.MAX_VALUE) {
+						return -1L;
+					}
+					byte[] directory = new byte[(int) size];
+					file.seek(offset);
+					file.readFully(directory);
+					CRC32 crc = new CRC32();
+					crc.update(directory);
+					return crc.getValue();
+				}
+			}
+		}
+		return -1L;
+	}
+
+	private static int readInt(byte[] bytes, int pos) {
+		return (bytes[pos] & 0xFF) | (bytes[pos + 1] & 0xFF) << 8 | (bytes[pos + 2] & 0xFF) << 16 | (bytes[pos + 3] & 0xFF) << 24;
+	}
+
+	/**
+	 * Returns the type structure recorded for the given type name, or
+	 * <code>null</code> if the type is not in this index.
+	 *
+	 * @param typeName the fully qualified name of the type
+	 * @param component the component the type belongs to or <code>null</code>
+	 * @param root the type root of the type
+	 * @return the re-created type structure or <code>null</code>
+	 */
+	public ApiType getType(String typeName, IApiComponent component, IApiTypeRoot root) {
+		byte[] bytes = fTypes.get(typeName);
+		if (bytes == null) {
+			return null;
+		}
+		try {
+			return readType(new DataInputStream(new ByteArrayInputStream(bytes)), component, root);
+		} catch (IOException e) {
+			fTypes.remove(typeName);
+			return null;
+		}
+	}
+
+	/**
+	 * Records the given type structure in this index
+	 *
+	 * @param typeName the fully qualified name of the type
+	 * @param type the type structure built from the class file
+	 */
+	public void record(String typeName, ApiType type) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+		try {
+			writeType(type, new DataOutputStream(bytes));
+		} catch (IOException e) {
+			// the type cannot be encoded, it is read from the class file
+			// each time
+			return;
+		}
+		if (fTypes.put(typeName, bytes.toByteArray()) == null) {
+			synchronized (TypeStructureIndex.class) {
+				if (!fModified && !fUnloaded) {
+					fModified = true;
+					fDirty.add(this);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the number of types in this index
+	 */
+	public int size() {
+		return fTypes.size();
+	}
+
+	/**
+	 * @return whether this index has types that have not been written yet
+	 */
+	private boolean isModified() {
+		synchronized (TypeStructureIndex.class) {
+			return fModified;
+		}
+	}
+
+	/**
+	 * Loads the index file if there is one
+	 */
+	private void load() {
+		if (!fFile.exists()) {
+			return;
+		}
+		// keep used index files from being pruned
+		fFile.setLastModified(System.currentTimeMillis());
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fFile)))) {
+			if (!ApiPlugin.PLUGIN_ID.equals(in.readUTF()) || !INDEX_KIND.equals(in.readUTF()) || in.readInt() != VERSION || in.readLong() != fChecksum) {
+				return;
+			}
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				String name = in.readUTF();
+				byte[] bytes = new byte[in.readInt()];
+				in.readFully(bytes);
+				fTypes.put(name, bytes);
+			}
+		} catch (IOException e) {
+			// a corrupt index is rebuilt from the class files
+			fTypes.clear();
+		}
+	}
+
+	/**
+	 * Writes this index to disk. Saves of the same index are serialized, types
+	 * recorded while saving mark the index as modified again.
+	 */
+	private synchronized void save() {
+		synchronized (TypeStructureIndex.class) {
+			if (fUnloaded) {
+				return;
+			}
+			fModified = false;
+			fDirty.remove(this);
+		}
+		File directory = fFile.getParentFile();
+		if (!directory.exists() && !directory.mkdirs()) {
+			return;
+		}
+		File temp = new File(directory, fFile.getName() + TEMP_EXTENSION);
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+			out.writeUTF(ApiPlugin.PLUGIN_ID);
+			out.writeUTF(INDEX_KIND);
+			out.writeInt(VERSION);
+			out.writeLong(fChecksum);
+			List<Entry<String, byte[]>> entries = new ArrayList<>(fTypes.entrySet());
+			out.writeInt(entries.size());
+			for (Entry<String, byte[]> entry : entries) {
+				out.writeUTF(entry.getKey());
+				out.writeInt(entry.getValue().length);
+				out.write(entry.getValue());
+			}
+		} catch (IOException e) {
+			ApiPlugin.log(e);
+			temp.delete();
+			return;
+		}
+		if (fFile.exists()) {
+			fFile.delete();
+		}
+		if (!temp.renameTo(fFile)) {
+			temp.delete();
+		}
+	}
+
+	/**
+	 * Encodes the given type structure
+	 *
+	 * @param type the type to encode
+	 * @param out the stream to write to
+	 * @throws IOException if the type cannot be encoded
+	 */
+	static void writeType(ApiType type, DataOutputStream out) throws IOException {
+		out.writeUTF(type.getName());
+		out.writeUTF(type.getSignature());
+		writeString(type.getGenericSignature(), out);
+		out.writeInt(type.getModifiers());
+		writeString(type.getEnclosingTypeName(), out);
+		writeString(type.getSuperclassName(), out);
+		writeStrings(type.getSuperInterfaceNames(), out);
+		int kind = 0;
+		if (type.isAnonymous()) {
+			kind |= ANONYMOUS;
+		}
+		if (type.isLocal()) {
+			kind |= LOCAL;
+		}
+		if (type.isMemberType()) {
+			kind |= MEMBER;
+		}
+		out.writeByte(kind);
+		writeString(type.isLocal() || type.isMemberType() ? type.getSimpleName() : null, out);
+		writeString(type.getEnclosingMethodName(), out);
+		writeString(type.getEnclosingMethodSignature(), out);
+		writeStrings(type.getMemberTypeNames(), out);
+		IApiField[] fields = type.getFields();
+		out.writeInt(fields.length);
+		for (IApiField field : fields) {
+			out.writeUTF(field.getName());
+			writeString(field.getSignature(), out);
+			writeString(field.getGenericSignature(), out);
+			out.writeInt(field.getModifiers());
+			writeValue(field.getConstantValue(), out);
+		}
+		IApiMethod[] methods = type.getMethods();
+		out.writeInt(methods.length);
+		for (IApiMethod method : methods) {
+			out.writeUTF(method.getName());
+			writeString(method.getSignature(), out);
+			writeString(method.getGenericSignature(), out);
+			out.writeInt(method.getModifiers());
+			writeStrings(method.getExceptionNames(), out);
+			writeString(method.getDefaultValue(), out);
+		}
+	}
+
+	/**
+	 * Re-creates a type structure
+	 *
+	 * @param in the stream to read from
+	 * @param component the component the type belongs to or <code>null</code>
+	 * @param root the type root of the type
+	 * @return the type structure
+	 * @throws IOException if the type cannot be decoded
+	 */
+	static ApiType readType(DataInputStream in, IApiComponent component, IApiTypeRoot root) throws IOException {
+		String name = in.readUTF();
+		String signature = in.readUTF();
+		String genericSignature = readString(in);
+		int modifiers = in.readInt();
+		String enclosingTypeName = readString(in);
+		ApiType type = new ApiType(component, name, signature, genericSignature, modifiers, enclosingTypeName, root);
+		String superclassName = readString(in);
+		if (superclassName != null) {
+			type.setSuperclassName(superclassName);
+		}
+		String[] interfaces = readStrings(in);
+		if (interfaces != null) {
+			type.setSuperInterfaceNames(interfaces);
+		}
+		int kind = in.readByte();
+		if ((kind & ANONYMOUS) != 0) {
+			type.setAnonymous();
+		}
+		if ((kind & LOCAL) != 0) {
+			type.setLocal();
+		}
+		if ((kind & MEMBER) != 0) {
+			type.setMemberType();
+		}
+		String simpleName = readString(in);
+		if (simpleName != null) {
+			type.setSimpleName(simpleName);
+		}
+		String enclosingMethodName = readString(in);
+		String enclosingMethodSignature = readString(in);
+		if (enclosingMethodName != null || enclosingMethodSignature != null) {
+			type.setEnclosingMethodInfo(enclosingMethodName, enclosingMethodSignature);
+		}
+		String[] memberTypes = readStrings(in);
+		if (memberTypes != null) {
+			for (String memberType : memberTypes) {
+				type.addMemberType(memberType, 0);
+			}
+		}
+		int count = in.readInt();
+		for (int i = 0; i < count; i++) {
+			type.addField(in.readUTF(), readString(in), readString(in), in.readInt(), readValue(in));
+		}
+		count = in.readInt();
+		for (int i = 0; i < count; i++) {
+			ApiMethod method = type.addMethod(in.readUTF(), readString(in), readString(in), in.readInt(), readStrings(in));
+			String defaultValue = readString(in);
+			if (defaultValue != null) {
+				method.setDefaultValue(defaultValue);
+			}
+		}
+		return type;
+	}
+
+	private static void writeString(String value, DataOutputStream out) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	private static void writeStrings(String[] values, DataOutputStream out) throws IOException {
+		if (values == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(values.length);
+		for (String value : values) {
+			out.writeUTF(value);
+		}
+	}
+
+	private static String[] readStrings(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		String[] values = new String[length];
+		for (int i = 0; i < length; i++) {
+			values[i] = in.readUTF();
+		}
+		return values;
+	}
+
+	private static void writeValue(Object value, DataOutputStream out) throws IOException {
+		if (value instanceof String) {
+			out.writeByte(STRING_VALUE);
+			out.writeUTF((String) value);
+		} else if (value instanceof Integer) {
+			out.writeByte(INT_VALUE);
+			out.writeInt(((Integer) value).intValue());
+		} else if (value instanceof Long) {
+			out.writeByte(LONG_VALUE);
+			out.writeLong(((Long) value).longValue());
+		} else if (value instanceof Float) {
+			out.writeByte(FLOAT_VALUE);
+			out.writeFloat(((Float) value).floatValue());
+		} else if (value instanceof Double) {
+			out.writeByte(DOUBLE_VALUE);
+			out.writeDouble(((Double) value).doubleValue());
+		} else if (value == null) {
+			out.writeByte(NO_VALUE);
+		} else {
+			throw new IOException("Unsupported constant value: " + value); //$NON-NLS-1$
+		}
+	}
+
+	private static Object readValue(DataInputStream in) throws IOException {
+		switch (in.readByte()) {
+			case NO_VALUE:
+				return null;
+			case STRING_VALUE:
+				return in.readUTF();
+			case INT_VALUE:
+				return Integer.valueOf(in.readInt());
+			case LONG_VALUE:
+				return Long.valueOf(in.readLong());
+			case FLOAT_VALUE:
+				return Float.valueOf(in.readFloat());
+			case DOUBLE_VALUE:
+				return Double.valueOf(in.readDouble());
+			default:
+				throw new IOException("Unknown constant value kind"); //$NON-NLS-1$
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "Type structure index: " + fFile; //$NON-NLS-1$
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2013 IBM Corporation and others.
+ * Copyright (c) 2007, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -157,6 +157,16 @@ public class ApiPlugin extends Plugin implements ISaveParticipant, DebugOptionsL
 	 * </p>
 	 */
 	public static final String KNOWN_EE_FRAGMENTS = "knownEEFragments"; //$NON-NLS-1$
+	/**
+	 * Preference key for the maximum size, in megabytes, of the cache of API
+	 * type structures.
+	 * <p>
+	 * Value is: <code>modelCacheSize</code>
+	 * </p>
+	 *
+	 * @since 1.1
+	 */
+	public static final String MODEL_CACHE_SIZE = "modelCacheSize"; //$NON-NLS-1$
 	/**
 	 * Singleton instance of the plugin
 	 */
@@ -680,15 +690,17 @@ public class ApiPlugin extends Plugin implements ISaveParticipant, DebugOptionsL
 	@Override
 	public void stop(BundleContext context) throws Exception {
 		try {
+			if (deltaProcessor != null) {
+				JavaCore.removeElementChangedListener(deltaProcessor);
+				ResourcesPlugin.getWorkspace().removeResourceChangeListener(deltaProcessor);
+				// apply the pending changes before the models are saved
+				deltaProcessor.dispose();
+			}
 			ApiDescriptionManager.shutdown();
 			ApiBaselineManager.getManager().stop();
 			ResourcesPlugin.getWorkspace().removeSaveParticipant(PLUGIN_ID);
 			FileManager.getManager().deleteFiles();
 			fBundleContext = null;
-			if (deltaProcessor != null) {
-				JavaCore.removeElementChangedListener(deltaProcessor);
-				ResourcesPlugin.getWorkspace().removeResourceChangeListener(deltaProcessor);
-			}
 		} finally {
 			super.stop(context);
 		}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2013 IBM Corporation and others.
+ * Copyright (c) 2007, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,6 +11,7 @@
 package org.eclipse.pde.api.tools.internal.provisional.comparator;
 
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 import org.eclipse.core.runtime.CoreException;
@@ -19,6 +20,7 @@ import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.jdt.core.Flags;
 import org.eclipse.pde.api.tools.internal.comparator.ClassFileComparator;
+import org.eclipse.pde.api.tools.internal.comparator.ContentHashComparator;
 import org.eclipse.pde.api.tools.internal.comparator.Delta;
 import org.eclipse.pde.api.tools.internal.provisional.ApiPlugin;
 import org.eclipse.pde.api.tools.internal.provisional.IApiAnnotations;
@@ -100,7 +102,66 @@ public class ApiComparator {
 	 * @throws IllegalArgumentException if one of the two baselines is null
 	 */
 	public static IDelta compare(final IApiBaseline referenceBaseline, final IApiBaseline baseline, final int visibilityModifiers, final boolean force, final IProgressMonitor monitor) {
+		return compare(referenceBaseline, baseline, visibilityModifiers, force, 1, monitor);
+	}
+
+	/**
+	 * Returns a delta that corresponds to the difference between the given
+	 * baseline and the reference, comparing the API components on the given
+	 * number of threads. The children of the returned delta are in the same
+	 * order whatever the number of threads.
+	 *
+	 * @param referenceBaseline the given API baseline which is used as the
+	 *            reference
+	 * @param baseline the given API baseline to compare with
+	 * @param visibilityModifiers the given visibility that triggers what
+	 *            visibility should be used for the comparison
+	 * @param force a flag to force the comparison of nested API components with
+	 *            the same versions
+	 * @param threads the number of threads to compare the API components with.
+	 *            When greater than <code>1</code> the components are compared
+	 *            concurrently.
+	 * @param monitor
+	 *
+	 * @return a delta, an empty delta if no difference is found or null if the
+	 *         delta detection failed
+	 * @throws IllegalArgumentException if one of the two baselines is null
+	 * @since 1.1
+	 */
+	public static IDelta compare(final IApiBaseline referenceBaseline, final IApiBaseline baseline, final int visibilityModifiers, final boolean force, final int threads, final IProgressMonitor monitor) {
+		final Delta globalDelta = new Delta();
+		compare(referenceBaseline, baseline, visibilityModifiers, force, threads, deltas -> {
+			for (IDelta delta : deltas) {
+				globalDelta.add(delta);
+			}
+		}, monitor);
+		return globalDelta.isEmpty() ? NO_DELTA : globalDelta;
+	}
+
+	/**
+	 * Compares the given baseline with the reference and hands the deltas of
+	 * each API component to the given collector as soon as the component has
+	 * been compared, in the same order as the children of the delta returned
+	 * by
+	 * {@link #compare(IApiBaseline, IApiBaseline, int, boolean, int, IProgressMonitor)}
+	 * whatever the number of threads. No delta of the whole baseline is built.
+	 *
+	 * @param referenceBaseline the given API baseline which is used as the
+	 *            reference
+	 * @param baseline the given API baseline to compare with
+	 * @param visibilityModifiers the given visibility that triggers what
+	 *            visibility should be used for the comparison
+	 * @param force a flag to force the comparison of nested API components with
+	 *            the same versions
+	 * @param threads the number of threads to compare the API components with
+	 * @param collector the collector to hand the deltas of each API component
+	 *            to, called from the calling thread
+	 * @param monitor
+	 * @throws IllegalArgumentException if one of the two baselines is null
+	 */
+	static void compare(final IApiBaseline referenceBaseline, final IApiBaseline baseline, final int visibilityModifiers, final boolean force, final int threads, final ParallelComparison.DeltaCollector collector, final IProgressMonitor monitor) {
 		SubMonitor localmonitor = SubMonitor.convert(monitor, 2);
+		ParallelComparison comparison = null;
 		try {
 			if (referenceBaseline == null || baseline == null) {
 				throw new IllegalArgumentException("None of the baselines must be null"); //$NON-NLS-1$
@@ -108,42 +169,37 @@ public class ApiComparator {
 			IApiComponent[] apiComponents = referenceBaseline.getApiComponents();
 			IApiComponent[] apiComponents2 = baseline.getApiComponents();
 			Set<String> apiComponentsIds = new HashSet<>();
-			final Delta globalDelta = new Delta();
+			if (threads > 1) {
+				comparison = new ParallelComparison(threads, collector);
+			}
 			SubMonitor apiLoopMonitor = localmonitor.split(1).setWorkRemaining(apiComponents.length);
 			for (IApiComponent apiComponentMainLoop : apiComponents) {
 				apiLoopMonitor.split(1);
-				IApiComponent apiComponent = apiComponentMainLoop;
+				final IApiComponent apiComponent = apiComponentMainLoop;
 				if (!apiComponent.isSystemComponent()) {
 					String id = apiComponent.getSymbolicName();
-					IApiComponent apiComponentBaseline = baseline.getApiComponent(id);
-					IDelta delta = null;
+					final IApiComponent apiComponentBaseline = baseline.getApiComponent(id);
 					if (apiComponentBaseline == null) {
 						// report removal of an API component
-						delta = new Delta(null, IDelta.API_BASELINE_ELEMENT_TYPE, IDelta.REMOVED, IDelta.API_COMPONENT, null, id, id);
+						IDelta delta = new Delta(null, IDelta.API_BASELINE_ELEMENT_TYPE, IDelta.REMOVED, IDelta.API_COMPONENT, null, id, id);
+						if (comparison != null) {
+							comparison.submit(() -> new IDelta[] { delta });
+						} else {
+							collector.collect(new IDelta[] { delta });
+						}
 					} else {
 						apiComponentsIds.add(id);
-						String versionString = apiComponent.getVersion();
-						String versionString2 = apiComponentBaseline.getVersion();
-						IDelta bundleVersionChangesDelta = checkBundleVersionChanges(apiComponentBaseline, id, versionString, versionString2);
-						if (bundleVersionChangesDelta != null) {
-							globalDelta.add(bundleVersionChangesDelta);
-						}
-						if (!versionString.equals(versionString2) || force) {
-							long time = System.currentTimeMillis();
-							try {
-								delta = compare(apiComponent, apiComponentBaseline, referenceBaseline, baseline, visibilityModifiers, localmonitor.split(1));
-							} finally {
-								if (ApiPlugin.DEBUG_API_COMPARATOR) {
-									System.out.println("Time spent for " + id + " " + versionString + " : " + (System.currentTimeMillis() - time) + "ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
-								}
-							}
+						if (comparison != null) {
+							comparison.submit(() -> compareComponents(apiComponent, apiComponentBaseline, referenceBaseline, baseline, visibilityModifiers, force, null));
+						} else {
+							collector.collect(compareComponents(apiComponent, apiComponentBaseline, referenceBaseline, baseline, visibilityModifiers, force, localmonitor.split(1)));
 						}
 					}
-					if (delta != null && delta != NO_DELTA) {
-						globalDelta.add(delta);
-					}
 				}
 			}
+			if (comparison != null) {
+				comparison.finish();
+			}
 			SubMonitor elementLoopMonitor = localmonitor.split(1).setWorkRemaining(apiComponents2.length);
 			for (IApiComponent element : apiComponents2) {
 				elementLoopMonitor.split(1);
@@ -152,16 +208,55 @@ public class ApiComparator {
 					String id = apiComponent.getSymbolicName();
 					if (!apiComponentsIds.contains(id)) {
 						// addition of an API component
-						globalDelta.add(new Delta(null, IDelta.API_BASELINE_ELEMENT_TYPE, IDelta.ADDED, IDelta.API_COMPONENT, null, id, id));
+						collector.collect(new IDelta[] { new Delta(null, IDelta.API_BASELINE_ELEMENT_TYPE, IDelta.ADDED, IDelta.API_COMPONENT, null, id, id) });
 					}
 				}
 			}
-			return globalDelta.isEmpty() ? NO_DELTA : globalDelta;
 		} finally {
+			if (comparison != null) {
+				comparison.dispose();
+			}
 			SubMonitor.done(monitor);
 		}
 	}
 
+	/**
+	 * Compares an API component of the reference baseline with the API
+	 * component of the same name in the other baseline
+	 *
+	 * @param apiComponent the API component from the reference baseline
+	 * @param apiComponentBaseline the API component to compare with
+	 * @param referenceBaseline the reference baseline
+	 * @param baseline the baseline to compare with
+	 * @param visibilityModifiers the visibility used for the comparison
+	 * @param force whether to compare API components with the same versions
+	 * @param monitor
+	 * @return the deltas to add to the baseline delta, in order, never
+	 *         <code>null</code>
+	 */
+	static IDelta[] compareComponents(final IApiComponent apiComponent, final IApiComponent apiComponentBaseline, final IApiBaseline referenceBaseline, final IApiBaseline baseline, final int visibilityModifiers, final boolean force, final IProgressMonitor monitor) {
+		String id = apiComponent.getSymbolicName();
+		String versionString = apiComponent.getVersion();
+		String versionString2 = apiComponentBaseline.getVersion();
+		IDelta bundleVersionChangesDelta = checkBundleVersionChanges(apiComponentBaseline, id, versionString, versionString2);
+		IDelta delta = null;
+		if (!versionString.equals(versionString2) || force) {
+			long time = System.currentTimeMillis();
+			try {
+				delta = compare(apiComponent, apiComponentBaseline, referenceBaseline, baseline, visibilityModifiers, monitor);
+			} finally {
+				if (ApiPlugin.DEBUG_API_COMPARATOR) {
+					System.out.println("Time spent for " + id + " " + versionString + " : " + (System.currentTimeMillis() - time) + "ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+				}
+			}
+		}
+		if (delta == null || delta == NO_DELTA) {
+			return bundleVersionChangesDelta == null ? new IDelta[0] : new IDelta[] { bundleVersionChangesDelta };
+		}
+		return bundleVersionChangesDelta == null ? new IDelta[] { delta } : new IDelta[] {
+				bundleVersionChangesDelta, delta };
+	}
+
 	/**
 	 * Returns a delta that corresponds to the difference between the given
 	 * component and the reference baseline.
@@ -344,6 +439,38 @@ public class ApiComparator {
 	 *                </ul>
 	 */
 	public static IDelta compare(final IApiTypeRoot typeRoot2, final IApiComponent component, final IApiComponent component2, final IApiComponent reexporter, final IApiBaseline referenceBaseline, final IApiBaseline baseline, final int visibilityModifiers, final IProgressMonitor monitor) {
+		return compare(typeRoot2, component, component2, reexporter, referenceBaseline, baseline, visibilityModifiers, new ContentHashComparator(), monitor);
+	}
+
+	/**
+	 * Returns a delta that corresponds to the comparison of the given class
+	 * file with the reference, reusing the given comparator of fingerprints so
+	 * that the results it caches, such as those of the common super types, are
+	 * shared by the comparisons of several class files.
+	 *
+	 * @param typeRoot2 the given class file that comes from the
+	 *            <code>component2</code>
+	 * @param component the given API component from the reference
+	 * @param component2 the given API component to compare with
+	 * @param reexporter the API component re-exporting component2, or
+	 *            <code>null</code> if none
+	 * @param referenceBaseline the given API baseline from which the given
+	 *            component <code>component</code> is coming from
+	 * @param baseline the given API baseline from which the given component
+	 *            <code>component2</code> is coming from
+	 * @param visibilityModifiers the given visibility that triggers what
+	 *            visibility should be used for the comparison
+	 * @param contentHashes the comparator of fingerprints to use, from a
+	 *            single thread
+	 * @param monitor
+	 *
+	 * @return a delta, an empty delta if no difference is found or null if the
+	 *         delta detection failed
+	 * @see #compare(IApiTypeRoot, IApiComponent, IApiComponent, IApiComponent,
+	 *      IApiBaseline, IApiBaseline, int, IProgressMonitor)
+	 * @since 1.1
+	 */
+	public static IDelta compare(final IApiTypeRoot typeRoot2, final IApiComponent component, final IApiComponent component2, final IApiComponent reexporter, final IApiBaseline referenceBaseline, final IApiBaseline baseline, final int visibilityModifiers, final ContentHashComparator contentHashes, final IProgressMonitor monitor) {
 
 		if (typeRoot2 == null) {
 			throw new IllegalArgumentException("The given class file is null"); //$NON-NLS-1$
@@ -392,6 +519,9 @@ public class ApiComparator {
 				return NO_DELTA;
 			}
 			localmonitor.split(1);
+			if (contentHashes.isUnchanged(typeRoot, typeRoot2, component, component2)) {
+				return NO_DELTA;
+			}
 			IApiType typeDescriptor = typeRoot.getStructure();
 			if ((visibility & visibilityModifiers) == 0) {
 				if ((refVisibility & visibilityModifiers) == 0) {
@@ -465,6 +595,37 @@ public class ApiComparator {
 	 *                </ul>
 	 */
 	public static IDelta compare(final IApiTypeRoot typeRoot, final IApiTypeRoot typeRoot2, final IApiComponent component, final IApiComponent component2, final IApiBaseline referenceBaseline, final IApiBaseline baseline, final int visibilityModifiers, final IProgressMonitor monitor) {
+		return compare(typeRoot, typeRoot2, component, component2, referenceBaseline, baseline, visibilityModifiers, new ContentHashComparator(), monitor);
+	}
+
+	/**
+	 * Returns a delta that corresponds to the comparison of the given class
+	 * files, reusing the given comparator of fingerprints so that the results
+	 * it caches, such as those of the common super types, are shared by the
+	 * comparisons of several class files.
+	 *
+	 * @param typeRoot the given class file
+	 * @param typeRoot2 the given class file to compare with
+	 * @param component the given API component from which the given class file
+	 *            is coming from
+	 * @param component2 the given API component to compare with
+	 * @param referenceBaseline the given API baseline from which the given
+	 *            component <code>component</code> is coming from
+	 * @param baseline the given API baseline from which the given component
+	 *            <code>component2</code> is coming from
+	 * @param visibilityModifiers the given visibility that triggers what
+	 *            visibility should be used for the comparison
+	 * @param contentHashes the comparator of fingerprints to use, from a
+	 *            single thread
+	 * @param monitor
+	 *
+	 * @return a delta, an empty delta if no difference is found or
+	 *         <code>null</code> if the delta detection failed
+	 * @see #compare(IApiTypeRoot, IApiTypeRoot, IApiComponent, IApiComponent,
+	 *      IApiBaseline, IApiBaseline, int, IProgressMonitor)
+	 * @since 1.1
+	 */
+	public static IDelta compare(final IApiTypeRoot typeRoot, final IApiTypeRoot typeRoot2, final IApiComponent component, final IApiComponent component2, final IApiBaseline referenceBaseline, final IApiBaseline baseline, final int visibilityModifiers, final ContentHashComparator contentHashes, final IProgressMonitor monitor) {
 		if (typeRoot == null || typeRoot2 == null) {
 			throw new IllegalArgumentException("One of the given class files is null"); //$NON-NLS-1$
 		}
@@ -476,6 +637,9 @@ public class ApiComparator {
 		}
 		IDelta delta = null;
 		try {
+			if (contentHashes.isUnchanged(typeRoot, typeRoot2, component, component2)) {
+				return NO_DELTA;
+			}
 			ClassFileComparator comparator = new ClassFileComparator(typeRoot, typeRoot2, component, component2, referenceBaseline, baseline, visibilityModifiers);
 			delta = comparator.getDelta(SubMonitor.convert(monitor));
 			if (ApiPlugin.DEBUG_API_COMPARATOR) {
@@ -541,15 +705,52 @@ public class ApiComparator {
 	 *             visited
 	 */
 	public static IDelta compare(final IApiScope scope, final IApiBaseline baseline, final int visibilityModifiers, final boolean force, final boolean continueOnResolverError, final IProgressMonitor monitor) throws CoreException {
+		return compare(scope, baseline, visibilityModifiers, force, continueOnResolverError, 1, monitor);
+	}
+
+	/**
+	 * Returns a delta that corresponds to the comparison of the given scope
+	 * with the given API baseline, comparing the API components of the scope
+	 * on the given number of threads. The children of the returned delta are in
+	 * the same order whatever the number of threads.
+	 *
+	 * @param scope the given scope for the comparison
+	 * @param baseline the given API baseline to compare with
+	 * @param visibilityModifiers the given visibility that triggers what
+	 *            visibility should be used for the comparison
+	 * @param force a flag to force the comparison of nested API components with
+	 *            the same versions
+	 * @param continueOnResolverError if <code>true</code> the comparison will
+	 *            continue even if a component in the scope has a resolver error
+	 * @param threads the number of threads to compare the API components with.
+	 *            When greater than <code>1</code> the components are compared
+	 *            concurrently.
+	 * @param monitor the given progress monitor to report progress
+	 *
+	 * @return a delta, an empty delta if no difference is found or null if the
+	 *         delta detection failed. If set to continue on resolver error a
+	 *         delta, possibly empty, will always be returned
+	 * @throws IllegalArgumentException if one of the two baselines is null
+	 *             CoreException if one of the element in the scope cannot be
+	 *             visited
+	 * @since 1.1
+	 */
+	public static IDelta compare(final IApiScope scope, final IApiBaseline baseline, final int visibilityModifiers, final boolean force, final boolean continueOnResolverError, final int threads, final IProgressMonitor monitor) throws CoreException {
 
 		if (scope == null || baseline == null) {
 			throw new IllegalArgumentException("None of the scope or the baseline must be null"); //$NON-NLS-1$
 		}
 		SubMonitor localmonitor = SubMonitor.convert(monitor, 2);
 		try {
-			final Set<IDelta> deltas = new HashSet<>();
-			final CompareApiScopeVisitor visitor = new CompareApiScopeVisitor(deltas, baseline, force, visibilityModifiers, continueOnResolverError, localmonitor.split(1));
-			scope.accept(visitor);
+			// keep the deltas in the order the scope was visited
+			final Set<IDelta> deltas = new LinkedHashSet<>();
+			final CompareApiScopeVisitor visitor = new CompareApiScopeVisitor(deltas, baseline, force, visibilityModifiers, continueOnResolverError, threads, localmonitor.split(1));
+			try {
+				scope.accept(visitor);
+				visitor.finish();
+			} finally {
+				visitor.dispose();
+			}
 
 			// If set to continue on error, return whatever deltas were
 			// collected
@@ -564,23 +765,8 @@ public class ApiComparator {
 				iDelta.accept(new DeltaVisitor() {
 					@Override
 					public void endVisit(IDelta localDelta) {
-						if (localDelta.getChildren().length == 0) {
-							switch (localDelta.getElementType()) {
-								case IDelta.ANNOTATION_ELEMENT_TYPE:
-								case IDelta.ENUM_ELEMENT_TYPE:
-								case IDelta.CONSTRUCTOR_ELEMENT_TYPE:
-								case IDelta.METHOD_ELEMENT_TYPE:
-								case IDelta.INTERFACE_ELEMENT_TYPE:
-								case IDelta.CLASS_ELEMENT_TYPE:
-								case IDelta.FIELD_ELEMENT_TYPE:
-								case IDelta.API_COMPONENT_ELEMENT_TYPE:
-								case IDelta.API_BASELINE_ELEMENT_TYPE: {
-									globalDelta.add(localDelta);
-									break;
-								}
-								default:
-									break;
-							}
+						if (localDelta.getChildren().length == 0 && isReported(localDelta)) {
+							globalDelta.add(localDelta);
 						}
 					}
 				});
@@ -592,6 +778,83 @@ public class ApiComparator {
 		}
 	}
 
+	/**
+	 * Compares the given scope with the given API baseline like
+	 * {@link #compare(IApiScope, IApiBaseline, int, boolean, boolean, int, IProgressMonitor)}
+	 * but hands the leaf deltas to the given delta visitor as soon as the
+	 * elements of the scope have been compared, instead of returning them as
+	 * children of a single delta. This allows reports to be written while the
+	 * scope is compared without keeping all the deltas in memory.
+	 * <p>
+	 * The leaf deltas are handed to the visitor from the calling thread, in
+	 * the order they would be children of the delta returned by
+	 * {@link #compare(IApiScope, IApiBaseline, int, boolean, boolean, int, IProgressMonitor)}.
+	 * Leaf deltas are not checked for duplicates across the elements of the
+	 * scope.
+	 * </p>
+	 *
+	 * @param scope the given scope for the comparison
+	 * @param baseline the given API baseline to compare with
+	 * @param visibilityModifiers the given visibility that triggers what
+	 *            visibility should be used for the comparison
+	 * @param force a flag to force the comparison of nested API components with
+	 *            the same versions
+	 * @param continueOnResolverError if <code>true</code> the comparison will
+	 *            continue even if a component in the scope has a resolver error
+	 * @param threads the number of threads to compare the API components with
+	 * @param visitor the visitor to hand the leaf deltas to
+	 * @param monitor the given progress monitor to report progress
+	 *
+	 * @return <code>false</code> if the delta detection failed, in which case
+	 *         the deltas handed to the visitor may be incomplete. If set to
+	 *         continue on resolver error <code>true</code> is always returned
+	 * @throws IllegalArgumentException if one of the scope, the baseline or the
+	 *             visitor is null CoreException if one of the element in the
+	 *             scope cannot be visited
+	 * @since 1.1
+	 */
+	public static boolean compare(final IApiScope scope, final IApiBaseline baseline, final int visibilityModifiers, final boolean force, final boolean continueOnResolverError, final int threads, final DeltaVisitor visitor, final IProgressMonitor monitor) throws CoreException {
+		if (scope == null || baseline == null || visitor == null) {
+			throw new IllegalArgumentException("None of the scope, the baseline or the visitor must be null"); //$NON-NLS-1$
+		}
+		SubMonitor localmonitor = SubMonitor.convert(monitor, 1);
+		try {
+			final CompareApiScopeVisitor scopeVisitor = new CompareApiScopeVisitor(visitor, baseline, force, visibilityModifiers, continueOnResolverError, threads, localmonitor.split(1));
+			try {
+				scope.accept(scopeVisitor);
+				scopeVisitor.finish();
+			} finally {
+				scopeVisitor.dispose();
+			}
+			return continueOnResolverError || !scopeVisitor.containsError();
+		} finally {
+			localmonitor.done();
+		}
+	}
+
+	/**
+	 * Returns if the given leaf delta is reported by the comparison of a scope
+	 *
+	 * @param delta a leaf delta
+	 * @return <code>true</code> if the element type of the delta is reported
+	 */
+	static boolean isReported(IDelta delta) {
+		switch (delta.getElementType()) {
+			case IDelta.ANNOTATION_ELEMENT_TYPE:
+			case IDelta.ENUM_ELEMENT_TYPE:
+			case IDelta.CONSTRUCTOR_ELEMENT_TYPE:
+			case IDelta.METHOD_ELEMENT_TYPE:
+			case IDelta.INTERFACE_ELEMENT_TYPE:
+			case IDelta.CLASS_ELEMENT_TYPE:
+			case IDelta.FIELD_ELEMENT_TYPE:
+			case IDelta.API_COMPONENT_ELEMENT_TYPE:
+			case IDelta.API_BASELINE_ELEMENT_TYPE:
+				return true;
+			default:
+				return false;
+		}
+	}
+
 	/**
 	 * Returns true, if the given type descriptor should be skipped, false
 	 * otherwise.
@@ -634,6 +897,7 @@ public class ApiComparator {
 	 */
 	private static IDelta internalCompare(final IApiComponent component, final IApiComponent component2, final IApiBaseline referenceBaseline, final IApiBaseline baseline, final int visibilityModifiers, final Delta globalDelta, final IProgressMonitor monitor) throws CoreException {
 		final Set<String> typeRootBaseLineNames = new HashSet<>();
+		final ContentHashComparator contentHashes = new ContentHashComparator();
 		final String id = component.getSymbolicName();
 		IApiTypeContainer[] typeRootContainers = null;
 		IApiTypeContainer[] typeRootContainers2 = null;
@@ -739,12 +1003,6 @@ public class ApiComparator {
 										// their visibility
 										return;
 									}
-									IApiType typeDescriptor2 = typeRoot2.getStructure();
-									IApiAnnotations elementDescription2 = providerApiDesc.resolveAnnotations(typeDescriptor2.getHandle());
-									int visibility2 = 0;
-									if (elementDescription2 != null) {
-										visibility2 = elementDescription2.getVisibility();
-									}
 									if (visibilityModifiers == VisibilityModifiers.API) {
 										// if the visibility is API, we only
 										// consider public and protected types
@@ -752,6 +1010,18 @@ public class ApiComparator {
 											return;
 										}
 									}
+									if (contentHashes.isUnchanged(typeRoot, typeRoot2, component, provider)) {
+										// same class file, descriptions and
+										// hierarchy: nothing to report
+										typeRootBaseLineNames.add(typeName);
+										return;
+									}
+									IApiType typeDescriptor2 = typeRoot2.getStructure();
+									IApiAnnotations elementDescription2 = providerApiDesc.resolveAnnotations(typeDescriptor2.getHandle());
+									int visibility2 = 0;
+									if (elementDescription2 != null) {
+										visibility2 = elementDescription2.getVisibility();
+									}
 									if (Util.isAPI(visibility, typeDescriptor)) {
 										if (!Util.isAPI(visibility2, typeDescriptor2)) {
 											globalDelta.add(new Delta(deltaComponentID, IDelta.API_COMPONENT_ELEMENT_TYPE, IDelta.REMOVED, reexported ? IDelta.REEXPORTED_API_TYPE : IDelta.API_TYPE, elementDescription2 != null ? elementDescription2.getRestrictions() : RestrictionModifiers.NO_RESTRICTIONS, RestrictionModifiers.NO_RESTRICTIONS, typeDescriptor.getModifiers(), typeDescriptor2.getModifiers(), typeName, typeName, new String[] {
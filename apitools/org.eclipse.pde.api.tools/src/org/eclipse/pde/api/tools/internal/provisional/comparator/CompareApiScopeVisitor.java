@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2013 IBM Corporation and others.
+ * Copyright (c) 2008, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,10 +10,14 @@
  *******************************************************************************/
 package org.eclipse.pde.api.tools.internal.provisional.comparator;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.pde.api.tools.internal.comparator.ContentHashComparator;
 import org.eclipse.pde.api.tools.internal.comparator.Delta;
 import org.eclipse.pde.api.tools.internal.provisional.ApiPlugin;
 import org.eclipse.pde.api.tools.internal.provisional.model.ApiScopeVisitor;
@@ -36,32 +40,132 @@ public class CompareApiScopeVisitor extends ApiScopeVisitor {
 	boolean continueOnResolverError = false;
 	boolean containsErrors = false;
 	SubMonitor monitor;
+	int threads = 1;
+	ParallelComparison comparison = null;
+	DeltaVisitor sink = null;
+	/**
+	 * Fingerprints shared by the comparisons of the type roots of the scope
+	 */
+	ContentHashComparator contentHashes = new ContentHashComparator();
 
 	public CompareApiScopeVisitor(final Set<IDelta> deltas, final IApiBaseline baseline, final boolean force, final int visibilityModifiers, final boolean continueOnResolverError, final SubMonitor monitor) {
+		this(deltas, baseline, force, visibilityModifiers, continueOnResolverError, 1, monitor);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param deltas the set to add the leaf deltas to
+	 * @param baseline the reference baseline
+	 * @param force whether to compare API components with the same versions
+	 * @param visibilityModifiers the visibility used for the comparison
+	 * @param continueOnResolverError whether to compare components with
+	 *            resolver errors
+	 * @param threads the number of threads to compare API components with.
+	 *            When greater than <code>1</code>, {@link #finish()} must be
+	 *            called once the scope has been visited and
+	 *            {@link #dispose()} once done with the visitor.
+	 * @param monitor
+	 * @since 1.1
+	 */
+	public CompareApiScopeVisitor(final Set<IDelta> deltas, final IApiBaseline baseline, final boolean force, final int visibilityModifiers, final boolean continueOnResolverError, final int threads, final SubMonitor monitor) {
 		this.deltas = deltas;
 		this.referenceBaseline = baseline;
 		this.visibilityModifiers = visibilityModifiers;
 		this.force = force;
 		this.continueOnResolverError = continueOnResolverError;
+		this.threads = threads;
 		this.monitor = monitor;
+		if (threads > 1) {
+			this.comparison = new ParallelComparison(threads, collected -> addDeltas(collected));
+		}
+	}
+
+	/**
+	 * Constructor for a visitor handing the leaf deltas to the given delta
+	 * visitor as soon as they are computed, instead of collecting them. Only
+	 * the leaf deltas reported by
+	 * {@link ApiComparator#compare(org.eclipse.pde.api.tools.internal.provisional.model.IApiScope, IApiBaseline, int, boolean, boolean, int, DeltaVisitor, org.eclipse.core.runtime.IProgressMonitor)}
+	 * are handed to the delta visitor. Leaf deltas are not checked for
+	 * duplicates across the elements of the scope.
+	 *
+	 * @param sink the delta visitor to hand the leaf deltas to
+	 * @param baseline the reference baseline
+	 * @param force whether to compare API components with the same versions
+	 * @param visibilityModifiers the visibility used for the comparison
+	 * @param continueOnResolverError whether to compare components with
+	 *            resolver errors
+	 * @param threads the number of threads to compare API components with
+	 * @param monitor
+	 * @see #CompareApiScopeVisitor(Set, IApiBaseline, boolean, int, boolean,
+	 *      int, SubMonitor)
+	 * @since 1.1
+	 */
+	public CompareApiScopeVisitor(final DeltaVisitor sink, final IApiBaseline baseline, final boolean force, final int visibilityModifiers, final boolean continueOnResolverError, final int threads, final SubMonitor monitor) {
+		this((Set<IDelta>) null, baseline, force, visibilityModifiers, continueOnResolverError, threads, monitor);
+		this.sink = sink;
+	}
+
+	/**
+	 * Adds the given leaf deltas to the set of deltas, or hands them to the
+	 * delta visitor of this visitor
+	 *
+	 * @param leaves the leaf deltas
+	 */
+	void addDeltas(IDelta... leaves) {
+		if (this.sink == null) {
+			Collections.addAll(this.deltas, leaves);
+			return;
+		}
+		for (IDelta leaf : leaves) {
+			if (ApiComparator.isReported(leaf)) {
+				leaf.accept(this.sink);
+			}
+		}
+	}
+
+	/**
+	 * Waits for the API components being compared and adds their deltas, in
+	 * the order the components were visited
+	 *
+	 * @since 1.1
+	 */
+	public void finish() {
+		if (this.comparison != null) {
+			this.comparison.finish();
+		}
+	}
+
+	/**
+	 * Stops the threads used to compare API components
+	 *
+	 * @since 1.1
+	 */
+	public void dispose() {
+		if (this.comparison != null) {
+			this.comparison.dispose();
+			this.comparison = null;
+		}
 	}
 
 	@Override
 	public boolean visit(IApiBaseline baseline) throws CoreException {
 		this.monitor.setWorkRemaining(100).split(1);
-		IDelta delta = ApiComparator.compare(this.referenceBaseline, baseline, this.visibilityModifiers, this.force, null);
-		if (delta != null) {
-			delta.accept(new DeltaVisitor() {
-				@Override
-				public void endVisit(IDelta localDelta) {
-					if (localDelta.getChildren().length == 0) {
-						CompareApiScopeVisitor.this.deltas.add(localDelta);
-					}
+		// hand the leaf deltas of each component over as soon as it has been
+		// compared rather than building the delta of the whole baseline
+		final DeltaVisitor leaves = new DeltaVisitor() {
+			@Override
+			public void endVisit(IDelta localDelta) {
+				if (localDelta.getChildren().length == 0) {
+					addDeltas(localDelta);
 				}
-			});
-		} else {
-			this.containsErrors = true;
-		}
+			}
+		};
+		ApiComparator.compare(this.referenceBaseline, baseline, this.visibilityModifiers, this.force, this.threads, deltas -> {
+			for (IDelta delta : deltas) {
+				delta.accept(leaves);
+			}
+		}, null);
 		return false;
 	}
 
@@ -104,6 +208,22 @@ public class CompareApiScopeVisitor extends ApiScopeVisitor {
 		}
 
 		subMonitor.split(50);
+		if (this.comparison != null) {
+			this.comparison.submit(() -> compareComponent(referenceComponent, component));
+		} else {
+			addDeltas(compareComponent(referenceComponent, component));
+		}
+		return false;
+	}
+
+	/**
+	 * Compares the given API component with the reference component
+	 *
+	 * @param referenceComponent the reference component or <code>null</code>
+	 * @param component the component to compare
+	 * @return the leaf deltas of the comparison, in order
+	 */
+	IDelta[] compareComponent(IApiComponent referenceComponent, IApiComponent component) {
 		final Delta globalDelta = new Delta();
 		globalDelta.add(ApiComparator.compare(referenceComponent, component, this.visibilityModifiers, null));
 		if (referenceComponent != null) {
@@ -114,15 +234,16 @@ public class CompareApiScopeVisitor extends ApiScopeVisitor {
 				globalDelta.add(bundleVersionChangesDelta);
 			}
 		}
+		final List<IDelta> leaves = new ArrayList<>();
 		globalDelta.accept(new DeltaVisitor() {
 			@Override
 			public void endVisit(IDelta localDelta) {
 				if (localDelta.getChildren().length == 0) {
-					CompareApiScopeVisitor.this.deltas.add(localDelta);
+					leaves.add(localDelta);
 				}
 			}
 		});
-		return false;
+		return leaves.toArray(new IDelta[leaves.size()]);
 	}
 
 	@Override
@@ -153,13 +274,13 @@ public class CompareApiScopeVisitor extends ApiScopeVisitor {
 			}
 		}
 		IApiBaseline baseline = referenceComponent.getBaseline();
-		IDelta delta = ApiComparator.compare(root, referenceComponent, apiComponent, null, this.referenceBaseline, baseline, this.visibilityModifiers, null);
+		IDelta delta = ApiComparator.compare(root, referenceComponent, apiComponent, null, this.referenceBaseline, baseline, this.visibilityModifiers, this.contentHashes, null);
 		if (delta != null) {
 			delta.accept(new DeltaVisitor() {
 				@Override
 				public void endVisit(IDelta localDelta) {
 					if (localDelta.getChildren().length == 0) {
-						CompareApiScopeVisitor.this.deltas.add(localDelta);
+						addDeltas(localDelta);
 					}
 				}
 			});
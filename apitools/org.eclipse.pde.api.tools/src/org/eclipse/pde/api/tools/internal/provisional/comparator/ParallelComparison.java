@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.internal.provisional.comparator;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.core.runtime.OperationCanceledException;
+
+/**
+ * Runs the comparisons of API components on a fixed pool of threads and hands
+ * their deltas back in the order the comparisons were submitted, so the
+ * resulting delta does not depend on which comparison finishes first.
+ * <p>
+ * To bound the number of deltas held in memory, at most
+ * {@link #PENDING_PER_THREAD} comparisons per thread are run ahead of the
+ * oldest one; submitting more waits for the oldest comparison to complete.
+ * Instances are meant to be used from a single thread.
+ * </p>
+ *
+ * @since 1.1
+ */
+final class ParallelComparison {
+
+	/**
+	 * Receives the deltas of the comparisons, in submission order
+	 */
+	interface DeltaCollector {
+		void collect(IDelta[] deltas);
+	}
+
+	/**
+	 * Number of comparisons per thread that can be pending
+	 */
+	static final int PENDING_PER_THREAD = 2;
+
+	private final ExecutorService fExecutor;
+	private final ArrayDeque<Future<IDelta[]>> fPending = new ArrayDeque<>();
+	private final DeltaCollector fCollector;
+	private final int fWindow;
+
+	/**
+	 * Constructor
+	 *
+	 * @param threads the number of threads to compare with, greater than
+	 *            <code>0</code>
+	 * @param collector the collector to hand the deltas to
+	 */
+	ParallelComparison(int threads, DeltaCollector collector) {
+		fExecutor = Executors.newFixedThreadPool(threads);
+		fCollector = collector;
+		fWindow = threads * PENDING_PER_THREAD;
+	}
+
+	/**
+	 * Submits the given comparison. The deltas of comparisons submitted
+	 * earlier may be handed to the collector before this method returns.
+	 *
+	 * @param comparison the comparison, returning the deltas to collect or
+	 *            <code>null</code>
+	 */
+	void submit(Callable<IDelta[]> comparison) {
+		while (fPending.size() >= fWindow) {
+			collectOldest();
+		}
+		fPending.add(fExecutor.submit(comparison));
+	}
+
+	/**
+	 * Waits for all the submitted comparisons and hands their deltas to the
+	 * collector
+	 */
+	void finish() {
+		while (!fPending.isEmpty()) {
+			collectOldest();
+		}
+	}
+
+	/**
+	 * Stops the threads, cancelling the comparisons that were not collected
+	 */
+	void dispose() {
+		for (Future<IDelta[]> future : fPending) {
+			future.cancel(true);
+		}
+		fPending.clear();
+		fExecutor.shutdownNow();
+	}
+
+	private void collectOldest() {
+		IDelta[] deltas = null;
+		try {
+			deltas = fPending.poll().get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OperationCanceledException();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+		if (deltas != null) {
+			fCollector.collect(deltas);
+		}
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2015 IBM Corporation and others.
+ * Copyright (c) 2007, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,12 +14,21 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.text.MessageFormat;
+import java.util.ArrayDeque;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.MultiStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.jdt.core.Flags;
@@ -606,6 +615,137 @@ public class TagScanner {
 	 *             the description may still be modified
 	 */
 	public void scan(CompilationUnit source, IApiDescription description, IApiTypeContainer container, Map<String, String> options, IProgressMonitor monitor) throws CoreException {
+		SubMonitor localmonitor = SubMonitor.convert(monitor, 2);
+		Map<String, String> loptions = options;
+		if (loptions == null) {
+			loptions = JavaCore.getOptions();
+		}
+		loptions.put(JavaCore.COMPILER_DOC_COMMENT_SUPPORT, JavaCore.ENABLED);
+		org.eclipse.jdt.core.dom.CompilationUnit cunit = parse(source, loptions, localmonitor);
+		Visitor visitor = new Visitor(description, container);
+		cunit.accept(visitor);
+	}
+
+	/**
+	 * Scans the specified source {@linkplain CompilationUnit}s for contributed
+	 * API javadoc tags. Tags on methods will have unresolved signatures.
+	 * <p>
+	 * The compilation units are parsed on the given number of threads, while
+	 * the tags found are added to the description on the calling thread, in
+	 * the order of the compilation units. The description is the same as when
+	 * scanning the compilation units one at a time. A compilation unit that
+	 * cannot be scanned does not stop the scan of the others.
+	 * </p>
+	 *
+	 * @param sources the source files to scan for tags
+	 * @param description the API description to annotate with any new tag rules
+	 *            found
+	 * @param container optional class file container containing the class
+	 *            files for the given sources that can be used to resolve
+	 *            method signatures if required (for tags on methods). If not
+	 *            provided (<code>null</code>), method signatures will be
+	 *            unresolved.
+	 * @param options a map of Java compiler options to use when creating the
+	 *            ASTs to scan or <code>null</code> if default options should be
+	 *            used
+	 * @param threads the number of threads used to parse the compilation units
+	 * @param monitor
+	 *
+	 * @throws CoreException if problems were encountered while scanning tags,
+	 *             with one status per compilation unit that could not be
+	 *             scanned; the description may still be modified
+	 * @since 1.1
+	 */
+	public void scan(CompilationUnit[] sources, IApiDescription description, IApiTypeContainer container, Map<String, String> options, int threads, IProgressMonitor monitor) throws CoreException {
+		SubMonitor localmonitor = SubMonitor.convert(monitor, sources.length);
+		final Map<String, String> loptions = new HashMap<>(options == null ? JavaCore.getOptions() : options);
+		loptions.put(JavaCore.COMPILER_DOC_COMMENT_SUPPORT, JavaCore.ENABLED);
+		MultiStatus status = new MultiStatus(ApiPlugin.PLUGIN_ID, 0, "Problems scanning compilation units for API tags", null); //$NON-NLS-1$
+		if (threads <= 1) {
+			for (CompilationUnit source : sources) {
+				try {
+					parse(source, loptions, null).accept(new Visitor(description, container));
+				} catch (CoreException e) {
+					status.add(e.getStatus());
+				}
+				localmonitor.split(1);
+			}
+		} else {
+			ExecutorService executor = Executors.newFixedThreadPool(threads);
+			ArrayDeque<Future<org.eclipse.jdt.core.dom.CompilationUnit>> pending = new ArrayDeque<>();
+			try {
+				int next = 0;
+				while (next < sources.length || !pending.isEmpty()) {
+					// parse ahead of the unit being visited, a few units per
+					// thread
+					while (next < sources.length && pending.size() < threads * 2) {
+						final CompilationUnit source = sources[next++];
+						pending.add(executor.submit(new Callable<org.eclipse.jdt.core.dom.CompilationUnit>() {
+							@Override
+							public org.eclipse.jdt.core.dom.CompilationUnit call() throws CoreException {
+								// the parser reads the options, each parse gets
+								// its own copy
+								return parse(source, new HashMap<>(loptions), null);
+							}
+						}));
+					}
+					try {
+						getParsed(pending.poll()).accept(new Visitor(description, container));
+					} catch (CoreException e) {
+						status.add(e.getStatus());
+					}
+					localmonitor.split(1);
+				}
+			} finally {
+				for (Future<org.eclipse.jdt.core.dom.CompilationUnit> future : pending) {
+					future.cancel(true);
+				}
+				executor.shutdownNow();
+			}
+		}
+		if (!status.isOK()) {
+			throw new CoreException(status);
+		}
+	}
+
+	/**
+	 * Waits for the given parse to complete
+	 *
+	 * @param future the parse
+	 * @return the parsed compilation unit
+	 * @throws CoreException if the source could not be read
+	 */
+	private static org.eclipse.jdt.core.dom.CompilationUnit getParsed(Future<org.eclipse.jdt.core.dom.CompilationUnit> future) throws CoreException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OperationCanceledException();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof CoreException) {
+				throw (CoreException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	/**
+	 * Parses the given source into an AST without bindings
+	 *
+	 * @param source the source file to parse
+	 * @param options the compiler options, with doc comment support enabled
+	 * @param monitor
+	 * @return the AST of the source
+	 * @throws CoreException if the source could not be read
+	 */
+	private org.eclipse.jdt.core.dom.CompilationUnit parse(CompilationUnit source, Map<String, String> options, IProgressMonitor monitor) throws CoreException {
 		SubMonitor localmonitor = SubMonitor.convert(monitor, 2);
 		ASTParser parser = ASTParser.newParser(AST.JLS8);
 		InputStream inputStream = null;
@@ -629,14 +769,7 @@ public class TagScanner {
 			}
 		}
 		localmonitor.split(1);
-		Map<String, String> loptions = options;
-		if (loptions == null) {
-			loptions = JavaCore.getOptions();
-		}
-		loptions.put(JavaCore.COMPILER_DOC_COMMENT_SUPPORT, JavaCore.ENABLED);
-		parser.setCompilerOptions(loptions);
-		org.eclipse.jdt.core.dom.CompilationUnit cunit = (org.eclipse.jdt.core.dom.CompilationUnit) parser.createAST(localmonitor.split(1));
-		Visitor visitor = new Visitor(description, container);
-		cunit.accept(visitor);
+		parser.setCompilerOptions(options);
+		return (org.eclipse.jdt.core.dom.CompilationUnit) parser.createAST(localmonitor.split(1));
 	}
 }
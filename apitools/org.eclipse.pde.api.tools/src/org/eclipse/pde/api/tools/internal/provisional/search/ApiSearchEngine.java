@@ -10,15 +10,23 @@
  *******************************************************************************/
 package org.eclipse.pde.api.tools.internal.provisional.search;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.MultiStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.pde.api.tools.internal.AntFilterStore;
@@ -117,60 +125,69 @@ public final class ApiSearchEngine {
 	}
 
 	/**
-	 * Simple string used for reporting what is being searched
-	 */
-	private String fRequestorContext = null;
-
-	/**
-	 * Returns the set of resolved references for the given {@link IApiType}
+	 * Hands the results of the search of a single element, chunk by chunk as
+	 * they are reported by the worker searching it, to the thread reporting
+	 * them. At most {@link ApiSearchEngine#PENDING_CHUNKS} chunks are held,
+	 * the worker waits for the reporting thread to take the older ones.
 	 *
-	 * @param requestor
-	 * @param type
-	 * @param monitor
-	 * @return The listing of resolved references from the given
-	 *         {@link IApiType}
-	 * @throws CoreException
+	 * @since 1.1
 	 */
-	List<IReference> getResolvedReferences(IApiSearchRequestor requestor, IApiType type, IProgressMonitor monitor) throws CoreException {
-		String name = type.getSimpleName() == null ? SearchMessages.ApiSearchEngine_anonymous_type : type.getSimpleName();
-		SubMonitor localmonitor = SubMonitor.convert(monitor, MessageFormat.format(SearchMessages.ApiSearchEngine_extracting_refs_from, name), 2);
-		List<IReference> refs = type.extractReferences(requestor.getReferenceKinds(), localmonitor.split(1));
-		ReferenceResolver.resolveReferences(refs, localmonitor.split(1));
-		return refs;
-	}
+	static class ChunkReporter implements IApiSearchReporter {
+		/**
+		 * Marks the end of the results of the element
+		 */
+		static final IReference[] END = new IReference[0];
 
-	/**
-	 * Runs the given list of references through the search requestor to
-	 * determine if they should be kept or not
-	 *
-	 * @param requestor
-	 * @param type
-	 * @param references
-	 * @param monitor
-	 * @return
-	 * @throws CoreException
-	 */
-	List<IReference> acceptReferences(IApiSearchRequestor requestor, IApiType type, List<IReference> references, IProgressMonitor monitor) throws CoreException {
-		ArrayList<IReference> refs = new ArrayList<>();
-		IReference ref = null;
-		SubMonitor localmonitor = SubMonitor.convert(monitor, references.size());
-		IApiMember member = null;
-		for (Iterator<IReference> iter = references.iterator(); iter.hasNext();) {
-			if (localmonitor.isCanceled()) {
-				return Collections.EMPTY_LIST;
-			}
-			ref = iter.next();
-			member = ref.getResolvedReference();
-			if (member == null) {
-				continue;
+		final BlockingQueue<IReference[]> fChunks = new ArrayBlockingQueue<>(PENDING_CHUNKS);
+
+		@Override
+		public void reportResults(IApiElement element, IReference[] references) {
+			try {
+				fChunks.put(references);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new OperationCanceledException();
 			}
-			localmonitor.setTaskName(MessageFormat.format(SearchMessages.ApiSearchEngine_searching_for_use_from, fRequestorContext, type.getName()));
-			if (requestor.acceptReference(ref)) {
-				refs.add(ref);
+		}
+
+		@Override
+		public void reportNotSearched(IApiElement[] elements) {
+			// not used for a single element
+		}
+
+		@Override
+		public void reportMetadata(IMetadata data) {
+			// not used for a single element
+		}
+
+		@Override
+		public void reportCounts() {
+			// not used for a single element
+		}
+
+		/**
+		 * Signals that the element has been searched
+		 */
+		void end() {
+			try {
+				fChunks.put(END);
+			} catch (InterruptedException e) {
+				// the search is shut down, nobody is waiting for the results
+				Thread.currentThread().interrupt();
 			}
-			localmonitor.worked(1);
 		}
-		return refs;
+
+		/**
+		 * Waits for the next chunk of results
+		 *
+		 * @return the next chunk or <code>null</code> once the element has
+		 *         been searched
+		 * @throws InterruptedException
+		 */
+		IReference[] next() throws InterruptedException {
+			IReference[] chunk = fChunks.take();
+			return chunk == END ? null : chunk;
+		}
 	}
 
 	/**
@@ -259,6 +276,10 @@ public final class ApiSearchEngine {
 		IApiElement[] scopeelements = scope.getApiElements();
 		SubMonitor localmonitor = SubMonitor.convert(monitor, MessageFormat.format(SearchMessages.ApiSearchEngine_searching_projects, fRequestorContext), scopeelements.length * 2 + 1);
 		try {
+			if (fThreads > 1 && scopeelements.length > 1) {
+				searchParallel(requestor, scopeelements, reporter, localmonitor);
+				return;
+			}
 			long start = System.currentTimeMillis();
 			long loopstart = 0;
 			String taskname = null;
@@ -299,6 +320,95 @@ public final class ApiSearchEngine {
 		}
 	}
 
+	/**
+	 * Searches the given elements on a pool of {@link #fThreads} threads. The
+	 * results of each element are handed over by its worker in the same
+	 * chunks as in a sequential search, and reported in order by the calling
+	 * thread, so the reporter sees the same calls whatever the number of
+	 * threads. To bound the number of results held in memory, at most
+	 * {@link #PENDING_PER_THREAD} elements per thread are searched ahead of
+	 * the element being reported, each holding at most
+	 * {@link #PENDING_CHUNKS} chunks.
+	 *
+	 * @param requestor the requestor to use for the search
+	 * @param elements the elements to search
+	 * @param reporter the reporter to report results to
+	 * @param monitor the monitor of the search
+	 * @throws CoreException if the search of any element failed
+	 */
+	private void searchParallel(final IApiSearchRequestor requestor, IApiElement[] elements, IApiSearchReporter reporter, SubMonitor monitor) throws CoreException {
+		long start = System.currentTimeMillis();
+		final IProgressMonitor workermonitor = new CancelMonitor(monitor);
+		ExecutorService executor = Executors.newFixedThreadPool(fThreads);
+		ArrayDeque<ChunkReporter> chunks = new ArrayDeque<>();
+		ArrayDeque<Future<?>> pending = new ArrayDeque<>();
+		int window = fThreads * PENDING_PER_THREAD;
+		int next = 0;
+		MultiStatus mstatus = null;
+		try {
+			for (int i = 0; i < elements.length; i++) {
+				while (next < elements.length && next - i < window) {
+					final IApiElement element = elements[next++];
+					final ChunkReporter chunkreporter = new ChunkReporter();
+					chunks.add(chunkreporter);
+					pending.add(executor.submit(() -> {
+						try {
+							searchReferences(requestor, element, chunkreporter, workermonitor);
+						} finally {
+							chunkreporter.end();
+						}
+						return null;
+					}));
+				}
+				String taskname = MessageFormat.format(SearchMessages.ApiSearchEngine_searching_project, elements[i].getApiComponent().getSymbolicName(), fRequestorContext);
+				monitor.setTaskName(taskname);
+				ChunkReporter chunkreporter = chunks.poll();
+				try {
+					IReference[] chunk = null;
+					while ((chunk = chunkreporter.next()) != null) {
+						reporter.reportResults(elements[i], chunk);
+					}
+					pending.poll().get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new OperationCanceledException();
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof CoreException) {
+						if (mstatus == null) {
+							mstatus = new MultiStatus(ApiPlugin.PLUGIN_ID, IStatus.ERROR, null, null);
+						}
+						mstatus.add(new Status(IStatus.ERROR, ApiPlugin.PLUGIN_ID, cause.getMessage(), cause));
+					} else if (!(cause instanceof OperationCanceledException)) {
+						if (cause instanceof RuntimeException) {
+							throw (RuntimeException) cause;
+						}
+						if (cause instanceof Error) {
+							throw (Error) cause;
+						}
+						throw new CoreException(new Status(IStatus.ERROR, ApiPlugin.PLUGIN_ID, cause.getMessage(), cause));
+					}
+				}
+				if (monitor.isCanceled()) {
+					reporter.reportResults(elements[i], NO_REFERENCES);
+					return;
+				}
+				monitor.worked(2);
+				if (ApiPlugin.DEBUG_SEARCH_ENGINE) {
+					System.out.println("Searched " + elements[i].getApiComponent().getSymbolicName() + ", " + Math.round((((float) (i + 1)) / elements.length) * 100) + "% done"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		if (ApiPlugin.DEBUG_SEARCH_ENGINE) {
+			System.out.println("Total Search Time: " + ((System.currentTimeMillis() - start) / 1000) + " seconds on " + fThreads + " threads"); //$NON-NLS-1$//$NON-NLS-2$ //$NON-NLS-3$
+		}
+		if (mstatus != null) {
+			throw new CoreException(mstatus);
+		}
+	}
+
 	/**
 	 * Computes the process context (label)
 	 *
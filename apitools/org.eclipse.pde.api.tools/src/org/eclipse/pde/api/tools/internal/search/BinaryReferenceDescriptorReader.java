@@ -0,0 +1,312 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.internal.search;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.InflaterInputStream;
+
+import org.eclipse.pde.api.tools.internal.provisional.Factory;
+import org.eclipse.pde.api.tools.internal.provisional.descriptors.IComponentDescriptor;
+import org.eclipse.pde.api.tools.internal.provisional.descriptors.IMemberDescriptor;
+
+/**
+ * Reads the reference descriptions written by a
+ * {@link BinaryReferenceDescriptorWriter}.
+ * <p>
+ * References are read one block at a time, so callers that consume each
+ * block with {@link #readBlock()} only hold a single block in memory. The
+ * blocks of given components are found with {@link #readIndex(File)} and read
+ * with {@link #readBlock(long)} without reading the other blocks.
+ * </p>
+ *
+ * @since 1.1
+ */
+public class BinaryReferenceDescriptorReader implements AutoCloseable {
+
+	/**
+	 * Entry of the index of a references file: the components of a block and
+	 * its offset in the file
+	 */
+	public static class BlockEntry {
+		private final IComponentDescriptor fReferenced;
+		private final IComponentDescriptor fReferencing;
+		private final long fOffset;
+
+		BlockEntry(IComponentDescriptor referenced, IComponentDescriptor referencing, long offset) {
+			fReferenced = referenced;
+			fReferencing = referencing;
+			fOffset = offset;
+		}
+
+		/**
+		 * @return the component referenced by the references of the block
+		 */
+		public IComponentDescriptor getReferencedComponent() {
+			return fReferenced;
+		}
+
+		/**
+		 * @return the component the references of the block are made from
+		 */
+		public IComponentDescriptor getReferencingComponent() {
+			return fReferencing;
+		}
+
+		/**
+		 * @return the offset of the block in the references file
+		 */
+		public long getOffset() {
+			return fOffset;
+		}
+	}
+
+	private final File fFile;
+	private final DataInputStream fInput;
+	private RandomAccessFile fRandomAccess = null;
+
+	/**
+	 * Opens the given references file and checks its header
+	 *
+	 * @param file the references file
+	 * @throws IOException if the file cannot be read or is not a references
+	 *             file
+	 */
+	public BinaryReferenceDescriptorReader(File file) throws IOException {
+		fFile = file;
+		fInput = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		boolean valid = false;
+		try {
+			valid = fInput.readInt() == BinaryReferenceDescriptorWriter.MAGIC && fInput.readInt() == BinaryReferenceDescriptorWriter.VERSION;
+		} finally {
+			if (!valid) {
+				fInput.close();
+			}
+		}
+		if (!valid) {
+			throw new IOException("Not a reference file: " + file); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Reads all references of the given references file
+	 *
+	 * @param file the references file
+	 * @return the references in the order they were written
+	 * @throws IOException if the file cannot be read
+	 */
+	public static List<IReferenceDescriptor> readReferences(File file) throws IOException {
+		List<IReferenceDescriptor> references = new ArrayList<>();
+		try (BinaryReferenceDescriptorReader reader = new BinaryReferenceDescriptorReader(file)) {
+			IReferenceDescriptor[] block = null;
+			while ((block = reader.readBlock()) != null) {
+				Collections.addAll(references, block);
+			}
+		}
+		return references;
+	}
+
+	/**
+	 * Reads the index of the given references file
+	 *
+	 * @param file the references file
+	 * @return the entries of the index in the order the blocks were written
+	 * @throws IOException if the index cannot be read
+	 */
+	public static List<BlockEntry> readIndex(File file) throws IOException {
+		File indexFile = new File(file.getParentFile(), BinaryReferenceDescriptorWriter.INDEX_FILE);
+		List<BlockEntry> entries = new ArrayList<>();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+			if (in.readInt() != BinaryReferenceDescriptorWriter.INDEX_MAGIC || in.readInt() != BinaryReferenceDescriptorWriter.VERSION) {
+				throw new IOException("Not a reference index file: " + indexFile); //$NON-NLS-1$
+			}
+			while (true) {
+				String id;
+				try {
+					id = in.readUTF();
+				} catch (EOFException e) {
+					break;
+				}
+				IComponentDescriptor referenced = Factory.componentDescriptor(id, in.readBoolean() ? in.readUTF() : null);
+				IComponentDescriptor referencing = Factory.componentDescriptor(in.readUTF(), in.readBoolean() ? in.readUTF() : null);
+				entries.add(new BlockEntry(referenced, referencing, in.readLong()));
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * Reads the block at the given offset, as recorded in the index of the
+	 * references file
+	 *
+	 * @param offset the offset of the block
+	 * @return the references of the block
+	 * @throws IOException if the block cannot be read
+	 */
+	public IReferenceDescriptor[] readBlock(long offset) throws IOException {
+		if (fRandomAccess == null) {
+			fRandomAccess = new RandomAccessFile(fFile, "r"); //$NON-NLS-1$
+		}
+		fRandomAccess.seek(offset);
+		int flags = fRandomAccess.read();
+		if (flags < 0) {
+			throw new EOFException();
+		}
+		int length = fRandomAccess.readInt();
+		byte[] stored = new byte[fRandomAccess.readInt()];
+		fRandomAccess.readFully(stored);
+		return decode(flags, length, stored);
+	}
+
+	/**
+	 * Reads the next block of references
+	 *
+	 * @return the references of the next block or <code>null</code> if there
+	 *         are no more blocks
+	 * @throws IOException if the file cannot be read
+	 */
+	public IReferenceDescriptor[] readBlock() throws IOException {
+		int flags = fInput.read();
+		if (flags < 0) {
+			return null;
+		}
+		int length = fInput.readInt();
+		byte[] stored = new byte[fInput.readInt()];
+		fInput.readFully(stored);
+		return decode(flags, length, stored);
+	}
+
+	/**
+	 * Decodes a block as stored in the references file
+	 *
+	 * @param flags the flags of the block
+	 * @param length the uncompressed length of the block
+	 * @param stored the stored bytes of the block
+	 * @return the references in the block
+	 * @throws IOException if the block is corrupt
+	 */
+	private static IReferenceDescriptor[] decode(int flags, int length, byte[] stored) throws IOException {
+		InputStream block = new ByteArrayInputStream(stored);
+		if ((flags & BinaryReferenceDescriptorWriter.COMPRESSED) != 0) {
+			block = new InflaterInputStream(block);
+		}
+		byte[] bytes = new byte[length];
+		new DataInputStream(block).readFully(bytes);
+		return decode(new DataInputStream(new ByteArrayInputStream(bytes)));
+	}
+
+	/**
+	 * Decodes an uncompressed block
+	 *
+	 * @param in the block
+	 * @return the references in the block
+	 * @throws IOException if the block is corrupt
+	 */
+	static IReferenceDescriptor[] decode(DataInputStream in) throws IOException {
+		int size = readVarInt(in);
+		String[] strings = new String[size + 1];
+		for (int i = 1; i <= size; i++) {
+			strings[i] = in.readUTF();
+		}
+		int count = readVarInt(in);
+		int[][] columns = new int[16][count];
+		for (int[] column : columns) {
+			for (int i = 0; i < count; i++) {
+				column[i] = readVarInt(in);
+			}
+		}
+		IReferenceDescriptor[] references = new IReferenceDescriptor[count];
+		IComponentDescriptor from = null;
+		IComponentDescriptor to = null;
+		for (int i = 0; i < count; i++) {
+			// components rarely change within a block, reuse the descriptors
+			if (from == null || i == 0 || columns[0][i] != columns[0][i - 1] || columns[1][i] != columns[1][i - 1]) {
+				from = Factory.componentDescriptor(string(strings, columns[0][i]), string(strings, columns[1][i]));
+			}
+			if (to == null || i == 0 || columns[2][i] != columns[2][i - 1] || columns[3][i] != columns[3][i - 1]) {
+				to = Factory.componentDescriptor(string(strings, columns[2][i]), string(strings, columns[3][i]));
+			}
+			IMemberDescriptor origin = decodeMember(strings, columns, 4, i);
+			IMemberDescriptor target = decodeMember(strings, columns, 8, i);
+			int msgs = readVarInt(in);
+			String[] messages = null;
+			if (msgs > 0) {
+				messages = new String[msgs - 1];
+				for (int j = 0; j < messages.length; j++) {
+					messages[j] = string(strings, readVarInt(in));
+				}
+			}
+			references[i] = Factory.referenceDescriptor(from, origin, columns[12][i], to, target, columns[13][i], columns[14][i], columns[15][i], messages);
+		}
+		return references;
+	}
+
+	private static IMemberDescriptor decodeMember(String[] strings, int[][] columns, int column, int row) throws IOException {
+		String type = string(strings, columns[column + 1][row]);
+		switch (columns[column][row]) {
+			case BinaryReferenceDescriptorWriter.TYPE:
+				return Factory.typeDescriptor(type);
+			case BinaryReferenceDescriptorWriter.METHOD:
+				return Factory.methodDescriptor(type, string(strings, columns[column + 2][row]), string(strings, columns[column + 3][row]));
+			case BinaryReferenceDescriptorWriter.FIELD:
+				return Factory.fieldDescriptor(type, string(strings, columns[column + 2][row]));
+			default:
+				throw new IOException("Unknown member kind: " + columns[column][row]); //$NON-NLS-1$
+		}
+	}
+
+	private static String string(String[] strings, int index) throws IOException {
+		if (index < 0 || index >= strings.length) {
+			throw new IOException("Invalid string index: " + index); //$NON-NLS-1$
+		}
+		return strings[index];
+	}
+
+	/**
+	 * Reads an int written by
+	 * {@link BinaryReferenceDescriptorWriter#writeVarInt(java.io.DataOutputStream, int)}
+	 */
+	static int readVarInt(DataInputStream in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = in.read();
+			if (b < 0) {
+				throw new EOFException();
+			}
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed int"); //$NON-NLS-1$
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			fInput.close();
+		} finally {
+			if (fRandomAccess != null) {
+				fRandomAccess.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,323 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.internal.search;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.eclipse.pde.api.tools.internal.provisional.ApiPlugin;
+import org.eclipse.pde.api.tools.internal.provisional.VisibilityModifiers;
+import org.eclipse.pde.api.tools.internal.provisional.builder.IReference;
+import org.eclipse.pde.api.tools.internal.provisional.descriptors.IComponentDescriptor;
+import org.eclipse.pde.api.tools.internal.provisional.descriptors.IElementDescriptor;
+import org.eclipse.pde.api.tools.internal.provisional.descriptors.IMemberDescriptor;
+import org.eclipse.pde.api.tools.internal.provisional.descriptors.IMethodDescriptor;
+import org.eclipse.pde.api.tools.internal.provisional.descriptors.IReferenceTypeDescriptor;
+
+/**
+ * Writes reference descriptions to a compact binary file, as an alternative to
+ * the XML files written by {@link XmlReferenceDescriptorWriter}.
+ * <p>
+ * The file starts with a header and is followed by one block per referenced
+ * and referencing component in each call to
+ * {@link #writeReferences(IReferenceDescriptor[])}. Each block has its own
+ * table of the distinct strings used in the block and stores its references
+ * column by column as indexes into that table, which keeps the block small and
+ * makes it compress well. Blocks are optionally compressed with a
+ * {@link Deflater}.
+ * </p>
+ * <p>
+ * The components and the offset of each block are recorded in a separate
+ * index file, {@link #INDEX_FILE}, so that readers can load the blocks of the
+ * components they are interested in without reading the whole file.
+ * </p>
+ * <p>
+ * As in the XML files, duplicate references are removed and references with
+ * the {@link IReference#F_ILLEGAL} flag are recorded with the
+ * {@link VisibilityModifiers#ILLEGAL_API} visibility.
+ * </p>
+ *
+ * @see BinaryReferenceDescriptorReader
+ * @since 1.1
+ */
+public class BinaryReferenceDescriptorWriter {
+
+	/**
+	 * Name of the file references are written to in the report location
+	 */
+	public static final String REFERENCES_FILE = "references.bin"; //$NON-NLS-1$
+
+	/**
+	 * Name of the file the blocks of the references file are indexed in
+	 */
+	public static final String INDEX_FILE = "references.idx"; //$NON-NLS-1$
+
+	static final int MAGIC = 0x41505553;
+	static final int INDEX_MAGIC = 0x41505549;
+	static final int VERSION = 2;
+	static final int HEADER_SIZE = 8;
+	static final int COMPRESSED = 0x1;
+
+	/**
+	 * Kinds of member descriptors
+	 */
+	static final int TYPE = 1;
+	static final int METHOD = 2;
+	static final int FIELD = 3;
+
+	private String fLocation = null;
+	private boolean fCompress = true;
+
+	/**
+	 * Constructor
+	 *
+	 * @param location the absolute path in the local file system to the folder
+	 *            to write the references file to
+	 * @param compress whether to compress the blocks of the file
+	 */
+	public BinaryReferenceDescriptorWriter(String location, boolean compress) {
+		fLocation = location;
+		fCompress = compress;
+	}
+
+	/**
+	 * Appends the given references to the references file, as one new block per
+	 * referenced and referencing component, and indexes the new blocks
+	 *
+	 * @param references
+	 */
+	public void writeReferences(IReferenceDescriptor[] references) {
+		if (fLocation == null || references.length == 0) {
+			return;
+		}
+		// group the references by components, in the order they first appear
+		Map<List<IComponentDescriptor>, List<IReferenceDescriptor>> groups = new LinkedHashMap<>();
+		for (IReferenceDescriptor reference : references) {
+			List<IComponentDescriptor> key = Arrays.asList(reference.getReferencedComponent(), reference.getComponent());
+			List<IReferenceDescriptor> group = groups.get(key);
+			if (group == null) {
+				group = new ArrayList<>();
+				groups.put(key, group);
+			}
+			group.add(reference);
+		}
+		try {
+			File parent = new File(fLocation);
+			if (!parent.exists()) {
+				parent.mkdirs();
+			}
+			File file = new File(parent, REFERENCES_FILE);
+			File indexFile = new File(parent, INDEX_FILE);
+			long offset = file.exists() ? file.length() : 0;
+			boolean header = offset == 0;
+			if (header) {
+				offset = HEADER_SIZE;
+			}
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true))); DataOutputStream index = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile, !header)))) {
+				if (header) {
+					out.writeInt(MAGIC);
+					out.writeInt(VERSION);
+					index.writeInt(INDEX_MAGIC);
+					index.writeInt(VERSION);
+				}
+				for (Entry<List<IComponentDescriptor>, List<IReferenceDescriptor>> entry : groups.entrySet()) {
+					List<IReferenceDescriptor> group = entry.getValue();
+					byte[] block = encode(group.toArray(new IReferenceDescriptor[group.size()]));
+					int flags = 0;
+					int length = block.length;
+					if (fCompress) {
+						block = compress(block);
+						flags |= COMPRESSED;
+					}
+					out.writeByte(flags);
+					out.writeInt(length);
+					out.writeInt(block.length);
+					out.write(block);
+					writeComponent(entry.getKey().get(0), index);
+					writeComponent(entry.getKey().get(1), index);
+					index.writeLong(offset);
+					offset += 9 + block.length;
+				}
+			}
+		} catch (IOException e) {
+			ApiPlugin.log(e);
+		}
+	}
+
+	private static byte[] compress(byte[] block) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(block.length / 4 + 16);
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try (DeflaterOutputStream deflate = new DeflaterOutputStream(bytes, deflater)) {
+			deflate.write(block);
+		} finally {
+			deflater.end();
+		}
+		return bytes.toByteArray();
+	}
+
+	private static void writeComponent(IComponentDescriptor component, DataOutputStream out) throws IOException {
+		out.writeUTF(component.getId());
+		String version = component.getVersion();
+		out.writeBoolean(version != null);
+		if (version != null) {
+			out.writeUTF(version);
+		}
+	}
+
+	/**
+	 * Encodes the given references as an uncompressed block
+	 *
+	 * @param references the references to encode
+	 * @return the block
+	 * @throws IOException
+	 */
+	static byte[] encode(IReferenceDescriptor[] references) throws IOException {
+		LinkedHashSet<IReferenceDescriptor> unique = new LinkedHashSet<>(references.length * 2);
+		for (IReferenceDescriptor reference : references) {
+			unique.add(reference);
+		}
+		List<IReferenceDescriptor> refs = new ArrayList<>(unique);
+		StringTable strings = new StringTable();
+		int count = refs.size();
+		int[][] columns = new int[16][count];
+		List<String[]> messages = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			IReferenceDescriptor ref = refs.get(i);
+			IComponentDescriptor from = ref.getComponent();
+			columns[0][i] = strings.index(from.getId());
+			columns[1][i] = strings.index(from.getVersion());
+			IComponentDescriptor to = ref.getReferencedComponent();
+			columns[2][i] = strings.index(to.getId());
+			columns[3][i] = strings.index(to.getVersion());
+			encodeMember(ref.getMember(), strings, columns, 4, i);
+			encodeMember(ref.getReferencedMember(), strings, columns, 8, i);
+			columns[12][i] = ref.getLineNumber();
+			columns[13][i] = ref.getReferenceKind();
+			columns[14][i] = ref.getReferenceFlags();
+			if ((ref.getReferenceFlags() & IReference.F_ILLEGAL) > 0) {
+				columns[15][i] = VisibilityModifiers.ILLEGAL_API;
+			} else {
+				columns[15][i] = ref.getVisibility();
+			}
+			String[] msgs = ref.getProblemMessages();
+			if (msgs != null) {
+				for (String msg : msgs) {
+					strings.index(msg);
+				}
+			}
+			messages.add(msgs);
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + count * 24);
+		DataOutputStream out = new DataOutputStream(bytes);
+		writeVarInt(out, strings.fStrings.size());
+		for (String string : strings.fStrings) {
+			out.writeUTF(string);
+		}
+		writeVarInt(out, count);
+		for (int[] column : columns) {
+			for (int i = 0; i < count; i++) {
+				writeVarInt(out, column[i]);
+			}
+		}
+		for (String[] msgs : messages) {
+			if (msgs == null) {
+				writeVarInt(out, 0);
+			} else {
+				writeVarInt(out, msgs.length + 1);
+				for (String msg : msgs) {
+					writeVarInt(out, strings.index(msg));
+				}
+			}
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Encodes the kind, type name, name and signature of a member into four
+	 * columns
+	 */
+	private static void encodeMember(IMemberDescriptor member, StringTable strings, int[][] columns, int column, int row) {
+		switch (member.getElementType()) {
+			case IElementDescriptor.METHOD: {
+				IMethodDescriptor method = (IMethodDescriptor) member;
+				columns[column][row] = METHOD;
+				columns[column + 1][row] = strings.index(method.getEnclosingType().getQualifiedName());
+				columns[column + 2][row] = strings.index(method.getName());
+				columns[column + 3][row] = strings.index(method.getSignature());
+				break;
+			}
+			case IElementDescriptor.FIELD: {
+				columns[column][row] = FIELD;
+				columns[column + 1][row] = strings.index(member.getEnclosingType().getQualifiedName());
+				columns[column + 2][row] = strings.index(member.getName());
+				columns[column + 3][row] = 0;
+				break;
+			}
+			default: {
+				columns[column][row] = TYPE;
+				columns[column + 1][row] = strings.index(((IReferenceTypeDescriptor) member).getQualifiedName());
+				columns[column + 2][row] = 0;
+				columns[column + 3][row] = 0;
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Writes an int that is expected to be small and positive using one to
+	 * five bytes
+	 */
+	static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		int v = value;
+		while ((v & ~0x7F) != 0) {
+			out.writeByte((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		out.writeByte(v);
+	}
+
+	/**
+	 * Table of the distinct strings of a block. Index <code>0</code> stands
+	 * for <code>null</code>.
+	 */
+	static class StringTable {
+		final List<String> fStrings = new ArrayList<>();
+		final Map<String, Integer> fIndexes = new HashMap<>();
+
+		int index(String value) {
+			if (value == null) {
+				return 0;
+			}
+			Integer index = fIndexes.get(value);
+			if (index == null) {
+				fStrings.add(value);
+				index = Integer.valueOf(fStrings.size());
+				fIndexes.put(value, index);
+			}
+			return index.intValue();
+		}
+	}
+}
@@ -0,0 +1,42 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.internal.search;
+
+/**
+ * Search reporter that writes references to a single binary file using a
+ * {@link BinaryReferenceDescriptorWriter}. The metadata, counts and the
+ * elements that were not searched are written as XML, as done by
+ * {@link XmlSearchReporter}, so the report can be read by the same tools.
+ *
+ * @since 1.1
+ */
+public class BinarySearchReporter extends XmlSearchReporter {
+
+	private BinaryReferenceDescriptorWriter fWriter = null;
+
+	/**
+	 * Constructor
+	 *
+	 * @param location the absolute path in the local file system to the folder
+	 *            to write the reports to
+	 * @param debug if debugging infos should be written out to the console
+	 * @param compress whether to compress the references file
+	 */
+	public BinarySearchReporter(String location, boolean debug, boolean compress) {
+		super(location, debug);
+		fWriter = new BinaryReferenceDescriptorWriter(location, compress);
+	}
+
+	@Override
+	protected void writeReferences(IReferenceDescriptor[] descriptors) {
+		fWriter.writeReferences(descriptors);
+	}
+}
@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.internal.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.osgi.util.NLS;
+import org.eclipse.pde.api.tools.internal.provisional.descriptors.IComponentDescriptor;
+import org.eclipse.pde.api.tools.internal.util.Util;
+
+/**
+ * Converts use scans between the XML format written by
+ * {@link XmlReferenceDescriptorWriter} and the binary format written by
+ * {@link BinaryReferenceDescriptorWriter}. The XML files at the root of the
+ * scan (metadata, counts and elements not searched) are copied as they are.
+ *
+ * @since 1.1
+ */
+public class UseScanFormatConverter {
+
+	/**
+	 * Number of references written per block when converting to the binary
+	 * format
+	 */
+	static final int BLOCK_SIZE = 8192;
+
+	/**
+	 * Collects the references of an XML use scan and writes one block per
+	 * referencing component, or per {@link UseScanFormatConverter#BLOCK_SIZE}
+	 * references
+	 */
+	static class BinaryWriterVisitor extends UseScanVisitor {
+
+		final BinaryReferenceDescriptorWriter fWriter;
+		final List<IReferenceDescriptor> fReferences = new ArrayList<>();
+
+		BinaryWriterVisitor(BinaryReferenceDescriptorWriter writer) {
+			fWriter = writer;
+		}
+
+		@Override
+		public void visitReference(IReferenceDescriptor reference) {
+			fReferences.add(reference);
+			if (fReferences.size() >= BLOCK_SIZE) {
+				flush();
+			}
+		}
+
+		@Override
+		public void endVisitReferencingComponent(IComponentDescriptor component) {
+			flush();
+		}
+
+		@Override
+		public void endVisitScan() {
+			flush();
+		}
+
+		void flush() {
+			if (!fReferences.isEmpty()) {
+				fWriter.writeReferences(fReferences.toArray(new IReferenceDescriptor[fReferences.size()]));
+				fReferences.clear();
+			}
+		}
+	}
+
+	/**
+	 * Converts the XML use scan at the given location to the binary format
+	 *
+	 * @param xmlLocation the root of the XML use scan
+	 * @param binaryLocation the folder to write the binary use scan to
+	 * @param compress whether to compress the references file
+	 * @param monitor progress monitor or <code>null</code>
+	 * @throws Exception if the scan cannot be read or written
+	 */
+	public static void convertToBinary(String xmlLocation, String binaryLocation, boolean compress, IProgressMonitor monitor) throws Exception {
+		SubMonitor localmonitor = SubMonitor.convert(monitor, 2);
+		File target = new File(binaryLocation);
+		File[] files = new File[] {
+				new File(target, BinaryReferenceDescriptorWriter.REFERENCES_FILE),
+				new File(target, BinaryReferenceDescriptorWriter.INDEX_FILE) };
+		for (File file : files) {
+			if (file.exists() && !file.delete()) {
+				throw new IOException(NLS.bind("Unable to delete {0}", file)); //$NON-NLS-1$
+			}
+		}
+		UseScanParser parser = new UseScanParser();
+		parser.parse(xmlLocation, localmonitor.split(1), new BinaryWriterVisitor(new BinaryReferenceDescriptorWriter(binaryLocation, compress)));
+		copyReports(new File(xmlLocation), target);
+		localmonitor.split(1);
+	}
+
+	/**
+	 * Converts the binary use scan at the given location to the XML format
+	 *
+	 * @param binaryLocation the folder containing the binary use scan
+	 * @param xmlLocation the folder to write the XML use scan to
+	 * @param monitor progress monitor or <code>null</code>
+	 * @throws IOException if the scan cannot be read
+	 */
+	public static void convertToXml(String binaryLocation, String xmlLocation, IProgressMonitor monitor) throws IOException {
+		SubMonitor localmonitor = SubMonitor.convert(monitor, 2);
+		File source = new File(binaryLocation);
+		XmlReferenceDescriptorWriter writer = new XmlReferenceDescriptorWriter(xmlLocation);
+		try (BinaryReferenceDescriptorReader reader = new BinaryReferenceDescriptorReader(new File(source, BinaryReferenceDescriptorWriter.REFERENCES_FILE))) {
+			IReferenceDescriptor[] block = null;
+			while ((block = reader.readBlock()) != null) {
+				writer.writeReferences(block);
+			}
+		}
+		localmonitor.split(1);
+		copyReports(source, new File(xmlLocation));
+		localmonitor.split(1);
+	}
+
+	/**
+	 * Copies the XML reports from the root of a use scan
+	 *
+	 * @param source the root of the use scan to copy from
+	 * @param target the root of the use scan to copy to
+	 */
+	static void copyReports(File source, File target) {
+		File[] reports = source.listFiles(pathname -> pathname.isFile() && pathname.getName().endsWith(".xml")); //$NON-NLS-1$
+		if (reports == null) {
+			return;
+		}
+		if (!target.exists()) {
+			target.mkdirs();
+		}
+		for (File report : reports) {
+			Util.copy(report, new File(target, report.getName()));
+		}
+	}
+}
@@ -270,6 +270,8 @@ public class UseScanManager {
 	 * <li>the previous child directory has its own child directory that matches
 	 * the name pattern <code>^.* (.*)$</code></li>
 	 * </ul>
+	 * or iff it is a folder that contains a
+	 * {@link BinaryReferenceDescriptorWriter#REFERENCES_FILE}.
 	 *
 	 * @param file
 	 * @return <code>true</code> is the sub folders match the patterns,
@@ -277,6 +279,9 @@ public class UseScanManager {
 	 */
 	public static boolean isValidDirectory(File file) {
 		if (file.exists() && file.isDirectory()) {
+			if (new File(file, BinaryReferenceDescriptorWriter.REFERENCES_FILE).isFile()) {
+				return true;
+			}
 			try {
 				file.listFiles(USESCAN_FILTER);
 			} catch (RuntimeException rte) {
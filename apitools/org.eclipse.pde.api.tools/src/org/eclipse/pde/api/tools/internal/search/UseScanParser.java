@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2015 IBM Corporation and others.
+ * Copyright (c) 2009, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,18 +10,32 @@
  *******************************************************************************/
 package org.eclipse.pde.api.tools.internal.search;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.SubMonitor;
@@ -35,10 +49,15 @@ import org.eclipse.pde.api.tools.internal.provisional.descriptors.IMemberDescrip
 import org.eclipse.pde.api.tools.internal.util.Util;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
-import org.xml.sax.helpers.DefaultHandler;
 
 /**
- * Parses a use scan (XML) to visit a {@link UseScanVisitor}
+ * Parses a use scan (XML) to visit a {@link UseScanVisitor}.
+ * <p>
+ * Use scan files are pulled element by element with a StAX reader and each
+ * element is handed to the visitor as soon as it is read, so memory use does
+ * not grow with the size of the scan. References are only created when the
+ * visitor asked to visit them.
+ * </p>
  */
 public class UseScanParser {
 
@@ -55,30 +74,103 @@ public class UseScanParser {
 	private boolean visitReferences = true;
 
 	/**
-	 * Handler to resolve a reference
+	 * Number of files read ahead per thread
 	 */
-	class ReferenceHandler extends DefaultHandler {
+	static final int READ_AHEAD_FILES = 4;
 
-		// type of file being analyzed - type reference, method reference, field
-		// reference
-		private int type = 0;
+	/**
+	 * Files larger than this are not read ahead
+	 */
+	static final int READ_AHEAD_MAX_SIZE = 4 * 1024 * 1024;
+
+	private int threads = 1;
+	private XMLInputFactory inputFactory;
 
-		/**
-		 * Constructor
-		 *
-		 * @param type one of IReference.T_TYPE_REFERENCE,
-		 *            IReference.T_METHOD_REFERENCE,
-		 *            IReference.T_FIELD_REFERENCE
-		 */
-		public ReferenceHandler(int type) {
-			this.type = type;
+	/**
+	 * {@link Attributes} view of the attributes of the current element of an
+	 * {@link XMLStreamReader}, so that pulled elements are processed the same
+	 * way as SAX elements
+	 */
+	static class StreamAttributes implements Attributes {
+
+		private final XMLStreamReader reader;
+
+		StreamAttributes(XMLStreamReader reader) {
+			this.reader = reader;
 		}
 
 		@Override
-		public void startElement(String uri, String localName, String name, Attributes attributes) throws SAXException {
-			processElement(uri, localName, name, attributes, type);
+		public int getLength() {
+			return reader.getAttributeCount();
 		}
 
+		@Override
+		public String getURI(int index) {
+			String uri = reader.getAttributeNamespace(index);
+			return uri == null ? Util.EMPTY_STRING : uri;
+		}
+
+		@Override
+		public String getLocalName(int index) {
+			return reader.getAttributeLocalName(index);
+		}
+
+		@Override
+		public String getQName(int index) {
+			return reader.getAttributeLocalName(index);
+		}
+
+		@Override
+		public String getType(int index) {
+			return reader.getAttributeType(index);
+		}
+
+		@Override
+		public String getValue(int index) {
+			return reader.getAttributeValue(index);
+		}
+
+		@Override
+		public int getIndex(String uri, String localName) {
+			for (int i = 0; i < getLength(); i++) {
+				if (localName.equals(getLocalName(i)) && uri.equals(getURI(i))) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		@Override
+		public int getIndex(String qName) {
+			for (int i = 0; i < getLength(); i++) {
+				if (qName.equals(getQName(i))) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		@Override
+		public String getType(String uri, String localName) {
+			int index = getIndex(uri, localName);
+			return index < 0 ? null : getType(index);
+		}
+
+		@Override
+		public String getType(String qName) {
+			int index = getIndex(qName);
+			return index < 0 ? null : getType(index);
+		}
+
+		@Override
+		public String getValue(String uri, String localName) {
+			return reader.getAttributeValue(uri, localName);
+		}
+
+		@Override
+		public String getValue(String qName) {
+			return reader.getAttributeValue(null, qName);
+		}
 	}
 
 	protected String[] getIdVersion(String value) {
@@ -169,6 +261,10 @@ public class UseScanParser {
 				}
 			}
 		} else if (IApiXmlConstants.ATTR_REFERENCE.equals(name)) {
+			if (!(visitReferencingComponent && visitMembers && visitReferences)) {
+				// the visitor is not interested, do not build the reference
+				return;
+			}
 			String qName = attributes.getValue(IApiXmlConstants.ATTR_TYPE);
 
 			if (qName != null) {
@@ -235,6 +331,11 @@ public class UseScanParser {
 		if (!reportsRoot.exists() || !reportsRoot.isDirectory()) {
 			throw new Exception(NLS.bind(SearchMessages.invalid_directory_name, xmlLocation));
 		}
+		File binary = new File(reportsRoot, BinaryReferenceDescriptorWriter.REFERENCES_FILE);
+		if (binary.isFile()) {
+			parseBinary(binary, monitor);
+			return;
+		}
 		SubMonitor localmonitor = SubMonitor.convert(monitor, SearchMessages.UseScanParser_parsing, 8);
 		localmonitor.subTask(SearchMessages.UseReportConverter_collecting_dir_info);
 		File[] referees = getDirectories(reportsRoot);
@@ -243,8 +344,11 @@ public class UseScanParser {
 		File[] xmlfiles = null;
 		localmonitor.setWorkRemaining(referees.length);
 		visitor.visitScan();
+		ExecutorService executor = null;
+		if (threads > 1) {
+			executor = Executors.newFixedThreadPool(threads);
+		}
 		try {
-			SAXParser parser = getParser();
 			// Treat each top level directory as a producer component
 			for (File referee : referees) {
 				if (referee.isDirectory()) {
@@ -275,26 +379,7 @@ public class UseScanParser {
 																	// visit in
 																	// determined
 																	// order
-										for (File xmlfile : xmlfiles) {
-											InputStream inputFile = null;
-											try {
-												ReferenceHandler handler = new ReferenceHandler(getTypeFromFileName(xmlfile));
-												inputFile = new FileInputStream(xmlfile.getAbsoluteFile());
-												parser.parse(inputFile, handler);
-											} catch (SAXException e) {
-											} catch (IOException e) {
-												ApiPlugin.log(e);
-											}
-											finally {
-												if (inputFile != null) {
-													try {
-														inputFile.close();
-													} catch (IOException e) {
-														// ignore
-													}
-												}
-											}
-										}
+										parseFiles(xmlfiles, executor);
 									}
 									endMember();
 								}
@@ -306,12 +391,251 @@ public class UseScanParser {
 					endComponent();
 				}
 			}
+		} finally {
+			if (executor != null) {
+				executor.shutdownNow();
+			}
+			visitor.endVisitScan();
+			localmonitor.done();
+		}
+	}
+
+	/**
+	 * Visits the references of a binary use scan written by a
+	 * {@link BinaryReferenceDescriptorWriter}. Components are visited in the
+	 * same order as the directories of an XML scan, using the index of the
+	 * references file: only the blocks of the referenced and referencing
+	 * components the visitor asks for are read, one pair of components at a
+	 * time. The references of a pair are sorted to visit them in the same order
+	 * as the XML files of a scan would be visited: by visibility, reference
+	 * type and referenced member.
+	 *
+	 * @param file the references file
+	 * @param monitor progress monitor
+	 * @throws IOException if the file cannot be read
+	 */
+	private void parseBinary(File file, IProgressMonitor monitor) throws IOException {
+		SubMonitor localmonitor = SubMonitor.convert(monitor, SearchMessages.UseScanParser_parsing, 8);
+		localmonitor.subTask(SearchMessages.UseReportConverter_collecting_dir_info);
+		Map<IComponentDescriptor, Map<IComponentDescriptor, List<Long>>> blocks = new TreeMap<>(UseScanParser::compareComponents);
+		for (BinaryReferenceDescriptorReader.BlockEntry entry : BinaryReferenceDescriptorReader.readIndex(file)) {
+			Map<IComponentDescriptor, List<Long>> origins = blocks.get(entry.getReferencedComponent());
+			if (origins == null) {
+				origins = new TreeMap<>(UseScanParser::compareComponents);
+				blocks.put(entry.getReferencedComponent(), origins);
+			}
+			List<Long> offsets = origins.get(entry.getReferencingComponent());
+			if (offsets == null) {
+				offsets = new ArrayList<>();
+				origins.put(entry.getReferencingComponent(), offsets);
+			}
+			offsets.add(Long.valueOf(entry.getOffset()));
+		}
+		localmonitor.split(1);
+		localmonitor.setWorkRemaining(blocks.size());
+		visitor.visitScan();
+		try (BinaryReferenceDescriptorReader reader = new BinaryReferenceDescriptorReader(file)) {
+			for (Entry<IComponentDescriptor, Map<IComponentDescriptor, List<Long>>> referee : blocks.entrySet()) {
+				enterTargetComponent(referee.getKey());
+				if (visitReferencingComponent) {
+					for (Entry<IComponentDescriptor, List<Long>> origin : referee.getValue().entrySet()) {
+						enterReferencingComponent(origin.getKey());
+						if (visitMembers) {
+							localmonitor.subTask(NLS.bind(SearchMessages.UseScanParser_analyzing_references, new String[] { origin.getKey().getId() }));
+							List<IReferenceDescriptor> references = new ArrayList<>();
+							for (Long offset : origin.getValue()) {
+								Collections.addAll(references, reader.readBlock(offset.longValue()));
+							}
+							Collections.sort(references, UseScanParser::compareReferences);
+							for (IReferenceDescriptor reference : references) {
+								enterVisibility(reference.getVisibility());
+								enterTargetMember(reference.getReferencedMember());
+								enterReferenceKind(reference.getReferenceKind());
+								setReference(reference);
+							}
+							endMember();
+						}
+						endReferencingComponent();
+					}
+				}
+				localmonitor.split(1);
+				endComponent();
+			}
 		} finally {
 			visitor.endVisitScan();
 			localmonitor.done();
 		}
 	}
 
+	/**
+	 * Orders references the way they are visited in an XML use scan
+	 */
+	static int compareReferences(IReferenceDescriptor r1, IReferenceDescriptor r2) {
+		int result = compareComponents(r1.getReferencedComponent(), r2.getReferencedComponent());
+		if (result == 0) {
+			result = compareComponents(r1.getComponent(), r2.getComponent());
+		}
+		if (result == 0) {
+			result = Integer.compare(r1.getVisibility(), r2.getVisibility());
+		}
+		if (result == 0) {
+			result = Integer.compare(r1.getReferenceType(), r2.getReferenceType());
+		}
+		if (result == 0) {
+			result = r1.getReferencedMember().toString().compareTo(r2.getReferencedMember().toString());
+		}
+		if (result == 0) {
+			result = Integer.compare(r1.getReferenceKind(), r2.getReferenceKind());
+		}
+		if (result == 0) {
+			result = Integer.compare(r1.getLineNumber(), r2.getLineNumber());
+		}
+		return result;
+	}
+
+	private static int compareComponents(IComponentDescriptor c1, IComponentDescriptor c2) {
+		int result = c1.getId().compareTo(c2.getId());
+		if (result == 0) {
+			String v1 = c1.getVersion();
+			String v2 = c2.getVersion();
+			if (v1 == null || v2 == null) {
+				return v1 == null ? (v2 == null ? 0 : -1) : 1;
+			}
+			result = v1.compareTo(v2);
+		}
+		return result;
+	}
+
+	/**
+	 * Parses the given files in order. When an executor is given the contents
+	 * of the next files are read ahead on its threads while the current file is
+	 * parsed. The number of files read ahead is bounded so that at most
+	 * {@link #READ_AHEAD_FILES} files per thread, each no larger than
+	 * {@link #READ_AHEAD_MAX_SIZE} bytes, are held in memory; larger files are
+	 * streamed from disk when their turn comes.
+	 *
+	 * @param xmlfiles the files to parse, sorted
+	 * @param executor the executor to read files ahead with or
+	 *            <code>null</code>
+	 */
+	private void parseFiles(File[] xmlfiles, ExecutorService executor) {
+		ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+		int window = executor == null ? 0 : threads * READ_AHEAD_FILES;
+		int next = 0;
+		for (File xmlfile : xmlfiles) {
+			while (next < xmlfiles.length && pending.size() < window) {
+				final File file = xmlfiles[next++];
+				pending.add(executor.submit(() -> readAhead(file)));
+			}
+			byte[] contents = null;
+			if (!pending.isEmpty()) {
+				try {
+					contents = pending.poll().get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				} catch (ExecutionException e) {
+					// fall back to reading the file directly
+				}
+			}
+			InputStream inputFile = null;
+			try {
+				if (contents != null) {
+					inputFile = new ByteArrayInputStream(contents);
+				} else {
+					inputFile = new BufferedInputStream(new FileInputStream(xmlfile.getAbsoluteFile()));
+				}
+				parseFile(inputFile, getTypeFromFileName(xmlfile));
+			} catch (XMLStreamException e) {
+			} catch (IOException e) {
+				ApiPlugin.log(e);
+			} finally {
+				if (inputFile != null) {
+					try {
+						inputFile.close();
+					} catch (IOException e) {
+						// ignore
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads the contents of the given file if it is small enough to be held in
+	 * memory
+	 *
+	 * @param file the file to read
+	 * @return the contents of the file or <code>null</code> if the file is too
+	 *         large
+	 * @throws IOException
+	 */
+	static byte[] readAhead(File file) throws IOException {
+		long length = file.length();
+		if (length > READ_AHEAD_MAX_SIZE) {
+			return null;
+		}
+		try (InputStream stream = new FileInputStream(file.getAbsoluteFile())) {
+			return Util.getInputStreamAsByteArray(stream, (int) length);
+		}
+	}
+
+	/**
+	 * Pulls the elements of a single use scan file and processes them one at a
+	 * time, so that no more than the current element is held in memory
+	 *
+	 * @param input the contents of the file
+	 * @param type the type of the file
+	 * @throws XMLStreamException if the file is not well formed
+	 * @see #processElement(String, String, String, Attributes, int)
+	 */
+	void parseFile(InputStream input, int type) throws XMLStreamException {
+		XMLStreamReader reader = getInputFactory().createXMLStreamReader(input);
+		try {
+			StreamAttributes attributes = new StreamAttributes(reader);
+			while (reader.hasNext()) {
+				if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+					String name = reader.getLocalName();
+					try {
+						processElement(reader.getNamespaceURI(), name, name, attributes, type);
+					} catch (SAXException e) {
+						throw new XMLStreamException(e);
+					}
+				}
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Returns the StAX input factory, creating it on first use
+	 *
+	 * @return the input factory
+	 */
+	XMLInputFactory getInputFactory() {
+		if (inputFactory == null) {
+			inputFactory = XMLInputFactory.newInstance();
+			inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+			inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+			inputFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+		}
+		return inputFactory;
+	}
+
+	/**
+	 * Sets the number of threads used to read use scan files ahead of the
+	 * parser. Elements are always processed and visited on the calling thread
+	 * in the same order. A value less than two reads each file when it is
+	 * parsed.
+	 *
+	 * @param threads the number of threads
+	 * @since 1.1
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
 	/**
 	 * Returns a parser
 	 *
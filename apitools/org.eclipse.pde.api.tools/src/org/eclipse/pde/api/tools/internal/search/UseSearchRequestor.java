@@ -58,18 +58,39 @@ public class UseSearchRequestor implements IApiSearchRequestor {
 	private Set<String> fComponentIds = null;
 
 	/**
-	 * The current {@link IApiFilterStore} from the current
-	 * {@link IApiComponent} context we are visiting.
+	 * The state kept for the {@link IApiComponent} being visited. A search
+	 * engine may visit several components at once, each one on its own thread,
+	 * so the state is kept per thread.
+	 *
+	 * @since 1.1
 	 */
-	private IApiFilterStore currentStore = null;
+	static class ComponentContext {
+		/**
+		 * The {@link ReferenceAnalyzer} for detecting illegal API use
+		 *
+		 * @see UseSearchRequestor#includesIllegalUse()
+		 */
+		ReferenceAnalyzer analyzer = new ReferenceAnalyzer();
+
+		/**
+		 * The current {@link IApiFilterStore} from the current
+		 * {@link IApiComponent} context we are visiting.
+		 */
+		IApiFilterStore currentStore = null;
+
+		/**
+		 * The current {@link IApiFilterStore} for the current
+		 * {@link IApiComponent} context that we are visiting. The filter store
+		 * will be created by finding each component's filter file in the root
+		 * filter location {@link UseSearchRequestor#antFilterRoot}.
+		 */
+		IApiFilterStore antStore = null;
+	}
 
 	/**
-	 * The current {@link IApiFilterStore} for the current {@link IApiComponent}
-	 * context that we are visiting. The filter store will be created by finding
-	 * each component's filter file in the root filter location
-	 * {@link #antFilterRoot}.
+	 * The context of the component visited by the current thread
 	 */
-	private IApiFilterStore antStore = null;
+	private final ThreadLocal<ComponentContext> fContext = ThreadLocal.withInitial(ComponentContext::new);
 
 	/**
 	 * The root directory of the .api_filters files that should be used to
@@ -107,13 +128,6 @@ public class UseSearchRequestor implements IApiSearchRequestor {
 	 */
 	private String[] jarPatterns = null;
 
-	/**
-	 * The default {@link ReferenceAnalyzer} for detecting illegal API use
-	 *
-	 * @see #includesIllegalUse()
-	 */
-	ReferenceAnalyzer fAnalyzer = null;
-
 	/**
 	 * Constructor
 	 *
@@ -131,25 +145,25 @@ public class UseSearchRequestor implements IApiSearchRequestor {
 	public UseSearchRequestor(Set<String> elementnames, IApiElement[] scope, int searchkinds) {
 		fSearchMask = searchkinds;
 		fComponentIds = elementnames;
-		fAnalyzer = new ReferenceAnalyzer();
 		prepareScope(scope);
 	}
 
 	@Override
 	public boolean acceptComponent(IApiComponent component) {
+		ComponentContext context = fContext.get();
 		try {
 			if (!component.isSystemComponent() && getScope().encloses(component)) {
 				if (includesIllegalUse()) {
-					fAnalyzer.buildProblemDetectors(component, ProblemDetectorBuilder.K_USE, null);
+					context.analyzer.buildProblemDetectors(component, ProblemDetectorBuilder.K_USE, null);
 				}
-				currentStore = component.getFilterStore();
-				antStore = antFilterRoot != null ? new AntFilterStore(antFilterRoot, component.getSymbolicName()) : null;
+				context.currentStore = component.getFilterStore();
+				context.antStore = antFilterRoot != null ? new AntFilterStore(antFilterRoot, component.getSymbolicName()) : null;
 				return true;
 			}
 		} catch (CoreException ce) {
 			// do nothing, return false
 		}
-		currentStore = null;
+		context.currentStore = null;
 		return false;
 	}
 
@@ -236,7 +250,7 @@ public class UseSearchRequestor implements IApiSearchRequestor {
 	 * @since 1.1
 	 */
 	boolean isIllegalUse(IReference reference) {
-		IApiProblemDetector[] detectors = fAnalyzer.getProblemDetectors(reference.getReferenceKind());
+		IApiProblemDetector[] detectors = fContext.get().analyzer.getProblemDetectors(reference.getReferenceKind());
 		for (IApiProblemDetector detector : detectors) {
 			if (detector.considerReference(reference)) {
 				Reference ref = (Reference) reference;
@@ -264,7 +278,8 @@ public class UseSearchRequestor implements IApiSearchRequestor {
 	 * @return <code>true</code> is filtered, false otherwise
 	 */
 	boolean isFiltered(IApiProblem problem) {
-		return (currentStore != null && currentStore.isFiltered(problem)) || (antStore != null && antStore.isFiltered(problem));
+		ComponentContext context = fContext.get();
+		return (context.currentStore != null && context.currentStore.isFiltered(problem)) || (context.antStore != null && context.antStore.isFiltered(problem));
 	}
 
 	@Override
@@ -86,7 +86,6 @@ public class XmlSearchReporter implements IApiSearchReporter {
 		// Use a hashset for counting to remove any duplicate references that
 		// the writer would remove
 		HashSet<IReferenceDescriptor> writtenReferences = new HashSet<>();
-		XmlReferenceDescriptorWriter writer = new XmlReferenceDescriptorWriter(fLocation);
 		List<IReferenceDescriptor> descriptors = new ArrayList<>(references.length + 1);
 		for (IReference referenceInterface : references) {
 			Reference reference = (Reference) referenceInterface;
@@ -114,7 +113,16 @@ public class XmlSearchReporter implements IApiSearchReporter {
 			}
 		}
 
-		writer.writeReferences(descriptors.toArray(new IReferenceDescriptor[descriptors.size()]));
+		writeReferences(descriptors.toArray(new IReferenceDescriptor[descriptors.size()]));
+	}
+
+	/**
+	 * Writes the given references to the report location
+	 *
+	 * @param descriptors the references to write, may contain duplicates
+	 */
+	protected void writeReferences(IReferenceDescriptor[] descriptors) {
+		new XmlReferenceDescriptorWriter(fLocation).writeReferences(descriptors);
 	}
 
 	/**
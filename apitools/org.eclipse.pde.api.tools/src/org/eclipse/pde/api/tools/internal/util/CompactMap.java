@@ -0,0 +1,294 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.internal.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A map for the many small maps of a tree, such as the children of the nodes
+ * of an API description, using much less memory than a {@link java.util.HashMap}.
+ * <p>
+ * Keys and values are held in a single array, without entry objects. Up to
+ * {@link #SMALL_SIZE} mappings, the array holds exactly the mappings of the
+ * map and keys are looked up linearly; larger maps use an open addressing
+ * table with linear probing. An empty map holds no array.
+ * </p>
+ * <p>
+ * <code>null</code> keys are not supported. The iterators of the map do not
+ * support removal and do not detect concurrent modifications. The map is not
+ * thread safe.
+ * </p>
+ *
+ * @since 1.1
+ */
+public final class CompactMap<K, V> extends AbstractMap<K, V> {
+
+	/**
+	 * Largest number of mappings kept in a linear array
+	 */
+	public static final int SMALL_SIZE = 8;
+
+	/**
+	 * Keys and values, interleaved, or <code>null</code> when empty
+	 */
+	private Object[] fTable = null;
+	private int fSize = 0;
+
+	@Override
+	public int size() {
+		return fSize;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return fSize == 0;
+	}
+
+	/**
+	 * Returns the number of slots of the array of this map, for footprint
+	 * measurements
+	 *
+	 * @return the number of keys the array of this map can hold
+	 */
+	public int capacity() {
+		return fTable == null ? 0 : fTable.length / 2;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return indexOf(key) >= 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public V get(Object key) {
+		int index = indexOf(key);
+		return index < 0 ? null : (V) fTable[index + 1];
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public V put(K key, V value) {
+		if (key == null) {
+			throw new IllegalArgumentException("null keys are not supported"); //$NON-NLS-1$
+		}
+		int index = indexOf(key);
+		if (index >= 0) {
+			V old = (V) fTable[index + 1];
+			fTable[index + 1] = value;
+			return old;
+		}
+		if (fSize < SMALL_SIZE) {
+			Object[] table = new Object[(fSize + 1) * 2];
+			if (fTable != null) {
+				System.arraycopy(fTable, 0, table, 0, fSize * 2);
+			}
+			table[fSize * 2] = key;
+			table[fSize * 2 + 1] = value;
+			fTable = table;
+			fSize++;
+			return null;
+		}
+		if (fSize == SMALL_SIZE || (fSize + 1) * 4 > capacity() * 3) {
+			rehash(tableCapacity(fSize + 1));
+		}
+		insert(fTable, key, value);
+		fSize++;
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public V remove(Object key) {
+		int index = indexOf(key);
+		if (index < 0) {
+			return null;
+		}
+		V old = (V) fTable[index + 1];
+		if (fSize <= SMALL_SIZE) {
+			if (fSize == 1) {
+				fTable = null;
+			} else {
+				Object[] table = new Object[(fSize - 1) * 2];
+				System.arraycopy(fTable, 0, table, 0, index);
+				System.arraycopy(fTable, index + 2, table, index, fTable.length - index - 2);
+				fTable = table;
+			}
+			fSize--;
+			return old;
+		}
+		fTable[index] = null;
+		fTable[index + 1] = null;
+		fSize--;
+		if (fSize == SMALL_SIZE) {
+			toSmall();
+		} else {
+			closeGap(index);
+		}
+		return old;
+	}
+
+	@Override
+	public void clear() {
+		fTable = null;
+		fSize = 0;
+	}
+
+	@Override
+	public Set<Map.Entry<K, V>> entrySet() {
+		return new AbstractSet<Map.Entry<K, V>>() {
+			@Override
+			public Iterator<Map.Entry<K, V>> iterator() {
+				return new Iterator<Map.Entry<K, V>>() {
+					private final Object[] table = fTable;
+					private int next = advance(0);
+
+					private int advance(int from) {
+						int index = from;
+						if (table != null) {
+							while (index < table.length && table[index] == null) {
+								index += 2;
+							}
+						}
+						return index;
+					}
+
+					@Override
+					public boolean hasNext() {
+						return table != null && next < table.length;
+					}
+
+					@SuppressWarnings("unchecked")
+					@Override
+					public Map.Entry<K, V> next() {
+						if (!hasNext()) {
+							throw new NoSuchElementException();
+						}
+						Map.Entry<K, V> entry = new SimpleImmutableEntry<>((K) table[next], (V) table[next + 1]);
+						next = advance(next + 2);
+						return entry;
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return fSize;
+			}
+		};
+	}
+
+	/**
+	 * Returns the index of the given key in the array, or <code>-1</code>
+	 */
+	private int indexOf(Object key) {
+		if (fTable == null || key == null) {
+			return -1;
+		}
+		if (fSize <= SMALL_SIZE) {
+			for (int i = 0; i < fTable.length; i += 2) {
+				if (key.equals(fTable[i])) {
+					return i;
+				}
+			}
+			return -1;
+		}
+		int mask = fTable.length / 2 - 1;
+		int slot = hash(key) & mask;
+		while (fTable[slot * 2] != null) {
+			if (key.equals(fTable[slot * 2])) {
+				return slot * 2;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	private static int hash(Object key) {
+		int h = key.hashCode();
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Returns the smallest power of two keeping the given number of mappings
+	 * at most three quarters full
+	 */
+	private static int tableCapacity(int size) {
+		int capacity = 16;
+		while (size * 4 > capacity * 3) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	private static void insert(Object[] table, Object key, Object value) {
+		int mask = table.length / 2 - 1;
+		int slot = hash(key) & mask;
+		while (table[slot * 2] != null) {
+			slot = (slot + 1) & mask;
+		}
+		table[slot * 2] = key;
+		table[slot * 2 + 1] = value;
+	}
+
+	private void rehash(int capacity) {
+		Object[] table = new Object[capacity * 2];
+		for (int i = 0; i < fTable.length; i += 2) {
+			if (fTable[i] != null) {
+				insert(table, fTable[i], fTable[i + 1]);
+			}
+		}
+		fTable = table;
+	}
+
+	/**
+	 * Moves the mappings of a hashed table back to a linear array
+	 */
+	private void toSmall() {
+		Object[] table = new Object[fSize * 2];
+		int index = 0;
+		for (int i = 0; i < fTable.length; i += 2) {
+			if (fTable[i] != null) {
+				table[index++] = fTable[i];
+				table[index++] = fTable[i + 1];
+			}
+		}
+		fTable = table;
+	}
+
+	/**
+	 * Moves back the mappings following the given emptied index so that no
+	 * key is separated from its slot by an empty slot
+	 */
+	private void closeGap(int index) {
+		int mask = fTable.length / 2 - 1;
+		int gap = index / 2;
+		int slot = (gap + 1) & mask;
+		while (fTable[slot * 2] != null) {
+			int home = hash(fTable[slot * 2]) & mask;
+			// move the mapping if its home slot is not between the gap and
+			// the slot, cyclically
+			if ((slot > gap && (home <= gap || home > slot)) || (slot < gap && home <= gap && home > slot)) {
+				fTable[gap * 2] = fTable[slot * 2];
+				fTable[gap * 2 + 1] = fTable[slot * 2 + 1];
+				fTable[slot * 2] = null;
+				fTable[slot * 2 + 1] = null;
+				gap = slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+}
@@ -0,0 +1,358 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.internal.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * A read-only view of a zip archive that is memory mapped once.
+ * <p>
+ * The central directory is read into a compact index of entry names sorted
+ * for binary search, with the local header offset, sizes and compression
+ * method of each entry kept in parallel arrays. The contents of
+ * <code>STORED</code> and <code>DEFLATED</code> entries can then be read
+ * without opening a stream per entry. Zip64 archives and archives larger than
+ * 2GB are not supported and fail to open with an {@link IOException}; callers
+ * are expected to fall back to {@link java.util.zip.ZipFile} in that case.
+ * </p>
+ * <p>
+ * Reads are thread safe. The mapping is held until {@link #close()} is
+ * called, after which the archive can no longer be read; callers must ensure
+ * that no read is in progress when the archive is closed.
+ * </p>
+ *
+ * @since 1.1
+ */
+public final class MappedArchive {
+
+	private static final int LOCAL_HEADER_SIG = 0x04034b50;
+	private static final int CENTRAL_HEADER_SIG = 0x02014b50;
+	private static final int END_HEADER_SIG = 0x06054b50;
+	private static final int LOCAL_HEADER_SIZE = 30;
+	private static final int CENTRAL_HEADER_SIZE = 46;
+	private static final int END_HEADER_SIZE = 22;
+	private static final int STORED = 0;
+	private static final int DEFLATED = 8;
+
+	private final String fLocation;
+	private final MappedByteBuffer fBuffer;
+
+	/**
+	 * Sorted entry names
+	 */
+	private final String[] fNames;
+	private final int[] fOffsets;
+	private final int[] fCompressedSizes;
+	private final int[] fSizes;
+	private final int[] fCrcs;
+	private final byte[] fMethods;
+	private volatile boolean fClosed = false;
+
+	private MappedArchive(String location, MappedByteBuffer buffer, String[] names, int[] offsets, int[] compressedSizes, int[] sizes, int[] crcs, byte[] methods) {
+		fLocation = location;
+		fBuffer = buffer;
+		fNames = names;
+		fOffsets = offsets;
+		fCompressedSizes = compressedSizes;
+		fSizes = sizes;
+		fCrcs = crcs;
+		fMethods = methods;
+	}
+
+	/**
+	 * Memory maps the archive at the given location and reads its central
+	 * directory.
+	 *
+	 * @param location the location of the archive in the local file system
+	 * @return the mapped archive
+	 * @throws IOException if the archive could not be mapped or is not a
+	 *             supported zip archive
+	 */
+	public static MappedArchive open(String location) throws IOException {
+		MappedByteBuffer buffer;
+		try (RandomAccessFile file = new RandomAccessFile(new File(location), "r"); //$NON-NLS-1$
+				FileChannel channel = file.getChannel()) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new ZipException("Archive too large to map: " + location); //$NON-NLS-1$
+			}
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		}
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		int end = findEndHeader(buffer);
+		if (end < 0) {
+			throw new ZipException("Missing end of central directory: " + location); //$NON-NLS-1$
+		}
+		int count = buffer.getShort(end + 10) & 0xFFFF;
+		long cdOffset = buffer.getInt(end + 16) & 0xFFFFFFFFL;
+		if (count == 0xFFFF || cdOffset == 0xFFFFFFFFL) {
+			throw new ZipException("Zip64 archives are not supported: " + location); //$NON-NLS-1$
+		}
+		String[] names = new String[count];
+		Integer[] order = new Integer[count];
+		int[] offsets = new int[count];
+		int[] compressedSizes = new int[count];
+		int[] sizes = new int[count];
+		int[] crcs = new int[count];
+		byte[] methods = new byte[count];
+		int pos = (int) cdOffset;
+		for (int i = 0; i < count; i++) {
+			if (pos + CENTRAL_HEADER_SIZE > buffer.limit() || buffer.getInt(pos) != CENTRAL_HEADER_SIG) {
+				throw new ZipException("Invalid central directory entry in: " + location); //$NON-NLS-1$
+			}
+			methods[i] = (byte) buffer.getShort(pos + 10);
+			crcs[i] = buffer.getInt(pos + 16);
+			compressedSizes[i] = buffer.getInt(pos + 20);
+			sizes[i] = buffer.getInt(pos + 24);
+			int nameLength = buffer.getShort(pos + 28) & 0xFFFF;
+			int extraLength = buffer.getShort(pos + 30) & 0xFFFF;
+			int commentLength = buffer.getShort(pos + 32) & 0xFFFF;
+			offsets[i] = buffer.getInt(pos + 42);
+			byte[] name = new byte[nameLength];
+			ByteBuffer view = buffer.duplicate();
+			view.position(pos + CENTRAL_HEADER_SIZE);
+			view.get(name);
+			names[i] = new String(name, StandardCharsets.UTF_8);
+			order[i] = Integer.valueOf(i);
+			pos += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+		}
+		Arrays.sort(order, (o1, o2) -> names[o1.intValue()].compareTo(names[o2.intValue()]));
+		String[] sortedNames = new String[count];
+		int[] sortedOffsets = new int[count];
+		int[] sortedCompressedSizes = new int[count];
+		int[] sortedSizes = new int[count];
+		int[] sortedCrcs = new int[count];
+		byte[] sortedMethods = new byte[count];
+		for (int i = 0; i < count; i++) {
+			int index = order[i].intValue();
+			sortedNames[i] = names[index];
+			sortedOffsets[i] = offsets[index];
+			sortedCompressedSizes[i] = compressedSizes[index];
+			sortedSizes[i] = sizes[index];
+			sortedCrcs[i] = crcs[index];
+			sortedMethods[i] = methods[index];
+		}
+		return new MappedArchive(location, buffer, sortedNames, sortedOffsets, sortedCompressedSizes, sortedSizes, sortedCrcs, sortedMethods);
+	}
+
+	/**
+	 * Scans backwards from the end of the buffer for the end of central
+	 * directory record, skipping over a trailing archive comment.
+	 *
+	 * @param buffer the mapped archive
+	 * @return the position of the record or <code>-1</code>
+	 */
+	private static int findEndHeader(ByteBuffer buffer) {
+		int limit = buffer.limit();
+		int min = Math.max(0, limit - END_HEADER_SIZE - 0xFFFF);
+		for (int pos = limit - END_HEADER_SIZE; pos >= min; pos--) {
+			if (buffer.getInt(pos) == END_HEADER_SIG) {
+				return pos;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the location of the archive in the local file system
+	 */
+	public String getLocation() {
+		return fLocation;
+	}
+
+	/**
+	 * Returns the names of all entries in this archive, sorted
+	 *
+	 * @return the entry names
+	 */
+	public String[] getEntryNames() {
+		return fNames.clone();
+	}
+
+	/**
+	 * Returns if this archive has an entry with the given name
+	 *
+	 * @param name the entry name
+	 * @return <code>true</code> if the entry exists
+	 */
+	public boolean hasEntry(String name) {
+		return Arrays.binarySearch(fNames, name) >= 0;
+	}
+
+	/**
+	 * Returns the CRC-32 of the uncompressed contents of the entry with the
+	 * given name, as recorded in the central directory
+	 *
+	 * @param name the entry name
+	 * @return the CRC-32 of the entry or <code>-1</code> if there is no such
+	 *         entry
+	 */
+	public long getCrc(String name) {
+		int index = Arrays.binarySearch(fNames, name);
+		if (index < 0) {
+			return -1L;
+		}
+		return fCrcs[index] & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * Returns the uncompressed size of the entry with the given name
+	 *
+	 * @param name the entry name
+	 * @return the size of the entry or <code>-1</code> if there is no such
+	 *         entry
+	 */
+	public long getSize(String name) {
+		int index = Arrays.binarySearch(fNames, name);
+		if (index < 0) {
+			return -1L;
+		}
+		return fSizes[index] & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * Returns the uncompressed contents of the entry with the given name.
+	 *
+	 * @param name the entry name
+	 * @return the contents of the entry or <code>null</code> if there is no
+	 *         such entry
+	 * @throws IOException if the entry is corrupt or uses an unsupported
+	 *             compression method
+	 */
+	public byte[] getContents(String name) throws IOException {
+		if (fClosed) {
+			throw new ZipException("Archive closed: " + fLocation); //$NON-NLS-1$
+		}
+		int index = Arrays.binarySearch(fNames, name);
+		if (index < 0) {
+			return null;
+		}
+		int header = fOffsets[index];
+		if (header < 0 || header + LOCAL_HEADER_SIZE > fBuffer.limit() || fBuffer.getInt(header) != LOCAL_HEADER_SIG) {
+			throw new ZipException("Invalid local header for entry: " + name + " in archive: " + fLocation); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		int start = header + LOCAL_HEADER_SIZE + (fBuffer.getShort(header + 26) & 0xFFFF) + (fBuffer.getShort(header + 28) & 0xFFFF);
+		int compressedSize = fCompressedSizes[index];
+		int size = fSizes[index];
+		if (compressedSize < 0 || size < 0 || start + compressedSize > fBuffer.limit()) {
+			throw new ZipException("Invalid entry size for: " + name + " in archive: " + fLocation); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		ByteBuffer view = fBuffer.duplicate();
+		view.position(start);
+		switch (fMethods[index]) {
+			case STORED: {
+				byte[] contents = new byte[size];
+				view.get(contents);
+				return contents;
+			}
+			case DEFLATED: {
+				// the inflater needs an extra dummy byte when used with nowrap
+				byte[] input = new byte[compressedSize + 1];
+				view.get(input, 0, compressedSize);
+				byte[] contents = new byte[size];
+				Inflater inflater = new Inflater(true);
+				try {
+					inflater.setInput(input);
+					int read = 0;
+					while (read < size && !inflater.finished()) {
+						int count = inflater.inflate(contents, read, size - read);
+						if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+							break;
+						}
+						read += count;
+					}
+					if (read != size) {
+						throw new ZipException("Truncated entry: " + name + " in archive: " + fLocation); //$NON-NLS-1$ //$NON-NLS-2$
+					}
+				} catch (DataFormatException e) {
+					throw new ZipException("Corrupt entry: " + name + " in archive: " + fLocation); //$NON-NLS-1$ //$NON-NLS-2$
+				} finally {
+					inflater.end();
+				}
+				return contents;
+			}
+			default:
+				throw new ZipException("Unsupported compression method for entry: " + name + " in archive: " + fLocation); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	/**
+	 * Closes this archive and releases its mapping, so that the file is no
+	 * longer locked and the address space is freed without waiting for the
+	 * garbage collector. Has no effect if the archive is already closed.
+	 */
+	public void close() {
+		if (fClosed) {
+			return;
+		}
+		fClosed = true;
+		unmap(fBuffer);
+	}
+
+	/**
+	 * @return whether this archive has been closed
+	 */
+	public boolean isClosed() {
+		return fClosed;
+	}
+
+	/**
+	 * Releases the given mapped buffer. There is no public API for this, so
+	 * the cleaner of the buffer is invoked reflectively: through
+	 * <code>sun.misc.Unsafe.invokeCleaner</code> where it exists, or through the
+	 * cleaner of the direct buffer otherwise. If neither is accessible the
+	 * buffer is left to the garbage collector.
+	 *
+	 * @param buffer the buffer to release
+	 */
+	static void unmap(MappedByteBuffer buffer) {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe"); //$NON-NLS-1$
+			Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class); //$NON-NLS-1$
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe"); //$NON-NLS-1$
+			theUnsafe.setAccessible(true);
+			invokeCleaner.invoke(theUnsafe.get(null), buffer);
+			return;
+		} catch (Exception e) {
+			// not available before Java 9, try the cleaner of the buffer
+		}
+		try {
+			Method cleanerMethod = buffer.getClass().getMethod("cleaner"); //$NON-NLS-1$
+			cleanerMethod.setAccessible(true);
+			Object cleaner = cleanerMethod.invoke(buffer);
+			if (cleaner != null) {
+				Method clean = cleaner.getClass().getMethod("clean"); //$NON-NLS-1$
+				clean.setAccessible(true);
+				clean.invoke(cleaner);
+			}
+		} catch (Exception e) {
+			// not accessible, the buffer is released by the garbage collector
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "Mapped archive: " + fLocation; //$NON-NLS-1$
+	}
+}
@@ -0,0 +1,315 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.internal.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.eclipse.pde.api.tools.internal.provisional.ApiPlugin;
+
+/**
+ * A read-only, memory mapped file holding the stubs of the types of an
+ * execution environment.
+ * <p>
+ * The file starts with an index of the stub names, sorted for binary search,
+ * followed by the uncompressed stubs. Only the index is read when the file is
+ * opened, into parallel arrays of names, offsets and lengths; the stubs stay
+ * in the mapped file until they are decoded. Stub files are written from the
+ * stub archives of the execution environment bundles with
+ * {@link #write(File, File)}.
+ * </p>
+ * <p>
+ * Reads are thread safe.
+ * </p>
+ *
+ * @since 1.1
+ */
+public final class MappedStubFile {
+
+	/**
+	 * The file extension of stub files
+	 */
+	public static final String STUB_FILE_EXTENSION = ".stubs"; //$NON-NLS-1$
+
+	private static final String FILE_KIND = "EE_STUBS"; //$NON-NLS-1$
+	private static final int VERSION = 1;
+
+	private final String fLocation;
+	private final MappedByteBuffer fBuffer;
+	private final long fSourceLength;
+	private final long fSourceTimeStamp;
+
+	/**
+	 * Sorted stub names
+	 */
+	private final String[] fNames;
+	private final int[] fOffsets;
+	private final int[] fLengths;
+
+	private MappedStubFile(String location, MappedByteBuffer buffer, long sourceLength, long sourceTimeStamp, String[] names, int[] offsets, int[] lengths) {
+		fLocation = location;
+		fBuffer = buffer;
+		fSourceLength = sourceLength;
+		fSourceTimeStamp = sourceTimeStamp;
+		fNames = names;
+		fOffsets = offsets;
+		fLengths = lengths;
+	}
+
+	/**
+	 * Memory maps the stub file at the given location and reads its index.
+	 *
+	 * @param location the location of the stub file in the local file system
+	 * @return the mapped stub file
+	 * @throws IOException if the file could not be mapped or is not a stub
+	 *             file
+	 */
+	public static MappedStubFile open(String location) throws IOException {
+		MappedByteBuffer buffer;
+		try (RandomAccessFile file = new RandomAccessFile(new File(location), "r"); //$NON-NLS-1$
+				FileChannel channel = file.getChannel()) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("Stub file too large to map: " + location); //$NON-NLS-1$
+			}
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		}
+		ByteBuffer view = buffer.duplicate();
+		boolean valid = false;
+		try {
+			if (!ApiPlugin.PLUGIN_ID.equals(getString(view)) || !FILE_KIND.equals(getString(view)) || view.getInt() != VERSION) {
+				throw new IOException("Not a stub file: " + location); //$NON-NLS-1$
+			}
+			long sourceLength = view.getLong();
+			long sourceTimeStamp = view.getLong();
+			int count = view.getInt();
+			if (count < 0) {
+				throw new IOException("Invalid stub file: " + location); //$NON-NLS-1$
+			}
+			String[] names = new String[count];
+			int[] offsets = new int[count];
+			int[] lengths = new int[count];
+			for (int i = 0; i < count; i++) {
+				names[i] = getString(view);
+				offsets[i] = view.getInt();
+				lengths[i] = view.getInt();
+			}
+			int start = view.position();
+			for (int i = 0; i < count; i++) {
+				if (offsets[i] < 0 || lengths[i] < 0 || (long) start + offsets[i] + lengths[i] > buffer.limit() || (i > 0 && names[i - 1].compareTo(names[i]) >= 0)) {
+					throw new IOException("Invalid stub file: " + location); //$NON-NLS-1$
+				}
+				offsets[i] += start;
+			}
+			valid = true;
+			return new MappedStubFile(location, buffer, sourceLength, sourceTimeStamp, names, offsets, lengths);
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Truncated stub file: " + location, e); //$NON-NLS-1$
+		} finally {
+			if (!valid) {
+				// release the file right away so that it can be written again
+				MappedArchive.unmap(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Returns if the stub file at the given location was written from the
+	 * given stub archive as it is now. Only the header of the stub file is
+	 * read, the file is not mapped, so that a stub file that is out of date
+	 * can be replaced right away.
+	 *
+	 * @param file the stub file
+	 * @param archive the stub archive
+	 * @return <code>true</code> if the stub file is up to date,
+	 *         <code>false</code> if it is missing, out of date or not a stub
+	 *         file
+	 */
+	public static boolean isWrittenFrom(File file, File archive) {
+		try (RandomAccessFile in = new RandomAccessFile(file, "r")) { //$NON-NLS-1$
+			if (!ApiPlugin.PLUGIN_ID.equals(readString(in)) || !FILE_KIND.equals(readString(in)) || in.readInt() != VERSION) {
+				return false;
+			}
+			return in.readLong() == archive.length() && in.readLong() == archive.lastModified();
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Writes the stubs of the given stub archive to a stub file, replacing
+	 * the stub file if it exists. The stubs are written to a temporary file
+	 * of the same directory first, which then replaces the stub file, so
+	 * that several threads or processes can write the same stub file at
+	 * once.
+	 *
+	 * @param archive the stub archive
+	 * @param file the stub file to write
+	 * @throws IOException if the archive could not be read or the stub file
+	 *             could not be written
+	 */
+	public static void write(File archive, File file) throws IOException {
+		List<String> names = new ArrayList<>();
+		List<byte[]> stubs = new ArrayList<>();
+		try (ZipFile zipFile = new ZipFile(archive)) {
+			for (Enumeration<? extends ZipEntry> entries = zipFile.entries(); entries.hasMoreElements();) {
+				ZipEntry entry = entries.nextElement();
+				if (!entry.isDirectory()) {
+					names.add(entry.getName());
+				}
+			}
+			Collections.sort(names);
+			for (String name : names) {
+				try (InputStream stream = zipFile.getInputStream(zipFile.getEntry(name))) {
+					stubs.add(Util.getInputStreamAsByteArray(stream, -1));
+				}
+			}
+		}
+		File temp = File.createTempFile(file.getName(), ".tmp", file.getParentFile()); //$NON-NLS-1$
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+			putString(out, ApiPlugin.PLUGIN_ID);
+			putString(out, FILE_KIND);
+			out.writeInt(VERSION);
+			out.writeLong(archive.length());
+			out.writeLong(archive.lastModified());
+			out.writeInt(names.size());
+			int offset = 0;
+			for (int i = 0; i < names.size(); i++) {
+				putString(out, names.get(i));
+				out.writeInt(offset);
+				out.writeInt(stubs.get(i).length);
+				offset += stubs.get(i).length;
+			}
+			for (byte[] stub : stubs) {
+				out.write(stub);
+			}
+		} catch (IOException e) {
+			temp.delete();
+			throw e;
+		}
+		try {
+			try {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			temp.delete();
+			throw new IOException("Unable to replace " + file, e); //$NON-NLS-1$
+		}
+	}
+
+	private static String getString(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static String readString(RandomAccessFile in) throws IOException {
+		byte[] bytes = new byte[in.readUnsignedShort()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void putString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		if (bytes.length > 0xFFFF) {
+			throw new IOException("Name too long: " + value); //$NON-NLS-1$
+		}
+		out.writeShort(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * @return the location of the stub file in the local file system
+	 */
+	public String getLocation() {
+		return fLocation;
+	}
+
+	/**
+	 * @return the length of the stub archive this file was written from
+	 */
+	public long getSourceLength() {
+		return fSourceLength;
+	}
+
+	/**
+	 * @return the modification time of the stub archive this file was
+	 *         written from
+	 */
+	public long getSourceTimeStamp() {
+		return fSourceTimeStamp;
+	}
+
+	/**
+	 * Returns the names of all stubs in this file, sorted
+	 *
+	 * @return the stub names
+	 */
+	public String[] getNames() {
+		return fNames.clone();
+	}
+
+	/**
+	 * Returns if this file has a stub with the given name
+	 *
+	 * @param name the stub name
+	 * @return <code>true</code> if the stub exists
+	 */
+	public boolean hasStub(String name) {
+		return Arrays.binarySearch(fNames, name) >= 0;
+	}
+
+	/**
+	 * Returns the contents of the stub with the given name
+	 *
+	 * @param name the stub name
+	 * @return the contents of the stub or <code>null</code> if there is no
+	 *         such stub
+	 */
+	public byte[] getContents(String name) {
+		int index = Arrays.binarySearch(fNames, name);
+		if (index < 0) {
+			return null;
+		}
+		byte[] contents = new byte[fLengths[index]];
+		ByteBuffer view = fBuffer.duplicate();
+		view.position(fOffsets[index]);
+		view.get(contents);
+		return contents;
+	}
+
+	@Override
+	public String toString() {
+		return "Mapped stub file: " + fLocation; //$NON-NLS-1$
+	}
+}
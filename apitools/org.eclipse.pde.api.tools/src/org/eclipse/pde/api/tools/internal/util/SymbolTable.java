@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.internal.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Table of the type, member and signature names used by the references
+ * extracted from class files.
+ * <p>
+ * References created from different class files share the same name
+ * instances, and the dot separated names of types are only computed once per
+ * internal name. The table can be used from several threads at once. It is
+ * bounded: once it holds {@link #MAX_SYMBOLS} names it is emptied and starts
+ * over, so that a long lived table does not grow with every class file it has
+ * seen. Names returned before and after such an eviction are equal, they are
+ * only no longer the same instances.
+ * </p>
+ *
+ * @since 1.1
+ */
+public final class SymbolTable {
+
+	/**
+	 * Maximum number of names kept by a table before it is emptied
+	 */
+	public static final int MAX_SYMBOLS = 1 << 16;
+
+	private final ConcurrentHashMap<String, String> fSymbols = new ConcurrentHashMap<>(1024);
+	private final ConcurrentHashMap<String, String> fTypeNames = new ConcurrentHashMap<>(1024);
+
+	/**
+	 * Returns the instance of the given name held by this table
+	 *
+	 * @param name the name or <code>null</code>
+	 * @return the shared instance of the name
+	 */
+	public String intern(String name) {
+		if (name == null) {
+			return null;
+		}
+		String symbol = fSymbols.get(name);
+		if (symbol != null) {
+			return symbol;
+		}
+		if (fSymbols.size() >= MAX_SYMBOLS) {
+			clear();
+		}
+		symbol = fSymbols.putIfAbsent(name, name);
+		return symbol == null ? name : symbol;
+	}
+
+	/**
+	 * Returns the dot separated name of the given internal (slash separated)
+	 * name
+	 *
+	 * @param internalName the internal name of a type
+	 * @return the shared instance of the dot separated name
+	 */
+	public String getTypeName(String internalName) {
+		String name = fTypeNames.get(internalName);
+		if (name == null) {
+			name = intern(internalName.replace('/', '.'));
+			if (fTypeNames.size() >= MAX_SYMBOLS) {
+				fTypeNames.clear();
+			}
+			fTypeNames.putIfAbsent(internalName, name);
+		}
+		return name;
+	}
+
+	/**
+	 * @return the number of names in the table
+	 */
+	public int size() {
+		return fSymbols.size();
+	}
+
+	/**
+	 * Removes all the names from the table
+	 */
+	public void clear() {
+		fSymbols.clear();
+		fTypeNames.clear();
+	}
+}
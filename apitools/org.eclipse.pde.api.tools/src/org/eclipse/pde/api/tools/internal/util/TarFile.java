@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2013 IBM Corporation and others.
+ * Copyright (c) 2008, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,17 +11,37 @@
  *******************************************************************************/
 package org.eclipse.pde.api.tools.internal.util;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.zip.GZIPInputStream;
 
+import org.eclipse.pde.api.tools.internal.provisional.ApiPlugin;
+
 /**
  * Reads a .tar or .tar.gz archive file, providing an index enumeration and
  * allows for accessing an InputStream for arbitrary files in the archive.
+ * <p>
+ * The offsets of the entries are indexed while the entries are enumerated, or
+ * in one pass over the headers when an entry is first looked up by name. The
+ * contents of the entries of a .tar archive are then read with a single seek;
+ * the entries of a .tar.gz archive are still read by decompressing the
+ * archive up to the entry. The index can be saved beside the archive, see
+ * {@link #TarFile(File, boolean)}.
+ * </p>
  */
 public class TarFile {
 	private static class TarInputStream extends FilterInputStream {
@@ -338,7 +358,80 @@ public class TarFile {
 		}
 	}
 
+	/**
+	 * Extension appended to the name of an archive to name its saved index
+	 *
+	 * @since 1.1
+	 */
+	public static final String INDEX_FILE_EXTENSION = ".index"; //$NON-NLS-1$
+
+	private static final String INDEX_KIND = "TAR_INDEX"; //$NON-NLS-1$
+	private static final int INDEX_VERSION = 1;
+	private static final int HEADER_SIZE = 512;
+
+	/**
+	 * Reads the contents of an entry of an uncompressed archive at their
+	 * offset, without moving the position of the channel
+	 */
+	private static class EntryInputStream extends InputStream {
+		private final FileChannel channel;
+		private long position;
+		private long remaining;
+
+		EntryInputStream(FileChannel channel, long position, long size) {
+			this.channel = channel;
+			this.position = position;
+			this.remaining = size;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (remaining <= 0) {
+				return -1;
+			}
+			int count = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, remaining)), position);
+			if (count < 0) {
+				throw new IOException("early end of stream"); //$NON-NLS-1$
+			}
+			position += count;
+			remaining -= count;
+			return count;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] data = new byte[1];
+			int size = read(data, 0, 1);
+			if (size < 0) {
+				return size;
+			}
+			return data[0] & 0xff;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = Math.max(0, Math.min(n, remaining));
+			position += skipped;
+			remaining -= skipped;
+			return skipped;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return (int) Math.min(remaining, Integer.MAX_VALUE);
+		}
+	}
+
 	private File file;
+	private boolean compressed = false;
+	private boolean persistIndex = false;
+	/**
+	 * Entries by name, in archive order, or <code>null</code> until all the
+	 * entries have been indexed
+	 */
+	private Map<String, TarEntry> index;
+	private Map<String, TarEntry> pendingIndex = new LinkedHashMap<>();
+	private RandomAccessFile randomAccessFile;
 	TarInputStream entryEnumerationStream;
 	TarEntry curEntry;
 	private TarInputStream entryStream;
@@ -355,23 +448,57 @@ public class TarFile {
 	public TarFile(File file) throws TarException, IOException {
 		this.file = file;
 
+		InputStream in = openStream();
+		try {
+			entryEnumerationStream = new TarInputStream(in);
+		} catch (TarException ex) {
+			in.close();
+			throw ex;
+		}
+		curEntry = entryEnumerationStream.getNextEntry();
+	}
+
+	/**
+	 * Create a new TarFile for the given file, optionally saving the index of
+	 * its entries beside it. The saved index is named after the archive with
+	 * {@link #INDEX_FILE_EXTENSION} appended; it is used as long as the
+	 * archive keeps the same length and modification time. Failing to save
+	 * the index is ignored.
+	 *
+	 * @param file
+	 * @param persistIndex whether to read and save the index of the entries
+	 *            beside the archive
+	 * @throws TarException
+	 * @throws IOException
+	 * @since 1.1
+	 */
+	public TarFile(File file, boolean persistIndex) throws TarException, IOException {
+		this(file);
+		this.persistIndex = persistIndex;
+		if (persistIndex) {
+			readIndex();
+		}
+	}
+
+	/**
+	 * Opens the archive, decompressing it if it is a .tar.gz archive
+	 *
+	 * @return a new stream on the contents of the archive
+	 * @throws IOException
+	 */
+	private InputStream openStream() throws IOException {
 		InputStream in = new FileInputStream(file);
 		// First, check if it's a GZIPInputStream.
 		try {
 			in = new GZIPInputStream(in);
+			compressed = true;
 		} catch (IOException e) {
 			// If it is not compressed we close
 			// the old one and recreate
 			in.close();
 			in = new FileInputStream(file);
 		}
-		try {
-			entryEnumerationStream = new TarInputStream(in);
-		} catch (TarException ex) {
-			in.close();
-			throw ex;
-		}
-		curEntry = entryEnumerationStream.getNextEntry();
+		return in;
 	}
 
 	/**
@@ -386,6 +513,10 @@ public class TarFile {
 		if (internalEntryStream != null) {
 			internalEntryStream.close();
 		}
+		if (randomAccessFile != null) {
+			randomAccessFile.close();
+			randomAccessFile = null;
+		}
 	}
 
 	/**
@@ -416,18 +547,169 @@ public class TarFile {
 				TarEntry oldEntry = curEntry;
 				try {
 					curEntry = entryEnumerationStream.getNextEntry();
+					indexEntry(oldEntry, curEntry == null);
 				} catch (TarException e) {
 					curEntry = null;
+					pendingIndex = null;
 				} catch (IOException e) {
 					curEntry = null;
+					pendingIndex = null;
 				}
 				return oldEntry;
 			}
 		};
 	}
 
+	/**
+	 * Adds an enumerated entry to the index being built by the enumeration
+	 *
+	 * @param entry the enumerated entry
+	 * @param last whether it is the last entry of the archive
+	 */
+	void indexEntry(TarEntry entry, boolean last) {
+		if (pendingIndex == null || entry == null) {
+			return;
+		}
+		pendingIndex.put(entry.getName(), entry);
+		if (last) {
+			if (index == null) {
+				setIndex(pendingIndex);
+			}
+			pendingIndex = null;
+		}
+	}
+
+	/**
+	 * Returns the entry of the given name, indexing the entries of the
+	 * archive first if they have not all been enumerated yet.
+	 *
+	 * @param name the name of the entry
+	 * @return the entry or <code>null</code> if there is no such entry
+	 * @throws TarException
+	 * @throws IOException
+	 * @since 1.1
+	 */
+	public TarEntry getEntry(String name) throws TarException, IOException {
+		if (index == null) {
+			buildIndex();
+		}
+		return index.get(name);
+	}
+
+	/**
+	 * Indexes all the entries of the archive, reading their headers only
+	 *
+	 * @throws TarException
+	 * @throws IOException
+	 */
+	private void buildIndex() throws TarException, IOException {
+		Map<String, TarEntry> entries = new LinkedHashMap<>();
+		try (TarInputStream in = new TarInputStream(openStream())) {
+			TarEntry entry;
+			while ((entry = in.getNextEntry()) != null) {
+				entries.put(entry.getName(), entry);
+			}
+		}
+		setIndex(entries);
+	}
+
+	/**
+	 * Sets the complete index of the archive, saving it if required
+	 *
+	 * @param entries the entries of the archive by name
+	 */
+	private void setIndex(Map<String, TarEntry> entries) {
+		index = entries;
+		if (persistIndex) {
+			try {
+				writeIndex();
+			} catch (IOException e) {
+				// the index is only saved to speed up later lookups
+			}
+		}
+	}
+
+	/**
+	 * @return the file of the saved index of this archive
+	 */
+	private File getIndexFile() {
+		return new File(file.getPath() + INDEX_FILE_EXTENSION);
+	}
+
+	/**
+	 * Reads the saved index of the archive, unless it is missing or out of
+	 * date
+	 */
+	private void readIndex() {
+		File indexFile = getIndexFile();
+		if (!indexFile.exists()) {
+			return;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+			if (!ApiPlugin.PLUGIN_ID.equals(in.readUTF()) || !INDEX_KIND.equals(in.readUTF()) || in.readInt() != INDEX_VERSION) {
+				return;
+			}
+			if (in.readLong() != file.length() || in.readLong() != file.lastModified()) {
+				return;
+			}
+			int count = in.readInt();
+			Map<String, TarEntry> entries = new LinkedHashMap<>(count * 4 / 3 + 1);
+			for (int i = 0; i < count; i++) {
+				TarEntry entry = new TarEntry(in.readUTF(), in.readInt());
+				entry.setSize(in.readLong());
+				entry.setFileType(in.readInt());
+				entry.setMode(in.readLong());
+				entry.setTime(in.readLong());
+				entries.put(entry.getName(), entry);
+			}
+			index = entries;
+		} catch (IOException e) {
+			// the index is built again from the archive
+		}
+	}
+
+	/**
+	 * Replaces the saved index of the archive with the current index
+	 *
+	 * @throws IOException
+	 */
+	private void writeIndex() throws IOException {
+		File indexFile = getIndexFile();
+		File temp = new File(indexFile.getPath() + ".tmp"); //$NON-NLS-1$
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+			out.writeUTF(ApiPlugin.PLUGIN_ID);
+			out.writeUTF(INDEX_KIND);
+			out.writeInt(INDEX_VERSION);
+			out.writeLong(file.length());
+			out.writeLong(file.lastModified());
+			out.writeInt(index.size());
+			for (TarEntry entry : index.values()) {
+				out.writeUTF(entry.getName());
+				out.writeInt(entry.filepos);
+				out.writeLong(entry.getSize());
+				out.writeInt(entry.getFileType());
+				out.writeLong(entry.getMode());
+				out.writeLong(entry.getTime());
+			}
+		} catch (IOException e) {
+			temp.delete();
+			throw e;
+		}
+		indexFile.delete();
+		if (!temp.renameTo(indexFile)) {
+			temp.delete();
+			throw new IOException("Unable to replace " + indexFile); //$NON-NLS-1$
+		}
+	}
+
 	/**
 	 * Returns a new InputStream for the given file in the tar archive.
+	 * <p>
+	 * An entry not read from this archive, such as one created with
+	 * {@link TarEntry#TarEntry(String)}, is looked up by name. The stream is
+	 * valid until the archive is closed for .tar archives, and until the next
+	 * call to this method for .tar.gz archives.
+	 * </p>
 	 *
 	 * @param entry
 	 * @return an input stream for the given file
@@ -435,21 +717,25 @@ public class TarFile {
 	 * @throws IOException
 	 */
 	public InputStream getInputStream(TarEntry entry) throws TarException, IOException {
-		if (entryStream == null || !entryStream.skipToEntry(entry)) {
-			if (internalEntryStream != null) {
-				internalEntryStream.close();
+		TarEntry target = entry;
+		if (target.filepos < 0) {
+			target = getEntry(entry.getName());
+			if (target == null) {
+				throw new TarException("no such entry: " + entry.getName()); //$NON-NLS-1$
 			}
-			internalEntryStream = new FileInputStream(file);
-			// First, check if it's a GZIPInputStream.
-			try {
-				internalEntryStream = new GZIPInputStream(internalEntryStream);
-			} catch (IOException e) {
-				// If it is not compressed we close
-				// the old one and recreate
+		}
+		if (!compressed) {
+			if (randomAccessFile == null) {
+				randomAccessFile = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+			}
+			return new EntryInputStream(randomAccessFile.getChannel(), (long) target.filepos + HEADER_SIZE, target.getSize());
+		}
+		if (entryStream == null || !entryStream.skipToEntry(target)) {
+			if (internalEntryStream != null) {
 				internalEntryStream.close();
-				internalEntryStream = new FileInputStream(file);
 			}
-			entryStream = new TarInputStream(internalEntryStream, entry) {
+			internalEntryStream = openStream();
+			entryStream = new TarInputStream(internalEntryStream, target) {
 				@Override
 				public void close() {
 					// Ignore close() since we want to reuse the stream.
@@ -458,7 +744,6 @@ public class TarFile {
 		}
 		return entryStream;
 	}
-
 	/**
 	 * Returns the path name of the file this archive represents.
 	 *
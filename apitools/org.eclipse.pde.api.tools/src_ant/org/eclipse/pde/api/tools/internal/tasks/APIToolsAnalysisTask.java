@@ -34,8 +34,8 @@ import org.eclipse.osgi.service.resolver.ResolverError;
 import org.eclipse.osgi.util.NLS;
 import org.eclipse.pde.api.tools.internal.AntFilterStore;
 import org.eclipse.pde.api.tools.internal.IApiXmlConstants;
-import org.eclipse.pde.api.tools.internal.builder.BaseApiAnalyzer;
-import org.eclipse.pde.api.tools.internal.builder.BuildContext;
+import org.eclipse.pde.api.tools.internal.builder.ParallelApiAnalyzer;
+import org.eclipse.pde.api.tools.internal.model.ArchiveHandlePool;
 import org.eclipse.pde.api.tools.internal.model.StubApiComponent;
 import org.eclipse.pde.api.tools.internal.problems.ApiProblemFactory;
 import org.eclipse.pde.api.tools.internal.provisional.ApiPlugin;
@@ -166,6 +166,20 @@ public class APIToolsAnalysisTask extends CommonUtilsTask {
 	 */
 	private boolean processUnresolvedBundles = true;
 
+	/**
+	 * When <code>true</code>, the archives of both baselines are memory mapped
+	 * once and class files are read from the mapped archives. Set to
+	 * <code>false</code> by default.
+	 */
+	private boolean mappedArchives = false;
+
+	/**
+	 * The number of threads used to analyze components. Components are
+	 * analyzed one at a time on the calling thread when less than two. Set to
+	 * <code>1</code> by default.
+	 */
+	private int threads = 1;
+
 	private Summary[] createAllSummaries(Map<String, IApiProblem[]> allProblems) {
 		Set<Map.Entry<String, IApiProblem[]>> entrySet = allProblems.entrySet();
 		int size = entrySet.size();
@@ -386,10 +400,17 @@ public class APIToolsAnalysisTask extends CommonUtilsTask {
 		List<String> allNonApiBundles = new ArrayList<>();
 		List<String> allApiBundles = new ArrayList<>();
 		Map<String, Object> bundlesWithErrors = new HashMap<>();
+		// the pool is shared, its previous mode is restored once the analysis is done
+		boolean wasMemoryMapped = false;
+		if (this.mappedArchives) {
+			wasMemoryMapped = ArchiveHandlePool.getPool().setMemoryMapped(true);
+		}
 		try {
 			IApiComponent[] apiComponents = currentBaseline.getApiComponents();
 			int length = apiComponents.length;
 			Set<String> visitedApiComponentNames = new HashSet<>();
+			List<IApiComponent> componentsToAnalyze = new ArrayList<>(length);
+			List<IApiFilterStore> filterStores = new ArrayList<>(length);
 			for (int i = 0; i < length; i++) {
 				IApiComponent apiComponent = apiComponents[i];
 				String name = apiComponent.getSymbolicName();
@@ -424,23 +445,27 @@ public class APIToolsAnalysisTask extends CommonUtilsTask {
 				}
 
 				allApiBundles.add(name);
-				BaseApiAnalyzer analyzer = new BaseApiAnalyzer();
-				try {
-					analyzer.setContinueOnResolverError(true);
-					analyzer.analyzeComponent(null, getFilterStore(name), this.properties, referenceBaseline, apiComponent, new BuildContext(), new NullProgressMonitor());
-					IApiProblem[] problems = analyzer.getProblems();
-					// remove duplicates
-					problems = removeDuplicates(problems);
-					if (problems.length != 0) {
-						allProblems.put(name, problems);
-					} else if (this.debug) {
-						System.out.println(name + " has no problems"); //$NON-NLS-1$
-					}
-				} catch (RuntimeException e) {
-					ApiPlugin.log(e);
-					throw e;
-				} finally {
-					analyzer.dispose();
+				componentsToAnalyze.add(apiComponent);
+				filterStores.add(getFilterStore(name));
+			}
+			// analyze the components, in parallel if more than one thread
+			// has been requested
+			IApiProblem[][] componentProblems;
+			try {
+				ParallelApiAnalyzer analyzer = new ParallelApiAnalyzer(this.threads, true);
+				componentProblems = analyzer.analyze(referenceBaseline, componentsToAnalyze.toArray(new IApiComponent[componentsToAnalyze.size()]), filterStores.toArray(new IApiFilterStore[filterStores.size()]), this.properties, new NullProgressMonitor());
+			} catch (RuntimeException e) {
+				ApiPlugin.log(e);
+				throw e;
+			}
+			for (int i = 0; i < componentProblems.length; i++) {
+				String name = componentsToAnalyze.get(i).getSymbolicName();
+				// remove duplicates
+				IApiProblem[] problems = removeDuplicates(componentProblems[i]);
+				if (problems.length != 0) {
+					allProblems.put(name, problems);
+				} else if (this.debug) {
+					System.out.println(name + " has no problems"); //$NON-NLS-1$
 				}
 			}
 			if (debug) {
@@ -501,6 +526,9 @@ public class APIToolsAnalysisTask extends CommonUtilsTask {
 			}
 			referenceBaseline.dispose();
 			currentBaseline.dispose();
+			if (this.mappedArchives) {
+				ArchiveHandlePool.getPool().setMemoryMapped(wasMemoryMapped);
+			}
 			StubApiComponent.disposeAllCaches();
 			deleteBaseline(this.referenceBaselineLocation, referenceInstallDir);
 			deleteBaseline(this.currentBaselineLocation, baselineInstallDir);
@@ -919,4 +947,27 @@ public class APIToolsAnalysisTask extends CommonUtilsTask {
 		this.processUnresolvedBundles = processUnresolvedBundles;
 	}
 
+	/**
+	 * Set whether the archives of the baselines should be memory mapped when
+	 * reading class files. Archives that cannot be mapped are read using a
+	 * regular zip file. Defaults to <code>false</code>
+	 *
+	 * @param mappedArchives whether archives should be memory mapped
+	 */
+	public void setMappedArchives(boolean mappedArchives) {
+		this.mappedArchives = mappedArchives;
+	}
+
+	/**
+	 * Set the number of threads used to analyze the components of the
+	 * current baseline. Each component is analyzed independently; the
+	 * generated report does not depend on the number of threads. Defaults to
+	 * <code>1</code>
+	 *
+	 * @param threads the number of threads to use
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
 }
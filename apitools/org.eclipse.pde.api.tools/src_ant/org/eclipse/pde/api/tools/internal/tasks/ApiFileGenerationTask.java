@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2013 IBM Corporation and others.
+ * Copyright (c) 2008, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -123,6 +123,12 @@ public class ApiFileGenerationTask extends Task {
 	 * @since 1.0.600
 	 */
 	String encoding;
+	/**
+	 * The number of threads used to parse the source files
+	 *
+	 * @since 1.1
+	 */
+	int threads = 1;
 	Set<String> apiPackages = new HashSet<>(0);
 
 	/**
@@ -209,6 +215,18 @@ public class ApiFileGenerationTask extends Task {
 		this.encoding = encoding;
 	}
 
+	/**
+	 * Set the number of threads used to parse the source files. The generated
+	 * API description does not depend on the number of threads. Defaults to
+	 * <code>1</code>
+	 *
+	 * @param threads the number of threads to use
+	 * @since 1.1
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
 	/**
 	 * Set the debug value.
 	 * <p>
@@ -451,23 +469,23 @@ public class ApiFileGenerationTask extends Task {
 		if (allFiles != null && allFiles.length != 0) {
 			Map<String, String> options = JavaCore.getOptions();
 			options.put(JavaCore.COMPILER_COMPLIANCE, resolveCompliance(manifestMap));
-			CompilationUnit unit = null;
+			CompilationUnit[] units = new CompilationUnit[allFiles.length];
 			for (int i = 0, max = allFiles.length; i < max; i++) {
-				unit = new CompilationUnit(allFiles[i].getAbsolutePath(), this.encoding);
+				units[i] = new CompilationUnit(allFiles[i].getAbsolutePath(), this.encoding);
 				if (this.debug) {
-					System.out.println("Unit name[" + i + "] : " + unit.getName()); //$NON-NLS-1$ //$NON-NLS-2$
+					System.out.println("Unit name[" + i + "] : " + units[i].getName()); //$NON-NLS-1$ //$NON-NLS-2$
 				}
+			}
+			try {
+				tagScanner.scan(units, apiDescription, classFileContainer, options, this.threads, null);
+			} catch (CoreException e) {
+				ApiPlugin.log(e);
+			} finally {
 				try {
-					tagScanner.scan(unit, apiDescription, classFileContainer, options, null);
-				} catch (CoreException e) {
-					ApiPlugin.log(e);
-				} finally {
-					try {
-						if (classFileContainer != null) {
-							classFileContainer.close();
-						}
-					} catch (CoreException e) {
+					if (classFileContainer != null) {
+						classFileContainer.close();
 					}
+				} catch (CoreException e) {
 				}
 			}
 		}
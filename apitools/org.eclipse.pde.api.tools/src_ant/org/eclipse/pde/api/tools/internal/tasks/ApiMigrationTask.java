@@ -61,6 +61,13 @@ public final class ApiMigrationTask extends CommonUtilsTask {
 	 */
 	private String scanLocation = null;
 
+	/**
+	 * The number of threads used to read the use scan ahead of its
+	 * resolution. Files are read one at a time on the calling thread when less
+	 * than two.
+	 */
+	private int threads = 1;
+
 	/**
 	 * Set the location of the product you want to use as the migration
 	 * candidate.
@@ -248,6 +255,7 @@ public final class ApiMigrationTask extends CommonUtilsTask {
 			lookup.setIncludedElements(includedElements);
 
 			UseScanParser parser = new UseScanParser();
+			parser.setThreads(this.threads);
 			parser.parse(file.getAbsolutePath(), new NullProgressMonitor(), lookup);
 		} catch (CoreException ce) {
 			throw new BuildException(ce.getStatus().getMessage(), ce);
@@ -444,4 +452,16 @@ public final class ApiMigrationTask extends CommonUtilsTask {
 	public void setIncludeList(String includeListLocation) {
 		this.includeListLocation = includeListLocation;
 	}
+
+	/**
+	 * Set the number of threads used to read the files of the use scan.
+	 * References are still resolved in the order of the scan; the generated
+	 * report does not depend on the number of threads. Defaults to
+	 * <code>1</code>
+	 *
+	 * @param threads the number of threads to use
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
 }
@@ -32,6 +32,7 @@ import org.eclipse.pde.api.tools.internal.provisional.search.ApiSearchEngine;
 import org.eclipse.pde.api.tools.internal.provisional.search.IApiSearchReporter;
 import org.eclipse.pde.api.tools.internal.provisional.search.IApiSearchRequestor;
 import org.eclipse.pde.api.tools.internal.search.ApiDescriptionModifier;
+import org.eclipse.pde.api.tools.internal.search.BinarySearchReporter;
 import org.eclipse.pde.api.tools.internal.search.SkippedComponent;
 import org.eclipse.pde.api.tools.internal.search.UseMetadata;
 import org.eclipse.pde.api.tools.internal.search.UseSearchRequestor;
@@ -62,6 +63,19 @@ public final class ApiUseTask extends CommonUtilsTask {
 	 * @since 1.1
 	 */
 	private boolean considerillegaluse = false;
+	/**
+	 * If references should be written to a binary file instead of XML files
+	 *
+	 * @since 1.1
+	 */
+	private boolean binaryreport = false;
+	/**
+	 * The number of threads used to search components. Components are searched
+	 * one at a time on the calling thread when less than two.
+	 *
+	 * @since 1.1
+	 */
+	private int threads = 1;
 	/**
 	 * Set of project names that were not searched
 	 */
@@ -229,6 +243,23 @@ public final class ApiUseTask extends CommonUtilsTask {
 		this.considerillegaluse = Boolean.toString(true).equals(considerillegaluse);
 	}
 
+	/**
+	 * Sets if references should be written to a single compressed binary file
+	 * instead of XML files. The binary report can be read by the same tasks
+	 * as the XML report.
+	 * <p>
+	 * The possible values are: <code>true</code>, <code>false</code>
+	 * </p>
+	 * <p>
+	 * Default is <code>false</code>.
+	 * </p>
+	 *
+	 * @param binaryreport the given value
+	 */
+	public void setBinaryReport(String binaryreport) {
+		this.binaryreport = Boolean.toString(true).equals(binaryreport);
+	}
+
 	/**
 	 * Sets any package name patterns to consider as API packages.
 	 *
@@ -306,13 +337,18 @@ public final class ApiUseTask extends CommonUtilsTask {
 		cleanReportLocation();
 		UseMetadata data = new UseMetadata(getSearchFlags(), this.scopepattern, this.referencepattern, this.currentBaselineLocation, this.reportLocation, this.apiPatterns, this.internalPatterns, this.archivePatterns, DateFormat.getDateTimeInstance().format(Calendar.getInstance().getTime()), getDescription());
 		IApiBaseline baseline = getBaseline(CURRENT_BASELINE_NAME, this.currentBaselineLocation);
-		IApiSearchReporter reporter = new XmlSearchReporter(this.reportLocation, this.debug);
+		IApiSearchReporter reporter = null;
+		if (this.binaryreport) {
+			reporter = new BinarySearchReporter(this.reportLocation, this.debug, true);
+		} else {
+			reporter = new XmlSearchReporter(this.reportLocation, this.debug);
+		}
 
 		try {
 			Set<String> ids = new HashSet<>();
 			TreeSet<IApiComponent> scope = new TreeSet<>(Util.componentsorter);
 			getContext(baseline, ids, scope);
-			ApiSearchEngine engine = new ApiSearchEngine();
+			ApiSearchEngine engine = new ApiSearchEngine(this.threads);
 			UseSearchRequestor requestor = new UseSearchRequestor(ids, scope.toArray(new IApiElement[scope.size()]), getSearchFlags());
 			requestor.setJarPatterns(archivePatterns);
 			requestor.setFilterRoot(filters);
@@ -639,4 +675,15 @@ public final class ApiUseTask extends CommonUtilsTask {
 	public void setFilters(String filters) {
 		this.filters = filters;
 	}
+
+	/**
+	 * Set the number of threads used to search the components in the scope.
+	 * Each component is searched independently; the generated report does not
+	 * depend on the number of threads. Defaults to <code>1</code>
+	 *
+	 * @param threads the number of threads to use
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
 }
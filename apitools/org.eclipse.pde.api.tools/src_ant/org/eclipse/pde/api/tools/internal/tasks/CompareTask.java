@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2010 IBM Corporation and others.
+ * Copyright (c) 2007, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,10 +12,13 @@ package org.eclipse.pde.api.tools.internal.tasks;
 
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -23,12 +26,14 @@ import java.util.regex.PatternSyntaxException;
 import org.apache.tools.ant.BuildException;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.osgi.util.NLS;
+import org.eclipse.pde.api.tools.internal.comparator.IDeltaWriter;
+import org.eclipse.pde.api.tools.internal.comparator.JsonDeltaWriter;
+import org.eclipse.pde.api.tools.internal.comparator.XmlDeltaWriter;
 import org.eclipse.pde.api.tools.internal.model.StubApiComponent;
 import org.eclipse.pde.api.tools.internal.provisional.ApiPlugin;
 import org.eclipse.pde.api.tools.internal.provisional.VisibilityModifiers;
 import org.eclipse.pde.api.tools.internal.provisional.comparator.ApiComparator;
 import org.eclipse.pde.api.tools.internal.provisional.comparator.ApiScope;
-import org.eclipse.pde.api.tools.internal.provisional.comparator.IDelta;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiBaseline;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiComponent;
 import org.eclipse.pde.api.tools.internal.util.FilteredElements;
@@ -43,11 +48,16 @@ public class CompareTask extends CommonUtilsTask {
 	private static final String VISIBILITY_ALL = "ALL"; //$NON-NLS-1$
 	private static final String VISIBILITY_API = "API"; //$NON-NLS-1$
 	private static final String REPORT_XML_FILE_NAME = "compare.xml"; //$NON-NLS-1$
+	private static final String REPORT_JSONL_FILE_NAME = "compare.jsonl"; //$NON-NLS-1$
+	private static final String FORMAT_XML = "xml"; //$NON-NLS-1$
+	private static final String FORMAT_JSONL = "jsonl"; //$NON-NLS-1$
 
 	private int visibilityModifiers = VisibilityModifiers.API;
 	private String componentsList;
 	private String excludeListLocation;
 	private String includeListLocation;
+	private int threads = 1;
+	private String format = FORMAT_XML;
 
 	@Override
 	public void execute() throws BuildException {
@@ -87,8 +97,6 @@ public class CompareTask extends CommonUtilsTask {
 		IApiBaseline referenceBaseline = createBaseline(REFERENCE_BASELINE_NAME, referenceInstallDir.getAbsolutePath(), this.eeFileLocation);
 		IApiBaseline currentBaseline = createBaseline(CURRENT_BASELINE_NAME, baselineInstallDir.getAbsolutePath(), this.eeFileLocation);
 
-		IDelta delta = null;
-
 		FilteredElements excludedElements = CommonUtilsTask.initializeFilteredElements(this.excludeListLocation, currentBaseline, this.debug);
 
 		if (this.debug) {
@@ -142,43 +150,28 @@ public class CompareTask extends CommonUtilsTask {
 		} else {
 			scope.addElement(currentBaseline);
 		}
-		try {
-			delta = ApiComparator.compare(scope, referenceBaseline, this.visibilityModifiers, false, null);
-		} catch (CoreException e) {
-			// an error occurred during the comparison
-			throw new BuildException(NLS.bind(Messages.illegalElementInScope, e.getMessage()));
-		} finally {
-			referenceBaseline.dispose();
-			currentBaseline.dispose();
-			StubApiComponent.disposeAllCaches();
-			deleteBaseline(this.referenceBaselineLocation, referenceInstallDir);
-			deleteBaseline(this.currentBaselineLocation, baselineInstallDir);
-		}
-		if (delta == null) {
-			// an error occurred during the comparison
-			throw new BuildException(Messages.errorInComparison);
-		}
-		// dump the report in the appropriate folder
-		BufferedWriter writer = null;
+		// dump the report in the appropriate folder while comparing
 		File outputDir = new File(this.reportLocation);
 		if (!outputDir.exists()) {
 			if (!outputDir.mkdirs()) {
 				throw new BuildException(NLS.bind(Messages.errorCreatingParentReportFile, outputDir.getAbsolutePath()));
 			}
 		}
-		File outputFile = new File(this.reportLocation, REPORT_XML_FILE_NAME);
+		boolean jsonLines = FORMAT_JSONL.equals(this.format);
+		File outputFile = new File(this.reportLocation, jsonLines ? REPORT_JSONL_FILE_NAME : REPORT_XML_FILE_NAME);
+		if (outputFile.exists()) {
+			// delete the file
+			// TODO we might want to customize it
+			outputFile.delete();
+		}
+		boolean succeeded = false;
+		Writer writer = null;
 		try {
-			if (outputFile.exists()) {
-				// delete the file
-				// TODO we might want to customize it
-				outputFile.delete();
-			}
-			writer = new BufferedWriter(new FileWriter(outputFile));
-
-			FilterListDeltaVisitor visitor = new FilterListDeltaVisitor(excludedElements, includedElements, FilterListDeltaVisitor.CHECK_ALL);
-			delta.accept(visitor);
-			writer.write(visitor.getXML());
-			writer.flush();
+			writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFile), StandardCharsets.UTF_8));
+			IDeltaWriter deltaWriter = jsonLines ? new JsonDeltaWriter(writer) : new XmlDeltaWriter(writer);
+			FilterListDeltaVisitor visitor = new FilterListDeltaVisitor(excludedElements, includedElements, FilterListDeltaVisitor.CHECK_ALL, deltaWriter);
+			succeeded = ApiComparator.compare(scope, referenceBaseline, this.visibilityModifiers, false, false, this.threads, visitor, null);
+			visitor.close();
 			if (this.debug) {
 				String potentialExcludeList = visitor.getPotentialExcludeList();
 				if (potentialExcludeList.length() != 0) {
@@ -189,7 +182,9 @@ public class CompareTask extends CommonUtilsTask {
 		} catch (IOException e) {
 			ApiPlugin.log(e);
 		} catch (CoreException e) {
-			ApiPlugin.log(e);
+			// an error occurred during the comparison
+			succeeded = false;
+			throw new BuildException(NLS.bind(Messages.illegalElementInScope, e.getMessage()));
 		} finally {
 			try {
 				if (writer != null) {
@@ -198,6 +193,19 @@ public class CompareTask extends CommonUtilsTask {
 			} catch (IOException e) {
 				// ignore
 			}
+			if (!succeeded) {
+				// the report is incomplete
+				outputFile.delete();
+			}
+			referenceBaseline.dispose();
+			currentBaseline.dispose();
+			StubApiComponent.disposeAllCaches();
+			deleteBaseline(this.referenceBaselineLocation, referenceInstallDir);
+			deleteBaseline(this.currentBaselineLocation, baselineInstallDir);
+		}
+		if (!succeeded) {
+			// an error occurred during the comparison
+			throw new BuildException(Messages.errorInComparison);
 		}
 	}
 
@@ -252,8 +260,9 @@ public class CompareTask extends CommonUtilsTask {
 	 * Set the output location where the report will be generated.
 	 *
 	 * <p>
-	 * Once the task is completed, a report file called "compare.xml" is
-	 * generated into this location.
+	 * Once the task is completed, a report file called "compare.xml", or
+	 * "compare.jsonl" for the <code>jsonl</code> format, is generated into
+	 * this location.
 	 * </p>
 	 *
 	 * @param reportLocation the output location where the report will be
@@ -384,4 +393,37 @@ public class CompareTask extends CommonUtilsTask {
 	public void setincludeList(String includeListLocation) {
 		this.includeListLocation = includeListLocation;
 	}
+
+	/**
+	 * Set the number of threads used to compare the components. Each
+	 * component is compared independently; the generated report does not
+	 * depend on the number of threads. Defaults to <code>1</code>
+	 *
+	 * @param threads the number of threads to use
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * Set the format of the report.
+	 * <p>
+	 * The two expected values are: <code>"xml"</code>, <code>"jsonl"</code>.
+	 * With <code>"jsonl"</code> each delta is written as a JSON object on its
+	 * own line. If none is set, then the default format is "xml".
+	 * </p>
+	 * <p>
+	 * In both formats the deltas are written as the components are compared.
+	 * </p>
+	 *
+	 * @param format the given format
+	 * @throws BuildException if the given value is not "xml" or "jsonl".
+	 */
+	public void setFormat(String format) {
+		if (FORMAT_XML.equals(format) || FORMAT_JSONL.equals(format)) {
+			this.format = format;
+		} else {
+			throw new BuildException("The given value " + format + " is not equals to \"xml\" or \"jsonl\"."); //$NON-NLS-1$//$NON-NLS-2$
+		}
+	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2013 IBM Corporation and others.
+ * Copyright (c) 2008, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -19,6 +19,7 @@ import java.util.List;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.jdt.core.Flags;
 import org.eclipse.pde.api.tools.internal.comparator.DeltaXmlVisitor;
+import org.eclipse.pde.api.tools.internal.comparator.IDeltaWriter;
 import org.eclipse.pde.api.tools.internal.provisional.RestrictionModifiers;
 import org.eclipse.pde.api.tools.internal.provisional.comparator.DeltaProcessor;
 import org.eclipse.pde.api.tools.internal.provisional.comparator.IDelta;
@@ -47,6 +48,23 @@ public class FilterListDeltaVisitor extends DeltaXmlVisitor {
 		this.flags = flags;
 	}
 
+	/**
+	 * Constructs a visitor streaming the deltas that are not excluded to the
+	 * given writer
+	 *
+	 * @param excludedElements the elements to exclude
+	 * @param includedElements the elements to include
+	 * @param flags the kinds of deltas to check
+	 * @param writer the writer to hand the deltas to
+	 */
+	public FilterListDeltaVisitor(FilteredElements excludedElements, FilteredElements includedElements, int flags, IDeltaWriter writer) {
+		super(writer);
+		this.excludedElements = excludedElements;
+		this.includedElements = includedElements;
+		this.nonExcludedElements = new ArrayList<>();
+		this.flags = flags;
+	}
+
 	private boolean checkExclude(IDelta delta) {
 		return isExcluded(delta);
 	}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2015 IBM Corporation and others.
+ * Copyright (c) 2005, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -102,7 +102,20 @@ public class MinimalState {
 	}
 
 	public BundleDescription addBundle(File bundleLocation, long bundleId) throws CoreException {
-		Map<String, String> manifest = ManifestUtils.loadManifest(bundleLocation);
+		return addLoadedBundle(bundleLocation, loadManifest(bundleLocation), bundleId);
+	}
+
+	/**
+	 * Adds the bundle at the given location to the state from its manifest, as
+	 * returned by {@link #loadManifest(File)}
+	 *
+	 * @param bundleLocation the bundle archive or directory
+	 * @param manifest the headers of the manifest, updated by the {@link TargetWeaver}
+	 * @param bundleId the id of the bundle to update or <code>-1</code> to add a new bundle
+	 * @return the description of the bundle or <code>null</code> if it could not be created
+	 * @throws CoreException if the manifest is not valid
+	 */
+	protected BundleDescription addLoadedBundle(File bundleLocation, Map<String, String> manifest, long bundleId) throws CoreException {
 		// update for development mode
 		TargetWeaver.weaveManifest(manifest);
 
@@ -120,6 +133,18 @@ public class MinimalState {
 		return desc;
 	}
 
+	/**
+	 * Loads the manifest of the bundle at the given location, before it is
+	 * updated by the {@link TargetWeaver}
+	 *
+	 * @param bundleLocation the bundle archive or directory
+	 * @return the headers of the manifest, which the caller may modify
+	 * @throws CoreException if the manifest cannot be loaded
+	 */
+	protected Map<String, String> loadManifest(File bundleLocation) throws CoreException {
+		return ManifestUtils.loadManifest(bundleLocation);
+	}
+
 	protected void addAuxiliaryData(BundleDescription desc, Map<String, String> manifest, boolean hasBundleStructure) {
 	}
 
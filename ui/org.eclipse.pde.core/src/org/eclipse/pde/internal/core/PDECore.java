@@ -26,6 +26,7 @@ import org.eclipse.pde.internal.core.builders.FeatureRebuilder;
 import org.eclipse.pde.internal.core.builders.PluginRebuilder;
 import org.eclipse.pde.internal.core.project.BundleProjectService;
 import org.eclipse.pde.internal.core.schema.SchemaRegistry;
+import org.eclipse.pde.internal.core.target.DirectoryBundleIndex;
 import org.eclipse.pde.internal.core.target.P2TargetUtils;
 import org.eclipse.pde.internal.core.target.TargetPlatformService;
 import org.eclipse.update.configurator.ConfiguratorUtils;
@@ -336,6 +337,7 @@ public class PDECore extends Plugin implements DebugOptionsListener {
 		}
 
 		PluginModelManager.shutdownInstance();
+		DirectoryBundleIndex.shutdown();
 
 		if (fTargetPlatformService != null) {
 			fTargetPlatformService.unregister();
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2013 IBM Corporation and others.
+ * Copyright (c) 2005, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,8 +14,10 @@ package org.eclipse.pde.internal.core;
 import java.io.File;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.*;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.osgi.service.resolver.BundleDescription;
 import org.eclipse.osgi.service.resolver.State;
 import org.eclipse.pde.core.plugin.IPluginModelBase;
@@ -29,7 +31,18 @@ public class PDEState extends MinimalState {
 	private ArrayList<IPluginModelBase> fTargetModels = new ArrayList<>();
 
 	/**
-	 * Creates a new PDE State containing bundles from the given URLs.
+	 * Number of threads loading the manifests of the target bundles
+	 */
+	private static final int LOADER_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+	/**
+	 * Cache of the target manifests, only set while the target state is created
+	 */
+	private PDEStateCache fCache;
+
+	/**
+	 * Creates a new PDE State containing bundles from the given URLs. The
+	 * manifests of the bundles are merged into the cache of target manifests.
 	 *
 	 * @param target urls of target bundles
 	 * @param addResolver whether to add a resolver to the state
@@ -37,11 +50,26 @@ public class PDEState extends MinimalState {
 	 * @param monitor progress monitor
 	 */
 	public PDEState(URL[] target, boolean addResolver, boolean removeDuplicates, IProgressMonitor monitor) {
+		this(target, addResolver, removeDuplicates, false, monitor);
+	}
+
+	/**
+	 * Creates a new PDE State containing bundles from the given URLs.
+	 *
+	 * @param target urls of target bundles
+	 * @param addResolver whether to add a resolver to the state
+	 * @param removeDuplicates whether to remove duplicate conflicting bundles from the state
+	 * @param pruneCache whether to drop the bundles not in this state from the
+	 * cache of target manifests, rather than merge this state's bundles into it.
+	 * Only the load of the target platform prunes the cache.
+	 * @param monitor progress monitor
+	 */
+	public PDEState(URL[] target, boolean addResolver, boolean removeDuplicates, boolean pruneCache, IProgressMonitor monitor) {
 		long start = System.currentTimeMillis();
 		fAuxiliaryState = new PDEAuxiliaryState();
 
-		// We no longer try and restore from a cached state as it had no performance benefit
-		createNewTargetState(addResolver, target, monitor);
+		// Only the manifests are cached, the state itself is always created anew
+		createNewTargetState(addResolver, target, pruneCache, monitor);
 
 		if (removeDuplicates) {
 			removeDuplicatesFromState(fState);
@@ -55,23 +83,131 @@ public class PDEState extends MinimalState {
 			System.out.println("Time to create state: " + (System.currentTimeMillis() - start) + " ms"); //$NON-NLS-1$ //$NON-NLS-2$
 	}
 
-	private void createNewTargetState(boolean resolve, URL[] urls, IProgressMonitor monitor) {
-		fState = stateObjectFactory.createState(resolve);
-		monitor.beginTask(PDECoreMessages.PDEState_CreatingTargetModelState, urls.length);
-		for (int i = 0; i < urls.length; i++) {
-			File file = new File(urls[i].getFile());
-			try {
-				if (monitor.isCanceled())
-					// if canceled, stop loading bundles
-					return;
-				monitor.subTask(file.getName());
-				addBundle(file, -1);
-			} catch (CoreException e) {
-				PDECore.log(e);
-			} finally {
-				monitor.worked(1);
+	private void createNewTargetState(boolean resolve, URL[] urls, boolean pruneCache, IProgressMonitor monitor) {
+		long start = System.currentTimeMillis();
+		fCache = PDEStateCache.load(new File(DIR, PDEStateCache.CACHE_FILE_NAME));
+		if (PDECore.DEBUG_MODEL)
+			System.out.println("Time to load target manifest cache: " + (System.currentTimeMillis() - start) + " ms"); //$NON-NLS-1$ //$NON-NLS-2$
+		try {
+			start = System.currentTimeMillis();
+			fState = stateObjectFactory.createState(resolve);
+			monitor.beginTask(PDECoreMessages.PDEState_CreatingTargetModelState, urls.length);
+			if (!addTargetBundles(urls, monitor))
+				// if canceled, stop loading bundles
+				return;
+			if (PDECore.DEBUG_MODEL)
+				System.out.println("Time to add " + urls.length + " target bundles: " + (System.currentTimeMillis() - start) + " ms (" + fCache.getHits() + " cached manifests, " + fCache.getMisses() + " read)"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+			start = System.currentTimeMillis();
+			fCache.save(pruneCache);
+			if (PDECore.DEBUG_MODEL)
+				System.out.println("Time to save target manifest cache: " + (System.currentTimeMillis() - start) + " ms"); //$NON-NLS-1$ //$NON-NLS-2$
+		} finally {
+			fCache = null;
+		}
+	}
+
+	/**
+	 * Adds the bundles at the given URLs to the state, in order. The manifests
+	 * are loaded concurrently on a bounded pool, a window ahead of the bundle
+	 * being added, while the bundles are added to the state on the calling
+	 * thread so that their ids and order do not depend on the loading.
+	 *
+	 * @param urls urls of target bundles
+	 * @param monitor progress monitor
+	 * @return <code>false</code> if canceled, <code>true</code> otherwise
+	 */
+	private boolean addTargetBundles(URL[] urls, IProgressMonitor monitor) {
+		int threads = Math.min(LOADER_THREADS, urls.length);
+		if (threads <= 1) {
+			for (int i = 0; i < urls.length; i++) {
+				File file = new File(urls[i].getFile());
+				try {
+					if (monitor.isCanceled())
+						return false;
+					monitor.subTask(file.getName());
+					addBundle(file, -1);
+				} catch (CoreException e) {
+					PDECore.log(e);
+				} finally {
+					monitor.worked(1);
+				}
 			}
+			return true;
 		}
+		ExecutorService pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "PDE Target Manifest Loader"); //$NON-NLS-1$
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		ArrayDeque<Future<Map<String, String>>> pending = new ArrayDeque<>();
+		int window = threads * 2;
+		int next = 0;
+		try {
+			for (int i = 0; i < urls.length; i++) {
+				while (next < urls.length && next < i + window) {
+					final File file = new File(urls[next++].getFile());
+					pending.add(pool.submit(new Callable<Map<String, String>>() {
+						@Override
+						public Map<String, String> call() throws CoreException {
+							return loadManifest(file);
+						}
+					}));
+				}
+				File file = new File(urls[i].getFile());
+				try {
+					if (monitor.isCanceled())
+						return false;
+					monitor.subTask(file.getName());
+					addLoadedBundle(file, getManifest(pending.removeFirst()), -1);
+				} catch (CoreException e) {
+					PDECore.log(e);
+				} finally {
+					monitor.worked(1);
+				}
+			}
+			return true;
+		} finally {
+			for (Future<Map<String, String>> future : pending) {
+				future.cancel(true);
+			}
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Waits for a manifest loaded by {@link #addTargetBundles(URL[], IProgressMonitor)}
+	 *
+	 * @param future the loading manifest
+	 * @return the headers of the manifest
+	 * @throws CoreException if the manifest could not be loaded
+	 */
+	private static Map<String, String> getManifest(Future<Map<String, String>> future) throws CoreException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof CoreException)
+				throw (CoreException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new IllegalStateException(cause);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OperationCanceledException();
+		}
+	}
+
+	@Override
+	protected Map<String, String> loadManifest(File bundleLocation) throws CoreException {
+		PDEStateCache cache = fCache;
+		if (cache != null)
+			return cache.getManifest(bundleLocation);
+		return super.loadManifest(bundleLocation);
 	}
 
 	@Override
@@ -0,0 +1,277 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.internal.core;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.Map.Entry;
+import java.util.jar.JarFile;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.pde.internal.core.util.ManifestUtils;
+
+/**
+ * Persistent cache of the manifests of the target bundles, so that creating
+ * the target state only reads the manifests of the bundles that are new or
+ * changed since the last time.
+ * <p>
+ * Manifests are cached as loaded, before the target weaver updates them, and
+ * are keyed by bundle location and the size and modification time of the
+ * bundle archive, or of each of the manifest files of a bundle directory.
+ * The auxiliary data of the {@link PDEAuxiliaryState} is computed from the
+ * manifest headers, so it is restored with them.
+ * </p>
+ * <p>
+ * The load of the target platform prunes the cache when saving it: only the
+ * bundles it looked up are saved, so that bundles no longer in the target are
+ * dropped. Other states, such as the ones created for a target being edited,
+ * merge the bundles they looked up into the saved cache. The cache is thread
+ * safe, and saves are serialized.
+ * </p>
+ */
+public class PDEStateCache {
+
+	/**
+	 * Name of the cache file in the state location
+	 */
+	public static final String CACHE_FILE_NAME = "targetManifests.cache"; //$NON-NLS-1$
+
+	private static final String FILE_KIND = "TARGET_MANIFESTS"; //$NON-NLS-1$
+	private static final int VERSION = 2;
+
+	/**
+	 * Serializes the saves of all the caches
+	 */
+	private static final Object SAVE_LOCK = new Object();
+
+	/**
+	 * Files whose stamps make up the stamps of a bundle directory
+	 */
+	private static final String[] DIRECTORY_MANIFESTS = new String[] {JarFile.MANIFEST_NAME, ICoreConstants.PLUGIN_FILENAME_DESCRIPTOR, ICoreConstants.FRAGMENT_FILENAME_DESCRIPTOR};
+
+	/**
+	 * A cached manifest
+	 */
+	static class CachedManifest {
+		final long[] stamps;
+		final Map<String, String> headers;
+
+		CachedManifest(long[] stamps, Map<String, String> headers) {
+			this.stamps = stamps;
+			this.headers = headers;
+		}
+	}
+
+	private final File fFile;
+	private final Map<String, CachedManifest> fSaved = new HashMap<>();
+	private final Map<String, CachedManifest> fUsed = new HashMap<>();
+	private boolean fChanged = false;
+	private int fHits = 0;
+	private int fMisses = 0;
+
+	private PDEStateCache(File file) {
+		fFile = file;
+	}
+
+	/**
+	 * Loads the cache saved in the given file. The cache is empty if the file
+	 * does not exist or cannot be read.
+	 *
+	 * @param file the cache file
+	 * @return the cache
+	 */
+	public static PDEStateCache load(File file) {
+		PDEStateCache cache = new PDEStateCache(file);
+		if (!file.isFile())
+			return cache;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (!PDECore.PLUGIN_ID.equals(readString(in)) || !FILE_KIND.equals(readString(in)) || in.readInt() != VERSION)
+				return cache;
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				String location = readString(in);
+				long[] stamps = new long[in.readInt()];
+				for (int j = 0; j < stamps.length; j++) {
+					stamps[j] = in.readLong();
+				}
+				int size = in.readInt();
+				Map<String, String> headers = new HashMap<>(size * 4 / 3 + 1);
+				for (int j = 0; j < size; j++) {
+					headers.put(readString(in), readString(in));
+				}
+				cache.fSaved.put(location, new CachedManifest(stamps, headers));
+			}
+		} catch (IOException e) {
+			// start over from an empty cache
+			cache.fSaved.clear();
+			PDECore.log(e);
+		}
+		return cache;
+	}
+
+	/**
+	 * Returns the manifest of the given bundle, read from the cache if the
+	 * bundle is unchanged or loaded from the bundle otherwise. The returned
+	 * map is a copy the caller may modify.
+	 *
+	 * @param bundleLocation the bundle archive or directory
+	 * @return the headers of the manifest
+	 * @throws CoreException if the manifest cannot be loaded
+	 * @see ManifestUtils#loadManifest(File)
+	 */
+	public Map<String, String> getManifest(File bundleLocation) throws CoreException {
+		String location = bundleLocation.getAbsolutePath();
+		long[] stamps = getStamps(bundleLocation);
+		synchronized (this) {
+			CachedManifest cached = fSaved.get(location);
+			if (cached != null && Arrays.equals(cached.stamps, stamps)) {
+				fUsed.put(location, cached);
+				fHits++;
+				return new HashMap<>(cached.headers);
+			}
+		}
+		Map<String, String> manifest = ManifestUtils.loadManifest(bundleLocation);
+		synchronized (this) {
+			fUsed.put(location, new CachedManifest(stamps, new HashMap<>(manifest)));
+			fChanged = true;
+			fMisses++;
+		}
+		return manifest;
+	}
+
+	/**
+	 * @return the number of manifests read from the cache
+	 */
+	public synchronized int getHits() {
+		return fHits;
+	}
+
+	/**
+	 * @return the number of manifests loaded from their bundles
+	 */
+	public synchronized int getMisses() {
+		return fMisses;
+	}
+
+	/**
+	 * Saves the manifests of the bundles looked up since the cache was loaded.
+	 * When pruning, only these bundles are saved, if any of them was not
+	 * cached or a cached bundle was not looked up. Otherwise they are merged
+	 * into the cache as currently saved, if any of them was not cached.
+	 *
+	 * @param prune whether to drop the bundles that were not looked up
+	 */
+	public void save(boolean prune) {
+		synchronized (SAVE_LOCK) {
+			synchronized (this) {
+				Map<String, CachedManifest> manifests;
+				if (prune) {
+					if (!fChanged && fUsed.size() == fSaved.size())
+						return;
+					manifests = fUsed;
+				} else {
+					if (!fChanged)
+						return;
+					// other states may have saved the cache since it was loaded
+					manifests = load(fFile).fSaved;
+					manifests.putAll(fUsed);
+				}
+				if (write(manifests)) {
+					fSaved.clear();
+					fSaved.putAll(manifests);
+					fChanged = false;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the given manifests to a temporary file of its own, which then
+	 * replaces the cache file
+	 *
+	 * @param manifests the manifests to write
+	 * @return whether the cache file was replaced
+	 */
+	private boolean write(Map<String, CachedManifest> manifests) {
+		File temp;
+		try {
+			temp = File.createTempFile(CACHE_FILE_NAME, ".tmp", fFile.getParentFile()); //$NON-NLS-1$
+		} catch (IOException e) {
+			PDECore.log(e);
+			return false;
+		}
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+			writeString(out, PDECore.PLUGIN_ID);
+			writeString(out, FILE_KIND);
+			out.writeInt(VERSION);
+			out.writeInt(manifests.size());
+			for (Entry<String, CachedManifest> entry : manifests.entrySet()) {
+				CachedManifest cached = entry.getValue();
+				writeString(out, entry.getKey());
+				out.writeInt(cached.stamps.length);
+				for (int i = 0; i < cached.stamps.length; i++) {
+					out.writeLong(cached.stamps[i]);
+				}
+				out.writeInt(cached.headers.size());
+				for (Entry<String, String> header : cached.headers.entrySet()) {
+					writeString(out, header.getKey());
+					writeString(out, header.getValue());
+				}
+			}
+		} catch (IOException e) {
+			temp.delete();
+			PDECore.log(e);
+			return false;
+		}
+		fFile.delete();
+		if (!temp.renameTo(fFile)) {
+			temp.delete();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the size and modification time of the given bundle archive, or
+	 * of each of the manifest files of the given bundle directory. Bundles are
+	 * unchanged only if all their stamps are equal.
+	 *
+	 * @param bundleLocation the bundle archive or directory
+	 * @return the stamps, two per file
+	 */
+	public static long[] getStamps(File bundleLocation) {
+		if (!bundleLocation.isDirectory())
+			return new long[] {bundleLocation.length(), bundleLocation.lastModified()};
+		long[] stamps = new long[DIRECTORY_MANIFESTS.length * 2];
+		for (int i = 0; i < DIRECTORY_MANIFESTS.length; i++) {
+			File file = new File(bundleLocation, DIRECTORY_MANIFESTS[i]);
+			stamps[i * 2] = file.length();
+			stamps[i * 2 + 1] = file.lastModified();
+		}
+		return stamps;
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0)
+			throw new IOException("Invalid string length: " + length); //$NON-NLS-1$
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -109,6 +109,12 @@ public class PluginModelManager implements IModelProviderListener {
 	 */
 	private class LocalModelEntry extends ModelEntry {
 
+		/**
+		 * Whether the entry is part of a published {@link ModelTable} and must be
+		 * copied before it is modified
+		 */
+		private boolean fPublished = false;
+
 		/**
 		 * Constructs a model entry that will keep track
 		 * of all bundles in the workspace and target that share the same ID.
@@ -119,6 +125,17 @@ public class PluginModelManager implements IModelProviderListener {
 			super(id);
 		}
 
+		/**
+		 * Constructs a copy of the given entry
+		 *
+		 * @param entry  the entry to copy
+		 */
+		public LocalModelEntry(LocalModelEntry entry) {
+			super(entry.getId());
+			fWorkspaceEntries.addAll(entry.fWorkspaceEntries);
+			fExternalEntries.addAll(entry.fExternalEntries);
+		}
+
 		/**
 		 * Adds a model to the entry.
 		 * An entry keeps two lists: one for workspace models
@@ -149,11 +166,57 @@ public class PluginModelManager implements IModelProviderListener {
 		}
 	}
 
+	/**
+	 * An immutable snapshot of the master table, indexed by plug-in ID, project and
+	 * bundle ID.  A new snapshot is published every time the master table changes,
+	 * so lookups never have to wait for the table to be updated.
+	 */
+	private static class ModelTable {
+
+		private final Map<String, LocalModelEntry> fEntries; // the entries keyed by plug-in ID
+		private final LocalModelEntry[] fSortedEntries; // the entries sorted by plug-in ID
+		private final Map<IProject, IPluginModelBase> fProjectModels; // the workspace models keyed by project
+		private final Map<Long, IPluginModelBase> fBundleModels; // the models keyed by the ID of their bundle description
+
+		/**
+		 * Creates a snapshot of the given master table. The entries must not be modified
+		 * afterwards.
+		 *
+		 * @param entries  the master table sorted by plug-in ID
+		 * @param workspaceModels all workspace models, including those without an ID
+		 */
+		public ModelTable(SortedMap<String, LocalModelEntry> entries, IPluginModelBase[] workspaceModels) {
+			fEntries = new HashMap<>(entries);
+			fSortedEntries = entries.values().toArray(new LocalModelEntry[entries.size()]);
+			fProjectModels = new HashMap<>();
+			for (int i = 0; i < workspaceModels.length; i++) {
+				IResource resource = workspaceModels[i].getUnderlyingResource();
+				if (resource != null)
+					fProjectModels.put(resource.getProject(), workspaceModels[i]);
+			}
+			fBundleModels = new HashMap<>();
+			for (int i = 0; i < fSortedEntries.length; i++) {
+				fSortedEntries[i].fPublished = true;
+				addBundleModels(fSortedEntries[i].getWorkspaceModels());
+				addBundleModels(fSortedEntries[i].getExternalModels());
+			}
+		}
+
+		private void addBundleModels(IPluginModelBase[] models) {
+			for (int i = 0; i < models.length; i++) {
+				BundleDescription desc = models[i].getBundleDescription();
+				if (desc != null && !fBundleModels.containsKey(desc.getBundleId()))
+					fBundleModels.put(desc.getBundleId(), models[i]);
+			}
+		}
+	}
+
 	private ExternalModelManager fExternalManager; // keeps track of changes in target models
 	private WorkspacePluginModelManager fWorkspaceManager; // keeps track of changes in the workspace
 	private PDEState fState; // keeps the combined view of the target and workspace
 
-	private Map<String, LocalModelEntry> fEntries; // a master table keyed by plugin ID and the value is a ModelEntry
+	private SortedMap<String, LocalModelEntry> fEntries; // a master table keyed by plugin ID and the value is a ModelEntry, only accessed while holding the lock on the manager
+	private volatile ModelTable fTable; // the latest published snapshot of the master table
 	private ArrayList<IPluginModelListener> fListeners; // a list of listeners interested in changes to the plug-in models
 	private ArrayList<IStateDeltaListener> fStateListeners; // a list of listeners interested in changes to the PDE/resolver State
 	private boolean fCancelled = false;
@@ -195,7 +258,46 @@ public class PluginModelManager implements IModelProviderListener {
 	@Override
 	public void modelsChanged(IModelProviderEvent e) {
 		PluginModelDelta delta = new PluginModelDelta();
+		Set<String> addedBSNs = new HashSet<>();
+		// Update the master table while holding the lock so that changes are applied one batch
+		// at a time, then publish the new snapshot before any listener is notified
+		synchronized (this) {
+			updateTable(e, delta, addedBSNs);
+			if (fEntries != null)
+				publishTable();
+		}
+
+		if (fState != null) {
+			// if the target location has not changed, incrementally re-resolve the state after processing all the add/remove/modify changes
+			// Otherwise, the state is in a good resolved state
+			StateDelta stateDelta = null;
+			if (addedBSNs.isEmpty()) {
+				// resolve incrementally
+				stateDelta = fState.resolveState(true);
+			} else {
+				// resolve based on added bundles, in case there are multiple versions of the added bundles
+				stateDelta = fState.resolveState(addedBSNs.toArray(new String[addedBSNs.size()]));
+			}
+			// trigger a classpath update for all workspace plug-ins affected by the
+			// processed batch of changes, run asynch for manifest changes
+			updateAffectedEntries(stateDelta, (e.getEventTypes() & IModelProviderEvent.MODELS_CHANGED) != 0);
+			fireStateDelta(stateDelta);
+
+		}
+
+		// notify all interested listeners in the changes made to the master table of entries
+		fireDelta(delta);
+	}
 
+	/**
+	 * Applies the given changes to the master table and the state.
+	 * Must be called while holding the lock on the manager.
+	 *
+	 * @param e the model provider event
+	 * @param delta the delta collecting the changed entries
+	 * @param addedBSNs the set collecting the IDs of added plug-ins
+	 */
+	private void updateTable(IModelProviderEvent e, PluginModelDelta delta, Set<String> addedBSNs) {
 		// Removes from the master table and the state all workspace plug-ins that have been
 		// removed (project closed/deleted) from the workspace.
 		// Also if the target location changes, all models from the old target are removed
@@ -209,7 +311,6 @@ public class PluginModelManager implements IModelProviderListener {
 			}
 		}
 
-		Set<String> addedBSNs = new HashSet<>();
 		// Adds to the master table and the state newly created plug-ins in the workspace
 		// (ie. new plug-in project or a closed project that has just been re-opened).
 		// Also, if the target location changes, we add all plug-ins from the new target
@@ -234,27 +335,6 @@ public class PluginModelManager implements IModelProviderListener {
 			for (int i = 0; i < changed.length; i++)
 				handleChange((IPluginModelBase) changed[i], delta);
 		}
-
-		if (fState != null) {
-			// if the target location has not changed, incrementally re-resolve the state after processing all the add/remove/modify changes
-			// Otherwise, the state is in a good resolved state
-			StateDelta stateDelta = null;
-			if (addedBSNs.isEmpty()) {
-				// resolve incrementally
-				stateDelta = fState.resolveState(true);
-			} else {
-				// resolve based on added bundles, in case there are multiple versions of the added bundles
-				stateDelta = fState.resolveState(addedBSNs.toArray(new String[addedBSNs.size()]));
-			}
-			// trigger a classpath update for all workspace plug-ins affected by the
-			// processed batch of changes, run asynch for manifest changes
-			updateAffectedEntries(stateDelta, (e.getEventTypes() & IModelProviderEvent.MODELS_CHANGED) != 0);
-			fireStateDelta(stateDelta);
-
-		}
-
-		// notify all interested listeners in the changes made to the master table of entries
-		fireDelta(delta);
 	}
 
 	/**
@@ -437,7 +517,7 @@ public class PluginModelManager implements IModelProviderListener {
 	 * 		<code>false</code> otherwise.
 	 */
 	public boolean isEmpty() {
-		return getEntryTable().size() == 0;
+		return getTable().fEntries.isEmpty();
 	}
 
 	/**
@@ -448,7 +528,7 @@ public class PluginModelManager implements IModelProviderListener {
 	 * 		<code>false</code> otherwise.
 	 */
 	public boolean isInitialized() {
-		return fEntries != null;
+		return fTable != null;
 	}
 
 	/**
@@ -467,23 +547,65 @@ public class PluginModelManager implements IModelProviderListener {
 	/**
 	 * Clears all existing models and recreates them
 	 */
-	public void targetReloaded(IProgressMonitor monitor) {
+	public synchronized void targetReloaded(IProgressMonitor monitor) {
 		fEntries = null;
+		fTable = null;
 		initializeTable(monitor);
 	}
 
 	/**
-	 * Allow access to the table only through this getter.
-	 * It always calls initialize to make sure the table is initialized.
-	 * If more than one thread tries to read the table at the same time,
-	 * and the table is not initialized yet, thread2 would wait.
+	 * Allow read access to the table only through this getter.
+	 * It returns the latest published snapshot without locking, or initializes
+	 * the table first if it is not initialized yet, in which case other threads
+	 * reading the table would wait.
 	 * This way there are no partial reads.
 	 */
+	private ModelTable getTable() {
+		ModelTable table = fTable;
+		if (table == null) {
+			initializeTable(null);
+			table = fTable;
+		}
+		return table;
+	}
+
+	/**
+	 * Returns the master table to be modified, initializing it if necessary.
+	 * Must be called while holding the lock on the manager.
+	 */
 	private Map<String, LocalModelEntry> getEntryTable() {
 		initializeTable(null);
 		return fEntries;
 	}
 
+	/**
+	 * Returns the entry with the given ID from the master table to be modified.
+	 * An entry that is part of a published snapshot is replaced by a copy first,
+	 * so that the snapshot is never modified.
+	 * Must be called while holding the lock on the manager.
+	 *
+	 * @param id the plug-in ID
+	 * @return the entry that can be modified or <code>null</code> if there is no entry
+	 * 			with the given ID
+	 */
+	private LocalModelEntry getWritableEntry(String id) {
+		Map<String, LocalModelEntry> entries = getEntryTable();
+		LocalModelEntry entry = entries.get(id);
+		if (entry != null && entry.fPublished) {
+			entry = new LocalModelEntry(entry);
+			entries.put(id, entry);
+		}
+		return entry;
+	}
+
+	/**
+	 * Publishes a snapshot of the master table to lookups.
+	 * Must be called while holding the lock on the manager.
+	 */
+	private void publishTable() {
+		fTable = new ModelTable(fEntries, fWorkspaceManager.getPluginModels());
+	}
+
 	/**
 	 *
 	 * This method must be synchronized so that only one thread
@@ -492,14 +614,15 @@ public class PluginModelManager implements IModelProviderListener {
 	 *
 	 */
 	private synchronized void initializeTable(IProgressMonitor monitor) {
-		if (fEntries != null)
+		if (fTable != null)
 			return;
 
 		// Check if PlatformAdmin service is available (Bug 413450)
 		PlatformAdmin pAdmin = Platform.getPlatformAdmin();
 		if (pAdmin == null) {
 			PDECore.logErrorMessage(PDECoreMessages.PluginModelManager_PlatformAdminMissingErrorMessage);
-			fEntries = Collections.emptyMap();
+			fEntries = new TreeMap<>();
+			publishTable();
 			return;
 		}
 
@@ -516,7 +639,7 @@ public class PluginModelManager implements IModelProviderListener {
 		long startTime = System.currentTimeMillis();
 
 		// Cannot assign to fEntries here - will create a race condition with isInitialized()
-		Map<String, LocalModelEntry> entries = Collections.synchronizedMap(new TreeMap<String, LocalModelEntry>());
+		SortedMap<String, LocalModelEntry> entries = new TreeMap<>();
 		fCancelled = false;
 
 		ITargetDefinition unresolvedRepoBasedtarget = null;
@@ -531,6 +654,7 @@ public class PluginModelManager implements IModelProviderListener {
 			fState = new PDEState(new URL[0], true, true, subMon);
 			fExternalManager.setModels(new IPluginModelBase[0]);
 			fEntries = entries;
+			publishTable();
 			LoadTargetDefinitionJob.load(unresolvedRepoBasedtarget);
 			subMon.done();
 			if (monitor != null) {
@@ -552,7 +676,8 @@ public class PluginModelManager implements IModelProviderListener {
 			fCancelled = true;
 		}
 
-		fState = new PDEState(externalUrls, true, true, subMon.split(15));
+		// only a complete load of the target prunes the cache of target manifests
+		fState = new PDEState(externalUrls, true, true, !fCancelled, subMon.split(15));
 		fExternalManager.setModels(fState.getTargetModels());
 		addToTable(entries, fExternalManager.getAllModels());
 
@@ -584,6 +709,7 @@ public class PluginModelManager implements IModelProviderListener {
 		subMon.worked(5);
 
 		fEntries = entries;
+		publishTable();
 		// flush the extension registry cache since workspace data (BundleDescription id's) have changed.
 		PDECore.getDefault().getExtensionsRegistry().targetReloaded();
 		if (oldState != null) {
@@ -840,7 +966,7 @@ public class PluginModelManager implements IModelProviderListener {
 	 * @param model  the model being added
 	 */
 	private void handleAdd(String id, IPluginModelBase model, PluginModelDelta delta) {
-		LocalModelEntry entry = getEntryTable().get(id);
+		LocalModelEntry entry = getWritableEntry(id);
 
 		// add model to the corresponding ModelEntry.  Create a new entry if necessary
 		if (entry == null) {
@@ -874,7 +1000,7 @@ public class PluginModelManager implements IModelProviderListener {
 	 * @param model  the model to be removed
 	 */
 	private void handleRemove(String id, IPluginModelBase model, PluginModelDelta delta) {
-		LocalModelEntry entry = getEntryTable().get(id);
+		LocalModelEntry entry = getWritableEntry(id);
 		if (entry != null) {
 			// remove model from the entry
 			entry.removeModel(model);
@@ -945,7 +1071,7 @@ public class PluginModelManager implements IModelProviderListener {
 				// if the target plug-in has become disabled/unchecked, remove its bundle
 				// description from the state
 				fState.removeBundleDescription(model.getBundleDescription());
-			delta.addEntry(findEntry(oldID), PluginModelDelta.CHANGED);
+			delta.addEntry(getEntryTable().get(oldID), PluginModelDelta.CHANGED);
 		} else {
 			// if the symbolic name of the bundle has completely changed,
 			// remove the model from the old entry, and add the model to the new entry
@@ -964,7 +1090,7 @@ public class PluginModelManager implements IModelProviderListener {
 	public ModelEntry findEntry(String id) {
 		if ("system.bundle".equals(id)) //$NON-NLS-1$
 			id = getSystemBundleId();
-		return id == null ? null : (ModelEntry) getEntryTable().get(id);
+		return id == null ? null : (ModelEntry) getTable().fEntries.get(id);
 	}
 
 	/**
@@ -996,14 +1122,21 @@ public class PluginModelManager implements IModelProviderListener {
 	 * Returns the plug-in model corresponding to the given project, or <code>null</code>
 	 * if the project does not represent a plug-in project or if it contains a manifest file
 	 * that is malformed or missing vital information.
+	 * <p>
+	 * The model is looked up in the latest published snapshot first.  A project created
+	 * or opened since then is looked up in the workspace manager, so its model is found
+	 * as soon as the workspace manager has it, before the change reaches this manager.
+	 * </p>
 	 *
 	 * @param project the project
 	 * @return a plug-in model corresponding to the project or <code>null</code> if the project
 	 * 			is not a plug-in project
 	 */
 	public IPluginModelBase findModel(IProject project) {
-		initializeTable(null);
-		return fWorkspaceManager.getPluginModel(project);
+		IPluginModelBase model = getTable().fProjectModels.get(project);
+		if (model == null)
+			model = fWorkspaceManager.getPluginModel(project);
+		return model;
 	}
 
 	/**
@@ -1015,7 +1148,14 @@ public class PluginModelManager implements IModelProviderListener {
 	 * 			if none exists
 	 */
 	public IPluginModelBase findModel(BundleDescription desc) {
-		ModelEntry entry = (desc != null) ? findEntry(desc.getSymbolicName()) : null;
+		if (desc == null)
+			return null;
+		// the description of a model may have been replaced since the snapshot was published,
+		// fall back to the entry if the indexed model does not match
+		IPluginModelBase model = getTable().fBundleModels.get(desc.getBundleId());
+		if (model != null && desc.equals(model.getBundleDescription()))
+			return model;
+		ModelEntry entry = findEntry(desc.getSymbolicName());
 		return entry == null ? null : entry.getModel(desc);
 	}
 
@@ -1054,11 +1194,10 @@ public class PluginModelManager implements IModelProviderListener {
 	 * (possibly) fragments that are checked on the Target Platform preference page.
 	 */
 	public IPluginModelBase[] getActiveModels(boolean includeFragments) {
-		int size = getEntryTable().size();
-		ArrayList<IPluginModelBase> result = new ArrayList<>(size);
-		Iterator<LocalModelEntry> iter = getEntryTable().values().iterator();
-		while (iter.hasNext()) {
-			ModelEntry entry = iter.next();
+		LocalModelEntry[] entries = getTable().fSortedEntries;
+		ArrayList<IPluginModelBase> result = new ArrayList<>(entries.length);
+		for (int j = 0; j < entries.length; j++) {
+			ModelEntry entry = entries[j];
 			IPluginModelBase[] models = entry.getActiveModels();
 			for (int i = 0; i < models.length; i++) {
 				if (models[i] instanceof IPluginModel || includeFragments)
@@ -1105,11 +1244,10 @@ public class PluginModelManager implements IModelProviderListener {
 	 * checked on the Target Platform preference page.
 	 */
 	public IPluginModelBase[] getAllModels(boolean includeFragments) {
-		int size = getEntryTable().size();
-		ArrayList<IPluginModelBase> result = new ArrayList<>(size);
-		Iterator<LocalModelEntry> iter = getEntryTable().values().iterator();
-		while (iter.hasNext()) {
-			ModelEntry entry = iter.next();
+		LocalModelEntry[] entries = getTable().fSortedEntries;
+		ArrayList<IPluginModelBase> result = new ArrayList<>(entries.length);
+		for (int j = 0; j < entries.length; j++) {
+			ModelEntry entry = entries[j];
 			IPluginModelBase[] models = entry.hasWorkspaceModels() ? entry.getWorkspaceModels() : entry.getExternalModels();
 			for (int i = 0; i < models.length; i++) {
 				if (models[i] instanceof IPluginModel || includeFragments)
@@ -1125,7 +1263,7 @@ public class PluginModelManager implements IModelProviderListener {
 	 * @return  all plug-ins in the target platform
 	 */
 	public IPluginModelBase[] getExternalModels() {
-		initializeTable(null);
+		getTable();
 		return fExternalManager.getAllModels();
 	}
 
@@ -1135,7 +1273,7 @@ public class PluginModelManager implements IModelProviderListener {
 	 * @return all plug-in models in the workspace
 	 */
 	public IPluginModelBase[] getWorkspaceModels() {
-		initializeTable(null);
+		getTable();
 		return fWorkspaceManager.getPluginModels();
 	}
 
@@ -1145,7 +1283,7 @@ public class PluginModelManager implements IModelProviderListener {
 	 * @return  the model manager that keeps track of plug-ins in the target platform
 	 */
 	public ExternalModelManager getExternalModelManager() {
-		initializeTable(null);
+		getTable();
 		return fExternalManager;
 	}
 
@@ -1154,7 +1292,7 @@ public class PluginModelManager implements IModelProviderListener {
 	 * that form the current PDE state
 	 */
 	public PDEState getState() {
-		initializeTable(null);
+		getTable();
 		return fState;
 	}
 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2013 IBM Corporation and others.
+ * Copyright (c) 2008, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,14 +11,11 @@
 package org.eclipse.pde.internal.core.target;
 
 import java.io.File;
-import java.util.ArrayList;
-import java.util.List;
 import org.eclipse.core.runtime.*;
 import org.eclipse.osgi.util.NLS;
 import org.eclipse.pde.core.target.*;
 import org.eclipse.pde.internal.build.IPDEBuildConstants;
 import org.eclipse.pde.internal.core.PDECore;
-import org.eclipse.pde.internal.core.util.ManifestUtils;
 
 /**
  * A directory of bundles.
@@ -64,28 +61,12 @@ public class DirectoryBundleContainer extends AbstractBundleContainer {
 	protected TargetBundle[] resolveBundles(ITargetDefinition definition, IProgressMonitor monitor) throws CoreException {
 		File dir = getDirectory();
 		if (dir.isDirectory()) {
-			File site = getSite(dir);
-			File[] files = site.listFiles();
-			SubMonitor localMonitor = SubMonitor.convert(monitor, Messages.DirectoryBundleContainer_0, files.length);
-			List<TargetBundle> bundles = new ArrayList<>(files.length);
-			for (int i = 0; i < files.length; i++) {
-				if (localMonitor.isCanceled()) {
-					return new TargetBundle[0];
-				}
-				try {
-					TargetBundle rb = new TargetBundle(files[i]);
-					bundles.add(rb);
-				} catch (CoreException e) {
-					// If an old style conversion fails because the service is not available, log the error.
-					// Otherwise, ignore non-bundle files
-					if (e.getStatus().getCode() == ManifestUtils.STATUS_CODE_PLUGIN_CONVERTER_UNAVAILABLE) {
-						PDECore.log(e);
-					}
-				}
-				localMonitor.worked(1);
+			// only the files added or changed since the last resolution are read
+			TargetBundle[] bundles = DirectoryBundleIndex.getIndex(getSite(dir)).getBundles(monitor);
+			if (bundles == null) {
+				return new TargetBundle[0];
 			}
-			localMonitor.done();
-			return bundles.toArray(new TargetBundle[bundles.size()]);
+			return bundles;
 		}
 		throw new CoreException(new Status(IStatus.ERROR, PDECore.PLUGIN_ID, NLS.bind(Messages.DirectoryBundleContainer_1, dir.toString())));
 	}
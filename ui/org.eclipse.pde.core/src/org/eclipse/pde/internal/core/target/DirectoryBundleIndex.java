@@ -0,0 +1,557 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.internal.core.target;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.equinox.frameworkadmin.BundleInfo;
+import org.eclipse.pde.core.target.TargetBundle;
+import org.eclipse.pde.internal.core.PDECore;
+import org.eclipse.pde.internal.core.PDEStateCache;
+import org.eclipse.pde.internal.core.util.ManifestUtils;
+
+/**
+ * Persistent index of the bundles of a directory, so that resolving a
+ * {@link DirectoryBundleContainer} again only reads the manifests of the
+ * files that were added or changed.
+ * <p>
+ * Entries are keyed by file name and the size and modification time of the
+ * file, or of each of the manifest files of a bundle directory. Files that
+ * are not bundles are indexed too, so that they are not read again either.
+ * The index of each directory is saved in the PDE state location. Saved
+ * indexes that have not been used for {@link #MAX_UNUSED_AGE} are deleted by
+ * {@link #prune()}.
+ * </p>
+ * <p>
+ * The directory is listed and the stamps of every file are checked each time
+ * the bundles are resolved. Unless disabled with the {@link #WATCH_PROPERTY}
+ * system property, the directory is also registered with a
+ * {@link WatchService}, whose events are only used as a hint: the files it
+ * reports as changed are read again even if their stamps are unchanged, as
+ * when they were rewritten within the resolution of the modification time.
+ * Some watch services poll the file system, so files not reported are never
+ * assumed to be unchanged.
+ * </p>
+ * <p>
+ * The index is thread safe.
+ * </p>
+ */
+public class DirectoryBundleIndex {
+
+	/**
+	 * System property disabling the watch service when set to <code>false</code>
+	 */
+	public static final String WATCH_PROPERTY = "org.eclipse.pde.core.watchTargetDirectories"; //$NON-NLS-1$
+
+	/**
+	 * Name of the directory of the saved indexes in the PDE state location
+	 */
+	static final String INDEX_DIRECTORY = "directoryIndexes"; //$NON-NLS-1$
+
+	/**
+	 * Age in milliseconds after which a saved index that has not been loaded
+	 * is considered orphaned: its directory is no longer used by any target
+	 */
+	public static final long MAX_UNUSED_AGE = 30L * 24 * 60 * 60 * 1000;
+
+	private static final String INDEX_EXTENSION = ".index"; //$NON-NLS-1$
+	private static final String TEMP_EXTENSION = ".tmp"; //$NON-NLS-1$
+
+	private static final String FILE_KIND = "DIRECTORY_BUNDLES"; //$NON-NLS-1$
+	private static final int VERSION = 2;
+
+	/**
+	 * An indexed file, holding the data of its target bundle if it is one
+	 */
+	static class Entry {
+		final long[] stamps;
+		final boolean isDirectory;
+		final boolean isBundle;
+		String symbolicName;
+		String version;
+		boolean isFragment;
+		boolean isSource;
+		String sourceName;
+		String sourceVersion;
+		boolean sourceIsLocal;
+		String sourcePath;
+
+		Entry(long[] stamps, boolean isDirectory, boolean isBundle) {
+			this.stamps = stamps;
+			this.isDirectory = isDirectory;
+			this.isBundle = isBundle;
+		}
+
+		Entry(long[] stamps, boolean isDirectory, TargetBundle bundle) {
+			this(stamps, isDirectory, true);
+			BundleInfo info = bundle.getBundleInfo();
+			symbolicName = info.getSymbolicName();
+			version = info.getVersion();
+			isFragment = bundle.isFragment();
+			BundleInfo source = bundle.getSourceTarget();
+			if (source != null) {
+				isSource = true;
+				sourceName = source.getSymbolicName();
+				sourceVersion = source.getVersion();
+				sourceIsLocal = source.getLocation() != null;
+			}
+			sourcePath = bundle.getSourcePath();
+		}
+	}
+
+	/**
+	 * A target bundle restored from the index
+	 */
+	static class IndexedTargetBundle extends TargetBundle {
+
+		IndexedTargetBundle(File file, Entry entry) {
+			fInfo = new BundleInfo(file.toURI());
+			if (entry.symbolicName != null) {
+				fInfo.setSymbolicName(entry.symbolicName);
+				if (entry.version != null) {
+					fInfo.setVersion(entry.version);
+				}
+			}
+			fIsFragment = entry.isFragment;
+			if (entry.isSource) {
+				fSourceTarget = new BundleInfo(entry.sourceName, entry.sourceVersion, entry.sourceIsLocal ? file.toURI() : null, BundleInfo.NO_LEVEL, false);
+			}
+			fSourcePath = entry.sourcePath;
+		}
+	}
+
+	private static final Map<String, DirectoryBundleIndex> fgIndexes = new HashMap<>();
+
+	/**
+	 * Guards the watch service and the watch keys
+	 */
+	private static final Object fgWatchLock = new Object();
+	private static WatchService fgWatchService;
+	private static boolean fgWatchServiceFailed = false;
+	private static final Map<WatchKey, DirectoryBundleIndex> fgWatchedIndexes = new HashMap<>();
+
+	private final File fDirectory;
+	private final File fFile;
+	private boolean fLoaded = false;
+	private boolean fChanged = false;
+	private SortedMap<String, Entry> fEntries = new TreeMap<>();
+
+	/**
+	 * The watch key of the directory, or <code>null</code> if the directory
+	 * is not watched or its key is no longer valid
+	 */
+	private WatchKey fWatchKey;
+
+	/**
+	 * Guards the changes reported by the watch service
+	 */
+	private final Object fChangesLock = new Object();
+	private Set<String> fChangedNames = new HashSet<>();
+	private boolean fOverflow = false;
+
+	private DirectoryBundleIndex(File directory, File file) {
+		fDirectory = directory;
+		fFile = file;
+	}
+
+	/**
+	 * Returns the index of the given directory
+	 *
+	 * @param directory the directory of bundles
+	 * @return the index of the directory
+	 */
+	public static DirectoryBundleIndex getIndex(File directory) {
+		String path = directory.getAbsolutePath();
+		synchronized (fgIndexes) {
+			DirectoryBundleIndex index = fgIndexes.get(path);
+			if (index == null) {
+				CRC32 crc = new CRC32();
+				byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+				crc.update(bytes, 0, bytes.length);
+				File file = new File(getIndexLocation(), Long.toHexString(crc.getValue()) + '_' + Integer.toHexString(path.hashCode()) + INDEX_EXTENSION);
+				index = new DirectoryBundleIndex(new File(path), file);
+				fgIndexes.put(path, index);
+			}
+			return index;
+		}
+	}
+
+	/**
+	 * @return the directory of the saved indexes
+	 */
+	private static File getIndexLocation() {
+		return PDECore.getDefault().getStateLocation().append(INDEX_DIRECTORY).toFile();
+	}
+
+	/**
+	 * Returns the file the index of the directory is saved to
+	 *
+	 * @return the saved index file, which may not exist
+	 */
+	public File getFile() {
+		return fFile;
+	}
+
+	/**
+	 * Returns the bundles of the directory. Only the manifests of the files
+	 * that are not in the index or changed since they were indexed are read.
+	 *
+	 * @param monitor progress monitor
+	 * @return the bundles of the directory or <code>null</code> if canceled
+	 */
+	public synchronized TargetBundle[] getBundles(IProgressMonitor monitor) {
+		if (!fLoaded) {
+			load();
+			fLoaded = true;
+		}
+		Set<String> changedNames = Collections.emptySet();
+		if (watch()) {
+			changedNames = takeChanges();
+			if (changedNames == null) {
+				changedNames = Collections.emptySet();
+			}
+		}
+		String[] names = fDirectory.list();
+		if (names == null) {
+			names = new String[0];
+		}
+		Arrays.sort(names);
+		SubMonitor localMonitor = SubMonitor.convert(monitor, Messages.DirectoryBundleContainer_0, names.length);
+		SortedMap<String, Entry> entries = new TreeMap<>();
+		List<TargetBundle> bundles = new ArrayList<>(names.length);
+		for (int i = 0; i < names.length; i++) {
+			if (localMonitor.isCanceled()) {
+				return null;
+			}
+			File file = new File(fDirectory, names[i]);
+			Entry entry = fEntries.get(names[i]);
+			if (!file.exists()) {
+				// removed since the directory was listed
+				localMonitor.worked(1);
+				continue;
+			}
+			long[] stamps = PDEStateCache.getStamps(file);
+			if (entry == null || !Arrays.equals(entry.stamps, stamps) || changedNames.contains(names[i])) {
+				entry = createEntry(file, stamps);
+				fChanged = true;
+			}
+			if (entry != null) {
+				entries.put(names[i], entry);
+				if (entry.isBundle) {
+					bundles.add(new IndexedTargetBundle(file, entry));
+				}
+			}
+			localMonitor.worked(1);
+		}
+		if (entries.size() != fEntries.size()) {
+			fChanged = true;
+		}
+		fEntries = entries;
+		if (fChanged) {
+			save();
+		}
+		localMonitor.done();
+		return bundles.toArray(new TargetBundle[bundles.size()]);
+	}
+
+	/**
+	 * Reads the manifest of the given file into a new entry
+	 *
+	 * @param file the file
+	 * @param stamps the stamps of the file
+	 * @return the entry or <code>null</code> if the file should be read again
+	 *         next time
+	 */
+	private Entry createEntry(File file, long[] stamps) {
+		boolean isDirectory = file.isDirectory();
+		try {
+			return new Entry(stamps, isDirectory, new TargetBundle(file));
+		} catch (CoreException e) {
+			// If an old style conversion fails because the service is not available, log the error.
+			// Otherwise, ignore non-bundle files
+			if (e.getStatus().getCode() == ManifestUtils.STATUS_CODE_PLUGIN_CONVERTER_UNAVAILABLE) {
+				PDECore.log(e);
+				return null;
+			}
+			return new Entry(stamps, isDirectory, false);
+		}
+	}
+
+	/**
+	 * Makes sure the directory is watched, if watching is enabled. The
+	 * directory is registered before it is listed, so that no change made
+	 * after the listing goes unreported.
+	 *
+	 * @return whether the directory was already watched with a valid key
+	 */
+	private boolean watch() {
+		if ("false".equals(System.getProperty(WATCH_PROPERTY))) { //$NON-NLS-1$
+			return false;
+		}
+		synchronized (fgWatchLock) {
+			pollWatchService();
+			if (fWatchKey != null) {
+				return true;
+			}
+			if (fgWatchService == null && !fgWatchServiceFailed) {
+				try {
+					fgWatchService = FileSystems.getDefault().newWatchService();
+				} catch (IOException e) {
+					fgWatchServiceFailed = true;
+					PDECore.log(e);
+				}
+			}
+			if (fgWatchService != null) {
+				try {
+					fWatchKey = fDirectory.toPath().register(fgWatchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+					fgWatchedIndexes.put(fWatchKey, this);
+					takeChanges();
+				} catch (IOException e) {
+					// the directory is listed every time
+				} catch (UnsupportedOperationException e) {
+					// the file system cannot watch the directory, it is listed every time
+				}
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Dispatches the pending events of the watch service to the watched
+	 * indexes. Called with the watch lock held.
+	 */
+	private static void pollWatchService() {
+		if (fgWatchService == null) {
+			return;
+		}
+		WatchKey key;
+		while ((key = fgWatchService.poll()) != null) {
+			DirectoryBundleIndex index = fgWatchedIndexes.get(key);
+			if (index == null) {
+				key.cancel();
+				continue;
+			}
+			synchronized (index.fChangesLock) {
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+						index.fOverflow = true;
+					} else {
+						index.fChangedNames.add(event.context().toString());
+					}
+				}
+			}
+			if (!key.reset()) {
+				fgWatchedIndexes.remove(key);
+				index.fWatchKey = null;
+			}
+		}
+	}
+
+	/**
+	 * Returns and clears the names of the files reported as changed by the
+	 * watch service
+	 *
+	 * @return the changed names or <code>null</code> if events were lost
+	 */
+	private Set<String> takeChanges() {
+		synchronized (fChangesLock) {
+			Set<String> changes = fOverflow ? null : fChangedNames;
+			fChangedNames = new HashSet<>();
+			fOverflow = false;
+			return changes;
+		}
+	}
+
+	/**
+	 * Loads the saved index of the directory, if any
+	 */
+	private void load() {
+		if (!fFile.isFile()) {
+			return;
+		}
+		// keep used indexes from being pruned
+		fFile.setLastModified(System.currentTimeMillis());
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fFile)))) {
+			if (!PDECore.PLUGIN_ID.equals(in.readUTF()) || !FILE_KIND.equals(in.readUTF()) || in.readInt() != VERSION || !fDirectory.getAbsolutePath().equals(in.readUTF())) {
+				return;
+			}
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				String name = in.readUTF();
+				long[] stamps = new long[in.readInt()];
+				for (int j = 0; j < stamps.length; j++) {
+					stamps[j] = in.readLong();
+				}
+				boolean isDirectory = in.readBoolean();
+				boolean isBundle = in.readBoolean();
+				Entry entry = new Entry(stamps, isDirectory, isBundle);
+				if (isBundle) {
+					entry.symbolicName = readString(in);
+					entry.version = readString(in);
+					entry.isFragment = in.readBoolean();
+					entry.isSource = in.readBoolean();
+					entry.sourceName = readString(in);
+					entry.sourceVersion = readString(in);
+					entry.sourceIsLocal = in.readBoolean();
+					entry.sourcePath = readString(in);
+				}
+				fEntries.put(name, entry);
+			}
+		} catch (IOException e) {
+			// start over from an empty index
+			fEntries.clear();
+			PDECore.log(e);
+		}
+	}
+
+	/**
+	 * Saves the index of the directory
+	 */
+	private void save() {
+		File directory = fFile.getParentFile();
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			return;
+		}
+		File temp = new File(fFile.getPath() + TEMP_EXTENSION);
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+			out.writeUTF(PDECore.PLUGIN_ID);
+			out.writeUTF(FILE_KIND);
+			out.writeInt(VERSION);
+			out.writeUTF(fDirectory.getAbsolutePath());
+			out.writeInt(fEntries.size());
+			for (Map.Entry<String, Entry> mapEntry : fEntries.entrySet()) {
+				Entry entry = mapEntry.getValue();
+				out.writeUTF(mapEntry.getKey());
+				out.writeInt(entry.stamps.length);
+				for (int i = 0; i < entry.stamps.length; i++) {
+					out.writeLong(entry.stamps[i]);
+				}
+				out.writeBoolean(entry.isDirectory);
+				out.writeBoolean(entry.isBundle);
+				if (entry.isBundle) {
+					writeString(out, entry.symbolicName);
+					writeString(out, entry.version);
+					out.writeBoolean(entry.isFragment);
+					out.writeBoolean(entry.isSource);
+					writeString(out, entry.sourceName);
+					writeString(out, entry.sourceVersion);
+					out.writeBoolean(entry.sourceIsLocal);
+					writeString(out, entry.sourcePath);
+				}
+			}
+		} catch (IOException e) {
+			temp.delete();
+			PDECore.log(e);
+			return;
+		}
+		fFile.delete();
+		if (!temp.renameTo(fFile)) {
+			temp.delete();
+			return;
+		}
+		fChanged = false;
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+
+	/**
+	 * Forgets the index of the directory and deletes its saved index
+	 */
+	public void delete() {
+		synchronized (fgIndexes) {
+			if (fgIndexes.get(fDirectory.getAbsolutePath()) == this) {
+				fgIndexes.remove(fDirectory.getAbsolutePath());
+			}
+		}
+		synchronized (fgWatchLock) {
+			if (fWatchKey != null) {
+				fgWatchedIndexes.remove(fWatchKey);
+				fWatchKey.cancel();
+				fWatchKey = null;
+			}
+		}
+		synchronized (this) {
+			fEntries = new TreeMap<>();
+			fLoaded = true;
+			fChanged = false;
+			fFile.delete();
+		}
+	}
+
+	/**
+	 * Deletes the saved indexes that are not loaded and have not been used
+	 * for {@link #MAX_UNUSED_AGE}, along with leftover temporary files.
+	 */
+	public static void prune() {
+		File[] files = getIndexLocation().listFiles();
+		if (files == null) {
+			return;
+		}
+		Set<File> loaded = new HashSet<>();
+		synchronized (fgIndexes) {
+			for (DirectoryBundleIndex index : fgIndexes.values()) {
+				loaded.add(index.fFile);
+			}
+		}
+		long oldest = System.currentTimeMillis() - MAX_UNUSED_AGE;
+		for (File file : files) {
+			String name = file.getName();
+			if (!name.endsWith(INDEX_EXTENSION) && !name.endsWith(TEMP_EXTENSION)) {
+				continue;
+			}
+			if (loaded.contains(file) || file.lastModified() >= oldest) {
+				continue;
+			}
+			file.delete();
+		}
+	}
+
+	/**
+	 * Deletes the orphaned saved indexes, stops watching the indexed
+	 * directories and forgets the indexes in memory. The other saved indexes
+	 * are kept.
+	 */
+	public static void shutdown() {
+		prune();
+		synchronized (fgIndexes) {
+			fgIndexes.clear();
+		}
+		synchronized (fgWatchLock) {
+			for (WatchKey key : fgWatchedIndexes.keySet()) {
+				key.cancel();
+			}
+			fgWatchedIndexes.clear();
+			if (fgWatchService != null) {
+				try {
+					fgWatchService.close();
+				} catch (IOException e) {
+				}
+				fgWatchService = null;
+			}
+		}
+	}
+
+}
@@ -13,6 +13,8 @@ package org.eclipse.pde.internal.core.target;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.TransformerException;
 import org.eclipse.core.runtime.*;
@@ -34,6 +36,17 @@ import org.xml.sax.SAXException;
  */
 public class TargetDefinition implements ITargetDefinition {
 
+	/**
+	 * Number of threads resolving the local locations of a target
+	 */
+	private static final int RESOLVER_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+	/**
+	 * Interval in milliseconds at which cancellation is checked while waiting
+	 * for a location to resolve
+	 */
+	private static final long CANCEL_POLL_INTERVAL = 100;
+
 	// name and description
 	private String fName;
 
@@ -267,18 +280,13 @@ public class TargetDefinition implements ITargetDefinition {
 				if (subMonitor.isCanceled()) {
 					return Status.CANCEL_STATUS;
 				}
-				for (int i = 0; i < containers.length; i++) {
-					if (subMonitor.isCanceled()) {
-						return Status.CANCEL_STATUS;
-					}
-					subMonitor.subTask(Messages.TargetDefinition_4);
-					P2TargetUtils synchronizer = containers[i].getAdapter(P2TargetUtils.class);
-					int totalWork = 5;
-					if (synchronizer == null)
-						totalWork = 100;
-					IStatus s = containers[i].resolve(this, subMonitor.split(totalWork));
-					if (!s.isOK()) {
-						status.add(s);
+				IStatus[] statuses = resolveLocations(containers, subMonitor);
+				if (statuses == null) {
+					return Status.CANCEL_STATUS;
+				}
+				for (int i = 0; i < statuses.length; i++) {
+					if (!statuses[i].isOK()) {
+						status.add(statuses[i]);
 					}
 				}
 			}
@@ -300,6 +308,224 @@ public class TargetDefinition implements ITargetDefinition {
 		}
 	}
 
+	/**
+	 * Progress monitor of a location resolved concurrently. The work the
+	 * location reports is scaled to its share of the resolution and
+	 * accumulated, to be reported to the resolution monitor by the resolving
+	 * thread, which is the only one using that monitor. The monitor is
+	 * canceled when the resolution is.
+	 */
+	private static class LocationMonitor extends NullProgressMonitor {
+
+		private final AtomicBoolean fCanceled;
+		private final int fShare;
+		private double fTotal = 0;
+		private double fDone = 0;
+		private int fReported = 0;
+
+		/**
+		 * @param canceled whether the resolution is canceled
+		 * @param share the work of the resolution monitor allotted to the location
+		 */
+		LocationMonitor(AtomicBoolean canceled, int share) {
+			fCanceled = canceled;
+			fShare = share;
+		}
+
+		@Override
+		public synchronized void beginTask(String name, int totalWork) {
+			fTotal = totalWork;
+		}
+
+		@Override
+		public void worked(int work) {
+			internalWorked(work);
+		}
+
+		@Override
+		public synchronized void internalWorked(double work) {
+			fDone += work;
+		}
+
+		@Override
+		public boolean isCanceled() {
+			return fCanceled.get();
+		}
+
+		/**
+		 * Returns the work done by the location since the last call, in work of
+		 * the resolution monitor
+		 *
+		 * @param finished whether the location is resolved, in which case all
+		 * of its share not reported yet is returned
+		 * @return the work to report to the resolution monitor
+		 */
+		synchronized int takeWork(boolean finished) {
+			int done = fShare;
+			if (!finished) {
+				done = fTotal > 0 ? (int) Math.min(fShare, fShare * fDone / fTotal) : 0;
+			}
+			int work = Math.max(0, done - fReported);
+			fReported += work;
+			return work;
+		}
+	}
+
+	/**
+	 * Resolves the given locations, once their synchronizers have run. The
+	 * locations only doing local I/O, that is directories, installations and
+	 * features, are resolved concurrently on a bounded pool while the other
+	 * locations are resolved in turn on the calling thread. Each concurrent
+	 * location gets its own progress monitor, canceled when the given monitor
+	 * is, whose progress is reported to the given monitor as the location
+	 * resolves. The statuses are collected in location order.
+	 *
+	 * @param containers the locations to resolve
+	 * @param subMonitor progress monitor
+	 * @return the statuses of the locations, in order, or <code>null</code> if
+	 *         canceled
+	 */
+	private IStatus[] resolveLocations(ITargetLocation[] containers, SubMonitor subMonitor) {
+		IStatus[] statuses = new IStatus[containers.length];
+		List<Future<IStatus>> futures = new ArrayList<>(containers.length);
+		LocationMonitor[] monitors = new LocationMonitor[containers.length];
+		final AtomicBoolean canceled = new AtomicBoolean();
+		int local = 0;
+		for (int i = 0; i < containers.length; i++) {
+			if (isLocalLocation(containers[i])) {
+				local++;
+			}
+		}
+		ExecutorService pool = null;
+		if (local > 1) {
+			pool = Executors.newFixedThreadPool(Math.min(RESOLVER_THREADS, local), new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "Target Location Resolver"); //$NON-NLS-1$
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		try {
+			for (int i = 0; i < containers.length; i++) {
+				final ITargetLocation container = containers[i];
+				if (pool != null && isLocalLocation(container)) {
+					final LocationMonitor locationMonitor = new LocationMonitor(canceled, getResolveWork(container));
+					monitors[i] = locationMonitor;
+					futures.add(pool.submit(new Callable<IStatus>() {
+						@Override
+						public IStatus call() {
+							return container.resolve(TargetDefinition.this, locationMonitor);
+						}
+					}));
+				} else {
+					futures.add(null);
+				}
+			}
+			for (int i = 0; i < containers.length; i++) {
+				reportProgress(monitors, subMonitor);
+				if (subMonitor.isCanceled()) {
+					canceled.set(true);
+					return null;
+				}
+				subMonitor.subTask(Messages.TargetDefinition_4);
+				Future<IStatus> future = futures.get(i);
+				if (future == null) {
+					statuses[i] = containers[i].resolve(this, subMonitor.split(getResolveWork(containers[i])));
+				} else {
+					statuses[i] = getStatus(future, monitors, subMonitor);
+					if (statuses[i] == null) {
+						canceled.set(true);
+						return null;
+					}
+					subMonitor.worked(monitors[i].takeWork(true));
+				}
+			}
+			return statuses;
+		} finally {
+			if (pool != null) {
+				for (Future<IStatus> future : futures) {
+					if (future != null) {
+						future.cancel(true);
+					}
+				}
+				pool.shutdownNow();
+			}
+		}
+	}
+
+	/**
+	 * Returns the work of the resolution monitor allotted to resolving the
+	 * given location, once its synchronizer, if any, has run
+	 *
+	 * @param container the location
+	 * @return the work of the location
+	 */
+	private static int getResolveWork(ITargetLocation container) {
+		return container.getAdapter(P2TargetUtils.class) == null ? 100 : 5;
+	}
+
+	/**
+	 * Reports the progress made by the locations resolving concurrently since
+	 * the last report
+	 *
+	 * @param monitors the monitors of the concurrent locations, <code>null</code>
+	 * for the other locations
+	 * @param subMonitor the resolution monitor
+	 */
+	private static void reportProgress(LocationMonitor[] monitors, SubMonitor subMonitor) {
+		for (int i = 0; i < monitors.length; i++) {
+			if (monitors[i] != null) {
+				subMonitor.worked(monitors[i].takeWork(false));
+			}
+		}
+	}
+
+	/**
+	 * Returns whether the given location only does local I/O when resolved
+	 * and can be resolved concurrently with the other locations
+	 *
+	 * @param container the location
+	 * @return whether the location can be resolved concurrently
+	 */
+	private static boolean isLocalLocation(ITargetLocation container) {
+		return container instanceof DirectoryBundleContainer || container instanceof ProfileBundleContainer || container instanceof FeatureBundleContainer;
+	}
+
+	/**
+	 * Waits for a location resolved by {@link #resolveLocations(ITargetLocation[], SubMonitor)}
+	 * while reporting the progress of the concurrent locations and checking
+	 * the given monitor for cancellation
+	 *
+	 * @param future the resolving location
+	 * @param monitors the monitors of the concurrent locations
+	 * @param monitor progress monitor
+	 * @return the status of the location or <code>null</code> if canceled
+	 */
+	private static IStatus getStatus(Future<IStatus> future, LocationMonitor[] monitors, SubMonitor monitor) {
+		while (true) {
+			try {
+				return future.get(CANCEL_POLL_INTERVAL, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				reportProgress(monitors, monitor);
+				if (monitor.isCanceled()) {
+					return null;
+				}
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException)
+					throw (RuntimeException) cause;
+				if (cause instanceof Error)
+					throw (Error) cause;
+				throw new IllegalStateException(cause);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return null;
+			}
+		}
+	}
+
 	@Override
 	public boolean isResolved() {
 		ITargetLocation[] containers = getTargetLocations();
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006, 2014 IBM Corporation and others.
+ * Copyright (c) 2006, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -307,7 +307,11 @@ public class ManifestUtils {
 
 		Dictionary<String, String> convert;
 		try {
-			convert = converter.convertManifest(pluginLocation, false, null, false, null);
+			// the converter keeps the plug-in being converted in its fields,
+			// manifests may be loaded concurrently
+			synchronized (converter) {
+				convert = converter.convertManifest(pluginLocation, false, null, false, null);
+			}
 		} catch (PluginConversionException e) {
 			throw new CoreException(new Status(IStatus.ERROR, PDECore.PLUGIN_ID, NLS.bind(UtilMessages.ErrorReadingOldStyleManifest, pluginLocation.getAbsolutePath()), e));
 		}
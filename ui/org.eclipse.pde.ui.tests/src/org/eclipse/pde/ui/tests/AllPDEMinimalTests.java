@@ -50,6 +50,7 @@ public class AllPDEMinimalTests {
 		suite.addTest(ProjectCreationTests.suite());
 		suite.addTest(BundleRootTests.suite());
 		suite.addTest(PluginRegistryTests.suite());
+		suite.addTest(PluginModelManagerTests.suite());
 		suite.addTest(ClasspathResolverTest.suite());
 		// suite.addTest(ClasspathContributorTest.suite());
 		return suite;
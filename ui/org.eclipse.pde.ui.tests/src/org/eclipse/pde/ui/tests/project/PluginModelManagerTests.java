@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.ui.tests.project;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import junit.framework.*;
+import org.eclipse.core.resources.*;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.osgi.service.resolver.BundleDescription;
+import org.eclipse.pde.core.plugin.*;
+import org.eclipse.pde.core.project.IBundleProjectDescription;
+import org.eclipse.pde.internal.core.PDECore;
+import org.eclipse.pde.internal.core.PluginModelManager;
+import org.osgi.framework.Version;
+
+/**
+ * Tests the lookups of the plug-in model manager in the snapshots of its
+ * master table
+ *
+ * @since 3.11
+ */
+public class PluginModelManagerTests extends TestCase {
+
+	private static final String BUNDLE_ID = "org.eclipse.pde.ui.tests.snapshot";
+
+	public static Test suite() {
+		return new TestSuite(PluginModelManagerTests.class);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		IProject[] projects = ResourcesPlugin.getWorkspace().getRoot().getProjects();
+		for (int i = 0; i < projects.length; i++) {
+			if (projects[i].getName().startsWith(BUNDLE_ID)) {
+				projects[i].delete(true, null);
+			}
+		}
+		ProjectCreationTests.waitForBuild();
+		super.tearDown();
+	}
+
+	private PluginModelManager getManager() {
+		return PDECore.getDefault().getModelManager();
+	}
+
+	/**
+	 * Creates a bundle project with the given symbolic name and version
+	 */
+	private IProject createProject(String name, String symbolicName, String version) throws CoreException {
+		IProject project = ResourcesPlugin.getWorkspace().getRoot().getProject(name);
+		assertFalse("Project should not exist", project.exists());
+		IBundleProjectDescription description = ProjectCreationTests.getBundleProjectService().getDescription(project);
+		description.setSymbolicName(symbolicName);
+		description.setBundleVersion(new Version(version));
+		description.apply(null);
+		ProjectCreationTests.waitForBuild();
+		return project;
+	}
+
+	/**
+	 * Tests that an entry already looked up is not modified when models are
+	 * added to its ID afterwards
+	 *
+	 * @throws Exception
+	 */
+	public void testSnapshotIsolation() throws Exception {
+		createProject(BUNDLE_ID, BUNDLE_ID, "1.0.0");
+		ModelEntry entry = PluginRegistry.findEntry(BUNDLE_ID);
+		assertNotNull("Missing entry", entry);
+		assertEquals("Wrong number of workspace models", 1, entry.getWorkspaceModels().length);
+
+		createProject(BUNDLE_ID + ".second", BUNDLE_ID, "2.0.0");
+		assertEquals("The entry looked up before the change should not have changed", 1, entry.getWorkspaceModels().length);
+		ModelEntry current = PluginRegistry.findEntry(BUNDLE_ID);
+		assertNotSame("The entry should have been replaced", entry, current);
+		assertEquals("Wrong number of workspace models", 2, current.getWorkspaceModels().length);
+	}
+
+	/**
+	 * Tests that models are found by bundle description, and that a replaced
+	 * description does not find a model holding another description
+	 *
+	 * @throws Exception
+	 */
+	public void testFindModelByDescription() throws Exception {
+		IProject project = createProject(BUNDLE_ID, BUNDLE_ID, "1.0.0");
+		IPluginModelBase model = getManager().findModel(project);
+		assertNotNull("Missing model", model);
+		BundleDescription description = model.getBundleDescription();
+		assertNotNull("Missing bundle description", description);
+		assertSame("Wrong model", model, getManager().findModel(description));
+
+		IBundleProjectDescription bundle = ProjectCreationTests.getBundleProjectService().getDescription(project);
+		bundle.setBundleVersion(new Version("1.0.1"));
+		bundle.apply(null);
+		ProjectCreationTests.waitForBuild();
+
+		model = getManager().findModel(project);
+		BundleDescription changed = model.getBundleDescription();
+		assertEquals("Wrong version", new Version("1.0.1"), changed.getVersion());
+		assertSame("Wrong model", model, getManager().findModel(changed));
+		if (changed != description) {
+			IPluginModelBase old = getManager().findModel(description);
+			assertTrue("A model holding another description should not be found", old == null || old.getBundleDescription() == description);
+		}
+
+		BundleDescription[] bundles = getManager().getState().getState().getBundles();
+		for (int i = 0; i < bundles.length; i++) {
+			IPluginModelBase found = getManager().findModel(bundles[i]);
+			if (found != null) {
+				assertSame("Wrong description", bundles[i], found.getBundleDescription());
+			}
+		}
+	}
+
+	/**
+	 * Tests that the model of a plug-in project whose manifest declares no ID
+	 * is found by project
+	 *
+	 * @throws Exception
+	 */
+	public void testFindModelWithoutId() throws Exception {
+		IProject project = ResourcesPlugin.getWorkspace().getRoot().getProject(BUNDLE_ID + ".noid");
+		project.create(null);
+		project.open(null);
+		IProjectDescription description = project.getDescription();
+		description.setNatureIds(new String[] {IBundleProjectDescription.PLUGIN_NATURE});
+		project.setDescription(description, null);
+		IFolder folder = project.getFolder("META-INF");
+		folder.create(true, true, null);
+		String manifest = "Manifest-Version: 1.0\nBundle-ManifestVersion: 2\nBundle-Version: 1.0.0\n";
+		folder.getFile("MANIFEST.MF").create(new ByteArrayInputStream(manifest.getBytes(StandardCharsets.UTF_8)), true, null);
+		ProjectCreationTests.waitForBuild();
+
+		IPluginModelBase model = getManager().findModel(project);
+		assertNotNull("The model of the project should have been found", model);
+		assertEquals("Wrong project", project, model.getUnderlyingResource().getProject());
+		assertNull("The model should have no ID", model.getPluginBase().getId());
+	}
+
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2015 IBM Corporation and others.
+ * Copyright (c) 2009, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,6 +12,7 @@ package org.eclipse.pde.ui.tests.target;
 
 import java.io.*;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
@@ -29,6 +30,60 @@ import org.osgi.framework.ServiceReference;
 public abstract class AbstractTargetTest extends TestCase {
 
 
+	/**
+	 * Progress monitor recording the work reported to it, which cancels itself
+	 * once the given share of its work is done.
+	 */
+	protected static class RecordingMonitor extends NullProgressMonitor {
+
+		private final double fCancelShare;
+		private int fTotalWork = 0;
+		private double fWorked = 0;
+		private int fReports = 0;
+
+		/**
+		 * @param cancelShare share of the total work after which the monitor
+		 * cancels itself, or a negative value for a monitor never canceled
+		 */
+		public RecordingMonitor(double cancelShare) {
+			fCancelShare = cancelShare;
+		}
+
+		@Override
+		public synchronized void beginTask(String name, int totalWork) {
+			fTotalWork = totalWork;
+		}
+
+		@Override
+		public void worked(int work) {
+			internalWorked(work);
+		}
+
+		@Override
+		public synchronized void internalWorked(double work) {
+			fWorked += work;
+			fReports++;
+			if (fCancelShare >= 0 && fWorked > fCancelShare * fTotalWork) {
+				setCanceled(true);
+			}
+		}
+
+		public synchronized int getTotalWork() {
+			return fTotalWork;
+		}
+
+		public synchronized double getWorked() {
+			return fWorked;
+		}
+
+		/**
+		 * @return the number of times work was reported
+		 */
+		public synchronized int getReports() {
+			return fReports;
+		}
+	}
+
 	/**
 	 * Returns the target platform service or <code>null</code> if none
 	 *
@@ -207,6 +262,44 @@ public abstract class AbstractTargetTest extends TestCase {
 		dir.delete();
 	}
 
+	/**
+	 * Returns an empty directory with the given name in the state location of
+	 * the test plug-in, deleting any previous contents.
+	 *
+	 * @param name name of the directory
+	 * @return the empty directory
+	 */
+	protected File getEmptyStateDirectory(String name) {
+		File dir = PDETestsPlugin.getDefault().getStateLocation().append(name).toFile();
+		if (dir.exists()) {
+			delete(dir);
+		}
+		dir.mkdirs();
+		return dir;
+	}
+
+	/**
+	 * Creates or overwrites a bundle directory with a manifest declaring the
+	 * given symbolic name and version.
+	 *
+	 * @param parent directory to create the bundle in
+	 * @param name symbolic name and directory name of the bundle
+	 * @param version bundle version
+	 * @param headers additional manifest headers, each ending with a new line
+	 * @return the bundle directory
+	 * @throws IOException
+	 */
+	protected File createBundle(File parent, String name, String version, String headers) throws IOException {
+		File bundle = new File(parent, name);
+		File manifest = new File(bundle, "META-INF/MANIFEST.MF");
+		manifest.getParentFile().mkdirs();
+		String contents = "Manifest-Version: 1.0\nBundle-ManifestVersion: 2\nBundle-SymbolicName: " + name + "\nBundle-Version: " + version + "\n" + headers;
+		try (OutputStream out = new FileOutputStream(manifest)) {
+			out.write(contents.getBytes(StandardCharsets.UTF_8));
+		}
+		return bundle;
+	}
+
 	/**
 	 * Used to reset the target platform to original settings after a test that changes
 	 * the target platform.
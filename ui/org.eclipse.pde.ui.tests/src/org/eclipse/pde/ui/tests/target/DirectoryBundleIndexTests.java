@@ -0,0 +1,176 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.ui.tests.target;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.jar.*;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import org.eclipse.pde.core.target.TargetBundle;
+import org.eclipse.pde.internal.core.target.DirectoryBundleIndex;
+
+/**
+ * Tests the index of the bundles of a directory location
+ */
+public class DirectoryBundleIndexTests extends AbstractTargetTest {
+
+	private File fRoot;
+
+	public static Test suite() {
+		return new TestSuite(DirectoryBundleIndexTests.class);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		fRoot = getEmptyStateDirectory("directorybundleindex"); //$NON-NLS-1$
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		DirectoryBundleIndex.getIndex(fRoot).delete();
+		DirectoryBundleIndex.shutdown();
+		delete(fRoot);
+		super.tearDown();
+	}
+
+	private File createBundle(String name, String version, String headers) throws IOException {
+		return createBundle(fRoot, name, version, headers);
+	}
+
+	private Map<String, TargetBundle> getBundles() {
+		TargetBundle[] bundles = DirectoryBundleIndex.getIndex(fRoot).getBundles(null);
+		assertNotNull("The bundles should have been resolved", bundles); //$NON-NLS-1$
+		Map<String, TargetBundle> map = new HashMap<>();
+		for (int i = 0; i < bundles.length; i++) {
+			map.put(bundles[i].getBundleInfo().getSymbolicName(), bundles[i]);
+		}
+		return map;
+	}
+
+	/**
+	 * Tests that indexed bundles are the same as the bundles read from their
+	 * manifests, before and after the saved index is reloaded
+	 *
+	 * @throws Exception
+	 */
+	public void testIndexedBundles() throws Exception {
+		createBundle("a", "1.0.0", ""); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		createBundle("b", "1.0.0", "Fragment-Host: a\n"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		createBundle("a.source", "1.0.0", "Eclipse-SourceBundle: a;version=\"1.0.0\"\n"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		new File(fRoot, "readme.txt").createNewFile(); //$NON-NLS-1$
+
+		for (int round = 0; round < 3; round++) {
+			Map<String, TargetBundle> bundles = getBundles();
+			assertEquals("Wrong number of bundles", 3, bundles.size()); //$NON-NLS-1$
+			for (TargetBundle bundle : bundles.values()) {
+				TargetBundle expected = new TargetBundle(new File(bundle.getBundleInfo().getLocation()));
+				assertEquals("Wrong bundle info", expected.getBundleInfo(), bundle.getBundleInfo()); //$NON-NLS-1$
+				assertEquals("Wrong fragment flag", expected.isFragment(), bundle.isFragment()); //$NON-NLS-1$
+				assertEquals("Wrong source target", expected.getSourceTarget(), bundle.getSourceTarget()); //$NON-NLS-1$
+			}
+			// the second round uses the index in memory, the third the saved index
+			if (round == 1) {
+				DirectoryBundleIndex.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Tests that added, changed and removed bundles are found
+	 *
+	 * @throws Exception
+	 */
+	public void testChangedBundles() throws Exception {
+		File a = createBundle("a", "1.0.0", ""); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		File b = createBundle("b", "1.0.0", ""); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertEquals("Wrong number of bundles", 2, getBundles().size()); //$NON-NLS-1$
+
+		File manifest = new File(a, "META-INF/MANIFEST.MF"); //$NON-NLS-1$
+		long modified = manifest.lastModified();
+		createBundle("a", "1.0.1", ""); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		manifest.setLastModified(modified + 2000);
+		createBundle("c", "1.0.0", ""); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		delete(b);
+
+		Map<String, TargetBundle> bundles = getBundles();
+		assertEquals("Wrong bundles", new HashSet<>(Arrays.asList("a", "c")), bundles.keySet()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertEquals("The changed bundle should have been read again", "1.0.1", bundles.get("a").getBundleInfo().getVersion()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	}
+
+	/**
+	 * Writes a bundle archive with a manifest declaring the given symbolic
+	 * name and version
+	 */
+	private File createArchive(String name, String version) throws IOException {
+		File archive = new File(fRoot, name + ".jar"); //$NON-NLS-1$
+		Manifest manifest = new Manifest();
+		Attributes attributes = manifest.getMainAttributes();
+		attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0"); //$NON-NLS-1$
+		attributes.putValue("Bundle-ManifestVersion", "2"); //$NON-NLS-1$ //$NON-NLS-2$
+		attributes.putValue("Bundle-SymbolicName", name); //$NON-NLS-1$
+		attributes.putValue("Bundle-Version", version); //$NON-NLS-1$
+		try (JarOutputStream out = new JarOutputStream(new FileOutputStream(archive), manifest)) {
+			out.putNextEntry(new JarEntry("readme.txt")); //$NON-NLS-1$
+			out.write(version.getBytes(StandardCharsets.UTF_8));
+		}
+		return archive;
+	}
+
+	/**
+	 * Tests that an archive rewritten right after the bundles were resolved
+	 * is read again, whether or not the watch service reported it yet
+	 *
+	 * @throws Exception
+	 */
+	public void testChangedArchives() throws Exception {
+		File archive = createArchive("a", "1.0.0"); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals("Wrong version", "1.0.0", getBundles().get("a").getBundleInfo().getVersion()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertEquals("Wrong version", "1.0.0", getBundles().get("a").getBundleInfo().getVersion()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+		long modified = archive.lastModified();
+		createArchive("a", "1.0.1"); //$NON-NLS-1$ //$NON-NLS-2$
+		archive.setLastModified(modified + 2000);
+		assertEquals("The changed archive should have been read again", "1.0.1", getBundles().get("a").getBundleInfo().getVersion()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	}
+
+	/**
+	 * Tests that saved indexes are pruned only once they are no longer used
+	 *
+	 * @throws Exception
+	 */
+	public void testPrune() throws Exception {
+		createBundle("a", "1.0.0", ""); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		getBundles();
+		File file = DirectoryBundleIndex.getIndex(fRoot).getFile();
+		assertTrue("The index should have been saved", file.isFile()); //$NON-NLS-1$
+
+		long old = System.currentTimeMillis() - 2 * DirectoryBundleIndex.MAX_UNUSED_AGE;
+		file.setLastModified(old);
+		DirectoryBundleIndex.prune();
+		assertTrue("A loaded index should not be pruned", file.isFile()); //$NON-NLS-1$
+
+		// loading the saved index again marks it as used
+		DirectoryBundleIndex.shutdown();
+		file.setLastModified(old);
+		getBundles();
+		DirectoryBundleIndex.shutdown();
+		DirectoryBundleIndex.prune();
+		assertTrue("A used index should not be pruned", file.isFile()); //$NON-NLS-1$
+
+		file.setLastModified(old);
+		DirectoryBundleIndex.prune();
+		assertFalse("An unused index should have been pruned", file.exists()); //$NON-NLS-1$
+	}
+
+}
@@ -0,0 +1,228 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.ui.tests.target;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.net.URL;
+import java.util.Map;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import org.eclipse.osgi.service.resolver.BundleDescription;
+import org.eclipse.pde.internal.core.PDEState;
+import org.eclipse.pde.internal.core.PDEStateCache;
+
+/**
+ * Tests the persistent cache of target manifests used by the PDE state, and
+ * the concurrent loading of the target bundles by the state
+ */
+public class PDEStateCacheTests extends AbstractTargetTest {
+
+	private File fRoot;
+
+	public static Test suite() {
+		return new TestSuite(PDEStateCacheTests.class);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		fRoot = getEmptyStateDirectory("pdestatecache"); //$NON-NLS-1$
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		delete(fRoot);
+		super.tearDown();
+	}
+
+	private File createBundle(String name, String version) throws Exception {
+		return createBundle(fRoot, name, version, ""); //$NON-NLS-1$
+	}
+
+	/**
+	 * Tests that saved manifests are read from a reloaded cache, and that
+	 * changed bundles are read again
+	 *
+	 * @throws Exception
+	 */
+	public void testCachedManifests() throws Exception {
+		File cacheFile = new File(fRoot, PDEStateCache.CACHE_FILE_NAME);
+		File a = createBundle("a", "1.0.0"); //$NON-NLS-1$ //$NON-NLS-2$
+		File b = createBundle("b", "1.0.0"); //$NON-NLS-1$ //$NON-NLS-2$
+		PDEStateCache cache = PDEStateCache.load(cacheFile);
+		cache.getManifest(a);
+		cache.getManifest(b);
+		assertEquals("Nothing should have been cached", 2, cache.getMisses()); //$NON-NLS-1$
+		cache.save(true);
+
+		cache = PDEStateCache.load(cacheFile);
+		Map<String, String> manifest = cache.getManifest(a);
+		assertEquals("Wrong symbolic name", "a", manifest.get("Bundle-SymbolicName")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		manifest.put("Bundle-Version", "2.0.0"); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals("The cached manifest should not be modified", "1.0.0", cache.getManifest(a).get("Bundle-Version")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertEquals("The manifest should have been cached", 2, cache.getHits()); //$NON-NLS-1$
+
+		File manifestFile = new File(b, "META-INF/MANIFEST.MF"); //$NON-NLS-1$
+		long modified = manifestFile.lastModified();
+		createBundle("b", "1.0.1"); //$NON-NLS-1$ //$NON-NLS-2$
+		manifestFile.setLastModified(modified + 2000);
+		assertEquals("The changed manifest should have been read", "1.0.1", cache.getManifest(b).get("Bundle-Version")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertEquals("Wrong number of manifests read", 1, cache.getMisses()); //$NON-NLS-1$
+	}
+
+	/**
+	 * Tests that bundles not looked up are dropped from the saved cache
+	 *
+	 * @throws Exception
+	 */
+	public void testRemovedBundles() throws Exception {
+		File cacheFile = new File(fRoot, PDEStateCache.CACHE_FILE_NAME);
+		File a = createBundle("a", "1.0.0"); //$NON-NLS-1$ //$NON-NLS-2$
+		File b = createBundle("b", "1.0.0"); //$NON-NLS-1$ //$NON-NLS-2$
+		PDEStateCache cache = PDEStateCache.load(cacheFile);
+		cache.getManifest(a);
+		cache.getManifest(b);
+		cache.save(true);
+
+		cache = PDEStateCache.load(cacheFile);
+		cache.getManifest(a);
+		cache.save(true);
+
+		cache = PDEStateCache.load(cacheFile);
+		cache.getManifest(b);
+		assertEquals("The removed bundle should have been dropped", 1, cache.getMisses()); //$NON-NLS-1$
+	}
+
+	/**
+	 * Tests that a cache saved without pruning keeps the bundles saved by
+	 * other caches, so that loading another state does not drop the bundles
+	 * of the target platform
+	 *
+	 * @throws Exception
+	 */
+	public void testMergedSave() throws Exception {
+		File cacheFile = new File(fRoot, PDEStateCache.CACHE_FILE_NAME);
+		File a = createBundle("a", "1.0.0"); //$NON-NLS-1$ //$NON-NLS-2$
+		File b = createBundle("b", "1.0.0"); //$NON-NLS-1$ //$NON-NLS-2$
+		File c = createBundle("c", "1.0.0"); //$NON-NLS-1$ //$NON-NLS-2$
+		PDEStateCache target = PDEStateCache.load(cacheFile);
+		target.getManifest(a);
+		target.getManifest(b);
+		target.save(true);
+
+		// two other states loaded from the same cache, saved one after the other
+		PDEStateCache first = PDEStateCache.load(cacheFile);
+		PDEStateCache second = PDEStateCache.load(cacheFile);
+		first.getManifest(c);
+		second.getManifest(a);
+		first.save(false);
+		second.save(false);
+
+		PDEStateCache cache = PDEStateCache.load(cacheFile);
+		cache.getManifest(a);
+		cache.getManifest(b);
+		cache.getManifest(c);
+		assertEquals("No bundle should have been dropped", 3, cache.getHits()); //$NON-NLS-1$
+		File[] files = fRoot.listFiles(new FileFilter() {
+			@Override
+			public boolean accept(File file) {
+				return file.isFile();
+			}
+		});
+		assertEquals("Only the cache file should remain", 1, files.length); //$NON-NLS-1$
+	}
+
+	/**
+	 * Tests that concurrent saves of different caches leave a readable cache
+	 * holding all the bundles
+	 *
+	 * @throws Exception
+	 */
+	public void testConcurrentSaves() throws Exception {
+		final File cacheFile = new File(fRoot, PDEStateCache.CACHE_FILE_NAME);
+		final File[] bundles = new File[8];
+		for (int i = 0; i < bundles.length; i++) {
+			bundles[i] = createBundle("bundle" + i, "1.0.0"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		final Exception[] failure = new Exception[1];
+		Thread[] threads = new Thread[bundles.length];
+		for (int i = 0; i < threads.length; i++) {
+			final File bundle = bundles[i];
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						PDEStateCache cache = PDEStateCache.load(cacheFile);
+						cache.getManifest(bundle);
+						cache.save(false);
+					} catch (Exception e) {
+						failure[0] = e;
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (int i = 0; i < threads.length; i++) {
+			threads[i].join();
+		}
+		if (failure[0] != null)
+			throw failure[0];
+
+		PDEStateCache cache = PDEStateCache.load(cacheFile);
+		for (int i = 0; i < bundles.length; i++) {
+			cache.getManifest(bundles[i]);
+		}
+		assertEquals("All the bundles should have been cached", bundles.length, cache.getHits()); //$NON-NLS-1$
+	}
+
+	private URL[] createBundles(int count) throws Exception {
+		URL[] urls = new URL[count];
+		for (int i = 0; i < count; i++) {
+			urls[i] = createBundle("bundle" + i, "1.0.0").toURI().toURL(); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		return urls;
+	}
+
+	/**
+	 * Tests that the bundles of a state are added in the order of their
+	 * locations, whatever the order their manifests are loaded in
+	 *
+	 * @throws Exception
+	 */
+	public void testStateBundleOrder() throws Exception {
+		URL[] urls = createBundles(40);
+		RecordingMonitor monitor = new RecordingMonitor(-1);
+		PDEState state = new PDEState(urls, false, false, monitor);
+		long previous = -1;
+		for (int i = 0; i < urls.length; i++) {
+			BundleDescription bundle = state.getState().getBundle("bundle" + i, null); //$NON-NLS-1$
+			assertNotNull("Missing bundle " + i, bundle); //$NON-NLS-1$
+			assertTrue("The bundles should have been added in order", bundle.getBundleId() > previous); //$NON-NLS-1$
+			previous = bundle.getBundleId();
+		}
+		assertEquals("Each bundle should have reported its progress", urls.length, (int) monitor.getWorked()); //$NON-NLS-1$
+	}
+
+	/**
+	 * Tests that canceling the creation of a state stops adding bundles
+	 *
+	 * @throws Exception
+	 */
+	public void testStateCanceled() throws Exception {
+		URL[] urls = createBundles(40);
+		PDEState state = new PDEState(urls, false, false, new RecordingMonitor(0));
+		BundleDescription[] bundles = state.getState().getBundles();
+		assertEquals("Only the bundle added before the cancellation should be in the state", 1, bundles.length); //$NON-NLS-1$
+		assertEquals("Wrong bundle", "bundle0", bundles[0].getSymbolicName()); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+}
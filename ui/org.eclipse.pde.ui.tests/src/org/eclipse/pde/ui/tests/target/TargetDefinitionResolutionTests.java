@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2015 IBM Corporation and others.
+ * Copyright (c) 2009, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -19,10 +19,14 @@ import org.eclipse.equinox.frameworkadmin.BundleInfo;
 import org.eclipse.pde.core.plugin.TargetPlatform;
 import org.eclipse.pde.core.target.*;
 import org.eclipse.pde.internal.core.*;
+import org.eclipse.pde.internal.core.target.DirectoryBundleIndex;
 import org.eclipse.pde.internal.core.target.TargetPlatformService;
+import org.eclipse.pde.ui.tests.PDETestsPlugin;
 
 public class TargetDefinitionResolutionTests extends MinimalTargetDefinitionResolutionTests {
 
+	private static final String LOCATIONS_DIRECTORY = "resolvelocations";
+
 	public static Test suite() {
 		return new TestSuite(TargetDefinitionResolutionTests.class);
 	}
@@ -255,4 +259,76 @@ public class TargetDefinitionResolutionTests extends MinimalTargetDefinitionReso
 		}
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Deletes the directories created by {@link #createDirectoryLocations(int)}
+	 * along with their saved indexes
+	 */
+	private void deleteDirectoryLocations(int count) {
+		File root = PDETestsPlugin.getDefault().getStateLocation().append(LOCATIONS_DIRECTORY).toFile();
+		for (int i = 0; i < count; i++) {
+			DirectoryBundleIndex.getIndex(new File(root, "location" + i)).delete();
+		}
+		delete(root);
+	}
+
+	/**
+	 * Returns directory locations for the given number of directories, each
+	 * holding one bundle, where the directories of odd index are missing
+	 */
+	private ITargetLocation[] createDirectoryLocations(int count) throws Exception {
+		File root = getEmptyStateDirectory(LOCATIONS_DIRECTORY);
+		ITargetLocation[] locations = new ITargetLocation[count];
+		for (int i = 0; i < count; i++) {
+			File dir = new File(root, "location" + i);
+			if (i % 2 == 0) {
+				createBundle(dir, "bundle" + i, "1.0.0", "");
+			}
+			locations[i] = getTargetService().newDirectoryLocation(dir.getAbsolutePath());
+		}
+		return locations;
+	}
+
+	/**
+	 * Tests that the statuses of locations resolved concurrently are reported
+	 * in location order, and that each location reports its share of the work.
+	 */
+	public void testConcurrentResolutionOrder() throws Exception {
+		ITargetDefinition definition = getNewTarget();
+		definition.setTargetLocations(createDirectoryLocations(4));
+		RecordingMonitor monitor = new RecordingMonitor(-1);
+		IStatus status;
+		try {
+			status = definition.resolve(monitor);
+		} finally {
+			deleteDirectoryLocations(4);
+		}
+		assertEquals("Wrong severity", IStatus.ERROR, status.getSeverity());
+
+		IStatus[] children = status.getChildren();
+		assertEquals("Wrong number of statuses", 2, children.length);
+		assertTrue("Wrong first status: " + children[0].getMessage(), children[0].getMessage().indexOf("location1") >= 0);
+		assertTrue("Wrong second status: " + children[1].getMessage(), children[1].getMessage().indexOf("location3") >= 0);
+		assertEquals("Wrong number of bundles", 2, definition.getBundles().length);
+
+		assertEquals("Wrong total work", 400, monitor.getTotalWork());
+		assertTrue("Each location should have reported progress", monitor.getReports() >= 4);
+		assertTrue("All the work should have been reported: " + monitor.getWorked(), monitor.getWorked() > 399);
+	}
+
+	/**
+	 * Tests that canceling the resolution of locations resolved concurrently
+	 * returns a cancel status.
+	 */
+	public void testConcurrentResolutionCanceled() throws Exception {
+		ITargetDefinition definition = getNewTarget();
+		definition.setTargetLocations(createDirectoryLocations(4));
+		IStatus status;
+		try {
+			status = definition.resolve(new RecordingMonitor(0));
+		} finally {
+			deleteDirectoryLocations(4);
+		}
+		assertEquals("Wrong severity", IStatus.CANCEL, status.getSeverity());
+	}
+
+}